@@ -0,0 +1,98 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Deterministic random networks and data sets used by benchmarks
+ */
+final class BenchmarkData {
+
+    static final long SEED = 123;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Parses layer sizes in the form "inputs-hidden-...-outputs"
+     */
+    static int[] parseLayers(String layers) {
+        String[] parts = layers.split("-");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i]);
+        }
+        return sizes;
+    }
+
+    static MultiLayerPerceptron createMlp(String layers) {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, parseLayers(layers));
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(SEED)));
+        return mlp;
+    }
+
+    static double[] randomVector(Random random, int size) {
+        double[] vector = new double[size];
+        for (int i = 0; i < size; i++) {
+            vector[i] = random.nextDouble();
+        }
+        return vector;
+    }
+
+    /**
+     * Creates classification data set with random inputs and one hot outputs
+     */
+    static DataSet createDataSet(int rows, int inputs, int outputs) {
+        Random random = new Random(SEED);
+        DataSet dataSet = new DataSet(inputs, outputs);
+        for (int r = 0; r < rows; r++) {
+            double[] output = new double[outputs];
+            output[random.nextInt(outputs)] = 1;
+            dataSet.add(randomVector(random, inputs), output);
+        }
+        return dataSet;
+    }
+
+    /**
+     * Writes data set with random values to a temporary csv file
+     */
+    static File createCsvFile(int rows, int inputs, int outputs) throws IOException {
+        File file = File.createTempFile("neuroph-benchmark", ".csv");
+        file.deleteOnExit();
+        Random random = new Random(SEED);
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (int r = 0; r < rows; r++) {
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < inputs + outputs; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    line.append(random.nextDouble());
+                }
+                out.println(line);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.nnet.ConvolutionalNetwork;
+import org.neuroph.nnet.learning.ConvolutionalBackpropagation;
+import org.neuroph.util.random.WeightsRandomizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Forward pass and forward/backward pass (one learning epoch over 8 images) of a small LeNet like convolutional network
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConvolutionalNetworkBenchmark {
+
+    private static final int SIZE = 28;
+
+    private ConvolutionalNetwork network;
+    private ConvolutionalBackpropagation learningRule;
+    private DataSet dataSet;
+    private double[] input;
+
+    @Setup
+    public void setUp() {
+        network = new ConvolutionalNetwork.Builder()
+                .withInputLayer(SIZE, SIZE, 1)
+                .withConvolutionLayer(5, 5, 6)
+                .withPoolingLayer(2, 2)
+                .withConvolutionLayer(5, 5, 16)
+                .withPoolingLayer(2, 2)
+                .withFullConnectedLayer(32)
+                .withFullConnectedLayer(10)
+                .build();
+        network.randomizeWeights(new WeightsRandomizer(new Random(BenchmarkData.SEED)));
+
+        dataSet = BenchmarkData.createDataSet(8, SIZE * SIZE, 10);
+        input = dataSet.getRowAt(0).getInput();
+
+        learningRule = new ConvolutionalBackpropagation();
+        learningRule.setLearningRate(0.001);
+        learningRule.setMaxIterations(1);
+        network.setLearningRule(learningRule);
+    }
+
+    @Benchmark
+    public double[] forward() {
+        network.setInput(input);
+        network.calculate();
+        return network.getOutput();
+    }
+
+    @Benchmark
+    public ConvolutionalBackpropagation forwardBackward() {
+        learningRule.learn(dataSet);
+        return learningRule;
+    }
+}
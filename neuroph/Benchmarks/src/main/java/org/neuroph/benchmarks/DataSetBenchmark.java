@@ -0,0 +1,75 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.neuroph.core.data.BufferedDataSet;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Data set loading from csv file and buffered data set iteration
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class DataSetBenchmark {
+
+    private static final int INPUTS = 20;
+    private static final int OUTPUTS = 4;
+
+    @Param({"10000"})
+    public int rows;
+
+    private File csvFile;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        csvFile = BenchmarkData.createCsvFile(rows, INPUTS, OUTPUTS);
+    }
+
+    @Benchmark
+    public DataSet createFromFile() {
+        return DataSet.createFromFile(csvFile.getPath(), INPUTS, OUTPUTS, ",");
+    }
+
+    @Benchmark
+    public double bufferedDataSetIteration() throws IOException {
+        double sum = 0;
+        BufferedDataSet buffered = new BufferedDataSet(csvFile, INPUTS, OUTPUTS, ",");
+        for (DataSetRow row : buffered) {
+            sum += row.getInput()[0];
+        }
+        return sum;
+    }
+}
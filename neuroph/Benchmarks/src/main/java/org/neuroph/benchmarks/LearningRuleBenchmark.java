@@ -0,0 +1,83 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.nnet.learning.BackPropagation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One learning epoch of each supervised learning rule for multi layer perceptron, done by learn() with one iteration,
+ * so it includes learning rule initialization. Rules are used in their default mode (online, or batch for
+ * ResilientPropagation) and in batch mode.
+ * Network keeps learning between invocations, which does not change the amount of work per epoch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LearningRuleBenchmark {
+
+    @Param({"BackPropagation", "MomentumBackpropagation", "DynamicBackPropagation", "ResilientPropagation",
+        "QuickPropagation", "ManhattanPropagation", "Adam", "AdamW", "RMSProp", "AdaGrad", "NesterovMomentum"})
+    public String learningRule;
+
+    @Param({"default", "batch"})
+    public String mode;
+
+    @Param({"20-32-4"})
+    public String layers;
+
+    @Param({"256"})
+    public int rows;
+
+    private BackPropagation rule;
+    private DataSet dataSet;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        int[] sizes = BenchmarkData.parseLayers(layers);
+        dataSet = BenchmarkData.createDataSet(rows, sizes[0], sizes[sizes.length - 1]);
+        MultiLayerPerceptron network = BenchmarkData.createMlp(layers);
+
+        rule = (BackPropagation) Class.forName("org.neuroph.nnet.learning." + learningRule).getDeclaredConstructor().newInstance();
+        if ("batch".equals(mode)) {
+            rule.setBatchMode(true);
+        }
+        rule.setMaxIterations(1);
+        network.setLearningRule(rule);
+    }
+
+    @Benchmark
+    public BackPropagation epoch() {
+        rule.learn(dataSet);
+        return rule;
+    }
+}
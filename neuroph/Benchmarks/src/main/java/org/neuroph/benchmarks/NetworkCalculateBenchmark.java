@@ -0,0 +1,90 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.neuroph.core.CompiledNetwork;
+import org.neuroph.core.InferenceContext;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Forward pass of multi layer perceptrons: object graph (NeuralNetwork.calculate),
+ * compiled network and batched compiled network (per row).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NetworkCalculateBenchmark {
+
+    private static final int BATCH_ROWS = 64;
+
+    @Param({"4-8-3", "64-128-10", "784-300-10", "784-512-256-10"})
+    public String layers;
+
+    private MultiLayerPerceptron network;
+    private CompiledNetwork compiled;
+    private InferenceContext context;
+    private double[] input;
+    private double[][] batch;
+
+    @Setup
+    public void setUp() {
+        network = BenchmarkData.createMlp(layers);
+        compiled = network.compile();
+        context = compiled.createContext();
+        Random random = new Random(BenchmarkData.SEED);
+        input = BenchmarkData.randomVector(random, network.getInputsCount());
+        batch = new double[BATCH_ROWS][];
+        for (int r = 0; r < BATCH_ROWS; r++) {
+            batch[r] = BenchmarkData.randomVector(random, network.getInputsCount());
+        }
+    }
+
+    @Benchmark
+    public double[] calculate() {
+        network.setInput(input);
+        network.calculate();
+        return network.getOutput();
+    }
+
+    @Benchmark
+    public double[] compiledPredict() {
+        return compiled.predict(input, context);
+    }
+
+    /**
+     * One operation is a batch of 64 rows
+     */
+    @Benchmark
+    public double[][] compiledPredictBatch() {
+        return compiled.predictBatch(batch, context);
+    }
+}
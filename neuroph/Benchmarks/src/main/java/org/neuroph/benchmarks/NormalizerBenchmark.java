@@ -0,0 +1,95 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.util.data.norm.DecimalScaleNormalizer;
+import org.neuroph.util.data.norm.MaxMinNormalizer;
+import org.neuroph.util.data.norm.MaxNormalizer;
+import org.neuroph.util.data.norm.Normalizer;
+import org.neuroph.util.data.norm.RangeNormalizer;
+import org.neuroph.util.data.norm.ZeroMeanNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Data set normalization. Kept apart from DataSetBenchmark, since it needs a fresh data set for each invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class NormalizerBenchmark {
+
+    private static final int INPUTS = 20;
+    private static final int OUTPUTS = 4;
+
+    @Param({"10000"})
+    public int rows;
+
+    private DataSet dataSet;
+
+    /**
+     * Normalizers change data set in place, so each invocation gets a fresh copy
+     */
+    @Setup(Level.Invocation)
+    public void createDataSet() {
+        dataSet = BenchmarkData.createDataSet(rows, INPUTS, OUTPUTS);
+    }
+
+    private DataSet normalize(Normalizer normalizer) {
+        normalizer.normalize(dataSet);
+        return dataSet;
+    }
+
+    @Benchmark
+    public DataSet maxNormalizer() {
+        return normalize(new MaxNormalizer(dataSet));
+    }
+
+    @Benchmark
+    public DataSet maxMinNormalizer() {
+        return normalize(new MaxMinNormalizer(dataSet));
+    }
+
+    @Benchmark
+    public DataSet rangeNormalizer() {
+        return normalize(new RangeNormalizer(0, 1));
+    }
+
+    @Benchmark
+    public DataSet decimalScaleNormalizer() {
+        return normalize(new DecimalScaleNormalizer(dataSet));
+    }
+
+    @Benchmark
+    public DataSet zeroMeanNormalizer() {
+        return normalize(new ZeroMeanNormalizer(dataSet));
+    }
+}
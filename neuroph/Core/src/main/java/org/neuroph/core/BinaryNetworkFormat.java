@@ -0,0 +1,1208 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core;
+
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.input.InputFunction;
+import org.neuroph.core.learning.LearningRule;
+import org.neuroph.core.learning.error.ErrorFunction;
+import org.neuroph.core.learning.stop.StopCondition;
+import org.neuroph.core.transfer.TransferFunction;
+import org.neuroph.util.NeuralNetworkType;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * Compact, versioned binary file format for neural networks, used by NeuralNetwork.save and createFromFile
+ * instead of Java serialization when network structure can be described by it.
+ *
+ * File is little endian and consists of:
+ *  - preamble: magic bytes "NNBF", format version, header length and number of weights
+ *  - topology header: network class, type and label, learning rule settings, neuron types,
+ *    layers and connections (connections from all neurons of one layer are stored as a single layer index)
+ *  - weight block, 8 byte aligned: all weight values as doubles, layer by layer and neuron by neuron,
+ *    in the order of neuron input connections (the same order as NeuralNetwork.getWeights)
+ *
+ * Network, neuron, input and transfer function classes are created with their no argument constructors,
+ * and their primitive fields are restored by name. Learning rule is created the same way, with its settings
+ * restored by name. Object settings can be primitive wrappers and arrays, lists, references to the network
+ * or learning rule, and error functions and stop conditions, which are written as class name and properties
+ * and created with no argument constructor or constructor which takes the learning rule. Network can be written if:
+ *  - network, neurons, input and transfer functions have no argument constructors and no object fields
+ *    (other than those declared in NeuralNetwork and Neuron)
+ *  - all layers are instances of Layer and network has no plugins
+ *  - weights are not shared between connections
+ *  - learning rule settings have only the types listed above
+ * Other networks are saved by NeuralNetwork.save with Java serialization, which is not used by this format.
+ *
+ * Header is read into one buffer, and weights are read directly from the file channel in blocks,
+ * or from a memory mapped file region, without creating temporary objects for each weight.
+ * </pre>
+ *
+ * @see NeuralNetwork#save(String)
+ * @see NeuralNetwork#createFromFile(File)
+ */
+public final class BinaryNetworkFormat {
+
+    /**
+     * Current format version
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Magic bytes at the start of each file
+     */
+    private static final byte[] MAGIC = {'N', 'N', 'B', 'F'};
+
+    /**
+     * Magic, version, header length, reserved and weights count
+     */
+    private static final int PREAMBLE_SIZE = 24;
+
+    /**
+     * Weight blocks of at least this size are memory mapped by read(File)
+     */
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    /**
+     * Largest memory mapped region, multiple of weight size
+     */
+    private static final long MAP_WINDOW = 1 << 30;
+
+    /**
+     * Size of buffer used for reading and writing weights through channel
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Connection codes: neuron without input connections, and neuron with explicitly listed connections.
+     * Non negative code is the index of layer whose neurons are all connected to neuron, in order.
+     */
+    private static final int NO_CONNECTIONS = -1, LISTED_CONNECTIONS = -2;
+
+    /**
+     * Property type tags
+     */
+    private static final byte DOUBLE = 'D', FLOAT = 'F', LONG = 'J', INT = 'I', SHORT = 'S', BYTE = 'B', CHAR = 'C', BOOLEAN = 'Z';
+
+    /**
+     * Object property type tags: null, reference to network or learning rule, primitive array (element tag,
+     * length and values), list (size and tagged values), and error function or stop condition (class name and properties)
+     */
+    private static final byte NULL = 'N', NETWORK = 'W', LEARNING_RULE = 'R', ARRAY = '[', LIST = 'A', OBJECT = 'L';
+
+    /**
+     * Primitive type tags with their types and wrapper types, in the same order
+     */
+    private static final byte[] PRIMITIVE_TAGS = {DOUBLE, FLOAT, LONG, INT, SHORT, BYTE, CHAR, BOOLEAN};
+    private static final Class<?>[] PRIMITIVE_TYPES = {double.class, float.class, long.class, int.class,
+        short.class, byte.class, char.class, boolean.class};
+    private static final Class<?>[] WRAPPER_TYPES = {Double.class, Float.class, Long.class, Integer.class,
+        Short.class, Byte.class, Character.class, Boolean.class};
+
+    /**
+     * Persistent fields of each class
+     */
+    private static final Map<Class<?>, ClassFields> FIELDS = new ConcurrentHashMap<>();
+
+    private BinaryNetworkFormat() {
+    }
+
+    /**
+     * Returns true if the specified network can be written in this format
+     *
+     * @param network neural network
+     * @return true if network is supported
+     */
+    public static boolean isSupported(NeuralNetwork<?> network) {
+        try {
+            new HeaderWriter(network).write();
+            return true;
+        } catch (NeurophException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the specified network to file
+     *
+     * @param network neural network to write
+     * @param file    file to write to
+     * @throws NeurophException if network is not supported or writing fails
+     */
+    public static void write(NeuralNetwork<?> network, File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(network, channel);
+        } catch (IOException ex) {
+            throw new NeurophException("Could not write neural network to file!", ex);
+        }
+    }
+
+    /**
+     * Writes the specified network to channel
+     *
+     * @param network neural network to write
+     * @param channel channel to write to
+     * @throws IOException if writing fails
+     * @throws NeurophException if network is not supported
+     */
+    public static void write(NeuralNetwork<?> network, WritableByteChannel channel) throws IOException {
+        HeaderWriter writer = new HeaderWriter(network);
+        ByteBuffer header = writer.write();
+        int headerLength = header.remaining();
+
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        preamble.put(MAGIC).putInt(VERSION).putInt(headerLength).putInt(0).putLong(writer.weightsCount);
+        preamble.flip();
+        writeFully(channel, preamble);
+        writeFully(channel, header);
+        writeFully(channel, ByteBuffer.allocate(padding(PREAMBLE_SIZE + headerLength)));
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (Layer layer : network.getLayers()) {
+            for (Neuron neuron : layer.getNeurons()) {
+                for (Connection connection : neuron.getInputConnections()) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        writeFully(channel, buffer);
+                        buffer.clear();
+                    }
+                    buffer.putDouble(connection.getWeight().value);
+                }
+            }
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    /**
+     * Reads network from file, weight blocks larger than 1MB are memory mapped
+     *
+     * @param file file to read
+     * @return neural network
+     * @throws NeurophException if file is not valid or reading fails
+     */
+    public static NeuralNetwork read(File file) {
+        return read(file, file.length() >= MAP_THRESHOLD);
+    }
+
+    /**
+     * Reads network from file
+     *
+     * @param file         file to read
+     * @param memoryMapped if true weights are read from memory mapped file region
+     * @return neural network
+     * @throws NeurophException if file is not valid or reading fails
+     */
+    public static NeuralNetwork read(File file, boolean memoryMapped) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel, memoryMapped);
+        } catch (IOException ex) {
+            throw new NeurophException("Could not read neural network file!", ex);
+        }
+    }
+
+    /**
+     * Reads network from channel
+     *
+     * @param channel channel to read from
+     * @return neural network
+     * @throws IOException if reading fails
+     * @throws NeurophException if data is not valid
+     */
+    public static NeuralNetwork read(ReadableByteChannel channel) throws IOException {
+        return read(channel, false);
+    }
+
+    private static NeuralNetwork read(ReadableByteChannel channel, boolean memoryMapped) throws IOException {
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, preamble);
+        preamble.flip();
+        byte[] magic = new byte[MAGIC.length];
+        preamble.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new NeurophException("Not a binary neural network file!");
+        }
+        int version = preamble.getInt();
+        if (version != VERSION) { // version 1 used Java serialization for learning rule settings
+            throw new NeurophException("Unsupported binary neural network format version " + version);
+        }
+        int headerLength = preamble.getInt();
+        preamble.getInt(); // reserved
+        long weightsCount = preamble.getLong();
+        if (headerLength < 0 || weightsCount < 0) {
+            throw new NeurophException("Corrupted binary neural network file!");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerLength + padding(PREAMBLE_SIZE + headerLength)).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header);
+        header.flip();
+        header.limit(headerLength);
+
+        HeaderReader reader = new HeaderReader(header);
+        reader.read();
+        if (reader.weightsCount != weightsCount) {
+            throw new NeurophException("Corrupted binary neural network file - expected " + reader.weightsCount
+                    + " weights, found " + weightsCount);
+        }
+
+        WeightSource weights;
+        if (memoryMapped && channel instanceof FileChannel) {
+            weights = new MappedWeightSource((FileChannel) channel, PREAMBLE_SIZE + header.capacity(), weightsCount);
+        } else {
+            weights = new ChannelWeightSource(channel);
+        }
+        return reader.createNetwork(weights);
+    }
+
+    /**
+     * Returns true if file starts with the magic bytes of this format
+     *
+     * @param file file to check
+     * @return true if file is in binary format
+     */
+    public static boolean isBinaryFormat(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            readFully(channel, magic);
+            return Arrays.equals(magic.array(), MAGIC);
+        } catch (IOException ex) { // also too short file
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if stream starts with the magic bytes of this format. Stream must support mark,
+     * and it is reset to the current position.
+     *
+     * @param in input stream
+     * @return true if stream is in binary format
+     * @throws IOException if reading fails
+     */
+    public static boolean isBinaryFormat(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("Input stream must support mark!");
+        }
+        in.mark(MAGIC.length);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            int n = 0;
+            while (n < magic.length) {
+                int count = in.read(magic, n, magic.length - n);
+                if (count < 0) {
+                    return false;
+                }
+                n += count;
+            }
+            return Arrays.equals(magic, MAGIC);
+        } finally {
+            in.reset();
+        }
+    }
+
+    private static int padding(long position) {
+        return (int) ((8 - position % 8) % 8);
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of binary neural network file!");
+            }
+        }
+    }
+
+    /**
+     * Returns persistent fields of the specified class and its superclasses below the base class.
+     * In strict mode all persistent fields must be primitive.
+     */
+    private static Map<String, Field> getFields(Class<?> type, Class<?> base, boolean strict) {
+        ClassFields classFields = FIELDS.get(type);
+        if (classFields == null) {
+            classFields = new ClassFields(type, base);
+            FIELDS.put(type, classFields);
+        }
+        if (strict && classFields.objectField != null) {
+            throw new NeurophException("Cannot write " + type.getName() + " in binary format - field "
+                    + classFields.objectField + " is not primitive");
+        }
+        return classFields.fields;
+    }
+
+    /**
+     * Non static, non transient fields of a class
+     */
+    private static final class ClassFields {
+
+        /**
+         * Non final fields by name
+         */
+        final Map<String, Field> fields = new HashMap<>();
+
+        /**
+         * Name of the first field which is not primitive, null if there is none
+         */
+        String objectField;
+
+        ClassFields(Class<?> type, Class<?> base) {
+            for (Class<?> c = type; c != null && c != base && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    if (!field.getType().isPrimitive() && objectField == null) {
+                        objectField = field.getName();
+                    }
+                    if (!Modifier.isFinal(modifiers) && !fields.containsKey(field.getName())) { // subclass field hides superclass field
+                        field.setAccessible(true);
+                        fields.put(field.getName(), field);
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> T newInstance(String className, Class<T> type) {
+        try {
+            Class<?> c = Class.forName(className);
+            if (!type.isAssignableFrom(c)) {
+                throw new NeurophException("Class " + className + " is not " + type.getSimpleName());
+            }
+            Constructor<?> constructor = c.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return type.cast(constructor.newInstance());
+        } catch (ReflectiveOperationException ex) {
+            throw new NeurophException("Cannot create instance of " + className, ex);
+        }
+    }
+
+    private static void checkConstructor(Class<?> type) {
+        try {
+            type.getDeclaredConstructor();
+        } catch (NoSuchMethodException ex) {
+            throw new NeurophException("Cannot write " + type.getName() + " in binary format - no default constructor");
+        }
+    }
+
+    /**
+     * Returns tag of primitive or wrapper type, 0 for other types
+     */
+    private static byte primitiveTag(Class<?> type) {
+        for (int i = 0; i < PRIMITIVE_TAGS.length; i++) {
+            if (type == PRIMITIVE_TYPES[i] || type == WRAPPER_TYPES[i]) {
+                return PRIMITIVE_TAGS[i];
+            }
+        }
+        return 0;
+    }
+
+    private static Class<?> primitiveType(byte tag) {
+        for (int i = 0; i < PRIMITIVE_TAGS.length; i++) {
+            if (tag == PRIMITIVE_TAGS[i]) {
+                return PRIMITIVE_TYPES[i];
+            }
+        }
+        throw new NeurophException("Corrupted binary neural network file - invalid property type " + tag);
+    }
+
+    /**
+     * Returns constructor of error function or stop condition, the no argument one or one which takes
+     * the learning rule
+     */
+    private static Constructor<?> settingConstructor(Class<?> type, Class<?> learningRuleType) {
+        if (!ErrorFunction.class.isAssignableFrom(type) && !StopCondition.class.isAssignableFrom(type)) {
+            throw new NeurophException("Class " + type.getName() + " is not error function or stop condition");
+        }
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            Class<?>[] parameters = constructor.getParameterTypes();
+            if (parameters.length == 0
+                    || (parameters.length == 1 && learningRuleType != null && parameters[0].isAssignableFrom(learningRuleType))) {
+                constructor.setAccessible(true);
+                return constructor;
+            }
+        }
+        throw new NeurophException("Cannot write " + type.getName() + " in binary format - no default constructor"
+                + " or constructor with learning rule");
+    }
+
+    /**
+     * Encodes network structure, without weights
+     */
+    private static final class HeaderWriter {
+
+        private final NeuralNetwork<?> network;
+        private LearningRule learningRule;
+        private final Map<Layer, Integer> layerIndexes = new IdentityHashMap<>();
+        private Map<Neuron, Integer> neuronIndexes;
+        private ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        private long weightsCount;
+
+        HeaderWriter(NeuralNetwork<?> network) {
+            this.network = network;
+        }
+
+        ByteBuffer write() {
+            Class<?> networkClass = network.getClass();
+            checkConstructor(networkClass);
+            if (hasPlugins()) {
+                throw new NeurophException("Cannot write network with plugins in binary format");
+            }
+            putString(networkClass.getName());
+            putProperties(network, NeuralNetwork.class, true);
+            putString(network.getNetworkType() != null ? network.getNetworkType().name() : null);
+            putString(network.getLabel());
+
+            learningRule = network.getLearningRule();
+            if (learningRule != null) {
+                checkConstructor(learningRule.getClass());
+                putString(learningRule.getClass().getName());
+                putProperties(learningRule, Object.class, false);
+            } else {
+                putString(null);
+            }
+
+            // neuron types, shared by all neurons with the same classes and properties
+            List<Layer> layers = network.getLayers();
+            Map<ByteBuffer, Integer> neuronTypes = new HashMap<>();
+            List<ByteBuffer> neuronTypesList = new ArrayList<>();
+            int[][] neuronTypeIndexes = new int[layers.size()][];
+            for (int l = 0; l < layers.size(); l++) {
+                Layer layer = layers.get(l);
+                if (layer.getClass() != Layer.class) {
+                    throw new NeurophException("Cannot write " + layer.getClass().getName() + " in binary format");
+                }
+                neuronTypeIndexes[l] = new int[layer.getNeuronsCount()];
+                for (int n = 0; n < layer.getNeuronsCount(); n++) {
+                    ByteBuffer neuronType = neuronType(layer.getNeuronAt(n));
+                    Integer index = neuronTypes.get(neuronType);
+                    if (index == null) {
+                        index = neuronTypesList.size();
+                        neuronTypes.put(neuronType, index);
+                        neuronTypesList.add(neuronType);
+                    }
+                    neuronTypeIndexes[l][n] = index;
+                }
+            }
+            putInt(neuronTypesList.size());
+            for (ByteBuffer neuronType : neuronTypesList) {
+                ensureCapacity(neuronType.remaining());
+                buffer.put(neuronType.duplicate());
+            }
+
+            // layers, with neuron types as runs of equal types
+            for (int l = 0; l < layers.size(); l++) {
+                layerIndexes.put(layers.get(l), l);
+            }
+            putInt(layers.size());
+            for (int l = 0; l < layers.size(); l++) {
+                Layer layer = layers.get(l);
+                putString(layer.getLabel());
+                putInt(layer.getNeuronsCount());
+                int[] types = neuronTypeIndexes[l];
+                int runs = 0;
+                for (int n = 0; n < types.length; n++) {
+                    if (n == 0 || types[n] != types[n - 1]) {
+                        runs++;
+                    }
+                }
+                putInt(runs);
+                for (int n = 0; n < types.length; ) {
+                    int end = n;
+                    while (end < types.length && types[end] == types[n]) {
+                        end++;
+                    }
+                    putInt(end - n);
+                    putInt(types[n]);
+                    n = end;
+                }
+                int labels = 0;
+                for (Neuron neuron : layer.getNeurons()) {
+                    if (neuron.getLabel() != null) {
+                        labels++;
+                    }
+                }
+                putInt(labels);
+                for (int n = 0; n < layer.getNeuronsCount(); n++) {
+                    if (layer.getNeuronAt(n).getLabel() != null) {
+                        putInt(n);
+                        putString(layer.getNeuronAt(n).getLabel());
+                    }
+                }
+            }
+
+            // connections
+            Map<Weight, Boolean> weights = new IdentityHashMap<>();
+            for (Layer layer : layers) {
+                for (Neuron neuron : layer.getNeurons()) {
+                    List<Connection> connections = neuron.getInputConnections();
+                    for (Connection connection : connections) {
+                        if (weights.put(connection.getWeight(), Boolean.TRUE) != null) {
+                            throw new NeurophException("Cannot write network with shared weights in binary format");
+                        }
+                    }
+                    weightsCount += connections.size();
+
+                    if (connections.isEmpty()) {
+                        putInt(NO_CONNECTIONS);
+                        continue;
+                    }
+                    Layer fromLayer = connections.get(0).getFromNeuron().getParentLayer();
+                    Integer fromLayerIndex = layerIndexes.get(fromLayer);
+                    if (fromLayerIndex != null && isFullyConnected(connections, fromLayer)) {
+                        putInt(fromLayerIndex);
+                    } else {
+                        putInt(LISTED_CONNECTIONS);
+                        putInt(connections.size());
+                        for (Connection connection : connections) {
+                            putNeuronReference(connection.getFromNeuron());
+                        }
+                    }
+                }
+            }
+
+            putInt(network.getInputNeurons().size());
+            for (Neuron neuron : network.getInputNeurons()) {
+                putNeuronReference(neuron);
+            }
+            putInt(network.getOutputNeurons().size());
+            for (Neuron neuron : network.getOutputNeurons()) {
+                putNeuronReference(neuron);
+            }
+
+            buffer.flip();
+            return buffer;
+        }
+
+        private boolean hasPlugins() {
+            try {
+                Field field = NeuralNetwork.class.getDeclaredField("plugins");
+                field.setAccessible(true);
+                Map<?, ?> plugins = (Map<?, ?>) field.get(network);
+                return plugins != null && !plugins.isEmpty();
+            } catch (ReflectiveOperationException ex) {
+                throw new NeurophException("Cannot access network plugins", ex);
+            }
+        }
+
+        private ByteBuffer neuronType(Neuron neuron) {
+            ByteBuffer header = buffer;
+            buffer = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+            checkConstructor(neuron.getClass());
+            putString(neuron.getClass().getName());
+            putProperties(neuron, Neuron.class, true);
+            InputFunction inputFunction = neuron.getInputFunction();
+            checkConstructor(inputFunction.getClass());
+            putString(inputFunction.getClass().getName());
+            putProperties(inputFunction, InputFunction.class, true);
+            TransferFunction transferFunction = neuron.getTransferFunction();
+            checkConstructor(transferFunction.getClass());
+            putString(transferFunction.getClass().getName());
+            putProperties(transferFunction, TransferFunction.class, true);
+            ByteBuffer neuronType = buffer;
+            neuronType.flip();
+            buffer = header;
+            return neuronType;
+        }
+
+        private static boolean isFullyConnected(List<Connection> connections, Layer fromLayer) {
+            if (connections.size() != fromLayer.getNeuronsCount()) {
+                return false;
+            }
+            for (int i = 0; i < connections.size(); i++) {
+                if (connections.get(i).getFromNeuron() != fromLayer.getNeuronAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void putNeuronReference(Neuron neuron) {
+            if (neuronIndexes == null) {
+                neuronIndexes = new IdentityHashMap<>();
+                for (Layer layer : network.getLayers()) {
+                    for (int n = 0; n < layer.getNeuronsCount(); n++) {
+                        neuronIndexes.put(layer.getNeuronAt(n), n);
+                    }
+                }
+            }
+            Integer layerIndex = layerIndexes.get(neuron.getParentLayer());
+            Integer neuronIndex = neuronIndexes.get(neuron);
+            if (layerIndex == null || neuronIndex == null) {
+                throw new NeurophException("Cannot write network in binary format - neuron is not in network layers");
+            }
+            putInt(layerIndex);
+            putInt(neuronIndex);
+        }
+
+        private void putProperties(Object object, Class<?> base, boolean strict) {
+            Map<String, Field> fields = getFields(object.getClass(), base, strict);
+            List<Field> sorted = new ArrayList<>(fields.values());
+            sorted.sort(Comparator.comparing(Field::getName));
+            putInt(sorted.size());
+            try {
+                for (Field field : sorted) {
+                    putString(field.getName());
+                    putValue(object, field, field.get(object));
+                }
+            } catch (IllegalAccessException ex) {
+                throw new NeurophException("Cannot read field of " + object.getClass().getName(), ex);
+            }
+        }
+
+        /**
+         * Writes tagged value of the specified field, or of list element in that field
+         */
+        private void putValue(Object object, Field field, Object value) {
+            ensureCapacity(9);
+            byte tag = value != null ? primitiveTag(value.getClass()) : NULL;
+            if (tag == NULL) {
+                buffer.put(NULL);
+            } else if (tag != 0) {
+                buffer.put(tag);
+                putPrimitive(tag, value);
+            } else if (value == network) {
+                buffer.put(NETWORK);
+            } else if (value == learningRule) {
+                buffer.put(LEARNING_RULE);
+            } else if (value.getClass().isArray() && value.getClass().getComponentType().isPrimitive()) {
+                byte elementTag = primitiveTag(value.getClass().getComponentType());
+                int length = Array.getLength(value);
+                buffer.put(ARRAY).put(elementTag);
+                putInt(length);
+                for (int i = 0; i < length; i++) {
+                    ensureCapacity(8);
+                    putPrimitive(elementTag, Array.get(value, i));
+                }
+            } else if (value.getClass() == ArrayList.class) {
+                List<?> list = (List<?>) value;
+                buffer.put(LIST);
+                putInt(list.size());
+                for (Object element : list) {
+                    putValue(object, field, element);
+                }
+            } else if (value instanceof ErrorFunction || value instanceof StopCondition) {
+                settingConstructor(value.getClass(), learningRule != null ? learningRule.getClass() : null);
+                buffer.put(OBJECT);
+                putString(value.getClass().getName());
+                putProperties(value, Object.class, false);
+            } else {
+                throw new NeurophException("Cannot write " + object.getClass().getName() + " in binary format - field "
+                        + field.getName() + " of type " + value.getClass().getName()
+                        + " is not supported, NeuralNetwork.save writes such networks with Java serialization");
+            }
+        }
+
+        private void putPrimitive(byte tag, Object value) {
+            switch (tag) {
+                case DOUBLE:
+                    buffer.putDouble((Double) value);
+                    break;
+                case FLOAT:
+                    buffer.putFloat((Float) value);
+                    break;
+                case LONG:
+                    buffer.putLong((Long) value);
+                    break;
+                case INT:
+                    buffer.putInt((Integer) value);
+                    break;
+                case SHORT:
+                    buffer.putShort((Short) value);
+                    break;
+                case BYTE:
+                    buffer.put((Byte) value);
+                    break;
+                case CHAR:
+                    buffer.putChar((Character) value);
+                    break;
+                default:
+                    buffer.put((byte) ((Boolean) value ? 1 : 0));
+            }
+        }
+
+        private void putInt(int value) {
+            ensureCapacity(4);
+            buffer.putInt(value);
+        }
+
+        private void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensureCapacity(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void ensureCapacity(int size) {
+            if (buffer.remaining() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+
+    /**
+     * Decodes network structure and creates network
+     */
+    private static final class HeaderReader {
+
+        private final ByteBuffer buffer;
+        private NeuralNetwork<?> network;
+        private LearningRule learningRule;
+        private String networkClass, networkType, label, learningRuleClass;
+        private int networkProperties, learningRuleProperties;
+        private int[] neuronTypes;
+        private int[][] layerNeuronTypes;
+        private String[] layerLabels;
+        private Map<Integer, String>[] neuronLabels;
+        private int connectionsPosition;
+        private long weightsCount;
+
+        HeaderReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Reads header and validates it, object creation is left to createNetwork
+         */
+        @SuppressWarnings("unchecked")
+        void read() {
+            try {
+                networkClass = getString();
+                networkProperties = buffer.position();
+                skipProperties();
+                networkType = getString();
+                label = getString();
+                learningRuleClass = getString();
+                learningRuleProperties = buffer.position();
+                if (learningRuleClass != null) {
+                    skipProperties();
+                }
+
+                neuronTypes = new int[getCount()];
+                for (int t = 0; t < neuronTypes.length; t++) {
+                    neuronTypes[t] = buffer.position();
+                    for (int k = 0; k < 3; k++) {
+                        getString();
+                        skipProperties();
+                    }
+                }
+
+                int layersCount = getCount();
+                layerNeuronTypes = new int[layersCount][];
+                layerLabels = new String[layersCount];
+                neuronLabels = new Map[layersCount];
+                for (int l = 0; l < layersCount; l++) {
+                    layerLabels[l] = getString();
+                    int[] types = new int[getCount()];
+                    int runs = getCount();
+                    for (int r = 0, n = 0; r < runs; r++) {
+                        int count = getCount();
+                        int type = getIndex(neuronTypes.length);
+                        if (n + count > types.length) {
+                            throw new NeurophException("Corrupted binary neural network file - too many neurons in layer " + l);
+                        }
+                        Arrays.fill(types, n, n + count, type);
+                        n += count;
+                    }
+                    layerNeuronTypes[l] = types;
+                    int labels = getCount();
+                    neuronLabels[l] = new HashMap<>();
+                    for (int i = 0; i < labels; i++) {
+                        neuronLabels[l].put(getIndex(types.length), getString());
+                    }
+                }
+
+                connectionsPosition = buffer.position();
+                for (int l = 0; l < layersCount; l++) {
+                    for (int n = 0; n < layerNeuronTypes[l].length; n++) {
+                        int code = buffer.getInt();
+                        if (code >= 0) {
+                            weightsCount += layerNeuronTypes[getIndex(code, layersCount)].length;
+                        } else if (code == LISTED_CONNECTIONS) {
+                            int count = getCount();
+                            weightsCount += count;
+                            buffer.position(buffer.position() + 8 * count);
+                        } else if (code != NO_CONNECTIONS) {
+                            throw new NeurophException("Corrupted binary neural network file - invalid connection code " + code);
+                        }
+                    }
+                }
+            } catch (RuntimeException ex) {
+                if (ex instanceof NeurophException) {
+                    throw ex;
+                }
+                throw new NeurophException("Corrupted binary neural network file!", ex);
+            }
+        }
+
+        NeuralNetwork createNetwork(WeightSource weights) throws IOException {
+            NeuralNetwork network = newInstance(networkClass, NeuralNetwork.class);
+            this.network = network;
+            buffer.position(networkProperties);
+            getProperties(network, NeuralNetwork.class);
+            if (networkType != null) {
+                network.setNetworkType(NeuralNetworkType.valueOf(networkType));
+            }
+            network.setLabel(label);
+
+            Layer[] layers = new Layer[layerNeuronTypes.length];
+            for (int l = 0; l < layers.length; l++) {
+                int[] types = layerNeuronTypes[l];
+                Layer layer = new Layer(types.length);
+                layer.setLabel(layerLabels[l]);
+                for (int n = 0; n < types.length; n++) {
+                    Neuron neuron = createNeuron(types[n]);
+                    neuron.setLabel(neuronLabels[l].get(n));
+                    layer.addNeuron(neuron);
+                }
+                layers[l] = layer;
+            }
+
+            buffer.position(connectionsPosition);
+            for (Layer layer : layers) {
+                for (Neuron neuron : layer.getNeurons()) {
+                    int code = buffer.getInt();
+                    if (code >= 0) {
+                        Layer fromLayer = layers[code];
+                        for (Neuron from : fromLayer.getNeurons()) {
+                            neuron.addInputConnectionUnchecked(new Connection(from, neuron, new Weight(weights.next())));
+                        }
+                    } else if (code == LISTED_CONNECTIONS) {
+                        int count = buffer.getInt();
+                        for (int i = 0; i < count; i++) {
+                            Neuron from = getNeuron(layers);
+                            neuron.addInputConnectionUnchecked(new Connection(from, neuron, new Weight(weights.next())));
+                        }
+                    }
+                }
+            }
+
+            for (Layer layer : layers) {
+                network.addLayer(layer);
+            }
+            network.setInputNeurons(getNeurons(layers));
+            network.setOutputNeurons(getNeurons(layers));
+
+            if (learningRuleClass != null) {
+                learningRule = newInstance(learningRuleClass, LearningRule.class);
+                buffer.position(learningRuleProperties);
+                getProperties(learningRule, Object.class);
+                network.setLearningRule(learningRule);
+            }
+            return network;
+        }
+
+        private Neuron createNeuron(int type) {
+            int position = buffer.position();
+            buffer.position(neuronTypes[type]);
+            Neuron neuron = newInstance(getString(), Neuron.class);
+            getProperties(neuron, Neuron.class);
+            InputFunction inputFunction = newInstance(getString(), InputFunction.class);
+            getProperties(inputFunction, InputFunction.class);
+            TransferFunction transferFunction = newInstance(getString(), TransferFunction.class);
+            getProperties(transferFunction, TransferFunction.class);
+            neuron.setInputFunction(inputFunction);
+            neuron.setTransferFunction(transferFunction);
+            buffer.position(position);
+            return neuron;
+        }
+
+        private List<Neuron> getNeurons(Layer[] layers) {
+            int count = getCount();
+            List<Neuron> neurons = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                neurons.add(getNeuron(layers));
+            }
+            return neurons;
+        }
+
+        private Neuron getNeuron(Layer[] layers) {
+            Layer layer = layers[getIndex(layers.length)];
+            return layer.getNeuronAt(getIndex(layer.getNeuronsCount()));
+        }
+
+        /**
+         * Reads properties of the specified object, references to network and learning rule are restored
+         * to the new objects
+         */
+        private void getProperties(Object object, Class<?> base) {
+            Map<String, Field> fields = getFields(object.getClass(), base, false);
+            int count = getCount();
+            for (int i = 0; i < count; i++) {
+                Field field = fields.get(getString());
+                Object value = getValue();
+                if (field != null) {
+                    try {
+                        field.set(object, value);
+                    } catch (IllegalAccessException | IllegalArgumentException ex) {
+                        throw new NeurophException("Cannot set field " + field.getName() + " of " + object.getClass().getName(), ex);
+                    }
+                }
+            }
+        }
+
+        private Object getValue() {
+            byte tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case NETWORK:
+                    return network;
+                case LEARNING_RULE:
+                    return learningRule;
+                case ARRAY: {
+                    byte elementTag = buffer.get();
+                    int length = getCount();
+                    if (length > buffer.remaining()) {
+                        throw new NeurophException("Corrupted binary neural network file - array length " + length);
+                    }
+                    Object array = Array.newInstance(primitiveType(elementTag), length);
+                    for (int i = 0; i < length; i++) {
+                        Array.set(array, i, getPrimitive(elementTag));
+                    }
+                    return array;
+                }
+                case LIST: {
+                    int size = getCount();
+                    List<Object> list = new ArrayList<>(Math.min(size, buffer.remaining()));
+                    for (int i = 0; i < size; i++) {
+                        list.add(getValue());
+                    }
+                    return list;
+                }
+                case OBJECT:
+                    return getObject();
+                default:
+                    return getPrimitive(tag);
+            }
+        }
+
+        private Object getObject() {
+            String className = getString();
+            Object object;
+            try {
+                Constructor<?> constructor = settingConstructor(Class.forName(className),
+                        learningRule != null ? learningRule.getClass() : null);
+                object = constructor.getParameterCount() == 0 ? constructor.newInstance() : constructor.newInstance(learningRule);
+            } catch (ReflectiveOperationException ex) {
+                throw new NeurophException("Cannot create instance of " + className, ex);
+            }
+            getProperties(object, Object.class);
+            return object;
+        }
+
+        private Object getPrimitive(byte tag) {
+            switch (tag) {
+                case DOUBLE:
+                    return buffer.getDouble();
+                case FLOAT:
+                    return buffer.getFloat();
+                case LONG:
+                    return buffer.getLong();
+                case INT:
+                    return buffer.getInt();
+                case SHORT:
+                    return buffer.getShort();
+                case BYTE:
+                    return buffer.get();
+                case CHAR:
+                    return buffer.getChar();
+                case BOOLEAN:
+                    return buffer.get() != 0;
+                default:
+                    throw new NeurophException("Corrupted binary neural network file - invalid property type " + tag);
+            }
+        }
+
+        private void skipProperties() {
+            int count = getCount();
+            for (int i = 0; i < count; i++) {
+                getString();
+                skipValue();
+            }
+        }
+
+        private void skipValue() {
+            byte tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                case NETWORK:
+                case LEARNING_RULE:
+                    break;
+                case ARRAY: {
+                    byte elementTag = buffer.get();
+                    int length = getCount();
+                    for (int i = 0; i < length; i++) {
+                        getPrimitive(elementTag);
+                    }
+                    break;
+                }
+                case LIST: {
+                    int size = getCount();
+                    for (int i = 0; i < size; i++) {
+                        skipValue();
+                    }
+                    break;
+                }
+                case OBJECT:
+                    getString();
+                    skipProperties();
+                    break;
+                default:
+                    getPrimitive(tag);
+            }
+        }
+
+        private int getCount() {
+            int count = buffer.getInt();
+            if (count < 0) {
+                throw new NeurophException("Corrupted binary neural network file - negative count " + count);
+            }
+            return count;
+        }
+
+        private int getIndex(int size) {
+            return getIndex(buffer.getInt(), size);
+        }
+
+        private static int getIndex(int index, int size) {
+            if (index < 0 || index >= size) {
+                throw new NeurophException("Corrupted binary neural network file - index " + index + " out of range");
+            }
+            return index;
+        }
+
+        private String getString() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+    }
+
+    /**
+     * Sequential source of weight values
+     */
+    private interface WeightSource {
+        double next() throws IOException;
+    }
+
+    /**
+     * Reads weights from channel through a reused buffer
+     */
+    private static final class ChannelWeightSource implements WeightSource {
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private DoubleBuffer values = DoubleBuffer.allocate(0);
+
+        ChannelWeightSource(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.flip(); // empty
+        }
+
+        @Override
+        public double next() throws IOException {
+            if (!values.hasRemaining()) {
+                buffer.compact();
+                while (buffer.position() < 8) {
+                    if (channel.read(buffer) < 0) {
+                        throw new EOFException("Unexpected end of binary neural network file!");
+                    }
+                }
+                buffer.flip();
+                values = buffer.asDoubleBuffer();
+                buffer.position(buffer.position() + 8 * values.remaining());
+            }
+            return values.get();
+        }
+    }
+
+    /**
+     * Reads weights from memory mapped file regions
+     */
+    private static final class MappedWeightSource implements WeightSource {
+
+        private final FileChannel channel;
+        private long position, remaining;
+        private DoubleBuffer values = DoubleBuffer.allocate(0);
+
+        MappedWeightSource(FileChannel channel, long position, long count) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = 8 * count;
+        }
+
+        @Override
+        public double next() throws IOException {
+            if (!values.hasRemaining()) {
+                long size = Math.min(remaining, MAP_WINDOW);
+                if (size == 0 || position + size > channel.size()) {
+                    throw new EOFException("Unexpected end of binary neural network file!");
+                }
+                values = channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                position += size;
+                remaining -= size;
+            }
+            return values.get();
+        }
+    }
+}
@@ -0,0 +1,562 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core;
+
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.core.input.WeightedSum;
+import org.neuroph.core.kernel.Kernels;
+import org.neuroph.core.transfer.Activation;
+import org.neuroph.nnet.comp.neuron.BiasNeuron;
+import org.neuroph.nnet.comp.neuron.InputNeuron;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ * Flattened, inference only form of a layered neural network.
+ * All weights of a layer are stored in one contiguous row major matrix (one row per neuron),
+ * bias neuron connections are folded into a bias vector, and transfer functions are replaced with
+ * stateless activations. Forward pass is then a sequence of matrix-vector products, without walking
+ * Layer, Neuron, Connection and Weight objects.
+ *
+ * Network can be compiled if:
+ *  - neurons in first layer are network input neurons or bias neurons
+ *  - all other neurons use WeightedSum input function, and are only connected to neurons in previous layer
+ *  - network output neurons are in the last layer
+ *
+ * Compiled network holds a copy of the weights taken at compile time, so network should be compiled
+ * again after it has been trained.
+ * </pre>
+ *
+ * @see NeuralNetwork#compile()
+ */
+public class CompiledNetwork implements Serializable {
+
+    /**
+     * The class fingerprint that is set to indicate serialization compatibility
+     * with a previous version of the class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of rows processed together in batch prediction
+     */
+    private static final int BLOCK_ROWS = 64;
+
+    /**
+     * Kernels for matrix products, scalar or vectorized (see Kernels.getInstance)
+     */
+    private static final Kernels KERNELS = Kernels.getInstance();
+
+    /**
+     * Number of units (non bias neurons) in each layer
+     */
+    private final int[] layerSizes;
+
+    /**
+     * Weight matrices for each layer, row major [unit][previous layer unit]. First entry is null.
+     */
+    private final double[][] weights;
+
+    /**
+     * Bias vectors for each layer. First entry is null.
+     */
+    private final double[][] biases;
+
+    /**
+     * Activations for each layer, single entry if all units in layer use the same activation,
+     * one entry per unit otherwise. First entry is null.
+     */
+    private final Activation[][] activations;
+
+    /**
+     * Position of each network output neuron among last layer units, null if they are the same.
+     */
+    private final int[] outputIndexes;
+
+    /**
+     * Context used by calculate method
+     */
+    private transient InferenceContext context;
+
+    /**
+     * Per thread contexts used by predict(double[]) method
+     */
+    private transient volatile ThreadLocal<InferenceContext> threadContexts;
+
+    /**
+     * Creates compiled form of the specified neural network.
+     *
+     * @param network network to compile
+     * @throws NeurophException if network structure is not supported
+     */
+    public CompiledNetwork(NeuralNetwork<?> network) {
+        if (network == null) {
+            throw new IllegalArgumentException("Neural network cannot be null!");
+        }
+        if (network.getLayersCount() < 2) {
+            throw new NeurophException("Cannot compile network with less than two layers!");
+        }
+
+        int layersCount = network.getLayersCount();
+        layerSizes = new int[layersCount];
+        weights = new double[layersCount][];
+        biases = new double[layersCount][];
+        activations = new Activation[layersCount][];
+
+        // input layer units are network input neurons, in the same order
+        Layer inputLayer = network.getLayerAt(0);
+        List<Neuron> inputNeurons = network.getInputNeurons();
+        Map<Neuron, Integer> prevUnits = new IdentityHashMap<>();
+        for (Neuron neuron : inputNeurons) {
+            if (neuron.getParentLayer() != inputLayer || !(neuron instanceof InputNeuron)) {
+                throw new NeurophException("Cannot compile network - input neurons must be InputNeurons in the first layer!");
+            }
+            prevUnits.put(neuron, prevUnits.size());
+        }
+        for (Neuron neuron : inputLayer.getNeurons()) {
+            if (!prevUnits.containsKey(neuron) && !(neuron instanceof BiasNeuron)) {
+                throw new NeurophException("Cannot compile network - first layer contains neuron which is not an input neuron!");
+            }
+        }
+        layerSizes[0] = prevUnits.size();
+
+        Layer prevLayer = inputLayer;
+        for (int l = 1; l < layersCount; l++) {
+            Layer layer = network.getLayerAt(l);
+
+            List<Neuron> units = new ArrayList<>(layer.getNeuronsCount());
+            for (Neuron neuron : layer.getNeurons()) {
+                if (!(neuron instanceof BiasNeuron)) {
+                    units.add(neuron);
+                }
+            }
+
+            int in = layerSizes[l - 1];
+            int out = units.size();
+            double[] w = new double[out * in];
+            double[] b = new double[out];
+            Activation[] a = new Activation[out];
+
+            for (int j = 0; j < out; j++) {
+                Neuron neuron = units.get(j);
+                if (neuron.getClass() != Neuron.class || neuron.getInputFunction().getClass() != WeightedSum.class) {
+                    throw new NeurophException("Cannot compile network - only neurons with WeightedSum input function are supported, found "
+                            + neuron.getClass().getSimpleName() + " in layer " + l);
+                }
+
+                for (Connection connection : neuron.getInputConnections()) {
+                    Neuron from = connection.getFromNeuron();
+                    if (from.getParentLayer() != prevLayer) {
+                        throw new NeurophException("Cannot compile network - connections are allowed only between adjacent layers (layer " + l + ")");
+                    }
+                    Integer i = prevUnits.get(from);
+                    if (i != null) {
+                        w[j * in + i] = connection.getWeight().value;
+                    } else if (from instanceof BiasNeuron) {
+                        b[j] += connection.getWeight().value;
+                    } else {
+                        throw new NeurophException("Cannot compile network - unexpected connection source in layer " + l);
+                    }
+                }
+
+                a[j] = Activation.of(neuron.getTransferFunction());
+            }
+
+            layerSizes[l] = out;
+            weights[l] = w;
+            biases[l] = b;
+            activations[l] = isUniform(a) ? new Activation[]{a[0]} : a;
+
+            prevUnits = new IdentityHashMap<>();
+            for (Neuron unit : units) {
+                prevUnits.put(unit, prevUnits.size());
+            }
+            prevLayer = layer;
+        }
+
+        // map network output neurons to last layer units
+        List<Neuron> outputNeurons = network.getOutputNeurons();
+        int[] indexes = new int[outputNeurons.size()];
+        boolean identity = outputNeurons.size() == layerSizes[layersCount - 1];
+        for (int k = 0; k < indexes.length; k++) {
+            Integer idx = prevUnits.get(outputNeurons.get(k));
+            if (idx == null) {
+                throw new NeurophException("Cannot compile network - output neurons must be in the last layer!");
+            }
+            indexes[k] = idx;
+            identity = identity && idx == k;
+        }
+        outputIndexes = identity ? null : indexes;
+    }
+
+    /**
+     * Creates compiled network from existing arrays, used for conversion from single precision
+     */
+    CompiledNetwork(int[] layerSizes, double[][] weights, double[][] biases, Activation[][] activations, int[] outputIndexes) {
+        this.layerSizes = layerSizes;
+        this.weights = weights;
+        this.biases = biases;
+        this.activations = activations;
+        this.outputIndexes = outputIndexes;
+    }
+
+    private static boolean isUniform(Activation[] activations) {
+        for (int i = 1; i < activations.length; i++) {
+            if (!activations[i].equals(activations[0])) {
+                return false;
+            }
+        }
+        return activations.length > 0;
+    }
+
+    /**
+     * Calculates network output for the specified input.
+     * Uses context owned by this instance, so it should not be called concurrently.
+     * Returned array is reused by the next call.
+     *
+     * @param input network input
+     * @return network output
+     */
+    public double[] calculate(double... input) {
+        if (context == null) {
+            context = new InferenceContext(this);
+        }
+        return predict(input, context);
+    }
+
+    /**
+     * Calculates network output for the specified input, using buffers from the specified context.
+     * This method does not change the state of this network, so it can be called from many threads
+     * at the same time as long as each thread uses its own context (see isThreadSafe()).
+     *
+     * @param input   network input
+     * @param context scratch buffers for this call
+     * @return network output, which is the output buffer of the specified context
+     */
+    public double[] predict(double[] input, InferenceContext context) {
+        if (!context.isCompatibleWith(this)) {
+            throw new IllegalArgumentException("Inference context does not match network layer sizes!");
+        }
+
+        double[] last = forward(input, context.buffers);
+        double[] output = context.output;
+
+        if (outputIndexes == null) {
+            System.arraycopy(last, 0, output, 0, output.length);
+        } else {
+            for (int k = 0; k < outputIndexes.length; k++) {
+                output[k] = last[outputIndexes[k]];
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Calculates network output for the specified input, using a context which belongs to the calling thread.
+     * Returned array is reused by the next call from the same thread.
+     *
+     * @param input network input
+     * @return network output
+     */
+    public double[] predict(double[] input) {
+        ThreadLocal<InferenceContext> contexts = threadContexts;
+        if (contexts == null) {
+            contexts = ThreadLocal.withInitial(() -> new InferenceContext(this));
+            threadContexts = contexts;
+        }
+        return predict(input, contexts.get());
+    }
+
+    /**
+     * Creates new inference context for this network
+     *
+     * @return new inference context
+     */
+    public InferenceContext createContext() {
+        return new InferenceContext(this);
+    }
+
+    /**
+     * Returns true if predict methods can be called concurrently.
+     * This is the case when all transfer functions are built in, or known to be stateless.
+     *
+     * @return true if this network can be used from many threads
+     */
+    public boolean isThreadSafe() {
+        for (int l = 1; l < activations.length; l++) {
+            for (Activation activation : activations[l]) {
+                if (!activation.isThreadSafe()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows, using buffers from the specified context.
+     * Rows are processed in blocks, and each layer is calculated for the whole block as one matrix-matrix product.
+     * Outputs are written to the specified output matrix, which can be reused between calls.
+     *
+     * @param inputs  input rows
+     * @param outputs output rows, must have the same number of rows as inputs and getOutputsCount() columns
+     * @param context scratch buffers for this call
+     * @return outputs matrix
+     */
+    public double[][] predictBatch(double[][] inputs, double[][] outputs, InferenceContext context) {
+        if (outputs.length != inputs.length) {
+            throw new IllegalArgumentException("Output matrix must have the same number of rows as input matrix!");
+        }
+        if (!context.isCompatibleWith(this)) {
+            throw new IllegalArgumentException("Inference context does not match network layer sizes!");
+        }
+
+        double[][] blocks = context.blockBuffers;
+        if (blocks == null) {
+            blocks = new double[layerSizes.length][];
+            for (int l = 0; l < layerSizes.length; l++) {
+                blocks[l] = new double[BLOCK_ROWS * layerSizes[l]];
+            }
+            context.blockBuffers = blocks;
+        }
+
+        int inputsCount = layerSizes[0];
+        int last = layerSizes.length - 1;
+        int outputsCount = getOutputsCount();
+
+        for (int start = 0; start < inputs.length; start += BLOCK_ROWS) {
+            int rows = Math.min(BLOCK_ROWS, inputs.length - start);
+
+            // copy input rows into contiguous block
+            double[] x = blocks[0];
+            for (int r = 0; r < rows; r++) {
+                double[] input = inputs[start + r];
+                if (input.length != inputsCount) {
+                    throw new VectorSizeMismatchException("Input vector size does not match network input dimension! Row: " + (start + r));
+                }
+                System.arraycopy(input, 0, x, r * inputsCount, inputsCount);
+            }
+
+            for (int l = 1; l <= last; l++) {
+                double[] y = blocks[l];
+                KERNELS.gemm(x, rows, layerSizes[l - 1], weights[l], biases[l], layerSizes[l], y);
+                activateRows(l, y, rows);
+                x = y;
+            }
+
+            int out = layerSizes[last];
+            for (int r = 0; r < rows; r++) {
+                double[] output = outputs[start + r];
+                if (output.length != outputsCount) {
+                    throw new VectorSizeMismatchException("Output vector size does not match network output dimension! Row: " + (start + r));
+                }
+                if (outputIndexes == null) {
+                    System.arraycopy(x, r * out, output, 0, out);
+                } else {
+                    for (int k = 0; k < outputIndexes.length; k++) {
+                        output[k] = x[r * out + outputIndexes[k]];
+                    }
+                }
+            }
+        }
+
+        return outputs;
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows, using buffers from the specified context.
+     * Returned matrix belongs to the context and is reused by the next batch call with the same context.
+     *
+     * @param inputs  input rows
+     * @param context scratch buffers for this call
+     * @return output rows
+     */
+    public double[][] predictBatch(double[][] inputs, InferenceContext context) {
+        return predictBatch(inputs, context.batchOutput(inputs.length), context);
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows, using a context which belongs to the calling thread.
+     * Returned matrix is reused by the next batch call from the same thread.
+     *
+     * @param inputs input rows
+     * @return output rows
+     */
+    public double[][] predictBatch(double[][] inputs) {
+        ThreadLocal<InferenceContext> contexts = threadContexts;
+        if (contexts == null) {
+            contexts = ThreadLocal.withInitial(() -> new InferenceContext(this));
+            threadContexts = contexts;
+        }
+        return predictBatch(inputs, contexts.get());
+    }
+
+    /**
+     * Applies activations of the specified layer on a block of rows
+     */
+    private void activateRows(int layer, double[] values, int rows) {
+        Activation[] a = activations[layer];
+        int units = layerSizes[layer];
+        if (a.length == 1) {
+            a[0].apply(values, values, 0, rows * units);
+        } else {
+            for (int r = 0; r < rows; r++) {
+                activate(layer, values, r * units, (r + 1) * units);
+            }
+        }
+    }
+
+    /**
+     * Runs forward pass through all layers, storing layer outputs in specified buffers
+     *
+     * @param input   network input
+     * @param buffers output buffer for each layer (first entry is not used)
+     * @return last layer output buffer
+     */
+    final double[] forward(double[] input, double[][] buffers) {
+        if (input.length != layerSizes[0]) {
+            throw new VectorSizeMismatchException("Input vector size does not match network input dimension!");
+        }
+
+        double[] x = input;
+        for (int l = 1; l < layerSizes.length; l++) {
+            double[] y = buffers[l];
+            int out = layerSizes[l];
+            KERNELS.gemv(weights[l], layerSizes[l - 1], out, x, biases[l], y);
+            activate(l, y, 0, out);
+            x = y;
+        }
+        return x;
+    }
+
+    /**
+     * Applies activations of the specified layer on the range [from, to) of its units
+     */
+    final void activate(int layer, double[] values, int from, int to) {
+        Activation[] a = activations[layer];
+        if (a.length == 1) {
+            a[0].apply(values, values, from, to);
+        } else {
+            for (int j = from; j < to; j++) {
+                values[j] = a[j - from].getOutput(values[j]);
+            }
+        }
+    }
+
+    /**
+     * Creates activation buffers for all layers
+     *
+     * @return activation buffers, first entry is null
+     */
+    final double[][] createBuffers() {
+        double[][] result = new double[layerSizes.length][];
+        for (int l = 1; l < layerSizes.length; l++) {
+            result[l] = new double[layerSizes[l]];
+        }
+        return result;
+    }
+
+    /**
+     * Creates single precision copy of this network, with weights and biases rounded to float.
+     * It needs half of the memory and memory bandwidth of this network.
+     *
+     * @return single precision copy of this network
+     * @see FloatCompiledNetwork#toDouble()
+     */
+    public FloatCompiledNetwork toFloat() {
+        int layersCount = layerSizes.length;
+        float[][][] floatWeights = new float[layersCount][][];
+        float[][] floatBiases = new float[layersCount][];
+        for (int l = 1; l < layersCount; l++) {
+            int in = layerSizes[l - 1];
+            int out = layerSizes[l];
+            float[][] w = new float[in][out];
+            for (int j = 0; j < out; j++) {
+                for (int i = 0; i < in; i++) {
+                    w[i][j] = (float) weights[l][j * in + i];
+                }
+            }
+            floatWeights[l] = w;
+            floatBiases[l] = FloatCompiledNetwork.toFloat(biases[l]);
+        }
+        return new FloatCompiledNetwork(layerSizes.clone(), floatWeights, floatBiases, activations.clone(),
+                outputIndexes == null ? null : outputIndexes.clone());
+    }
+
+    /**
+     * Returns number of network inputs
+     *
+     * @return number of network inputs
+     */
+    public int getInputsCount() {
+        return layerSizes[0];
+    }
+
+    /**
+     * Returns number of network outputs
+     *
+     * @return number of network outputs
+     */
+    public int getOutputsCount() {
+        return outputIndexes == null ? layerSizes[layerSizes.length - 1] : outputIndexes.length;
+    }
+
+    /**
+     * Returns number of layers, including input layer
+     *
+     * @return number of layers
+     */
+    public int getLayersCount() {
+        return layerSizes.length;
+    }
+
+    /**
+     * Returns number of units (neurons without bias neurons) in specified layer
+     *
+     * @param layer layer index
+     * @return number of units in specified layer
+     */
+    public int getLayerSize(int layer) {
+        return layerSizes[layer];
+    }
+
+    /**
+     * Returns weight matrix of the specified layer, row major with one row per unit.
+     * Returned array is not a copy.
+     *
+     * @param layer layer index, greater than zero
+     * @return weight matrix of specified layer
+     */
+    public double[] getLayerWeights(int layer) {
+        return weights[layer];
+    }
+
+    /**
+     * Returns bias vector of the specified layer. Returned array is not a copy.
+     *
+     * @param layer layer index, greater than zero
+     * @return bias vector of specified layer
+     */
+    public double[] getLayerBiases(int layer) {
+        return biases[layer];
+    }
+}
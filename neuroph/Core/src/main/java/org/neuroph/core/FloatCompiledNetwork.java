@@ -0,0 +1,472 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core;
+
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.core.kernel.Kernels;
+import org.neuroph.core.transfer.Activation;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <pre>
+ * Single precision form of a compiled network. Weights, biases, inputs and layer outputs are floats,
+ * which halves the memory footprint and the memory traffic of the forward pass.
+ * Weights are stored with one row per input (the transpose of CompiledNetwork layout), so net inputs
+ * are calculated by adding input * weight row to the output vector for each input (axpy). That loop is
+ * vectorized by the JIT compiler or by vector kernels, which process twice as many floats as doubles in each instruction.
+ * Net inputs are summed in float, and activations are evaluated in double and rounded to float.
+ *
+ * Created with CompiledNetwork.toFloat(), and converted back with toDouble().
+ * Like CompiledNetwork, it holds a copy of the weights and can be used from many threads,
+ * each with its own FloatInferenceContext.
+ * </pre>
+ *
+ * @see CompiledNetwork#toFloat()
+ */
+public class FloatCompiledNetwork implements Serializable {
+
+    /**
+     * The class fingerprint that is set to indicate serialization compatibility
+     * with a previous version of the class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of rows processed together in batch prediction
+     */
+    private static final int BLOCK_ROWS = 64;
+
+    /**
+     * Kernels for weight row updates, scalar or vectorized (see Kernels.getInstance)
+     */
+    private static final Kernels KERNELS = Kernels.getInstance();
+
+    /**
+     * Number of units (non bias neurons) in each layer
+     */
+    private final int[] layerSizes;
+
+    /**
+     * Weight matrices for each layer, one row per previous layer unit [previous layer unit][unit]. First entry is null.
+     */
+    private final float[][][] weights;
+
+    /**
+     * Bias vectors for each layer. First entry is null.
+     */
+    private final float[][] biases;
+
+    /**
+     * Activations for each layer, single entry if all units in layer use the same activation,
+     * one entry per unit otherwise. First entry is null.
+     */
+    private final Activation[][] activations;
+
+    /**
+     * Position of each network output neuron among last layer units, null if they are the same.
+     */
+    private final int[] outputIndexes;
+
+    /**
+     * Context used by calculate method
+     */
+    private transient FloatInferenceContext context;
+
+    /**
+     * Per thread contexts used by predict(float[]) method
+     */
+    private transient volatile ThreadLocal<FloatInferenceContext> threadContexts;
+
+    FloatCompiledNetwork(int[] layerSizes, float[][][] weights, float[][] biases, Activation[][] activations, int[] outputIndexes) {
+        this.layerSizes = layerSizes;
+        this.weights = weights;
+        this.biases = biases;
+        this.activations = activations;
+        this.outputIndexes = outputIndexes;
+    }
+
+    /**
+     * Creates double precision copy of this network
+     *
+     * @return compiled network with the same weights
+     */
+    public CompiledNetwork toDouble() {
+        int layersCount = layerSizes.length;
+        double[][] doubleWeights = new double[layersCount][];
+        double[][] doubleBiases = new double[layersCount][];
+        for (int l = 1; l < layersCount; l++) {
+            int in = layerSizes[l - 1];
+            int out = layerSizes[l];
+            double[] w = new double[out * in];
+            for (int i = 0; i < in; i++) {
+                for (int j = 0; j < out; j++) {
+                    w[j * in + i] = weights[l][i][j];
+                }
+            }
+            doubleWeights[l] = w;
+            doubleBiases[l] = toDouble(biases[l]);
+        }
+        return new CompiledNetwork(layerSizes.clone(), doubleWeights, doubleBiases, activations.clone(),
+                outputIndexes == null ? null : outputIndexes.clone());
+    }
+
+    /**
+     * Returns values rounded to float
+     *
+     * @param values double values
+     * @return new array with float values
+     */
+    public static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns values converted to double
+     *
+     * @param values float values
+     * @return new array with double values
+     */
+    public static double[] toDouble(float[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Calculates network output for the specified input.
+     * Uses context owned by this instance, so it should not be called concurrently.
+     * Returned array is reused by the next call.
+     *
+     * @param input network input
+     * @return network output
+     */
+    public float[] calculate(float... input) {
+        if (context == null) {
+            context = new FloatInferenceContext(this);
+        }
+        return predict(input, context);
+    }
+
+    /**
+     * Calculates network output for the specified input, using buffers from the specified context.
+     * This method does not change the state of this network, so it can be called from many threads
+     * at the same time as long as each thread uses its own context (see isThreadSafe()).
+     *
+     * @param input   network input
+     * @param context scratch buffers for this call
+     * @return network output, which is the output buffer of the specified context
+     */
+    public float[] predict(float[] input, FloatInferenceContext context) {
+        if (!context.isCompatibleWith(this)) {
+            throw new IllegalArgumentException("Inference context does not match network layer sizes!");
+        }
+
+        float[] last = forward(input, context.buffers);
+        float[] output = context.output;
+
+        if (outputIndexes == null) {
+            System.arraycopy(last, 0, output, 0, output.length);
+        } else {
+            for (int k = 0; k < outputIndexes.length; k++) {
+                output[k] = last[outputIndexes[k]];
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Calculates network output for the specified input, using a context which belongs to the calling thread.
+     * Returned array is reused by the next call from the same thread.
+     *
+     * @param input network input
+     * @return network output
+     */
+    public float[] predict(float[] input) {
+        return predict(input, threadContext());
+    }
+
+    private FloatInferenceContext threadContext() {
+        ThreadLocal<FloatInferenceContext> contexts = threadContexts;
+        if (contexts == null) {
+            contexts = ThreadLocal.withInitial(() -> new FloatInferenceContext(this));
+            threadContexts = contexts;
+        }
+        return contexts.get();
+    }
+
+    /**
+     * Creates new inference context for this network
+     *
+     * @return new inference context
+     */
+    public FloatInferenceContext createContext() {
+        return new FloatInferenceContext(this);
+    }
+
+    /**
+     * Returns true if predict methods can be called concurrently.
+     * This is the case when all transfer functions are built in, or known to be stateless.
+     *
+     * @return true if this network can be used from many threads
+     */
+    public boolean isThreadSafe() {
+        for (int l = 1; l < activations.length; l++) {
+            for (Activation activation : activations[l]) {
+                if (!activation.isThreadSafe()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows, using buffers from the specified context.
+     * Rows are processed in blocks, and each weight row is used for all rows of a block before the next one.
+     * Outputs are written to the specified output matrix, which can be reused between calls.
+     *
+     * @param inputs  input rows
+     * @param outputs output rows, must have the same number of rows as inputs and getOutputsCount() columns
+     * @param context scratch buffers for this call
+     * @return outputs matrix
+     */
+    public float[][] predictBatch(float[][] inputs, float[][] outputs, FloatInferenceContext context) {
+        if (outputs.length != inputs.length) {
+            throw new IllegalArgumentException("Output matrix must have the same number of rows as input matrix!");
+        }
+        if (!context.isCompatibleWith(this)) {
+            throw new IllegalArgumentException("Inference context does not match network layer sizes!");
+        }
+
+        float[][][] blocks = context.blockBuffers;
+        if (blocks == null) {
+            blocks = new float[layerSizes.length][][];
+            blocks[0] = new float[BLOCK_ROWS][];
+            for (int l = 1; l < layerSizes.length; l++) {
+                blocks[l] = new float[BLOCK_ROWS][layerSizes[l]];
+            }
+            context.blockBuffers = blocks;
+        }
+
+        int inputsCount = layerSizes[0];
+        int outputsCount = getOutputsCount();
+
+        for (int start = 0; start < inputs.length; start += BLOCK_ROWS) {
+            int rows = Math.min(BLOCK_ROWS, inputs.length - start);
+
+            float[][] x = blocks[0];
+            for (int r = 0; r < rows; r++) {
+                float[] input = inputs[start + r];
+                if (input.length != inputsCount) {
+                    throw new VectorSizeMismatchException("Input vector size does not match network input dimension! Row: " + (start + r));
+                }
+                x[r] = input;
+            }
+
+            for (int l = 1; l < layerSizes.length; l++) {
+                float[][] y = blocks[l];
+                multiply(x, rows, weights[l], biases[l], y);
+                for (int r = 0; r < rows; r++) {
+                    activate(l, y[r], 0, layerSizes[l]);
+                }
+                x = y;
+            }
+
+            for (int r = 0; r < rows; r++) {
+                float[] output = outputs[start + r];
+                if (output.length != outputsCount) {
+                    throw new VectorSizeMismatchException("Output vector size does not match network output dimension! Row: " + (start + r));
+                }
+                if (outputIndexes == null) {
+                    System.arraycopy(x[r], 0, output, 0, outputsCount);
+                } else {
+                    for (int k = 0; k < outputIndexes.length; k++) {
+                        output[k] = x[r][outputIndexes[k]];
+                    }
+                }
+            }
+            // do not keep references to caller's rows
+            Arrays.fill(blocks[0], 0, rows, null);
+        }
+
+        return outputs;
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows, using buffers from the specified context.
+     * Returned matrix belongs to the context and is reused by the next batch call with the same context.
+     *
+     * @param inputs  input rows
+     * @param context scratch buffers for this call
+     * @return output rows
+     */
+    public float[][] predictBatch(float[][] inputs, FloatInferenceContext context) {
+        return predictBatch(inputs, context.batchOutput(inputs.length), context);
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows, using a context which belongs to the calling thread.
+     * Returned matrix is reused by the next batch call from the same thread.
+     *
+     * @param inputs input rows
+     * @return output rows
+     */
+    public float[][] predictBatch(float[][] inputs) {
+        return predictBatch(inputs, threadContext());
+    }
+
+    /**
+     * Calculates y = x * w + b for a block of rows, where w has one row per input.
+     * Each weight row is added to all rows of the block before moving to the next one,
+     * so it is read from memory once per block.
+     */
+    static void multiply(float[][] x, int rows, float[][] w, float[] b, float[][] y) {
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(b, 0, y[r], 0, b.length);
+        }
+        for (int i = 0; i < w.length; i++) {
+            float[] row = w[i];
+            for (int r = 0; r < rows; r++) {
+                float xi = x[r][i];
+                if (xi != 0) {
+                    KERNELS.axpy(xi, row, 0, y[r], 0, row.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs forward pass through all layers, storing layer outputs in specified buffers
+     *
+     * @param input   network input
+     * @param buffers output buffer for each layer (first entry is not used)
+     * @return last layer output buffer
+     */
+    final float[] forward(float[] input, float[][] buffers) {
+        if (input.length != layerSizes[0]) {
+            throw new VectorSizeMismatchException("Input vector size does not match network input dimension!");
+        }
+
+        float[] x = input;
+        for (int l = 1; l < layerSizes.length; l++) {
+            float[] y = buffers[l];
+            float[][] w = weights[l];
+            System.arraycopy(biases[l], 0, y, 0, y.length);
+            for (int i = 0; i < w.length; i++) {
+                if (x[i] != 0) {
+                    KERNELS.axpy(x[i], w[i], 0, y, 0, y.length);
+                }
+            }
+            activate(l, y, 0, y.length);
+            x = y;
+        }
+        return x;
+    }
+
+    /**
+     * Applies activations of the specified layer on the range [from, to) of its units
+     */
+    final void activate(int layer, float[] values, int from, int to) {
+        Activation[] a = activations[layer];
+        if (a.length == 1) {
+            a[0].apply(values, values, from, to);
+        } else {
+            for (int j = from; j < to; j++) {
+                values[j] = (float) a[j - from].getOutput(values[j]);
+            }
+        }
+    }
+
+    /**
+     * Creates activation buffers for all layers
+     *
+     * @return activation buffers, first entry is null
+     */
+    final float[][] createBuffers() {
+        float[][] result = new float[layerSizes.length][];
+        for (int l = 1; l < layerSizes.length; l++) {
+            result[l] = new float[layerSizes[l]];
+        }
+        return result;
+    }
+
+    /**
+     * Returns number of network inputs
+     *
+     * @return number of network inputs
+     */
+    public int getInputsCount() {
+        return layerSizes[0];
+    }
+
+    /**
+     * Returns number of network outputs
+     *
+     * @return number of network outputs
+     */
+    public int getOutputsCount() {
+        return outputIndexes == null ? layerSizes[layerSizes.length - 1] : outputIndexes.length;
+    }
+
+    /**
+     * Returns number of layers, including input layer
+     *
+     * @return number of layers
+     */
+    public int getLayersCount() {
+        return layerSizes.length;
+    }
+
+    /**
+     * Returns number of units (neurons without bias neurons) in specified layer
+     *
+     * @param layer layer index
+     * @return number of units in specified layer
+     */
+    public int getLayerSize(int layer) {
+        return layerSizes[layer];
+    }
+
+    /**
+     * Returns weight matrix of the specified layer, with one row per previous layer unit,
+     * so weights[i][j] is the weight from unit i of the previous layer to unit j.
+     * Returned array is not a copy.
+     *
+     * @param layer layer index, greater than zero
+     * @return weight matrix of specified layer
+     */
+    public float[][] getLayerWeights(int layer) {
+        return weights[layer];
+    }
+
+    /**
+     * Returns bias vector of the specified layer. Returned array is not a copy.
+     *
+     * @param layer layer index, greater than zero
+     * @return bias vector of specified layer
+     */
+    public float[] getLayerBiases(int layer) {
+        return biases[layer];
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core;
+
+/**
+ * <pre>
+ * Scratch buffers for one forward pass through a single precision compiled network,
+ * the float counterpart of InferenceContext.
+ *
+ * Context is not thread safe: it should be owned by a single thread, or used by one call at a time.
+ * It can be reused with any float compiled network with the same layer sizes.
+ * </pre>
+ *
+ * @see FloatCompiledNetwork#predict(float[], FloatInferenceContext)
+ */
+public final class FloatInferenceContext {
+
+    /**
+     * Output buffers for each layer, first entry is null (input is used directly)
+     */
+    final float[][] buffers;
+
+    /**
+     * Network output buffer
+     */
+    final float[] output;
+
+    /**
+     * Row block buffers for each layer used by batch prediction, [layer][row][unit], created on first use.
+     * First layer entry holds references to input rows.
+     */
+    float[][][] blockBuffers;
+
+    /**
+     * Output rows returned by batch prediction, reused between calls
+     */
+    float[][] batchOutput;
+
+    /**
+     * Creates new context for the specified compiled network
+     *
+     * @param network compiled network which will be used with this context
+     */
+    public FloatInferenceContext(FloatCompiledNetwork network) {
+        if (network == null) {
+            throw new IllegalArgumentException("Compiled network cannot be null!");
+        }
+        this.buffers = network.createBuffers();
+        this.output = new float[network.getOutputsCount()];
+    }
+
+    /**
+     * Returns true if this context can be used with the specified network
+     *
+     * @param network compiled network
+     * @return true if buffer sizes match layer sizes of specified network
+     */
+    public boolean isCompatibleWith(FloatCompiledNetwork network) {
+        if (buffers.length != network.getLayersCount() || output.length != network.getOutputsCount()) {
+            return false;
+        }
+        for (int l = 1; l < buffers.length; l++) {
+            if (buffers[l].length != network.getLayerSize(l)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns matrix for batch output with the specified number of rows.
+     * Rows from the previous call are reused, so same batch size gives same arrays.
+     *
+     * @param rows number of rows
+     * @return output matrix
+     */
+    float[][] batchOutput(int rows) {
+        float[][] previous = batchOutput;
+        if (previous != null && previous.length == rows) {
+            return previous;
+        }
+        float[][] result = new float[rows][];
+        int reused = previous == null ? 0 : Math.min(rows, previous.length);
+        for (int r = 0; r < rows; r++) {
+            result[r] = r < reused ? previous[r] : new float[output.length];
+        }
+        batchOutput = result;
+        return result;
+    }
+
+    /**
+     * Returns output of the last prediction done with this context.
+     * Returned array is reused by the next prediction.
+     *
+     * @return network output buffer
+     */
+    public float[] getOutput() {
+        return output;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <pre>
+ * Holder of the current model snapshot, for serving models which are retrained or replaced under load.
+ * Readers call get() once per request (or batch) and use that snapshot, so they always work with one
+ * consistent set of weights. Publishers build a new snapshot from a trained network and swap it in atomically,
+ * readers are never blocked and never see partially updated weights.
+ *
+ *   ModelHandle model = new ModelHandle(network);
+ *   // serving threads
+ *   double[] output = model.get().predict(input);
+ *   // training thread, after retraining network or loading a new one
+ *   model.publish(retrainedNetwork);
+ * </pre>
+ *
+ * @see ModelSnapshot
+ */
+public final class ModelHandle {
+
+    private final AtomicReference<ModelSnapshot> current = new AtomicReference<>();
+
+    /**
+     * Last assigned snapshot version
+     */
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * Creates handle with snapshot of the current weights of the specified network, as version 1
+     *
+     * @param network network to copy
+     */
+    public ModelHandle(NeuralNetwork<?> network) {
+        publish(network);
+    }
+
+    /**
+     * Returns the current snapshot
+     *
+     * @return current snapshot
+     */
+    public ModelSnapshot get() {
+        return current.get();
+    }
+
+    /**
+     * Returns version of the current snapshot
+     *
+     * @return current version
+     */
+    public long getVersion() {
+        return current.get().getVersion();
+    }
+
+    /**
+     * Creates snapshot of the current weights of the specified network with the next version, and makes it current.
+     * Network must not be changed by other threads while snapshot is created.
+     * If many threads publish at once, snapshot replaces only a snapshot with a lower version, so the current
+     * version never goes back because of a publisher which took longer to copy its network.
+     *
+     * @param network trained network, usually with the same structure as previous snapshots
+     * @return new snapshot, which is not current if a snapshot with a higher version was published meanwhile
+     */
+    public ModelSnapshot publish(NeuralNetwork<?> network) {
+        ModelSnapshot snapshot = new ModelSnapshot(network, versions.incrementAndGet());
+        ModelSnapshot previous;
+        do {
+            previous = current.get();
+            if (previous != null && previous.getVersion() > snapshot.getVersion()) {
+                break;
+            }
+        } while (!current.compareAndSet(previous, snapshot));
+        return snapshot;
+    }
+
+    /**
+     * Makes the specified snapshot current, for example to roll back to a previous version
+     *
+     * @param snapshot snapshot to publish
+     * @return previous snapshot
+     */
+    public ModelSnapshot publish(ModelSnapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Snapshot cannot be null!");
+        }
+        return current.getAndSet(snapshot);
+    }
+
+    /**
+     * Makes the specified snapshot current only if current snapshot is the expected one,
+     * so concurrent publishers do not overwrite each other's newer snapshots
+     *
+     * @param expected snapshot which must be current
+     * @param snapshot snapshot to publish
+     * @return true if snapshot was published
+     */
+    public boolean compareAndPublish(ModelSnapshot expected, ModelSnapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Snapshot cannot be null!");
+        }
+        return current.compareAndSet(expected, snapshot);
+    }
+
+    /**
+     * Creates snapshot of the specified network with the next version, without publishing it
+     *
+     * @param network network to copy
+     * @return new snapshot
+     */
+    public ModelSnapshot createSnapshot(NeuralNetwork<?> network) {
+        return new ModelSnapshot(network, versions.incrementAndGet());
+    }
+
+    /**
+     * Calculates network output with the current snapshot
+     *
+     * @param input network input
+     * @return network output, reused by the next call from the same thread
+     */
+    public double[] predict(double[] input) {
+        return current.get().predict(input);
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core;
+
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+/**
+ * <pre>
+ * Immutable, versioned copy of network weights, used for serving while the network is trained or replaced.
+ * Weights are copied into a primitive array in the same order as NeuralNetwork.getWeights(), and
+ * for networks which can be compiled the snapshot also holds a CompiledNetwork built from the same weights,
+ * so predict can be called from any number of threads.
+ * Snapshot never changes after it is created, so readers never see partially updated weights.
+ * </pre>
+ *
+ * @see ModelHandle
+ */
+public final class ModelSnapshot {
+
+    private final long version;
+    private final double[] weights;
+
+    /**
+     * Compiled network with snapshot weights, null if network cannot be compiled
+     */
+    private final CompiledNetwork compiled;
+
+    /**
+     * Creates snapshot of the current weights of the specified network.
+     * Network must not be changed by other threads while snapshot is created.
+     *
+     * @param network network to copy
+     * @param version snapshot version
+     */
+    public ModelSnapshot(NeuralNetwork<?> network, long version) {
+        if (network == null) {
+            throw new IllegalArgumentException("Neural network cannot be null!");
+        }
+        this.version = version;
+        this.weights = network.getWeights(new double[network.getWeightsCount()]);
+        CompiledNetwork compiledNetwork;
+        try {
+            compiledNetwork = network.compile();
+        } catch (NeurophException ex) {
+            compiledNetwork = null;
+        }
+        this.compiled = compiledNetwork;
+    }
+
+    /**
+     * Returns snapshot version
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns number of weights in snapshot
+     *
+     * @return number of weights
+     */
+    public int getWeightsCount() {
+        return weights.length;
+    }
+
+    /**
+     * Returns weight at the specified index, in NeuralNetwork.getWeights() order
+     *
+     * @param index weight index
+     * @return weight value
+     */
+    public double getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Copies snapshot weights into the specified array
+     *
+     * @param dest array with at least getWeightsCount() elements
+     * @return dest array
+     */
+    public double[] getWeights(double[] dest) {
+        if (dest.length < weights.length) {
+            throw new VectorSizeMismatchException("Destination array is smaller than number of weights!");
+        }
+        System.arraycopy(weights, 0, dest, 0, weights.length);
+        return dest;
+    }
+
+    /**
+     * Returns copy of snapshot weights
+     *
+     * @return weights array
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Sets snapshot weights to the specified network, which must have the same structure as the copied network
+     *
+     * @param network network to set weights to
+     */
+    public void applyTo(NeuralNetwork<?> network) {
+        network.setWeights(weights);
+    }
+
+    /**
+     * Returns true if snapshot can calculate network outputs
+     *
+     * @return true if network could be compiled
+     */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Returns compiled network with snapshot weights
+     *
+     * @return compiled network
+     * @throws UnsupportedOperationException if network could not be compiled
+     */
+    public CompiledNetwork getCompiledNetwork() {
+        if (compiled == null) {
+            throw new UnsupportedOperationException("Snapshot network cannot be compiled, only weights are available!");
+        }
+        return compiled;
+    }
+
+    /**
+     * Calculates network output for the specified input with snapshot weights.
+     * Can be called from many threads, returned array is reused by the next call from the same thread.
+     *
+     * @param input network input
+     * @return network output
+     * @see CompiledNetwork#predict(double[])
+     */
+    public double[] predict(double[] input) {
+        return getCompiledNetwork().predict(input);
+    }
+
+    @Override
+    public String toString() {
+        return "ModelSnapshot{version=" + version + ", weights=" + weights.length + "}";
+    }
+}
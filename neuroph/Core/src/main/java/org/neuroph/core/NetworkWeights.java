@@ -0,0 +1,234 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core;
+
+import java.nio.DoubleBuffer;
+import java.util.List;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+/**
+ * <pre>
+ * Flat view of all network weights, for bulk primitive copy of weight vectors.
+ * Weights are indexed in the same order as NeuralNetwork.getWeights(): layer by layer, neuron by neuron,
+ * input connection by input connection, so input weights of each layer are one contiguous block.
+ *
+ * View is created once and then copies weight values to and from double arrays and DoubleBuffers
+ * without walking the network and without allocation, which is what weight vector optimizers
+ * (simulated annealing, genetic algorithms) and checkpointing need in their inner loops.
+ * Like WeightMatrix, view describes network structure at the time it was created.
+ * </pre>
+ *
+ * @see NeuralNetwork#createWeightsView()
+ */
+public final class NetworkWeights {
+
+    /**
+     * Weights in view order
+     */
+    private final Weight[] weights;
+
+    /**
+     * Index of the first weight of each layer, with the total size at the end
+     */
+    private final int[] layerOffsets;
+
+    /**
+     * Creates view of the current weights of the specified network
+     *
+     * @param network neural network
+     */
+    public NetworkWeights(NeuralNetwork<?> network) {
+        if (network == null) {
+            throw new IllegalArgumentException("Neural network cannot be null!");
+        }
+        List<Layer> layers = network.getLayers();
+        layerOffsets = new int[layers.size() + 1];
+        weights = new Weight[network.getWeightsCount()];
+        int k = 0;
+        for (int l = 0; l < layers.size(); l++) {
+            layerOffsets[l] = k;
+            for (Neuron neuron : layers.get(l).getNeurons()) {
+                for (Connection connection : neuron.getInputConnections()) {
+                    weights[k++] = connection.getWeight();
+                }
+            }
+        }
+        layerOffsets[layers.size()] = k;
+    }
+
+    /**
+     * Returns total number of weights
+     *
+     * @return number of weights
+     */
+    public int size() {
+        return weights.length;
+    }
+
+    /**
+     * Returns number of network layers
+     *
+     * @return number of layers
+     */
+    public int getLayersCount() {
+        return layerOffsets.length - 1;
+    }
+
+    /**
+     * Returns index of the first input weight of the specified layer
+     *
+     * @param layer layer index, or number of layers for the total size
+     * @return index of the first weight of layer
+     */
+    public int getLayerOffset(int layer) {
+        return layerOffsets[layer];
+    }
+
+    /**
+     * Returns number of input weights of the specified layer
+     *
+     * @param layer layer index
+     * @return number of layer weights
+     */
+    public int getLayerSize(int layer) {
+        return layerOffsets[layer + 1] - layerOffsets[layer];
+    }
+
+    /**
+     * Returns weight at the specified index
+     *
+     * @param index weight index
+     * @return weight object
+     */
+    public Weight getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Copies all weight values into the specified array
+     *
+     * @param dest array with at least size() elements
+     * @return dest array
+     */
+    public double[] read(double[] dest) {
+        return read(0, weights.length, dest, 0);
+    }
+
+    /**
+     * Sets all weight values from the specified array
+     *
+     * @param src array with at least size() elements
+     */
+    public void write(double[] src) {
+        write(src, 0, 0, weights.length);
+    }
+
+    /**
+     * Copies input weight values of the specified layer into the specified array
+     *
+     * @param layer      layer index
+     * @param dest       destination array
+     * @param destOffset index of the first destination element
+     * @return dest array
+     */
+    public double[] readLayer(int layer, double[] dest, int destOffset) {
+        return read(layerOffsets[layer], getLayerSize(layer), dest, destOffset);
+    }
+
+    /**
+     * Sets input weight values of the specified layer from the specified array
+     *
+     * @param layer     layer index
+     * @param src       source array
+     * @param srcOffset index of the first source element
+     */
+    public void writeLayer(int layer, double[] src, int srcOffset) {
+        write(src, srcOffset, layerOffsets[layer], getLayerSize(layer));
+    }
+
+    /**
+     * Copies length weight values, starting at the specified weight index, into the specified array
+     *
+     * @param from       index of the first weight
+     * @param length     number of weights
+     * @param dest       destination array
+     * @param destOffset index of the first destination element
+     * @return dest array
+     */
+    public double[] read(int from, int length, double[] dest, int destOffset) {
+        checkRange(from, length, dest.length, destOffset);
+        for (int k = 0; k < length; k++) {
+            dest[destOffset + k] = weights[from + k].value;
+        }
+        return dest;
+    }
+
+    /**
+     * Sets length weight values, starting at the specified weight index, from the specified array
+     *
+     * @param src       source array
+     * @param srcOffset index of the first source element
+     * @param from      index of the first weight
+     * @param length    number of weights
+     */
+    public void write(double[] src, int srcOffset, int from, int length) {
+        checkRange(from, length, src.length, srcOffset);
+        for (int k = 0; k < length; k++) {
+            weights[from + k].value = src[srcOffset + k];
+        }
+    }
+
+    /**
+     * Puts all weight values into the specified buffer, at its current position.
+     * Buffer can be direct or memory mapped, for checkpointing outside of heap.
+     *
+     * @param dest buffer with at least size() remaining elements
+     * @return dest buffer
+     */
+    public DoubleBuffer read(DoubleBuffer dest) {
+        if (dest.remaining() < weights.length) {
+            throw new VectorSizeMismatchException("Buffer has less remaining elements than number of weights!");
+        }
+        for (Weight weight : weights) {
+            dest.put(weight.value);
+        }
+        return dest;
+    }
+
+    /**
+     * Sets all weight values from the specified buffer, starting at its current position
+     *
+     * @param src buffer with at least size() remaining elements
+     */
+    public void write(DoubleBuffer src) {
+        if (src.remaining() < weights.length) {
+            throw new VectorSizeMismatchException("Buffer has less remaining elements than number of weights!");
+        }
+        for (Weight weight : weights) {
+            weight.value = src.get();
+        }
+    }
+
+    private void checkRange(int from, int length, int arrayLength, int arrayOffset) {
+        if (from < 0 || length < 0 || from + length > weights.length) {
+            throw new IndexOutOfBoundsException("Invalid weight range: " + from + ", " + length);
+        }
+        if (arrayOffset < 0 || arrayOffset + length > arrayLength) {
+            throw new VectorSizeMismatchException("Array is too small for " + length + " weights at offset " + arrayOffset);
+        }
+    }
+}
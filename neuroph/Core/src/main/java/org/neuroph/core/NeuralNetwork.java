@@ -16,6 +16,8 @@
 package org.neuroph.core;
 
 import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.MappedDataSet;
 import org.neuroph.core.events.NeuralNetworkEvent;
 import org.neuroph.core.events.NeuralNetworkEventListener;
 import org.neuroph.core.exceptions.NeurophException;
@@ -30,7 +32,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * <pre>
@@ -106,6 +111,11 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
      */
     private final Logger LOGGER = LoggerFactory.getLogger(NeuralNetwork.class);
 
+    /**
+     * Number of data set rows calculated at once by predictBatch(DataSet, BiConsumer)
+     */
+    private static final int BATCH_ROWS = 256;
+
     /**
      * Creates an instance of empty neural network.
      */
@@ -277,6 +287,156 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
         fireNetworkEvent(new NeuralNetworkEvent(this, NeuralNetworkEvent.CALCULATED));
     }
 
+    /**
+     * Creates compiled (flattened) form of this network, used for fast inference.
+     * Compiled network holds a copy of the current weights, so it should be compiled again after training.
+     *
+     * @return compiled form of this network
+     * @see CompiledNetwork
+     */
+    public CompiledNetwork compile() {
+        return new CompiledNetwork(this);
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows.
+     * Network is compiled with its current weights and rows are calculated in blocks,
+     * as matrix-matrix products (see CompiledNetwork). If network cannot be compiled, rows are
+     * calculated one by one.
+     *
+     * Each call compiles the network again, which copies all weights, and uses its own buffers,
+     * so calls from many threads do not share state. Networks which cannot be compiled are calculated
+     * through network input and output, which is not thread safe. For repeated scoring with the same
+     * weights use compile() once and CompiledNetwork.predictBatch with an InferenceContext per thread.
+     *
+     * @param inputs input rows
+     * @return output rows
+     */
+    public double[][] predictBatch(double[][] inputs) {
+        return predictBatch(inputs, new double[inputs.length][getOutputsCount()]);
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows into the specified output rows,
+     * which can be reused between calls. Network is compiled for each call, as in predictBatch(double[][]).
+     *
+     * @param inputs  input rows
+     * @param outputs output rows, must have the same number of rows as inputs and getOutputsCount() columns
+     * @return outputs matrix
+     */
+    public double[][] predictBatch(double[][] inputs, double[][] outputs) {
+        CompiledNetwork compiled;
+        try {
+            compiled = compile();
+        } catch (NeurophException ex) {
+            LOGGER.debug("Network cannot be compiled, calculating rows one by one: " + ex.getMessage());
+            if (outputs.length != inputs.length) {
+                throw new IllegalArgumentException("Output matrix must have the same number of rows as input matrix!");
+            }
+            for (int r = 0; r < inputs.length; r++) {
+                setInput(inputs[r]);
+                calculate();
+                System.arraycopy(getOutput(), 0, outputs[r], 0, outputs[r].length);
+            }
+            return outputs;
+        }
+
+        return compiled.predictBatch(inputs, outputs, compiled.createContext());
+    }
+
+    /**
+     * Calculates network outputs for inputs of all rows in the specified data set.
+     *
+     * @param dataSet data set with input rows
+     * @return output rows, in the same order as data set rows
+     * @see #predictBatch(DataSet, BiConsumer)
+     */
+    public double[][] predictBatch(DataSet dataSet) {
+        List<double[]> outputs = new ArrayList<>();
+        predictBatch(dataSet, (output, desiredOutput) -> outputs.add(output.clone()));
+        return outputs.toArray(new double[outputs.size()][]);
+    }
+
+    /**
+     * Calculates network outputs for all rows in the specified data set, and passes each output
+     * with desired output of its row to the specified consumer, in data set order.
+     *
+     * Network is compiled once, and rows are read in one pass and calculated in blocks, with one
+     * InferenceContext and input and output buffers reused for all blocks. Rows of MappedDataSet are read
+     * directly into the input buffers, so the data set is not loaded into heap. Arrays passed to the consumer
+     * are reused for the next rows. Networks which cannot be compiled are calculated row by row.
+     *
+     * @param dataSet  data set to calculate
+     * @param consumer receives network output and desired output (null for unsupervised rows) of each row
+     */
+    public void predictBatch(DataSet dataSet, BiConsumer<double[], double[]> consumer) {
+        CompiledNetwork compiled;
+        try {
+            compiled = compile();
+        } catch (NeurophException ex) {
+            LOGGER.debug("Network cannot be compiled, calculating rows one by one: " + ex.getMessage());
+            for (DataSetRow row : dataSet) {
+                setInput(row.getInput());
+                calculate();
+                consumer.accept(getOutput(), row.getDesiredOutput());
+            }
+            return;
+        }
+
+        InferenceContext context = compiled.createContext();
+        double[][] inputs = new double[BATCH_ROWS][];
+        double[][] desiredOutputs = new double[BATCH_ROWS][];
+        double[][] outputs = new double[BATCH_ROWS][compiled.getOutputsCount()];
+
+        if (dataSet instanceof MappedDataSet) {
+            MappedDataSet mapped = (MappedDataSet) dataSet;
+            for (int r = 0; r < BATCH_ROWS; r++) {
+                inputs[r] = new double[mapped.getInputSize()];
+                desiredOutputs[r] = mapped.getOutputSize() > 0 ? new double[mapped.getOutputSize()] : null;
+            }
+            int size = mapped.size();
+            for (int start = 0; start < size; start += BATCH_ROWS) {
+                int rows = Math.min(BATCH_ROWS, size - start);
+                for (int r = 0; r < rows; r++) {
+                    mapped.getInput(start + r, inputs[r]);
+                    if (desiredOutputs[r] != null) {
+                        mapped.getDesiredOutput(start + r, desiredOutputs[r]);
+                    }
+                }
+                predictBlock(compiled, context, inputs, outputs, desiredOutputs, rows, consumer);
+            }
+            return;
+        }
+
+        int rows = 0;
+        for (DataSetRow row : dataSet) {
+            inputs[rows] = row.getInput();
+            desiredOutputs[rows] = row.getDesiredOutput();
+            if (++rows == BATCH_ROWS) {
+                predictBlock(compiled, context, inputs, outputs, desiredOutputs, rows, consumer);
+                rows = 0;
+            }
+        }
+        if (rows > 0) {
+            predictBlock(compiled, context, inputs, outputs, desiredOutputs, rows, consumer);
+        }
+    }
+
+    /**
+     * Calculates the first rows of input block and passes outputs to consumer
+     */
+    private static void predictBlock(CompiledNetwork compiled, InferenceContext context, double[][] inputs, double[][] outputs,
+            double[][] desiredOutputs, int rows, BiConsumer<double[], double[]> consumer) {
+        if (rows < inputs.length) { // last block, row arrays are shared
+            compiled.predictBatch(Arrays.copyOf(inputs, rows), Arrays.copyOf(outputs, rows), context);
+        } else {
+            compiled.predictBatch(inputs, outputs, context);
+        }
+        for (int r = 0; r < rows; r++) {
+            consumer.accept(outputs[r], desiredOutputs[r]);
+        }
+    }
+
     /**
      * Resets the activation levels for whole network
      */
@@ -487,37 +647,88 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
      * Returns all network weights as an double array
      *
      * @return network weights as an double array
+     * @see #getWeights(double[])
      */
     public Double[] getWeights() {
-        List<Double> weights = new ArrayList();
-        for (Layer layer : layers) {
-            for (Neuron neuron : layer.getNeurons()) {
-                for (Connection conn : neuron.getInputConnections()) {
-                    weights.add(conn.getWeight().getValue());
+        double[] values = getWeights(new double[getWeightsCount()]);
+        Double[] weights = new Double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            weights[i] = values[i];
+        }
+        return weights;
+    }
+
+    /**
+     * Copies all network weights into the specified array, without boxing.
+     * Weights are in the same order as in getWeights() and setWeights(double[]).
+     * For repeated copies of the same network use createWeightsView().
+     *
+     * @param dest array with at least getWeightsCount() elements
+     * @return dest array
+     */
+    public double[] getWeights(double[] dest) {
+        int i = 0;
+        for (int l = 0; l < layers.size(); l++) {
+            List<Neuron> neurons = layers.get(l).getNeurons();
+            for (int n = 0; n < neurons.size(); n++) {
+                List<Connection> connections = neurons.get(n).getInputConnections();
+                for (int c = 0; c < connections.size(); c++) {
+                    dest[i++] = connections.get(c).getWeight().value;
                 }
             }
         }
+        return dest;
+    }
 
-        return weights.toArray(new Double[weights.size()]);
+    /**
+     * Returns number of network weights, which is the number of input connections of all neurons
+     *
+     * @return number of weights
+     */
+    public int getWeightsCount() {
+        int count = 0;
+        for (int l = 0; l < layers.size(); l++) {
+            List<Neuron> neurons = layers.get(l).getNeurons();
+            for (int n = 0; n < neurons.size(); n++) {
+                count += neurons.get(n).getInputConnections().size();
+            }
+        }
+        return count;
     }
 
     /**
-     * Sets network weights from the specified double array
+     * Sets network weights from the specified double array.
+     * Weights are written one by one, so other threads using this network can see partially updated weights;
+     * use ModelHandle to replace weights of a network which is used for serving.
      *
      * @param weights array of weights to set
+     * @see ModelHandle
      */
     public void setWeights(double[] weights) {
         int i = 0;
-        for (Layer layer : layers) {
-            for (Neuron neuron : layer.getNeurons()) {
-                for (Connection conn : neuron.getInputConnections()) {
-                    conn.getWeight().setValue(weights[i]);
-                    i++;
+        for (int l = 0; l < layers.size(); l++) {
+            List<Neuron> neurons = layers.get(l).getNeurons();
+            for (int n = 0; n < neurons.size(); n++) {
+                List<Connection> connections = neurons.get(n).getInputConnections();
+                for (int c = 0; c < connections.size(); c++) {
+                    connections.get(c).getWeight().value = weights[i++];
                 }
             }
         }
     }
 
+    /**
+     * Creates flat view of network weights, which copies weight vectors (whole, or layer by layer)
+     * to and from primitive arrays and DoubleBuffers without walking the network.
+     * View reflects network structure at the time it was created.
+     *
+     * @return weights view
+     * @see NetworkWeights
+     */
+    public NetworkWeights createWeightsView() {
+        return new NetworkWeights(this);
+    }
+
     public boolean isEmpty() {
         return layers.isEmpty();
     }
@@ -545,13 +756,21 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
 
     /**
      * Saves neural network into the specified file.
+     * Networks supported by BinaryNetworkFormat are saved in that format, other networks are saved
+     * using Java serialization. Files in both formats can be loaded with createFromFile.
      *
      * @param filePath file path to save network into
+     * @see BinaryNetworkFormat
      */
     public void save(String filePath) {
+        File file = new File(filePath);
+        if (BinaryNetworkFormat.isSupported(this)) {
+            BinaryNetworkFormat.write(this, file);
+            return;
+        }
+
         ObjectOutputStream out = null;
         try {
-            File file = new File(filePath);
             out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
             out.writeObject(this);
             out.flush();
@@ -582,6 +801,9 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
             if (!file.exists()) {
                 throw new FileNotFoundException("Cannot find file: " + filePath);
             }
+            if (BinaryNetworkFormat.isBinaryFormat(file)) {
+                return BinaryNetworkFormat.read(file);
+            }
 
             oistream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filePath)));
             NeuralNetwork nnet = (NeuralNetwork) oistream.readObject();
@@ -611,7 +833,14 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
         ObjectInputStream oistream = null;
 
         try {
-            oistream = new ObjectInputStream(new BufferedInputStream(inputStream));
+            BufferedInputStream in = new BufferedInputStream(inputStream);
+            if (BinaryNetworkFormat.isBinaryFormat(in)) {
+                try (ReadableByteChannel channel = Channels.newChannel(in)) {
+                    return BinaryNetworkFormat.read(channel);
+                }
+            }
+
+            oistream = new ObjectInputStream(in);
             NeuralNetwork nnet = (NeuralNetwork) oistream.readObject();
 
             return nnet;
@@ -637,7 +866,8 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
     }
 
     /**
-     * Loads and return s neural network instance from specified file
+     * Loads and return s neural network instance from specified file.
+     * File can be in BinaryNetworkFormat or created by Java serialization.
      *
      * @param file neural network file
      * @return neural network instance
@@ -649,6 +879,9 @@ public class NeuralNetwork<L extends LearningRule> implements Serializable {
             if (!file.exists()) {
                 throw new FileNotFoundException("Cannot find file: " + file);
             }
+            if (BinaryNetworkFormat.isBinaryFormat(file)) {
+                return BinaryNetworkFormat.read(file);
+            }
 
             oistream = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
             NeuralNetwork nnet = (NeuralNetwork) oistream.readObject();
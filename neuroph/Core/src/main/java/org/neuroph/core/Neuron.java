@@ -262,6 +262,17 @@ public class Neuron implements Serializable, Cloneable {
         this.addInputConnection(connection);
     }
 
+    /**
+     * Adds input connection without checking for an existing connection from the same neuron.
+     * Used when network structure is known to be valid, such as when network is read from file.
+     *
+     * @param connection input connection to add
+     */
+    void addInputConnectionUnchecked(Connection connection) {
+        inputConnections.add(connection);
+        connection.getFromNeuron().outConnections.add(connection);
+    }
+
     /**
      * Adds the specified output connection
      *
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ * Primitive array index over input weights of all neurons in one layer.
+ * Weights are indexed neuron by neuron, in the order of layer neurons and their input connections,
+ * so weights of neuron at row r are at indexes [getRowOffset(r), getRowOffset(r + 1)).
+ * For a fully connected layer this is a row major [neuron][input] matrix.
+ *
+ * Learning rules keep their per weight state in state arrays (see getState) instead of
+ * weight training data objects, and can read and write weight values and changes as primitive
+ * arrays (see readWeights and writeWeights). Weight objects remain the actual weights of network,
+ * matrix describes the layer structure at the time it was created.
+ *
+ * Matrix does not replace Weight and Connection objects, which are still kept for each connection,
+ * so it does not reduce network memory. It adds an array of weight references and state arrays,
+ * and value and change arrays if they are read. Compared to training data objects it only saves
+ * object headers and references of the learning state (8 bytes for each weight and state slot
+ * instead of a training data object for each weight). Storing weights only in primitive arrays
+ * would require Weight to be a view, which its public value and weightChange fields do not allow.
+ * </pre>
+ *
+ * @see Weight
+ */
+public final class WeightMatrix {
+
+    private final Layer layer;
+
+    /**
+     * Weights in matrix order
+     */
+    private final Weight[] weights;
+
+    /**
+     * Index of the first weight for each neuron, with the total size at the end
+     */
+    private final int[] rowOffsets;
+
+    /**
+     * Row index of each layer neuron
+     */
+    private final Map<Neuron, Integer> rows;
+
+    /**
+     * Learning rule state arrays, each with one element for each weight
+     */
+    private final double[][] state;
+
+    /**
+     * Weight values and changes, created on first read
+     */
+    private double[] values, changes;
+
+    /**
+     * Creates weight matrix for the specified layer, without state arrays
+     *
+     * @param layer layer whose input weights are stored
+     */
+    public WeightMatrix(Layer layer) {
+        this(layer, 0);
+    }
+
+    /**
+     * Creates weight matrix for the specified layer, with the specified number of state arrays
+     *
+     * @param layer      layer whose input weights are stored
+     * @param stateSize  number of state arrays, initialized to zero
+     */
+    public WeightMatrix(Layer layer, int stateSize) {
+        if (layer == null) {
+            throw new IllegalArgumentException("Layer cannot be null!");
+        }
+        if (stateSize < 0) {
+            throw new IllegalArgumentException("State size cannot be negative: " + stateSize);
+        }
+        this.layer = layer;
+
+        List<Neuron> neurons = layer.getNeurons();
+        rowOffsets = new int[neurons.size() + 1];
+        rows = new IdentityHashMap<>(neurons.size());
+        int size = 0;
+        for (int r = 0; r < neurons.size(); r++) {
+            Neuron neuron = neurons.get(r);
+            rowOffsets[r] = size;
+            rows.put(neuron, r);
+            size += neuron.getInputConnections().size();
+        }
+        rowOffsets[neurons.size()] = size;
+
+        weights = new Weight[size];
+        int k = 0;
+        for (Neuron neuron : neurons) {
+            for (Connection connection : neuron.getInputConnections()) {
+                weights[k++] = connection.getWeight();
+            }
+        }
+
+        state = new double[stateSize][size];
+    }
+
+    /**
+     * Returns layer whose weights are stored in this matrix
+     *
+     * @return layer
+     */
+    public Layer getLayer() {
+        return layer;
+    }
+
+    /**
+     * Returns total number of weights
+     *
+     * @return number of weights
+     */
+    public int size() {
+        return weights.length;
+    }
+
+    /**
+     * Returns number of rows, which is the number of layer neurons
+     *
+     * @return number of rows
+     */
+    public int getRowsCount() {
+        return rowOffsets.length - 1;
+    }
+
+    /**
+     * Returns index of the first weight of the specified row
+     *
+     * @param row row (neuron) index, or number of rows for the total size
+     * @return index of the first weight in row
+     */
+    public int getRowOffset(int row) {
+        return rowOffsets[row];
+    }
+
+    /**
+     * Returns index of the first input weight of the specified neuron
+     *
+     * @param neuron layer neuron
+     * @return index of the first weight of neuron, or -1 if neuron is not in this matrix
+     */
+    public int getRowOffset(Neuron neuron) {
+        Integer row = rows.get(neuron);
+        return row != null ? rowOffsets[row] : -1;
+    }
+
+    /**
+     * Returns weight at the specified index
+     *
+     * @param index weight index
+     * @return weight object
+     */
+    public Weight getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Returns number of state arrays
+     *
+     * @return number of state arrays
+     */
+    public int getStateSize() {
+        return state.length;
+    }
+
+    /**
+     * Returns state array for the specified slot.
+     * Returned array is not a copy and it is indexed the same way as weights.
+     *
+     * @param slot state slot
+     * @return state array
+     */
+    public double[] getState(int slot) {
+        return state[slot];
+    }
+
+    /**
+     * Copies values and changes of all weights into value and change arrays
+     */
+    public void readWeights() {
+        if (values == null) {
+            values = new double[weights.length];
+            changes = new double[weights.length];
+        }
+        for (int k = 0; k < weights.length; k++) {
+            values[k] = weights[k].value;
+            changes[k] = weights[k].weightChange;
+        }
+    }
+
+    /**
+     * Copies value and change arrays into weights
+     */
+    public void writeWeights() {
+        if (values == null) {
+            return;
+        }
+        for (int k = 0; k < weights.length; k++) {
+            weights[k].value = values[k];
+            weights[k].weightChange = changes[k];
+        }
+    }
+
+    /**
+     * Returns weight values read by the last readWeights call.
+     * Returned array is not a copy, changes are applied to weights by writeWeights.
+     *
+     * @return weight values
+     */
+    public double[] getValues() {
+        if (values == null) {
+            readWeights();
+        }
+        return values;
+    }
+
+    /**
+     * Returns weight changes read by the last readWeights call.
+     * Returned array is not a copy, changes are applied to weights by writeWeights.
+     *
+     * @return weight changes
+     */
+    public double[] getChanges() {
+        if (changes == null) {
+            readWeights();
+        }
+        return changes;
+    }
+}
@@ -15,81 +15,116 @@
  */
 package org.neuroph.core.data;
 
-import java.io.BufferedReader;
+import org.neuroph.core.exceptions.NeurophException;
+
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * <pre>
  * This class can be used for big training sets, which are loaded from
- * file during the training. It loads bufferSize rows from file into DataSet,
- * and when it iterates all of them, it takes next bufferSize rows. It can be
- * used everywhere where DataSet class is used since it extends it. The rows
- * should be iterated with iterator() interface.
+ * file during the training. Rows are read in chunks of bufferSize rows by a background
+ * reader thread, which reads up to prefetchCount chunks ahead, so parsing of the file
+ * overlaps with training on already loaded rows.
+ *
+ * Each call to iterator() starts a new pass through the file, so the data set can be used
+ * for many epochs by IterativeLearning. Rows can also be iterated with hasNext and next
+ * methods of the data set itself, and rewind starts that iteration from the beginning.
+ * If buffer shuffling is on, rows are shuffled within each chunk, which gives approximate
+ * randomization of the row order without loading the whole file.
+ *
+ * Rows are not kept in memory, so methods which need random access to rows (getRowAt, getRows,
+ * shuffle) and methods which change data set are not supported. Use setShuffleBuffer instead
+ * of SupervisedLearning.setShuffle.
+ * </pre>
  *
  * @author Zoran Sevarac
  */
 public class BufferedDataSet extends DataSet implements Iterator<DataSetRow> {
 
+    private static final long serialVersionUID = 2L;
+
     /**
-     * Buffer size determines how many data rows will be loaded from file at once
+     * Default number of rows loaded from file at once
      */
-    private int bufferSize = 1000;
+    public static final int DEFAULT_BUFFER_SIZE = 1000;
 
     /**
-     * File with data set rows
+     * Size of byte buffer used to read file
      */
-    private File file;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
 
     /**
-     * Number of lines in the file
+     * Buffer size determines how many data rows will be loaded from file at once
      */
-    private long fileLinesNumber;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
 
     /**
-     * Current line number that we're reading
+     * Number of chunks which reader loads ahead of the iteration
      */
-    private long currentFileLineNumber;
+    private int prefetchCount = 2;
 
     /**
-     * Number of rows loaded
+     * Flag which indicates if rows are shuffled within each loaded chunk
      */
-    private int rowsLoaded;
+    private boolean shuffleBuffer;
 
     /**
-     * Delimiter character for values in line
+     * Random generator used to shuffle rows within chunks
      */
-    private String delimiter;
+    private Random random;
 
     /**
-     * File reader used to read from file
+     * File with data set rows
      */
-    FileReader fileReader = null;
+    private File file;
 
     /**
-     * Buffered reader used to read from file
+     * Delimiter for values in line
      */
-    BufferedReader bufferedReader;
+    private String delimiter;
 
     /**
-     * A reference to the buffered rows (a List collection in superclass)
+     * Number of rows in file, -1 if it is not known yet
      */
-    List<DataSetRow> bufferedRows;
+    private volatile int rowsCount = -1;
 
     /**
-     * Iterator for buffered rowa
+     * Parser for literal delimiters, null if delimiter is regular expression
      */
-    Iterator<DataSetRow> bufferIterator;
+    private transient CsvDataSetParser parser;
 
+    /**
+     * Iterator used by hasNext and next methods of this data set
+     */
+    private transient Iterator<DataSetRow> currentIterator;
 
-    public BufferedDataSet(File file, int inputSize, String delimiter) {
+    /**
+     * Creates new buffered data set with specified file and input size, for unsupervised learning.
+     *
+     * @param file data set file
+     * @param inputSize size of input vector
+     * @param delimiter delimiter for vector values
+     * @throws FileNotFoundException if file does not exist
+     */
+    public BufferedDataSet(File file, int inputSize, String delimiter) throws FileNotFoundException {
         super(inputSize);
+        init(file, delimiter);
     }
 
     /**
@@ -101,44 +136,168 @@ public class BufferedDataSet extends DataSet implements Iterator<DataSetRow> {
      * @param inputSize size of input vector
      * @param outputSize size of outut vector
      * @param delimiter delimiter for vector values
-     * @throws FileNotFoundException
+     * @throws FileNotFoundException if file does not exist
      */
     public BufferedDataSet(File file, int inputSize, int outputSize, String delimiter) throws FileNotFoundException {
         super(inputSize, outputSize);
+        init(file, delimiter);
+    }
 
-        this.delimiter = delimiter;
+    private void init(File file, String delimiter) throws FileNotFoundException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        if ((delimiter == null) || delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Delimiter cannot be null or empty!");
+        }
         this.file = file;
-        this.fileReader = new FileReader(file);
-        this.bufferedReader = new BufferedReader(fileReader);
-        fileLinesNumber = countFileLines();
+        this.delimiter = delimiter;
+        setFilePath(file.getPath());
+    }
 
-        // load first chunk of data into buffer
-        loadNextBuffer();
+    public int getBufferSize() {
+        return bufferSize;
     }
 
     /**
-     * Counts and returns number of lines in a file
-     * @return number of lines in a file
-     * @throws FileNotFoundException
+     * Sets number of rows loaded from file at once
+     *
+     * @param bufferSize number of rows in one chunk
      */
-    private long countFileLines() throws FileNotFoundException {
-        LineNumberReader lnr = new LineNumberReader(new FileReader(file));
-        try {
-          //  lnr.skip(Long.MAX_VALUE);
-           while(lnr.skip(Long.MAX_VALUE) > 0) {};
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    /**
+     * Sets number of chunks which are loaded ahead of iteration, so at most
+     * (prefetchCount + 1) * bufferSize rows are in memory.
+     *
+     * @param prefetchCount number of chunks loaded ahead
+     */
+    public void setPrefetchCount(int prefetchCount) {
+        if (prefetchCount < 1) {
+            throw new IllegalArgumentException("Prefetch count must be at least 1: " + prefetchCount);
+        }
+        this.prefetchCount = prefetchCount;
+    }
+
+    public boolean isShuffleBuffer() {
+        return shuffleBuffer;
+    }
+
+    /**
+     * Sets if rows are shuffled within each loaded chunk, in each pass through the file
+     *
+     * @param shuffleBuffer true to shuffle rows within chunks
+     */
+    public void setShuffleBuffer(boolean shuffleBuffer) {
+        this.shuffleBuffer = shuffleBuffer;
+    }
+
+    /**
+     * Sets random generator used to shuffle rows within chunks, which makes shuffling repeatable
+     *
+     * @param random random generator
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns number of rows in file. File is scanned for the number of lines on the first call,
+     * unless a pass through the file has already been completed.
+     *
+     * @return number of rows
+     */
+    @Override
+    public int size() {
+        if (rowsCount < 0) {
+            rowsCount = countRows();
+        }
+        return rowsCount;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Counts lines which contain data set rows
+     */
+    private int countRows() {
+        CsvDataSetParser lineParser = getParser();
+        int count = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int length = 0;
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) >= 0 || length > 0) {
+                length += Math.max(read, 0);
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (buffer[i] == '\n' || (read < 0 && i == length - 1)) {
+                        int lineEnd = buffer[i] == '\n' ? i : i + 1;
+                        if (isRowLine(lineParser, buffer, lineStart, lineEnd)) {
+                            count++;
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                length = compact(buffer, lineStart, length);
+                if (read < 0) {
+                    break;
+                }
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
         } catch (IOException ex) {
-            Logger.getLogger(BufferedDataSet.class.getName()).log(Level.SEVERE, null, ex);
+            throw new NeurophException("Error reading data set file " + file, ex);
         }
-        return lnr.getLineNumber() + 1;
+        return count;
+    }
+
+    private static boolean isRowLine(CsvDataSetParser lineParser, byte[] bytes, int from, int to) {
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+        return lineParser != null ? !lineParser.isEmptyLine(bytes, from, to) : to > from;
+    }
+
+    private static int compact(byte[] buffer, int from, int length) {
+        System.arraycopy(buffer, from, buffer, 0, length - from);
+        return length - from;
+    }
+
+    private CsvDataSetParser getParser() {
+        if (parser == null && CsvDataSetParser.isLiteral(delimiter)) {
+            parser = new CsvDataSetParser(getInputSize(), getOutputSize(), delimiter);
+        }
+        return parser;
     }
 
     /**
-     * Returns iterator for buffered data set
-     * @return
+     * Returns iterator for a new pass through the data set file.
+     * Rows are loaded by background thread, which stops at the end of file,
+     * or when the iterator is no longer referenced.
+     *
+     * @return iterator over all rows in file
      */
     @Override
     public Iterator<DataSetRow> iterator() {
-        return this;
+        return new RowIterator(getParser());
     }
 
     /**
@@ -147,95 +306,331 @@ public class BufferedDataSet extends DataSet implements Iterator<DataSetRow> {
      */
     @Override
     public boolean hasNext() {
-        if (currentFileLineNumber < fileLinesNumber) {
-            return true;
+        if (currentIterator == null) {
+            currentIterator = iterator();
         }
-
-        return false;
+        return currentIterator.hasNext();
     }
 
     /**
-     * Returns next data set row. Note that if there are no more buffered rows,
-     * this mthod will load next bufferSize rows into buffer.
+     * Returns next data set row. Rows are loaded from file in background,
+     * so this method only waits if reader has not loaded the next chunk yet.
      * @return next data set row
      */
     @Override
     public DataSetRow next() {
-        // if we have reached the end of buffered data
-        if (!bufferIterator.hasNext()) {
-            this.loadNextBuffer(); // load next chunk from file into buffer
+        if (currentIterator == null) {
+            currentIterator = iterator();
+        }
+        return currentIterator.next();
+    }
+
+    /**
+     * Starts iteration with hasNext and next methods from the beginning of file
+     */
+    public void rewind() {
+        if (currentIterator != null) {
+            ((RowIterator) currentIterator).close();
+            currentIterator = null;
         }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Buffered data set is read only!");
+    }
+
+    @Override
+    public DataSetRow getRowAt(int idx) {
+        throw new UnsupportedOperationException("Buffered data set rows can only be iterated!");
+    }
+
+    @Override
+    public DataSetRow get(int index) {
+        throw new UnsupportedOperationException("Buffered data set rows can only be iterated!");
+    }
+
+    @Override
+    public List<DataSetRow> getRows() {
+        throw new UnsupportedOperationException("Buffered data set rows can only be iterated!");
+    }
 
-        currentFileLineNumber++; // increase line counter
-        return bufferIterator.next(); // and return next data row
+    @Override
+    public List<DataSetRow> getItems() {
+        throw new UnsupportedOperationException("Buffered data set rows can only be iterated!");
+    }
+
+    @Override
+    public int indexOf(Object row) {
+        throw new UnsupportedOperationException("Buffered data set rows can only be iterated!");
     }
 
     @Override
-    public void remove() { // what should be done here?
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    public void shuffle() {
+        throw new UnsupportedOperationException("Buffered data set cannot be shuffled, use setShuffleBuffer instead!");
+    }
+
+    @Override
+    public void shuffle(Random random) {
+        throw new UnsupportedOperationException("Buffered data set cannot be shuffled, use setShuffleBuffer instead!");
+    }
+
+    @Override
+    public DataSet subset(int... indexes) {
+        throw new UnsupportedOperationException("Buffered data set rows can only be iterated!");
+    }
+
+    @Override
+    public DataSet add(DataSetRow row) {
+        throw new UnsupportedOperationException("Buffered data set is read only!");
+    }
+
+    @Override
+    public void add(int index, DataSetRow row) {
+        throw new UnsupportedOperationException("Buffered data set is read only!");
+    }
+
+    @Override
+    public DataSetRow remove(int index) {
+        throw new UnsupportedOperationException("Buffered data set is read only!");
+    }
+
+    @Override
+    public boolean remove(Object row) {
+        throw new UnsupportedOperationException("Buffered data set is read only!");
+    }
+
+    @Override
+    public void removeRowAt(int idx) {
+        throw new UnsupportedOperationException("Buffered data set is read only!");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Buffered data set is read only!");
+    }
+
+    @Override
+    public String toString() {
+        return "BufferedDataSet(" + file + ", inputs: " + getInputSize() + ", outputs: " + getOutputSize() + ")";
     }
 
     /**
-     * Loads next bufferSize rows from file into buffer
+     * Chunk of rows loaded by reader, or the end of file if rows is null
      */
-    private void loadNextBuffer() {
-        try {
-            String line = "";
-            this.clear();    // data set buffer
+    private static final class Chunk {
 
-            rowsLoaded = 0;
-            while (rowsLoaded < bufferSize) { //
+        final List<DataSetRow> rows;
+        final RuntimeException error;
 
-                line = bufferedReader.readLine();
-                if (line == null) {
-                    break;
-                }
+        Chunk(List<DataSetRow> rows, RuntimeException error) {
+            this.rows = rows;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Iterator for one pass through the file, which takes chunks loaded by Reader
+     */
+    private final class RowIterator implements Iterator<DataSetRow> {
 
-                rowsLoaded++;
-                double[] inputs = new double[getInputSize()];
-                double[] outputs = new double[getOutputSize()];
-                String[] values = line.split(delimiter);
+        private final Reader reader;
+        private Iterator<DataSetRow> chunkIterator = Collections.emptyIterator();
+        private boolean finished;
 
-                if (values[0].equals("")) {
-                    continue; // skip if line was empty
+        RowIterator(CsvDataSetParser lineParser) {
+            reader = new Reader(this, lineParser);
+            Thread thread = new Thread(reader, "BufferedDataSet reader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!chunkIterator.hasNext() && !finished) {
+                Chunk chunk;
+                try {
+                    chunk = reader.queue.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new NeurophException("Interrupted while reading data set file " + file, ex);
                 }
-                for (int i = 0; i < getInputSize(); i++) {
-                    inputs[i] = Double.parseDouble(values[i]);
+                if (chunk.error != null) {
+                    finished = true;
+                    throw chunk.error;
+                }
+                if (chunk.rows == null) {
+                    finished = true;
+                } else {
+                    chunkIterator = chunk.rows.iterator();
                 }
+            }
+            return chunkIterator.hasNext();
+        }
+
+        @Override
+        public DataSetRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunkIterator.next();
+        }
+
+        void close() {
+            finished = true;
+            reader.closed = true;
+            reader.queue.clear();
+        }
+    }
+
+    /**
+     * Reads and parses file in background thread, and puts chunks of rows into queue
+     */
+    private final class Reader implements Runnable {
+
+        final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(prefetchCount);
+        volatile boolean closed;
+
+        /**
+         * Iterator which takes the chunks, reader stops if it is garbage collected
+         */
+        private final WeakReference<RowIterator> owner;
+        private final CsvDataSetParser lineParser;
+        private final int chunkSize = bufferSize;
+        private final boolean shuffle = shuffleBuffer;
+        private final Random chunkRandom;
+        private long lineNumber;
+        private int rowsRead;
+
+        Reader(RowIterator owner, CsvDataSetParser lineParser) {
+            this.owner = new WeakReference<>(owner);
+            this.lineParser = lineParser;
+            if (shuffle && random == null) {
+                random = new Random();
+            }
+            this.chunkRandom = random;
+        }
 
-                for (int i = 0; i < getOutputSize(); i++) {
-                    outputs[i] = Double.parseDouble(values[getInputSize() + i]);
+        @Override
+        public void run() {
+            try (InputStream in = new FileInputStream(file)) {
+                List<DataSetRow> rows = new ArrayList<>(chunkSize);
+                byte[] buffer = new byte[READ_BUFFER_SIZE];
+                int length = 0;
+                int read;
+                while ((read = in.read(buffer, length, buffer.length - length)) >= 0 || length > 0) {
+                    length += Math.max(read, 0);
+                    int lineStart = 0;
+                    for (int i = 0; i < length; i++) {
+                        if (buffer[i] != '\n' && (read >= 0 || i < length - 1)) {
+                            continue;
+                        }
+                        int lineEnd = buffer[i] == '\n' ? i : i + 1;
+                        if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') {
+                            lineEnd--;
+                        }
+                        lineNumber++;
+                        DataSetRow row = parseRow(buffer, lineStart, lineEnd);
+                        lineStart = i + 1;
+                        if (row == null) {
+                            continue;
+                        }
+                        rows.add(row);
+                        if (rows.size() == chunkSize) {
+                            if (!put(rows)) {
+                                return;
+                            }
+                            rows = new ArrayList<>(chunkSize);
+                        }
+                    }
+                    length = compact(buffer, lineStart, length);
+                    if (read < 0) {
+                        break;
+                    }
+                    if (length == buffer.length) { // line longer than buffer
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
                 }
+                if (!rows.isEmpty() && !put(rows)) {
+                    return;
+                }
+                rowsCount = rowsRead;
+                put(null);
+            } catch (IOException ex) {
+                putError(new NeurophException("Error reading data set file " + file, ex));
+            } catch (RuntimeException ex) {
+                putError(ex);
+            } catch (Error ex) { // iterator must not wait for a chunk which will never come
+                putError(new NeurophException("Error reading data set file " + file, ex));
+                throw ex;
+            }
+        }
 
-                if (getOutputSize() > 0) {
-                    this.add(new DataSetRow(inputs, outputs));
-                } else {
-                    this.add(new DataSetRow(inputs));
+        private DataSetRow parseRow(byte[] bytes, int from, int to) {
+            try {
+                DataSetRow row = lineParser != null ? lineParser.parseRow(bytes, from, to) : splitRow(bytes, from, to);
+                if (row != null) {
+                    rowsRead++;
                 }
+                return row;
+            } catch (NumberFormatException ex) {
+                throw new NeurophException("Bad number format in data set file " + file + " at line " + lineNumber + ": " + ex.getMessage(), ex);
+            } catch (IllegalArgumentException ex) {
+                throw new NeurophException("Bad line in data set file " + file + " at line " + lineNumber + ": " + ex.getMessage(), ex);
             }
+        }
 
-            bufferedRows = this.getRows();
-            bufferIterator = bufferedRows.iterator();
+        /**
+         * Parses line with regular expression delimiter
+         */
+        private DataSetRow splitRow(byte[] bytes, int from, int to) {
+            String[] values = new String(bytes, from, to - from, StandardCharsets.UTF_8).split(delimiter);
+            if (values[0].isEmpty()) {
+                return null; // skip if line was empty
+            }
+            int inputSize = getInputSize();
+            int outputSize = getOutputSize();
+            if (values.length < inputSize + outputSize) {
+                throw new IllegalArgumentException("Line has " + values.length + " values, expected " + (inputSize + outputSize));
+            }
+            double[] inputs = new double[inputSize];
+            double[] outputs = new double[outputSize];
+            for (int i = 0; i < inputSize; i++) {
+                inputs[i] = Double.parseDouble(values[i]);
+            }
+            for (int i = 0; i < outputSize; i++) {
+                outputs[i] = Double.parseDouble(values[inputSize + i]);
+            }
+            return outputSize > 0 ? new DataSetRow(inputs, outputs) : new DataSetRow(inputs);
+        }
 
-        } catch (FileNotFoundException ex) {
-            ex.printStackTrace();
-        } catch (IOException ex) {
-            if (fileReader != null) {
-                try {
-                    fileReader.close();
-                } catch (IOException ex1) {
-                }
+        /**
+         * Puts chunk into queue, waiting while queue is full
+         *
+         * @return false if iterator has been closed or garbage collected
+         */
+        private boolean put(List<DataSetRow> rows) {
+            if (rows != null && shuffle) {
+                Collections.shuffle(rows, chunkRandom);
             }
-            ex.printStackTrace();
-        } catch (NumberFormatException ex) {
-            if (fileReader != null) {
-                try {
-                    fileReader.close();
-                } catch (IOException ex1) {
+            return offer(new Chunk(rows, null));
+        }
+
+        private void putError(RuntimeException error) {
+            offer(new Chunk(null, error));
+        }
+
+        private boolean offer(Chunk chunk) {
+            try {
+                while (!closed && owner.get() != null) {
+                    if (queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
                 }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
             }
-            ex.printStackTrace();
-            throw ex;
+            return false;
         }
     }
 }
@@ -0,0 +1,490 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import org.neuroph.core.exceptions.NeurophException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.neuroph.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ * Parser for csv data set files, used by DataSet.createFromFile.
+ * File is split into chunks on line boundaries, and chunks are parsed in parallel directly from bytes,
+ * without creating a String for each line or value. Rows of all chunks are added to data set in file order.
+ *
+ * Lines are split on the delimiter, values are trimmed and parsed as doubles with the same result
+ * as Double.parseDouble. Values after input and output values are ignored, and lines which start with
+ * the delimiter or are empty are skipped. Errors are reported with the line number.
+ * </pre>
+ *
+ * @see DataSet#createFromFile(String, int, int, String, boolean)
+ */
+public class CsvDataSetParser {
+
+    /**
+     * Default number of bytes parsed by one task
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    /**
+     * Powers of ten which are exactly representable as double
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Largest mantissa which is exactly representable as double
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final int inputsCount;
+    private final int outputsCount;
+    private final byte[] delimiter;
+    private final String delimiterRegex;
+
+    /**
+     * Number of threads used to parse chunks
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of bytes parsed by one task
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Creates parser for files with the specified number of input and output values in each line
+     *
+     * @param inputsCount  number of inputs
+     * @param outputsCount number of outputs
+     * @param delimiter    delimiter of values, which is not a regular expression
+     */
+    public CsvDataSetParser(int inputsCount, int outputsCount, String delimiter) {
+        if (inputsCount <= 0) throw new IllegalArgumentException("Number of inputs cannot be <= 0 : " + inputsCount);
+        if (outputsCount < 0) throw new IllegalArgumentException("Number of outputs cannot be < 0 : " + outputsCount);
+        if ((delimiter == null) || delimiter.isEmpty())
+            throw new IllegalArgumentException("Delimiter cannot be null or empty!");
+        if (delimiter.indexOf('\n') >= 0 || delimiter.indexOf('\r') >= 0)
+            throw new IllegalArgumentException("Delimiter cannot contain line separator!");
+
+        this.inputsCount = inputsCount;
+        this.outputsCount = outputsCount;
+        this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+        this.delimiterRegex = delimiter;
+    }
+
+    /**
+     * Returns true if the specified delimiter does not contain regular expression characters,
+     * so it means the same as a literal delimiter and as a String.split argument
+     *
+     * @param delimiter value delimiter
+     * @return true if delimiter is literal
+     */
+    public static boolean isLiteral(String delimiter) {
+        for (int i = 0; i < delimiter.length(); i++) {
+            if (".$|()[]{}^?*+\\".indexOf(delimiter.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets number of threads used to parse file
+     *
+     * @param parallelism number of threads, 1 parses file in the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets approximate number of bytes parsed by one task
+     *
+     * @param chunkSize number of bytes
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Parses the specified file into new data set
+     *
+     * @param file            csv file
+     * @param loadColumnNames true if first line contains column names
+     * @return data set with rows from file
+     * @throws NeurophException if file cannot be read or it is not valid
+     */
+    public DataSet parse(File file, boolean loadColumnNames) {
+        DataSet dataSet = new DataSet(inputsCount, outputsCount);
+        dataSet.setFilePath(file.getPath());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = 0;
+            int firstLine = 1;
+            if (loadColumnNames) {
+                dataStart = nextLineStart(channel, 0, size);
+                long lineEnd = dataStart > 0 && readByte(channel, dataStart - 1) == '\n' ? dataStart - 1 : dataStart;
+                ByteBuffer header = ByteBuffer.allocate((int) lineEnd);
+                readFully(channel, header, 0);
+                String line = new String(header.array(), StandardCharsets.UTF_8);
+                if (line.endsWith("\r")) {
+                    line = line.substring(0, line.length() - 1);
+                }
+                dataSet.setColumnNames(line.split(delimiterRegex));
+                firstLine = 2;
+            }
+
+            // split file into chunks which start at line start
+            List<Chunk> chunks = new ArrayList<>();
+            long start = dataStart;
+            while (start < size) {
+                long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize, size);
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new NeurophException("Line too long in data set file " + file);
+                }
+                chunks.add(new Chunk(channel, start, (int) (end - start)));
+                start = end;
+            }
+
+            if (parallelism == 1 || chunks.size() == 1) {
+                for (Chunk chunk : chunks) {
+                    chunk.call();
+                }
+            } else {
+                ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks.size()), new DaemonThreadFactory("CsvDataSetParser"));
+                try {
+                    List<Future<Chunk>> futures = executor.invokeAll(chunks);
+                    for (Future<Chunk> future : futures) {
+                        future.get();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new NeurophException("Interrupted while reading data set file " + file, ex);
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException) {
+                        throw (IOException) ex.getCause();
+                    }
+                    throw new NeurophException("Error reading data set file " + file, ex.getCause());
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            // report error from the first chunk with error, all chunks before it have been parsed completely
+            long lineNumber = firstLine;
+            for (Chunk chunk : chunks) {
+                if (chunk.error != null) {
+                    String message = (chunk.error instanceof NumberFormatException ? "Bad number format" : "Bad line")
+                            + " in data set file " + file + " at line " + (lineNumber + chunk.errorLine) + ": " + chunk.error.getMessage();
+                    throw new NeurophException(message, chunk.error);
+                }
+                lineNumber += chunk.linesCount;
+            }
+
+            for (Chunk chunk : chunks) {
+                for (DataSetRow row : chunk.rows) {
+                    dataSet.add(row);
+                }
+            }
+            return dataSet;
+        } catch (NoSuchFileException ex) {
+            throw new NeurophException("Could not find data set file!", new FileNotFoundException(file.getPath()));
+        } catch (IOException ex) {
+            throw new NeurophException("Error reading data set file!", ex);
+        }
+    }
+
+    /**
+     * Returns position after the first new line at or after the specified position, or file size if there is none
+     */
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += count;
+        }
+        return size;
+    }
+
+    private static byte readByte(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        readFully(channel, buffer, position);
+        return buffer.get(0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * Part of file with complete lines, parsed by one task
+     */
+    private final class Chunk implements Callable<Chunk> {
+
+        private final FileChannel channel;
+        private final long position;
+        private final int length;
+
+        final List<DataSetRow> rows = new ArrayList<>();
+        int linesCount;
+        RuntimeException error;
+        int errorLine;
+
+        Chunk(FileChannel channel, long position, int length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            readFully(channel, buffer, position); // positional reads can be done concurrently
+            byte[] bytes = buffer.array();
+
+            int lineStart = 0;
+            while (lineStart < length) {
+                int lineEnd = lineStart;
+                while (lineEnd < length && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                int next = lineEnd + 1;
+                if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+
+                try {
+                    DataSetRow row = parseRow(bytes, lineStart, lineEnd);
+                    if (row != null) {
+                        rows.add(row);
+                    }
+                } catch (IllegalArgumentException ex) { // also NumberFormatException
+                    error = ex;
+                    errorLine = linesCount;
+                    return this;
+                }
+                linesCount++;
+                lineStart = next;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Parses one line without line separator into data set row
+     *
+     * @param bytes bytes with line
+     * @param from  index of the first byte of line
+     * @param to    index after the last byte of line
+     * @return data set row, or null if line is empty
+     * @throws IllegalArgumentException if line does not have enough values
+     * @throws NumberFormatException    if value is not a number
+     */
+    DataSetRow parseRow(byte[] bytes, int from, int to) {
+        if (isEmptyLine(bytes, from, to)) {
+            return null;
+        }
+
+        double[] inputs = new double[inputsCount];
+        double[] outputs = new double[outputsCount];
+        int fieldStart = from;
+        for (int i = 0; i < inputsCount + outputsCount; i++) {
+            if (fieldStart > to) {
+                throw new IllegalArgumentException("Line has " + i + " values, expected " + (inputsCount + outputsCount));
+            }
+            int fieldEnd = indexOfDelimiter(bytes, fieldStart, to);
+            double value = parseDouble(bytes, fieldStart, fieldEnd);
+            if (i < inputsCount) {
+                inputs[i] = value;
+            } else {
+                outputs[i - inputsCount] = value;
+            }
+            fieldStart = fieldEnd + delimiter.length;
+        }
+
+        return outputsCount > 0 ? new DataSetRow(inputs, outputs) : new DataSetRow(inputs);
+    }
+
+    /**
+     * Returns true if the specified line is skipped by parseRow, because it is empty or starts with the delimiter
+     */
+    boolean isEmptyLine(byte[] bytes, int from, int to) {
+        return indexOfDelimiter(bytes, from, to) == from;
+    }
+
+    /**
+     * Returns index of the first delimiter in the specified range, or the range end if there is none
+     */
+    private int indexOfDelimiter(byte[] bytes, int from, int to) {
+        byte first = delimiter[0];
+        for (int i = from; i <= to - delimiter.length; i++) {
+            if (bytes[i] == first) {
+                int k = 1;
+                while (k < delimiter.length && bytes[i + k] == delimiter[k]) {
+                    k++;
+                }
+                if (k == delimiter.length) {
+                    return i;
+                }
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Parses decimal number from bytes, with the same result as Double.parseDouble for the trimmed string.
+     * Numbers with up to 15 significant digits and small exponents are converted with one exact
+     * multiplication or division, other numbers are parsed with Double.parseDouble.
+     *
+     * @param bytes bytes with number
+     * @param from  index of first byte
+     * @param to    index after the last byte
+     * @return parsed value
+     * @throws NumberFormatException if bytes do not contain a number
+     */
+    static double parseDouble(byte[] bytes, int from, int to) {
+        while (from < to && (bytes[from] & 0xff) <= ' ') {
+            from++;
+        }
+        while (to > from && (bytes[to - 1] & 0xff) <= ' ') {
+            to--;
+        }
+
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean anyDigits = false;
+        for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            anyDigits = true;
+            if (mantissa != 0 || bytes[i] != '0') {
+                mantissa = mantissa * 10 + (bytes[i] - '0');
+                digits++;
+            }
+            if (digits > 18) {
+                return parseSlow(bytes, from, to);
+            }
+        }
+        if (i < to && bytes[i] == '.') {
+            for (i++; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                anyDigits = true;
+                if (mantissa != 0 || bytes[i] != '0') {
+                    mantissa = mantissa * 10 + (bytes[i] - '0');
+                    digits++;
+                }
+                exponent--;
+                if (digits > 18) {
+                    return parseSlow(bytes, from, to);
+                }
+            }
+        }
+        if (!anyDigits) {
+            return parseSlow(bytes, from, to);
+        }
+        if (i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int e = 0;
+            int start = i;
+            for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                if (e > 1000) {
+                    return parseSlow(bytes, from, to);
+                }
+                e = e * 10 + (bytes[i] - '0');
+            }
+            if (i == start) {
+                return parseSlow(bytes, from, to);
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (i != to || mantissa > MAX_EXACT_MANTISSA) {
+            return parseSlow(bytes, from, to);
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseSlow(bytes, from, to);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseSlow(byte[] bytes, int from, int to) {
+        return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+}
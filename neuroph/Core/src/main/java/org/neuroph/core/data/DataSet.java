@@ -333,7 +333,7 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
             sb.append(System.lineSeparator());
         }
 
-        for (DataSetRow row : rows) {
+        for (DataSetRow row : getRows()) {
             sb.append(row).append(System.lineSeparator());
         }
 
@@ -357,7 +357,7 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
         }
 
         // promeniti
-        for (DataSetRow row : rows) {
+        for (DataSetRow row : getRows()) {
             sb.append(row.toCSV()); // nije dobro jer lepi input i desired output; treba bez toga mozda dodati u toCSV
             sb.append(System.lineSeparator());
         }
@@ -412,7 +412,7 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
                 out.println();
             }
 
-            for (DataSetRow row : this.rows) {
+            for (DataSetRow row : getRows()) {
                 double[] input = row.getInput();
                 for (int i = 0; i < input.length; i++) {
                     out.print(input[i]);
@@ -470,8 +470,7 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
      * @param delimiter       delimiter of values
      * @param loadColumnNames true if csv file contains column names in first line, false otherwise
      * @return instance of dataset with values from specified file
-     *
-     * TODO: try with resources, provide information on exact line of error if format is not good in NumberFormatException
+     * @see CsvDataSetParser
      */
     public static DataSet createFromFile(String filePath, int inputsCount, int outputsCount, String delimiter, boolean loadColumnNames) {
 
@@ -481,6 +480,12 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
         if ((delimiter == null) || delimiter.isEmpty())
             throw new IllegalArgumentException("Delimiter cannot be null or empty!");
 
+        // literal delimiters are parsed in parallel, regular expressions line by line
+        if (CsvDataSetParser.isLiteral(delimiter)) {
+            return new CsvDataSetParser(inputsCount, outputsCount, delimiter).parse(new File(filePath), loadColumnNames);
+        }
+
+        int lineNumber = 0;
         try ( BufferedReader reader = new BufferedReader(new FileReader(filePath)) ) {
             DataSet dataSet = new DataSet(inputsCount, outputsCount);
             dataSet.setFilePath(filePath);
@@ -490,6 +495,7 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
             if (loadColumnNames) {
                 // get column names from the first line
                 line = reader.readLine();
+                lineNumber++;
                 String[] colNames = line.split(delimiter);
                 dataSet.setColumnNames(colNames);
             } else {
@@ -497,6 +503,7 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
             }
 
             while ((line = reader.readLine()) != null) {
+                lineNumber++;
                 String[] values = line.split(delimiter);
 
                 double[] inputs = new double[inputsCount];
@@ -529,8 +536,9 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
         } catch (IOException ex) {
              throw new NeurophException("Error reading data set file!", ex);
         } catch (NumberFormatException ex) {
-             ex.printStackTrace();
-            throw new NeurophException("Bad number format in data set file!", ex); // TODO: add line number!
+            throw new NeurophException("Bad number format in data set file " + filePath + " at line " + lineNumber, ex);
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new NeurophException("Bad line in data set file " + filePath + " at line " + lineNumber + ": not enough values", ex);
         }
 
     }
@@ -600,6 +608,22 @@ public class DataSet implements javax.visrec.ml.data.DataSet<DataSetRow>, Serial
         return sampling.sample(this);
     }
 
+    /**
+     * Creates data set with rows at the specified index positions.
+     * Row objects are shared with this data set.
+     *
+     * @param indexes index positions of rows
+     * @return new data set with specified rows
+     */
+    public DataSet subset(int... indexes) {
+        DataSet subset = new DataSet(inputSize, outputSize);
+        subset.setColumnNames(columnNames);
+        for (int index : indexes) {
+            subset.add(getRowAt(index));
+        }
+        return subset;
+    }
+
 
     /**
      * Returns output vector size of training elements in this training set.
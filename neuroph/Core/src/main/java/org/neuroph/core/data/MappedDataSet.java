@@ -0,0 +1,695 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.data;
+
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * <pre>
+ * Read only data set backed by a memory mapped binary file, for data sets which do not fit in heap.
+ * Rows are stored as packed little endian doubles or floats, input values followed by desired output values,
+ * and DataSetRow objects are created only when a row is requested (see getRowAt), so the data set itself
+ * holds no row objects. Use getInput and getDesiredOutput to copy row values into existing arrays.
+ *
+ * Shuffling and subsets (split, KFoldCrossValidation) use an array of row indexes over the same file,
+ * so they do not copy any data. Files are created from DataSet or csv files with write and convertCsv methods.
+ *
+ * File format: magic bytes "NDSB", version, input size, output size, value size in bytes (8 or 4), rows count,
+ * data offset and column names, followed by row data at 8 byte aligned data offset.
+ * </pre>
+ *
+ * @see DataSet
+ */
+public class MappedDataSet extends DataSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Current file format version
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'N', 'D', 'S', 'B'};
+
+    /**
+     * Magic, version, input size, output size, value size, reserved, rows count and data offset
+     */
+    private static final int PREAMBLE_SIZE = 40;
+
+    /**
+     * Position of rows count in file
+     */
+    private static final int ROWS_COUNT_POSITION = 24;
+
+    /**
+     * Largest mapped segment
+     */
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Data set file
+     */
+    private final File file;
+
+    /**
+     * Number of bytes of each value, 8 for doubles and 4 for floats
+     */
+    private final int valueSize;
+
+    /**
+     * Number of rows in file
+     */
+    private final int fileRowsCount;
+
+    /**
+     * Mapped file regions, each with rowsPerSegment rows
+     */
+    private transient ByteBuffer[] segments;
+
+    private transient int rowsPerSegment;
+
+    /**
+     * Rows of this data set as row numbers in file, null if data set contains all file rows in file order
+     */
+    private int[] indexes;
+
+    /**
+     * Rows of this data set as a read only list
+     */
+    private transient List<DataSetRow> rowsView;
+
+    /**
+     * Opens data set file and maps it into memory
+     *
+     * @param file data set file created by write or convertCsv
+     * @throws NeurophException if file cannot be read or it is not a valid data set file
+     */
+    public MappedDataSet(File file) {
+        this(file, readHeader(file));
+    }
+
+    private MappedDataSet(File file, Header header) {
+        super(header.inputSize, header.outputSize);
+        this.file = file;
+        this.valueSize = header.valueSize;
+        this.fileRowsCount = header.rowsCount;
+        if (header.columnNames != null) {
+            setColumnNames(header.columnNames);
+        }
+        setFilePath(file.getPath());
+        map(header.dataOffset);
+    }
+
+    /**
+     * Creates data set with the specified rows of another mapped data set, sharing its mapped file
+     */
+    private MappedDataSet(MappedDataSet parent, int[] indexes) {
+        super(parent.getInputSize(), parent.getOutputSize());
+        this.file = parent.file;
+        this.valueSize = parent.valueSize;
+        this.fileRowsCount = parent.fileRowsCount;
+        this.segments = parent.segments;
+        this.rowsPerSegment = parent.rowsPerSegment;
+        this.indexes = indexes;
+        setColumnNames(parent.getColumnNames());
+        setFilePath(parent.getFilePath());
+    }
+
+    private void map(long dataOffset) {
+        int rowSize = getRowValuesCount() * valueSize;
+        long dataSize = (long) fileRowsCount * rowSize;
+        rowsPerSegment = rowSize == 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, MAX_SEGMENT_SIZE / rowSize);
+        int segmentsCount = fileRowsCount == 0 ? 0 : (int) ((fileRowsCount - 1L) / rowsPerSegment + 1);
+        segments = new ByteBuffer[segmentsCount];
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < dataOffset + dataSize) {
+                throw new NeurophException("Data set file is truncated: " + file);
+            }
+            for (int s = 0; s < segmentsCount; s++) {
+                long position = dataOffset + (long) s * rowsPerSegment * rowSize;
+                long size = Math.min((long) rowsPerSegment * rowSize, dataOffset + dataSize - position);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException ex) {
+            throw new NeurophException("Error reading data set file: " + file, ex);
+        }
+    }
+
+    private int getRowValuesCount() {
+        return getInputSize() + getOutputSize();
+    }
+
+    /**
+     * Returns data set file
+     *
+     * @return data set file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns true if values are stored as floats
+     *
+     * @return true for single precision values
+     */
+    public boolean isSinglePrecision() {
+        return valueSize == Float.BYTES;
+    }
+
+    @Override
+    public int size() {
+        return indexes != null ? indexes.length : fileRowsCount;
+    }
+
+    @Override
+    public boolean isSupervised() {
+        return getOutputSize() > 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Copies input values of the specified row into the specified array
+     *
+     * @param index row index
+     * @param input array for input values, with at least getInputSize() elements
+     * @return input array
+     */
+    public double[] getInput(int index, double[] input) {
+        readValues(index, 0, input, getInputSize());
+        return input;
+    }
+
+    /**
+     * Copies desired output values of the specified row into the specified array
+     *
+     * @param index  row index
+     * @param output array for output values, with at least getOutputSize() elements
+     * @return output array
+     */
+    public double[] getDesiredOutput(int index, double[] output) {
+        readValues(index, getInputSize(), output, getOutputSize());
+        return output;
+    }
+
+    /**
+     * Copies input values of the specified row into the specified float array, for single precision
+     * networks (see FloatCompiledNetwork). Values of double precision files are rounded.
+     *
+     * @param index row index
+     * @param input array for input values, with at least getInputSize() elements
+     * @return input array
+     */
+    public float[] getInput(int index, float[] input) {
+        readValues(index, 0, input, getInputSize());
+        return input;
+    }
+
+    /**
+     * Copies desired output values of the specified row into the specified float array
+     *
+     * @param index  row index
+     * @param output array for output values, with at least getOutputSize() elements
+     * @return output array
+     */
+    public float[] getDesiredOutput(int index, float[] output) {
+        readValues(index, getInputSize(), output, getOutputSize());
+        return output;
+    }
+
+    /**
+     * Returns position of the specified value of the specified row in its segment
+     */
+    private int valuePosition(int index, int column) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Row index " + index + " out of range, size " + size());
+        }
+        int row = indexes != null ? indexes[index] : index;
+        return ((row % rowsPerSegment) * getRowValuesCount() + column) * valueSize;
+    }
+
+    private ByteBuffer segment(int index) {
+        return segments[(indexes != null ? indexes[index] : index) / rowsPerSegment];
+    }
+
+    private void readValues(int index, int column, float[] values, int count) {
+        int position = valuePosition(index, column);
+        ByteBuffer segment = segment(index);
+        if (valueSize == Double.BYTES) {
+            for (int i = 0; i < count; i++, position += Double.BYTES) {
+                values[i] = (float) segment.getDouble(position);
+            }
+        } else {
+            for (int i = 0; i < count; i++, position += Float.BYTES) {
+                values[i] = segment.getFloat(position);
+            }
+        }
+    }
+
+    private void readValues(int index, int column, double[] values, int count) {
+        int position = valuePosition(index, column);
+        ByteBuffer segment = segment(index);
+        if (valueSize == Double.BYTES) {
+            for (int i = 0; i < count; i++, position += Double.BYTES) {
+                values[i] = segment.getDouble(position);
+            }
+        } else {
+            for (int i = 0; i < count; i++, position += Float.BYTES) {
+                values[i] = segment.getFloat(position);
+            }
+        }
+    }
+
+    /**
+     * Returns new data set row with values of the specified row
+     *
+     * @param idx row index
+     * @return data set row
+     */
+    @Override
+    public DataSetRow getRowAt(int idx) {
+        double[] input = getInput(idx, new double[getInputSize()]);
+        if (getOutputSize() == 0) {
+            return new DataSetRow(input);
+        }
+        return new DataSetRow(input, getDesiredOutput(idx, new double[getOutputSize()]));
+    }
+
+    @Override
+    public DataSetRow get(int index) {
+        return getRowAt(index);
+    }
+
+    /**
+     * Returns read only list view of data set rows, which creates row objects on access
+     *
+     * @return data set rows
+     */
+    @Override
+    public List<DataSetRow> getRows() {
+        if (rowsView == null) {
+            rowsView = new RowsView();
+        }
+        return rowsView;
+    }
+
+    @Override
+    public List<DataSetRow> getItems() {
+        return getRows();
+    }
+
+    @Override
+    public Iterator<DataSetRow> iterator() {
+        return getRows().iterator();
+    }
+
+    /**
+     * Shuffles rows order. Row data is not moved, only an array of row indexes is shuffled.
+     */
+    @Override
+    public void shuffle() {
+        shuffle(new Random());
+    }
+
+    @Override
+    public void shuffle(Random random) {
+        if (indexes == null) {
+            indexes = new int[fileRowsCount];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+        }
+        for (int i = indexes.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = tmp;
+        }
+    }
+
+    /**
+     * Returns mapped data set with the specified rows, which shares the mapped file with this data set
+     *
+     * @param indexes row indexes
+     * @return data set with specified rows
+     */
+    @Override
+    public MappedDataSet subset(int... indexes) {
+        int[] rows = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] < 0 || indexes[i] >= size()) {
+                throw new IndexOutOfBoundsException("Row index " + indexes[i] + " out of range, size " + size());
+            }
+            rows[i] = this.indexes != null ? this.indexes[indexes[i]] : indexes[i];
+        }
+        return new MappedDataSet(this, rows);
+    }
+
+    @Override
+    public DataSet add(DataSetRow row) {
+        throw new UnsupportedOperationException("Mapped data set is read only!");
+    }
+
+    @Override
+    public void add(int index, DataSetRow row) {
+        throw new UnsupportedOperationException("Mapped data set is read only!");
+    }
+
+    @Override
+    public DataSetRow remove(int index) {
+        throw new UnsupportedOperationException("Mapped data set is read only!");
+    }
+
+    @Override
+    public boolean remove(Object row) {
+        throw new UnsupportedOperationException("Mapped data set is read only!");
+    }
+
+    @Override
+    public void removeRowAt(int idx) {
+        throw new UnsupportedOperationException("Mapped data set is read only!");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Mapped data set is read only!");
+    }
+
+    @Override
+    public int indexOf(Object row) {
+        return getRows().indexOf(row);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        map(readHeader(file).dataOffset);
+    }
+
+    /**
+     * Read only list of data set rows
+     */
+    private final class RowsView extends AbstractList<DataSetRow> implements RandomAccess {
+
+        @Override
+        public DataSetRow get(int index) {
+            return getRowAt(index);
+        }
+
+        @Override
+        public int size() {
+            return MappedDataSet.this.size();
+        }
+    }
+
+    /**
+     * Writes rows of the specified data set into mapped data set file
+     *
+     * @param dataSet         data set to write
+     * @param file            file to write
+     * @param singlePrecision if true values are written as floats, otherwise as doubles
+     * @return mapped data set for the written file
+     */
+    public static MappedDataSet write(DataSet dataSet, File file, boolean singlePrecision) {
+        try (Writer writer = new Writer(file, dataSet.getInputSize(), dataSet.getOutputSize(),
+                singlePrecision, dataSet.getColumnNames())) {
+            for (DataSetRow row : dataSet.getRows()) {
+                writer.write(row.getInput(), row.isSupervised() ? row.getDesiredOutput() : null);
+            }
+        } catch (IOException ex) {
+            throw new NeurophException("Error writing data set file: " + file, ex);
+        }
+        return new MappedDataSet(file);
+    }
+
+    /**
+     * Converts csv file into mapped data set file, reading one line at a time
+     *
+     * @param csvFile         csv file with one row per line
+     * @param file            mapped data set file to write
+     * @param inputsCount     number of inputs
+     * @param outputsCount    number of outputs
+     * @param delimiter       delimiter of values
+     * @param loadColumnNames true if csv file contains column names in first line
+     * @param singlePrecision if true values are written as floats, otherwise as doubles
+     * @return mapped data set for the written file
+     */
+    public static MappedDataSet convertCsv(File csvFile, File file, int inputsCount, int outputsCount, String delimiter,
+                                           boolean loadColumnNames, boolean singlePrecision) {
+        if (inputsCount <= 0) throw new IllegalArgumentException("Number of inputs cannot be <= 0 : " + inputsCount);
+        if (outputsCount < 0) throw new IllegalArgumentException("Number of outputs cannot be < 0 : " + outputsCount);
+        if ((delimiter == null) || delimiter.isEmpty())
+            throw new IllegalArgumentException("Delimiter cannot be null or empty!");
+
+        long lineNumber = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
+            String[] columnNames = null;
+            if (loadColumnNames) {
+                String line = reader.readLine();
+                lineNumber++;
+                columnNames = line != null ? line.split(delimiter) : null;
+            }
+
+            try (Writer writer = new Writer(file, inputsCount, outputsCount, singlePrecision, columnNames)) {
+                double[] inputs = new double[inputsCount];
+                double[] outputs = new double[outputsCount];
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    String[] values = line.split(delimiter);
+                    if (values[0].isEmpty()) {
+                        continue; // skip if line was empty
+                    }
+                    if (values.length < inputsCount + outputsCount) {
+                        throw new VectorSizeMismatchException("Line " + lineNumber + " has " + values.length
+                                + " values, expected " + (inputsCount + outputsCount));
+                    }
+                    for (int i = 0; i < inputsCount; i++) {
+                        inputs[i] = Double.parseDouble(values[i]);
+                    }
+                    for (int i = 0; i < outputsCount; i++) {
+                        outputs[i] = Double.parseDouble(values[inputsCount + i]);
+                    }
+                    writer.write(inputs, outputs);
+                }
+            }
+        } catch (IOException ex) {
+            throw new NeurophException("Error converting data set file: " + csvFile, ex);
+        } catch (NumberFormatException ex) {
+            throw new NeurophException("Bad number format in data set file " + csvFile + " at line " + lineNumber, ex);
+        }
+        return new MappedDataSet(file);
+    }
+
+    /**
+     * Writes mapped data set file row by row, and updates rows count in header when closed.
+     * Written file is opened with new MappedDataSet(file) after the writer is closed.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final int inputSize, outputSize, valueSize;
+        private long rowsCount;
+
+        /**
+         * Creates data set file with the specified header, an existing file is overwritten
+         *
+         * @param file            file to write
+         * @param inputSize       number of inputs
+         * @param outputSize      number of outputs, 0 for unsupervised data set
+         * @param singlePrecision if true values are written as floats, otherwise as doubles
+         * @param columnNames     names of input and output columns, or null
+         * @throws IOException if file cannot be created
+         */
+        public Writer(File file, int inputSize, int outputSize, boolean singlePrecision, String[] columnNames) throws IOException {
+            this.inputSize = inputSize;
+            this.outputSize = outputSize;
+            this.valueSize = singlePrecision ? Float.BYTES : Double.BYTES;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+
+            int headerSize = PREAMBLE_SIZE + 4;
+            byte[][] names = new byte[columnNames != null ? columnNames.length : 0][];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = columnNames[i].getBytes(StandardCharsets.UTF_8);
+                headerSize += 4 + names[i].length;
+            }
+            long dataOffset = (headerSize + 7) / 8 * 8;
+
+            ByteBuffer header = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(VERSION).putInt(inputSize).putInt(outputSize).putInt(valueSize).putInt(0)
+                    .putLong(0).putLong(dataOffset);
+            header.putInt(columnNames != null ? names.length : -1);
+            for (byte[] name : names) {
+                header.putInt(name.length).put(name);
+            }
+            header.rewind();
+            writeFully(header);
+        }
+
+        /**
+         * Appends row to the file
+         *
+         * @param input  input values
+         * @param output desired output values, ignored for unsupervised data set
+         * @throws IOException if row cannot be written
+         */
+        public void write(double[] input, double[] output) throws IOException {
+            if (input.length != inputSize || (outputSize > 0 && (output == null || output.length != outputSize))) {
+                throw new VectorSizeMismatchException("Row size does not match data set input and output size!");
+            }
+            put(input);
+            if (outputSize > 0) {
+                put(output);
+            }
+            rowsCount++;
+            if (rowsCount > Integer.MAX_VALUE) {
+                throw new NeurophException("Data set cannot have more than " + Integer.MAX_VALUE + " rows");
+            }
+        }
+
+        private void put(double[] values) throws IOException {
+            for (double value : values) {
+                if (buffer.remaining() < valueSize) {
+                    flush();
+                }
+                if (valueSize == Double.BYTES) {
+                    buffer.putDouble(value);
+                } else {
+                    buffer.putFloat((float) value);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer count = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                count.putLong(rowsCount).flip();
+                while (count.hasRemaining()) {
+                    channel.write(count, ROWS_COUNT_POSITION + count.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Data set file header
+     */
+    private static final class Header {
+        int inputSize, outputSize, valueSize, rowsCount;
+        long dataOffset;
+        String[] columnNames;
+    }
+
+    private static Header readHeader(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, preamble, file);
+            byte[] magic = new byte[MAGIC.length];
+            preamble.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new NeurophException("Not a mapped data set file: " + file);
+            }
+            int version = preamble.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new NeurophException("Unsupported mapped data set file version " + version + ": " + file);
+            }
+            Header header = new Header();
+            header.inputSize = preamble.getInt();
+            header.outputSize = preamble.getInt();
+            header.valueSize = preamble.getInt();
+            preamble.getInt(); // reserved
+            long rowsCount = preamble.getLong();
+            header.dataOffset = preamble.getLong();
+            if (header.inputSize <= 0 || header.outputSize < 0 || (header.valueSize != Double.BYTES && header.valueSize != Float.BYTES)
+                    || rowsCount < 0 || rowsCount > Integer.MAX_VALUE || header.dataOffset < PREAMBLE_SIZE + 4
+                    || header.dataOffset > Integer.MAX_VALUE) {
+                throw new NeurophException("Corrupted mapped data set file: " + file);
+            }
+            header.rowsCount = (int) rowsCount;
+
+            ByteBuffer names = ByteBuffer.allocate((int) header.dataOffset - PREAMBLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, names, file);
+            int count = names.getInt();
+            if (count >= 0) {
+                header.columnNames = new String[count];
+                for (int i = 0; i < count; i++) {
+                    byte[] name = new byte[names.getInt()];
+                    names.get(name);
+                    header.columnNames[i] = new String(name, StandardCharsets.UTF_8);
+                }
+            }
+            return header;
+        } catch (IOException ex) {
+            throw new NeurophException("Error reading data set file: " + file, ex);
+        } catch (RuntimeException ex) {
+            if (ex instanceof NeurophException) {
+                throw ex;
+            }
+            throw new NeurophException("Corrupted mapped data set file: " + file, ex);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, File file) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new NeurophException("Data set file is truncated: " + file);
+            }
+        }
+        buffer.flip();
+    }
+}
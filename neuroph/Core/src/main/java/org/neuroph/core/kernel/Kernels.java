@@ -0,0 +1,378 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.core.kernel;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <pre>
+ * Numeric kernels for inner loops over primitive arrays: dot products, axpy, matrix vector and
+ * matrix products, vector activations and fused optimizer updates.
+ * This class is the plain Java implementation, which runs on any JVM.
+ *
+ * Faster implementations (for example neuroph-simd, which uses the Java Vector API) extend this class,
+ * override the kernels they can speed up, and are registered as services in
+ * META-INF/services/org.neuroph.core.kernel.Kernels. The first registered implementation which can be
+ * loaded and reports isSupported() is used by getInstance(), otherwise these scalar kernels are used.
+ * System property neuroph.kernels=scalar disables service lookup.
+ *
+ * Results of other implementations may differ from the scalar ones in the last bits,
+ * since they sum in a different order and may use different exp approximations.
+ * </pre>
+ */
+public class Kernels {
+
+    /**
+     * System property which selects kernels, 'scalar' disables vectorized implementations
+     */
+    public static final String KERNELS_PROPERTY = "neuroph.kernels";
+
+    private static final Kernels SCALAR = new Kernels();
+
+    private static final class Holder {
+        static final Kernels INSTANCE = load();
+    }
+
+    /**
+     * Creates scalar kernels, subclasses override kernels they implement
+     */
+    protected Kernels() {
+    }
+
+    /**
+     * Returns kernels used by the framework, loaded on first call
+     *
+     * @return best available kernels
+     */
+    public static Kernels getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns plain Java kernels
+     *
+     * @return scalar kernels
+     */
+    public static Kernels getScalar() {
+        return SCALAR;
+    }
+
+    private static Kernels load() {
+        if ("scalar".equalsIgnoreCase(System.getProperty(KERNELS_PROPERTY))) {
+            return SCALAR;
+        }
+        Logger logger = LoggerFactory.getLogger(Kernels.class);
+        try {
+            Iterator<Kernels> providers = ServiceLoader.load(Kernels.class).iterator();
+            while (providers.hasNext()) {
+                try {
+                    Kernels kernels = providers.next();
+                    if (kernels.isSupported()) {
+                        logger.debug("Using {} kernels", kernels.getName());
+                        return kernels;
+                    }
+                } catch (ServiceConfigurationError | LinkageError ex) {
+                    // e.g. neuroph-simd on classpath without --add-modules jdk.incubator.vector
+                    logger.debug("Kernels provider cannot be loaded, skipping it", ex);
+                }
+            }
+        } catch (ServiceConfigurationError ex) {
+            logger.debug("Kernels providers lookup failed", ex);
+        }
+        return SCALAR;
+    }
+
+    /**
+     * Returns true if these kernels can run on this JVM and hardware
+     *
+     * @return true if supported
+     */
+    protected boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Returns name of this implementation
+     *
+     * @return implementation name
+     */
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Returns sum of x[xOffset + i] * y[yOffset + i] for i in [0, length)
+     */
+    public double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += x[xOffset + i] * y[yOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns sum of x[xOffset + i] * y[yOffset + i] for i in [0, length)
+     */
+    public float dot(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += x[xOffset + i] * y[yOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * Adds a * x[xOffset + i] to y[yOffset + i] for i in [0, length)
+     */
+    public void axpy(double a, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    /**
+     * Adds a * x[xOffset + i] to y[yOffset + i] for i in [0, length)
+     */
+    public void axpy(float a, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    /**
+     * Calculates y = w * x + b, where w is a row major [out][in] matrix
+     *
+     * @param w   weight matrix, out rows with in columns
+     * @param in  number of inputs
+     * @param out number of outputs
+     * @param x   input vector
+     * @param b   bias vector
+     * @param y   output vector
+     */
+    public void gemv(double[] w, int in, int out, double[] x, double[] b, double[] y) {
+        for (int j = 0, row = 0; j < out; j++, row += in) {
+            double sum = 0;
+            for (int i = 0; i < in; i++) {
+                sum += w[row + i] * x[i];
+            }
+            y[j] = sum + b[j];
+        }
+    }
+
+    /**
+     * Calculates y = x * w' + b for a block of rows.
+     * x is a row major [rows][in] matrix, w is a row major [out][in] matrix and y is a row major [rows][out] matrix.
+     * Rows and units are processed in 4x4 tiles, so each loaded value is used four times.
+     * Sums are accumulated in the same order as in gemv, so results are identical to single row calculation;
+     * implementations which override gemm or gemv must keep this property.
+     *
+     * @param x    input rows
+     * @param rows number of rows
+     * @param in   number of inputs
+     * @param w    weight matrix
+     * @param b    bias vector
+     * @param out  number of outputs
+     * @param y    output rows
+     */
+    public void gemm(double[] x, int rows, int in, double[] w, double[] b, int out, double[] y) {
+        int j = 0;
+        for (; j + 3 < out; j += 4) {
+            int w0 = j * in, w1 = w0 + in, w2 = w1 + in, w3 = w2 + in;
+            int r = 0;
+            for (; r + 3 < rows; r += 4) {
+                int x0 = r * in, x1 = x0 + in, x2 = x1 + in, x3 = x2 + in;
+                double s00 = 0, s01 = 0, s02 = 0, s03 = 0;
+                double s10 = 0, s11 = 0, s12 = 0, s13 = 0;
+                double s20 = 0, s21 = 0, s22 = 0, s23 = 0;
+                double s30 = 0, s31 = 0, s32 = 0, s33 = 0;
+                for (int i = 0; i < in; i++) {
+                    double a0 = x[x0 + i], a1 = x[x1 + i], a2 = x[x2 + i], a3 = x[x3 + i];
+                    double c0 = w[w0 + i], c1 = w[w1 + i], c2 = w[w2 + i], c3 = w[w3 + i];
+                    s00 += c0 * a0; s01 += c1 * a0; s02 += c2 * a0; s03 += c3 * a0;
+                    s10 += c0 * a1; s11 += c1 * a1; s12 += c2 * a1; s13 += c3 * a1;
+                    s20 += c0 * a2; s21 += c1 * a2; s22 += c2 * a2; s23 += c3 * a2;
+                    s30 += c0 * a3; s31 += c1 * a3; s32 += c2 * a3; s33 += c3 * a3;
+                }
+                int y0 = r * out + j, y1 = y0 + out, y2 = y1 + out, y3 = y2 + out;
+                y[y0] = s00 + b[j]; y[y0 + 1] = s01 + b[j + 1]; y[y0 + 2] = s02 + b[j + 2]; y[y0 + 3] = s03 + b[j + 3];
+                y[y1] = s10 + b[j]; y[y1 + 1] = s11 + b[j + 1]; y[y1 + 2] = s12 + b[j + 2]; y[y1 + 3] = s13 + b[j + 3];
+                y[y2] = s20 + b[j]; y[y2 + 1] = s21 + b[j + 1]; y[y2 + 2] = s22 + b[j + 2]; y[y2 + 3] = s23 + b[j + 3];
+                y[y3] = s30 + b[j]; y[y3 + 1] = s31 + b[j + 1]; y[y3 + 2] = s32 + b[j + 2]; y[y3 + 3] = s33 + b[j + 3];
+            }
+            // remaining rows
+            for (; r < rows; r++) {
+                int x0 = r * in;
+                double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+                for (int i = 0; i < in; i++) {
+                    double a = x[x0 + i];
+                    s0 += w[w0 + i] * a; s1 += w[w1 + i] * a; s2 += w[w2 + i] * a; s3 += w[w3 + i] * a;
+                }
+                int y0 = r * out + j;
+                y[y0] = s0 + b[j]; y[y0 + 1] = s1 + b[j + 1]; y[y0 + 2] = s2 + b[j + 2]; y[y0 + 3] = s3 + b[j + 3];
+            }
+        }
+        // remaining units
+        for (; j < out; j++) {
+            int w0 = j * in;
+            for (int r = 0; r < rows; r++) {
+                int x0 = r * in;
+                double s = 0;
+                for (int i = 0; i < in; i++) {
+                    s += w[w0 + i] * x[x0 + i];
+                }
+                y[r * out + j] = s + b[j];
+            }
+        }
+    }
+
+    /**
+     * Calculates v[i] = 1 / (1 + exp(-slope * v[i])) for i in [from, to), with the same guards as Sigmoid
+     */
+    public void sigmoid(double slope, double[] v, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double net = v[i];
+            if (net > 100) {
+                v[i] = 1.0;
+            } else if (net < -100) {
+                v[i] = 0.0;
+            } else {
+                v[i] = 1d / (1 + Math.exp(-slope * net));
+            }
+        }
+    }
+
+    /**
+     * Calculates single precision sigmoid in place for i in [from, to), evaluated in double and rounded to float
+     */
+    public void sigmoid(double slope, float[] v, int from, int to) {
+        for (int i = from; i < to; i++) {
+            float net = v[i];
+            if (net > 100) {
+                v[i] = 1f;
+            } else if (net < -100) {
+                v[i] = 0f;
+            } else {
+                v[i] = (float) (1d / (1 + Math.exp(-slope * net)));
+            }
+        }
+    }
+
+    /**
+     * Calculates v[i] = amplitude * tanh(slope * v[i]) for i in [from, to), with the same guards as Tanh
+     */
+    public void tanh(double slope, double amplitude, double[] v, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double net = v[i];
+            if (Math.abs(net) * slope > 100) {
+                v[i] = Math.signum(net) * 1.0d;
+            } else {
+                double e = Math.exp(2.0d * slope * net);
+                v[i] = amplitude * ((e - 1.0d) / (e + 1.0d));
+            }
+        }
+    }
+
+    /**
+     * Calculates single precision tanh in place for i in [from, to), evaluated in double and rounded to float
+     */
+    public void tanh(double slope, double amplitude, float[] v, int from, int to) {
+        for (int i = from; i < to; i++) {
+            float net = v[i];
+            if (Math.abs(net) * slope > 100) {
+                v[i] = Math.signum(net);
+            } else {
+                double e = Math.exp(2.0d * slope * net);
+                v[i] = (float) (amplitude * ((e - 1.0d) / (e + 1.0d)));
+            }
+        }
+    }
+
+    /**
+     * Calculates v[i] = max(0, v[i]) for i in [from, to)
+     */
+    public void relu(double[] v, int from, int to) {
+        for (int i = from; i < to; i++) {
+            v[i] = Math.max(0, v[i]);
+        }
+    }
+
+    /**
+     * Calculates v[i] = max(0, v[i]) for i in [from, to)
+     */
+    public void relu(float[] v, int from, int to) {
+        for (int i = from; i < to; i++) {
+            v[i] = Math.max(0f, v[i]);
+        }
+    }
+
+    /**
+     * Adam update for all weights: updates moment estimates m and v from gradients multiplied by scale,
+     * and sets steps to -rate * m * c1 / (sqrt(v * c2) + epsilon) - decay * values.
+     *
+     * @param gradients summed gradients
+     * @param scale     factor to average summed gradients
+     * @param m         first moment estimates
+     * @param v         second moment estimates
+     * @param beta1     first moment decay rate
+     * @param beta2     second moment decay rate
+     * @param c1        first moment bias correction
+     * @param c2        second moment bias correction
+     * @param rate      learning rate
+     * @param epsilon   small value which prevents division by zero
+     * @param decay     decoupled weight decay factor
+     * @param values    current weight values
+     * @param steps     output array for weight changes
+     * @param length    number of weights
+     */
+    public void adam(double[] gradients, double scale, double[] m, double[] v, double beta1, double beta2,
+                     double c1, double c2, double rate, double epsilon, double decay, double[] values, double[] steps, int length) {
+        for (int k = 0; k < length; k++) {
+            double g = gradients[k] * scale;
+            m[k] = beta1 * m[k] + (1 - beta1) * g;
+            v[k] = beta2 * v[k] + (1 - beta2) * g * g;
+            steps[k] = -rate * (m[k] * c1) / (Math.sqrt(v[k] * c2) + epsilon) - decay * values[k];
+        }
+    }
+
+    /**
+     * RMSProp style update for all weights: cache = decay * cache + gain * g * g,
+     * and steps = -rate * g / (sqrt(cache) + epsilon), where g is gradient multiplied by scale.
+     * AdaGrad is the case decay = 1, gain = 1.
+     *
+     * @param gradients summed gradients
+     * @param scale     factor to average summed gradients
+     * @param cache     squared gradients cache
+     * @param decay     cache decay rate
+     * @param gain      weight of the new squared gradient
+     * @param rate      learning rate
+     * @param epsilon   small value which prevents division by zero
+     * @param steps     output array for weight changes
+     * @param length    number of weights
+     */
+    public void rmsProp(double[] gradients, double scale, double[] cache, double decay, double gain,
+                        double rate, double epsilon, double[] steps, int length) {
+        for (int k = 0; k < length; k++) {
+            double g = gradients[k] * scale;
+            cache[k] = decay * cache[k] + gain * g * g;
+            steps[k] = -rate * g / (Math.sqrt(cache[k]) + epsilon);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Provides numeric kernels (dot products, matrix products, activations, optimizer updates)
+ * used by compiled networks and array based learning rules, with pluggable vectorized implementations.
+ */
+
+package org.neuroph.core.kernel;
@@ -159,7 +159,9 @@ abstract public class IterativeLearning extends LearningRule implements
     @Override
     protected void onStart() {
         super.onStart();
-        
+
+        // remove condition added by previous learn call, so repeated learning does not accumulate them
+        this.stopConditions.removeIf(stop -> stop instanceof MaxIterationsStop);
         if (this.iterationsLimited) {
             this.stopConditions.add(new MaxIterationsStop(this));
         }
@@ -0,0 +1,364 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core.learning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.neuroph.core.CompiledNetwork;
+import org.neuroph.core.ModelHandle;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.events.LearningEvent;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+
+/**
+ * <pre>
+ * Incremental learning from a stream of training rows.
+ * Producer threads push rows or micro-batches (submit), and a single learning thread takes them from
+ * a bounded queue and trains the network with its learning rule, which must be SupervisedLearning.
+ * Rows waiting in the queue are trained together, up to maxBatchRows, and each such micro-batch is
+ * learned like one epoch over a small data set (see IterativeLearning.doLearningEpoch), so online,
+ * batch and data parallel settings of the learning rule (for example BackPropagation.setParallelism) apply.
+ *
+ * After every snapshotInterval micro-batches, whenever the queue is empty, and when the learner is closed,
+ * a snapshot of the weights is published to the model handle (see getModelHandle and getSnapshot).
+ * Snapshots are immutable copies of the weights, so inference threads always read a consistent model
+ * while training continues. Network itself must not be used by other threads until the learner is closed.
+ *
+ * Stop conditions of the learning rule (max error, iterations) are not used, learning runs until close().
+ * </pre>
+ *
+ * @see ModelHandle
+ */
+public class OnlineLearner implements AutoCloseable {
+
+    /**
+     * Marks the end of the stream in the queue
+     */
+    private static final List<DataSetRow> END = Collections.emptyList();
+
+    private final NeuralNetwork<?> network;
+    private final SupervisedLearning learningRule;
+    private final BlockingQueue<List<DataSetRow>> queue;
+    private final int maxBatchRows;
+    private final ModelHandle model;
+    private final Thread thread;
+
+    /**
+     * Number of micro-batches after which a new snapshot is published
+     */
+    private volatile int snapshotInterval = 1;
+
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    /**
+     * Rows submitted and rows learned so far, guarded by this
+     */
+    private long submittedRows;
+    private long learnedRows;
+    private volatile long learnedBatches;
+
+    /**
+     * Creates online learner for the specified network, with queue of 1024 entries and micro-batches up to 64 rows
+     *
+     * @param network network to train, with SupervisedLearning rule
+     */
+    public OnlineLearner(NeuralNetwork<?> network) {
+        this(network, 1024, 64);
+    }
+
+    /**
+     * Creates online learner for the specified network. Learning thread is started with start().
+     *
+     * @param network       network to train, with SupervisedLearning rule
+     * @param queueCapacity max number of submitted entries (rows or lists of rows) waiting to be learned
+     * @param maxBatchRows  max number of waiting rows which are learned together
+     */
+    public OnlineLearner(NeuralNetwork<?> network, int queueCapacity, int maxBatchRows) {
+        if (network == null) {
+            throw new IllegalArgumentException("Neural network cannot be null!");
+        }
+        if (!(network.getLearningRule() instanceof SupervisedLearning)) {
+            throw new IllegalArgumentException("Online learning requires SupervisedLearning rule!");
+        }
+        if (queueCapacity < 1 || maxBatchRows < 1) {
+            throw new IllegalArgumentException("Queue capacity and max batch rows must be at least 1!");
+        }
+        this.network = network;
+        this.learningRule = (SupervisedLearning) network.getLearningRule();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchRows = maxBatchRows;
+        this.model = new ModelHandle(network);
+        this.thread = new Thread(this::run, "neuroph-online-learning");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts learning thread
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Returns handle with the last published snapshot of the network weights
+     *
+     * @return model handle
+     */
+    public ModelHandle getModelHandle() {
+        return model;
+    }
+
+    /**
+     * Returns compiled network of the last published snapshot. Snapshot can be used by any number of threads.
+     *
+     * @return compiled network with weights at the end of some micro-batch
+     * @throws UnsupportedOperationException if network cannot be compiled
+     */
+    public CompiledNetwork getSnapshot() {
+        return model.get().getCompiledNetwork();
+    }
+
+    /**
+     * Sets number of micro-batches after which a new snapshot is published
+     *
+     * @param snapshotInterval number of micro-batches, 1 by default
+     */
+    public void setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1: " + snapshotInterval);
+        }
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Adds training row to the queue, waiting for space if queue is full
+     *
+     * @param row training row with input and desired output
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void submit(DataSetRow row) throws InterruptedException {
+        submit(Collections.singletonList(row));
+    }
+
+    /**
+     * Adds micro-batch of training rows to the queue, waiting for space if queue is full.
+     * Rows of one micro-batch are always learned together.
+     *
+     * @param rows training rows
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void submit(List<DataSetRow> rows) throws InterruptedException {
+        checkOpen();
+        List<DataSetRow> copy = new ArrayList<>(rows);
+        for (DataSetRow row : copy) {
+            checkRow(row);
+        }
+        if (copy.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            submittedRows += copy.size();
+        }
+        try {
+            queue.put(copy);
+        } catch (InterruptedException ex) {
+            synchronized (this) {
+                submittedRows -= copy.size();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Adds training row to the queue if there is space, without waiting
+     *
+     * @param row training row with input and desired output
+     * @return true if row was added, false if queue is full
+     */
+    public boolean offer(DataSetRow row) {
+        checkOpen();
+        checkRow(row);
+        synchronized (this) {
+            if (!queue.offer(Collections.singletonList(row))) {
+                return false;
+            }
+            submittedRows++;
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all rows submitted before this call are learned.
+     * If no other rows were submitted in the meantime, snapshot then has the latest weights.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        synchronized (this) {
+            long target = submittedRows;
+            while (learnedRows < target && failure == null && thread.isAlive()) {
+                wait(100);
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Returns number of rows learned so far
+     *
+     * @return number of learned rows
+     */
+    public synchronized long getLearnedRowsCount() {
+        return learnedRows;
+    }
+
+    /**
+     * Returns number of micro-batches learned so far
+     *
+     * @return number of learned micro-batches
+     */
+    public long getLearnedBatchesCount() {
+        return learnedBatches;
+    }
+
+    /**
+     * Returns total network error for the last micro-batch, as calculated by learning rule error function
+     *
+     * @return error of the last micro-batch
+     */
+    public double getError() {
+        return learningRule.getErrorFunction().getTotalError();
+    }
+
+    /**
+     * Learns all rows which are already submitted, publishes the final snapshot and stops learning thread
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (thread.isAlive()) {
+            queue.put(END);
+            thread.join();
+        }
+        checkFailure();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Online learner is closed!");
+        }
+        checkFailure();
+    }
+
+    private void checkRow(DataSetRow row) {
+        if (!row.isSupervised()) {
+            throw new IllegalArgumentException("Online learning requires rows with desired output!");
+        }
+        if (row.getInput().length != network.getInputsCount() || row.getDesiredOutput().length != network.getOutputsCount()) {
+            throw new VectorSizeMismatchException("Row size does not match network inputs and outputs count!");
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new NeurophException("Online learning failed", failure);
+        }
+    }
+
+    private void run() {
+        DataSet batch = new DataSet(network.getInputsCount(), network.getOutputsCount());
+        boolean started = false;
+        boolean published = true;
+        try {
+            while (true) {
+                List<DataSetRow> rows = queue.take();
+                if (rows == END) {
+                    // last batches may have been learned while END was waiting in the queue
+                    if (!published) {
+                        model.publish(network);
+                    }
+                    break;
+                }
+                batch.clear();
+                addAll(batch, rows);
+                boolean end = false;
+                while (batch.size() < maxBatchRows && !end && (rows = queue.poll()) != null) {
+                    end = rows == END;
+                    addAll(batch, rows);
+                }
+
+                learningRule.setTrainingSet(batch);
+                if (!started) {
+                    learningRule.onStart();
+                    started = true;
+                }
+                learningRule.beforeEpoch();
+                learningRule.doLearningEpoch(batch);
+                learningRule.currentIteration++;
+                learningRule.afterEpoch();
+                learningRule.fireLearningEvent(new LearningEvent(learningRule, LearningEvent.Type.EPOCH_ENDED));
+
+                // snapshot is also published whenever learning catches up with the stream
+                learnedBatches++;
+                published = end || queue.isEmpty() || learnedBatches % snapshotInterval == 0;
+                if (published) {
+                    model.publish(network);
+                }
+                synchronized (this) {
+                    learnedRows += batch.size();
+                    notifyAll();
+                }
+                if (end) {
+                    break;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error ex) {
+            failure = ex;
+        } finally {
+            if (started) {
+                learningRule.onStop();
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private static void addAll(DataSet batch, List<DataSetRow> rows) {
+        for (DataSetRow row : rows) {
+            batch.add(row);
+        }
+    }
+}
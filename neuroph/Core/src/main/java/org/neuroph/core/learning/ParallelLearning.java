@@ -0,0 +1,39 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core.learning;
+
+/**
+ * Learning rule which uses its own worker threads.
+ * Code which runs several learning rules at the same time (for example cross validation folds)
+ * uses this interface to divide available cores between them, instead of running folds * parallelism threads.
+ */
+public interface ParallelLearning {
+
+    /**
+     * Returns number of threads used for learning
+     *
+     * @return number of threads
+     */
+    int getParallelism();
+
+    /**
+     * Sets number of threads used for learning
+     *
+     * @param parallelism number of threads, 1 for learning in the calling thread
+     */
+    void setParallelism(int parallelism);
+}
@@ -18,6 +18,7 @@ package org.neuroph.core.learning;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import org.neuroph.core.Connection;
 import org.neuroph.core.Layer;
@@ -33,8 +34,7 @@ import org.neuroph.core.learning.stop.MaxErrorStop;
  * Base class for all supervised learning algorithms.
  * It extends IterativeLearning, and provides general supervised learning principles.
  * Based on Template Method Pattern with abstract method calculateWeightChanges
- *
- * TODO:  random pattern order
+ * Supports online, full batch and mini batch weight updates, with optional random pattern order.
  * 
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
@@ -80,6 +80,33 @@ abstract public class SupervisedLearning extends IterativeLearning implements
      */
     private boolean batchMode = false;
 
+    /**
+     * Number of patterns after which accumulated weight changes are applied, when learning is in batch mode.
+     * Zero means that changes are applied once per epoch (full batch). Zero by default.
+     */
+    private int batchSize = 0;
+
+    /**
+     * Setting to determine if training set rows are presented in random order in each epoch.
+     * False by default.
+     */
+    private boolean shuffle = false;
+
+    /**
+     * Random generator used to shuffle training set rows
+     */
+    private transient Random random;
+
+    /**
+     * Order in which training set rows are presented when shuffle is on
+     */
+    private transient int[] rowOrder;
+
+    /**
+     * Number of patterns with weight changes accumulated since the last batch update
+     */
+    private transient int batchPatternsCount;
+
     private ErrorFunction errorFunction;
     
     /**
@@ -130,6 +157,7 @@ abstract public class SupervisedLearning extends IterativeLearning implements
         super.onStart(); // reset iteration counter
         minErrorChangeIterationsCount = 0;
         previousEpochError = 0d;
+        batchPatternsCount = 0;
     }
 
     @Override
@@ -148,9 +176,9 @@ abstract public class SupervisedLearning extends IterativeLearning implements
             minErrorChangeIterationsCount = 0;
         }
 
-        // if learning is performed in batch mode, apply accumulated weight changes from this epoch        
-        if (batchMode == true) {
-            doBatchWeightsUpdate();
+        // if learning is performed in batch mode, apply weight changes accumulated since the last update
+        if (batchMode && batchPatternsCount > 0) {
+            doBatchWeightsUpdate(batchPatternsCount);
         }
     }
 
@@ -161,11 +189,20 @@ abstract public class SupervisedLearning extends IterativeLearning implements
      * and trains network for each element. It also sets flag if conditions
      * to stop learning has been reached: network error below some allowed
      * value, or maximum iteration count
+     * If shuffle is on, rows are presented in random order, which requires random access to data set rows.
      *
      * @param trainingSet training set for training network
      */
     @Override
-    public void doLearningEpoch(DataSet trainingSet) {        
+    public void doLearningEpoch(DataSet trainingSet) {
+        if (shuffle) {
+            int[] order = shuffleRowOrder(trainingSet.size());
+            for (int i = 0; i < order.length && !isStopped(); i++) {
+                learnPattern(trainingSet.getRowAt(order[i]));
+            }
+            return;
+        }
+
         Iterator<DataSetRow> iterator = trainingSet.iterator();
         while (iterator.hasNext() && !isStopped()) { // iterate all elements from training set - maybe remove isStopped from here
             DataSetRow dataSetRow = iterator.next();
@@ -184,17 +221,52 @@ abstract public class SupervisedLearning extends IterativeLearning implements
         double[] output = neuralNetwork.getOutput();
         double[] patternError = errorFunction.addPatternError(output, trainingElement.getDesiredOutput());
         calculateWeightChanges(patternError);
-        
-        if (!batchMode) applyWeightChanges(); // batch mode updates are done i doBatchWeightsUpdate        
+
+        if (!batchMode) {
+            applyWeightChanges();
+        } else { // batch mode updates are done in doBatchWeightsUpdate, after each batchSize patterns or at the end of epoch
+            batchPatternsCount++;
+            if (batchSize > 0 && batchPatternsCount >= batchSize) {
+                doBatchWeightsUpdate(batchPatternsCount);
+            }
+        }
+    }
+
+    /**
+     * Returns random order of row indexes for the next epoch (Fisher-Yates shuffle).
+     * Returned array is reused by the next call.
+     *
+     * @param size number of rows
+     * @return shuffled row indexes
+     */
+    protected final int[] shuffleRowOrder(int size) {
+        if (rowOrder == null || rowOrder.length != size) {
+            rowOrder = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            rowOrder[i] = i;
+        }
+        if (random == null) {
+            random = new Random();
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = rowOrder[i];
+            rowOrder[i] = rowOrder[j];
+            rowOrder[j] = tmp;
+        }
+        return rowOrder;
     }
 
     /**
      * This method updates network weights in batch mode - use accumulated weights change stored in Weight.deltaWeight
-     * It is executed after each learning epoch, only if learning is done in batch mode.
+     * It is executed after each mini batch (see setBatchSize) or after each learning epoch, only if learning is done in batch mode.
+     * Accumulated changes are averaged over the number of patterns in batch.
      *
      * @see SupervisedLearning#doLearningEpoch(org.neuroph.core.data.DataSet)
      */
     protected void doBatchWeightsUpdate() {
+        final int patterns = getBatchPatternsCount();
         // iterate layers from output to input
         List<Layer> layers = neuralNetwork.getLayers();
         for (int i = neuralNetwork.getLayersCount() - 1; i > 0; i--) {
@@ -204,13 +276,25 @@ abstract public class SupervisedLearning extends IterativeLearning implements
                 for (Connection connection : neuron.getInputConnections()) {
                     // for each connection weight apply accumulated weight change
                     Weight weight = connection.getWeight();
-                    weight.value += weight.weightChange / getTrainingSet().size(); // apply delta weight which is the sum of delta weights in batch mode    - TODO: add mini batch
+                    weight.value += weight.weightChange / patterns; // apply delta weight which is the sum of delta weights in batch
                     weight.weightChange = 0; // reset deltaWeight
                 }
             }
         }
     }
-    
+
+    /**
+     * Applies weight changes accumulated for the specified number of patterns.
+     * Used by learning rules which accumulate weight changes outside of learnPattern.
+     *
+     * @param patternsCount number of patterns in batch
+     */
+    protected final void doBatchWeightsUpdate(int patternsCount) {
+        batchPatternsCount = patternsCount;
+        doBatchWeightsUpdate();
+        batchPatternsCount = 0;
+    }
+
     /**
      * Returns true if learning is performed in batch mode, false otherwise
      *
@@ -229,6 +313,71 @@ abstract public class SupervisedLearning extends IterativeLearning implements
         this.batchMode = batchMode;
     }
 
+    /**
+     * Returns mini batch size, zero means full batch (whole training set)
+     *
+     * @return mini batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets mini batch size, used in batch mode. Positive size also turns batch mode on, and
+     * weight changes are accumulated for batchSize patterns and then applied at once.
+     * Zero means that in batch mode changes are applied once per epoch (full batch), and does not change the mode.
+     * Batch mode can be turned off with setBatchMode(false) after the size is set.
+     *
+     * @param batchSize number of patterns in mini batch, or zero for full batch
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("Batch size cannot be negative: " + batchSize);
+        }
+        if (batchSize > 0) {
+            setBatchMode(true);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns number of patterns whose weight changes are accumulated since the last batch update.
+     * If called outside of learning epoch returns training set size.
+     *
+     * @return number of patterns in current batch
+     */
+    protected int getBatchPatternsCount() {
+        return batchPatternsCount > 0 ? batchPatternsCount : getTrainingSet().size();
+    }
+
+    /**
+     * Returns true if training set rows are presented in random order in each epoch
+     *
+     * @return true if training set is shuffled in each epoch
+     */
+    public boolean isShuffle() {
+        return shuffle;
+    }
+
+    /**
+     * Sets shuffling of training set rows on/off. When on, rows are presented in different random order
+     * in each epoch. Data set itself is not changed.
+     *
+     * @param shuffle shuffle setting
+     */
+    public void setShuffle(boolean shuffle) {
+        this.shuffle = shuffle;
+    }
+
+    /**
+     * Sets random generator used to shuffle training set rows, which makes shuffling repeatable
+     *
+     * @param random random generator
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
     /**
      * Sets allowed network error, which indicates when to stopLearning training
      *
@@ -21,7 +21,7 @@ import java.io.Serializable;
  *
  * @author Nevena Milenkovic
  */
-public final class MeanAbsoluteError implements ErrorFunction,Serializable{
+public final class MeanAbsoluteError implements SummableErrorFunction, Serializable{
 
     private transient double totalError;
 
@@ -45,6 +45,22 @@ public final class MeanAbsoluteError implements ErrorFunction,Serializable{
         return patternError;
     }
 
+    @Override
+    public double calculatePatternError(double[] predictedOutput, double[] targetOutput, double[] patternError) {
+        double errorSum = 0;
+        for (int i = 0; i < predictedOutput.length; i++) {
+            patternError[i] = predictedOutput[i] - targetOutput[i];
+            errorSum += Math.abs(patternError[i]);
+        }
+        return errorSum;
+    }
+
+    @Override
+    public void addErrorSum(double errorSum, int patternCount) {
+        this.totalError += errorSum;
+        this.patternCount += patternCount;
+    }
+
     @Override
     public void reset() {
         totalError = 0d;
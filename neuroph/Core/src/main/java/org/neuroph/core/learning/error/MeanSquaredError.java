@@ -23,7 +23,7 @@ import java.io.Serializable;
  *
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
-public final class MeanSquaredError implements ErrorFunction, Serializable {
+public final class MeanSquaredError implements SummableErrorFunction, Serializable {
 
     private static final long serialVersionUID = 1L;
     
@@ -53,6 +53,22 @@ public final class MeanSquaredError implements ErrorFunction, Serializable {
         
     }
     
+    @Override
+    public double calculatePatternError(double[] predictedOutput, double[] targetOutput, double[] patternError) {
+        double errorSum = 0;
+        for (int i = 0; i < predictedOutput.length; i++) {
+            patternError[i] = predictedOutput[i] - targetOutput[i];
+            errorSum += patternError[i] * patternError[i];
+        }
+        return errorSum;
+    }
+
+    @Override
+    public void addErrorSum(double errorSum, int patternCount) {
+        this.totalError += errorSum;
+        this.patternCount += patternCount;
+    }
+
     @Override
     public void reset() {
         totalError = 0d;
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core.learning.error;
+
+/**
+ * Error function whose total error is a sum over patterns, so pattern errors can be calculated
+ * by many threads, each keeping its own error sum, and added to the total error at once.
+ * Used by data parallel training.
+ */
+public interface SummableErrorFunction extends ErrorFunction {
+
+    /**
+     * Calculates pattern error vector into the specified buffer, without changing total error
+     *
+     * @param predictedOutput actual network output
+     * @param targetOutput    target/desired output
+     * @param patternError    buffer for pattern error vector
+     * @return contribution of this pattern to the error sum
+     */
+    public double calculatePatternError(double[] predictedOutput, double[] targetOutput, double[] patternError);
+
+    /**
+     * Adds error sum of many patterns, calculated by calculatePatternError, to total error
+     *
+     * @param errorSum     sum of pattern error contributions
+     * @param patternCount number of patterns
+     */
+    public void addErrorSum(double errorSum, int patternCount);
+
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.core.transfer;
+
+import java.io.Serializable;
+import org.neuroph.core.kernel.Kernels;
+
+/**
+ * <pre>
+ * Stateless, array oriented counterpart of a TransferFunction.
+ * It captures the type and parameters of a transfer function once, and then evaluates it
+ * over whole vectors of net inputs without touching the original function object.
+ *
+ * Built in transfer functions are evaluated directly, so an instance can be shared between threads.
+ * Any other transfer function is delegated to, which is only safe if that function keeps no state.
+ * </pre>
+ *
+ * @see TransferFunction
+ */
+public final class Activation implements Serializable {
+
+    /**
+     * The class fingerprint that is set to indicate serialization
+     * compatibility with a previous version of the class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Kernels used to evaluate sigmoid, tanh and relu on vectors
+     */
+    private static final Kernels KERNELS = Kernels.getInstance();
+
+    /**
+     * Kinds of transfer functions that are evaluated natively
+     */
+    public enum Kind {
+        LINEAR, SIGMOID, TANH, RELU, STEP, SGN, RAMP, TRAPEZOID, GAUSSIAN, SIN, LOG, CUSTOM
+    }
+
+    private final Kind kind;
+
+    /**
+     * Function parameters, meaning depends on kind (slope, amplitude, thresholds...)
+     */
+    private final double p0, p1, p2, p3, p4;
+
+    /**
+     * Wrapped function used for kind CUSTOM
+     */
+    private final TransferFunction function;
+
+    private Activation(Kind kind, TransferFunction function, double p0, double p1, double p2, double p3, double p4) {
+        this.kind = kind;
+        this.function = function;
+        this.p0 = p0;
+        this.p1 = p1;
+        this.p2 = p2;
+        this.p3 = p3;
+        this.p4 = p4;
+    }
+
+    /**
+     * Creates activation for the specified transfer function.
+     * Parameters of the function are copied, so later changes of the function are not visible here.
+     *
+     * @param transferFunction transfer function to capture
+     * @return activation which gives the same outputs as the specified transfer function
+     */
+    public static Activation of(TransferFunction transferFunction) {
+        if (transferFunction == null) {
+            throw new IllegalArgumentException("Transfer function cannot be null!");
+        }
+
+        Class<?> type = transferFunction.getClass();
+
+        if (type == Sigmoid.class) {
+            return new Activation(Kind.SIGMOID, null, ((Sigmoid) transferFunction).getSlope(), 0, 0, 0, 0);
+        } else if (type == Tanh.class) {
+            Tanh tanh = (Tanh) transferFunction;
+            return new Activation(Kind.TANH, null, tanh.getSlope(), tanh.getAmplitude(), 0, 0, 0);
+        } else if (type == Linear.class) {
+            return new Activation(Kind.LINEAR, null, ((Linear) transferFunction).getSlope(), 0, 0, 0, 0);
+        } else if (type == RectifiedLinear.class) {
+            return new Activation(Kind.RELU, null, 0, 0, 0, 0, 0);
+        } else if (type == Step.class) {
+            Step step = (Step) transferFunction;
+            return new Activation(Kind.STEP, null, step.getYHigh(), step.getYLow(), 0, 0, 0);
+        } else if (type == Sgn.class) {
+            return new Activation(Kind.SGN, null, 0, 0, 0, 0, 0);
+        } else if (type == Ramp.class) {
+            Ramp ramp = (Ramp) transferFunction;
+            return new Activation(Kind.RAMP, null, ramp.getSlope(), ramp.getXLow(), ramp.getXHigh(), ramp.getYLow(), ramp.getYHigh());
+        } else if (type == Trapezoid.class) {
+            Trapezoid trapezoid = (Trapezoid) transferFunction;
+            return new Activation(Kind.TRAPEZOID, null, trapezoid.leftLow, trapezoid.leftHigh, trapezoid.rightLow, trapezoid.rightHigh, 0);
+        } else if (type == Gaussian.class) {
+            return new Activation(Kind.GAUSSIAN, null, ((Gaussian) transferFunction).getSigma(), 0, 0, 0, 0);
+        } else if (type == Sin.class) {
+            return new Activation(Kind.SIN, null, 0, 0, 0, 0, 0);
+        } else if (type == Log.class) {
+            return new Activation(Kind.LOG, null, 0, 0, 0, 0, 0);
+        }
+
+        return new Activation(Kind.CUSTOM, transferFunction, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Returns kind of this activation
+     *
+     * @return kind of this activation
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns true if this activation can be safely evaluated from several threads at the same time
+     *
+     * @return true if this activation is thread safe
+     */
+    public boolean isThreadSafe() {
+        return kind != Kind.CUSTOM;
+    }
+
+    /**
+     * Returns output of this activation for the given net input
+     *
+     * @param net net input
+     * @return activation output
+     */
+    public double getOutput(double net) {
+        switch (kind) {
+            case LINEAR:
+                return p0 * net;
+            case SIGMOID:
+                return sigmoid(net);
+            case TANH:
+                return tanh(net);
+            case RELU:
+                return Math.max(0, net);
+            case STEP:
+                return net > 0d ? p0 : p1;
+            case SGN:
+                return net > 0d ? 1d : -1d;
+            case RAMP:
+                return ramp(net);
+            case TRAPEZOID:
+                return trapezoid(net);
+            case GAUSSIAN:
+                return Math.exp(-Math.pow(net, 2) / (2 * Math.pow(p0, 2)));
+            case SIN:
+                return Math.sin(net);
+            case LOG:
+                return Math.log(net);
+            default:
+                return function.getOutput(net);
+        }
+    }
+
+    /**
+     * Returns derivative of this activation for the given net input and output.
+     * Output must be the value returned by getOutput for the same net input; functions which
+     * cache their output (Sigmoid, Gaussian) use it instead of the cached value.
+     *
+     * @param net net input
+     * @param out activation output for the net input
+     * @return derivative at the given net input
+     */
+    public double getDerivative(double net, double out) {
+        switch (kind) {
+            case LINEAR:
+                return p0;
+            case SIGMOID:
+                return p0 * out * (1d - out);
+            case TANH:
+                if (Math.abs(net) * p0 > 100) {
+                    return 0.0d;
+                }
+                double e = Math.exp(2 * p0 * net);
+                double t = (e - 1d) / (e + 1d);
+                return p1 * p0 * (1.0d - t * t);
+            case RELU:
+                return net > Double.MIN_VALUE ? 1 : 0;
+            case GAUSSIAN:
+                return out * (-net / (p0 * p0));
+            case SIN:
+                return Math.cos(net);
+            case LOG:
+                return 1 / net;
+            case STEP:
+            case SGN:
+            case RAMP:
+            case TRAPEZOID:
+                return 1d; // TransferFunction default
+            default:
+                return function.getDerivative(net);
+        }
+    }
+
+    /**
+     * Calculates outputs for the range [from, to) of the given net input vector.
+     * Input and output may be the same array.
+     *
+     * @param net  net input vector
+     * @param out  output vector
+     * @param from index of the first element to calculate
+     * @param to   index after the last element to calculate
+     */
+    public void apply(double[] net, double[] out, int from, int to) {
+        switch (kind) {
+            case LINEAR:
+                for (int i = from; i < to; i++) {
+                    out[i] = p0 * net[i];
+                }
+                break;
+            case SIGMOID:
+                copy(net, out, from, to);
+                KERNELS.sigmoid(p0, out, from, to);
+                break;
+            case TANH:
+                copy(net, out, from, to);
+                KERNELS.tanh(p0, p1, out, from, to);
+                break;
+            case RELU:
+                copy(net, out, from, to);
+                KERNELS.relu(out, from, to);
+                break;
+            default:
+                for (int i = from; i < to; i++) {
+                    out[i] = getOutput(net[i]);
+                }
+        }
+    }
+
+    /**
+     * Calculates outputs for the range [from, to) of the given single precision net input vector.
+     * Functions are evaluated in double precision and rounded to float.
+     * Input and output may be the same array.
+     *
+     * @param net  net input vector
+     * @param out  output vector
+     * @param from index of the first element to calculate
+     * @param to   index after the last element to calculate
+     */
+    public void apply(float[] net, float[] out, int from, int to) {
+        switch (kind) {
+            case LINEAR:
+                for (int i = from; i < to; i++) {
+                    out[i] = (float) (p0 * net[i]);
+                }
+                break;
+            case SIGMOID:
+                copy(net, out, from, to);
+                KERNELS.sigmoid(p0, out, from, to);
+                break;
+            case TANH:
+                copy(net, out, from, to);
+                KERNELS.tanh(p0, p1, out, from, to);
+                break;
+            case RELU:
+                copy(net, out, from, to);
+                KERNELS.relu(out, from, to);
+                break;
+            default:
+                for (int i = from; i < to; i++) {
+                    out[i] = (float) getOutput(net[i]);
+                }
+        }
+    }
+
+    // vector kernels work in place
+    private static void copy(double[] net, double[] out, int from, int to) {
+        if (net != out) {
+            System.arraycopy(net, from, out, from, to - from);
+        }
+    }
+
+    private static void copy(float[] net, float[] out, int from, int to) {
+        if (net != out) {
+            System.arraycopy(net, from, out, from, to - from);
+        }
+    }
+
+    // same formulas and overflow guards as in Sigmoid.getOutput, so results are identical
+    private double sigmoid(double net) {
+        if (net > 100) {
+            return 1.0;
+        } else if (net < -100) {
+            return 0.0;
+        }
+        return 1d / (1 + Math.exp(-p0 * net));
+    }
+
+    // same formulas and overflow guards as in Tanh.getOutput
+    private double tanh(double net) {
+        if (Math.abs(net) * p0 > 100) {
+            return Math.signum(net) * 1.0d;
+        }
+        double e = Math.exp(2.0d * p0 * net);
+        return p1 * ((e - 1.0d) / (e + 1.0d));
+    }
+
+    private double ramp(double net) {
+        if (net < p1) {
+            return p3;
+        } else if (net > p2) {
+            return p4;
+        }
+        return p0 * net;
+    }
+
+    private double trapezoid(double net) {
+        // p0 = leftLow, p1 = leftHigh, p2 = rightLow, p3 = rightHigh
+        if ((net >= p1) && (net <= p3)) {
+            return 1d;
+        } else if ((net > p0) && (net < p1)) {
+            return (net - p0) / (p1 - p0);
+        } else if ((net > p3) && (net < p2)) {
+            return (p2 - net) / (p2 - p3);
+        }
+        return 0d;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = kind.hashCode();
+        hash = 31 * hash + Double.hashCode(p0);
+        hash = 31 * hash + Double.hashCode(p1);
+        hash = 31 * hash + Double.hashCode(p2);
+        hash = 31 * hash + Double.hashCode(p3);
+        hash = 31 * hash + Double.hashCode(p4);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Activation)) {
+            return false;
+        }
+        final Activation other = (Activation) obj;
+        return kind == other.kind && function == other.function
+                && Double.compare(p0, other.p0) == 0 && Double.compare(p1, other.p1) == 0
+                && Double.compare(p2, other.p2) == 0 && Double.compare(p3, other.p3) == 0
+                && Double.compare(p4, other.p4) == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Activation{" + "kind=" + kind + '}';
+    }
+}
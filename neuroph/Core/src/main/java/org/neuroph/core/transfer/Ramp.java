@@ -102,6 +102,14 @@ public class Ramp extends TransferFunction implements Serializable {
 			return (double) (slope * net);
 	}
 
+	/**
+	 * Returns the slope parametar of this function
+	 * @return  slope parametar of this function 
+	 */
+	public double getSlope() {
+		return this.slope;
+	}
+
 	/**
 	 * Returns threshold value for the low output level 
 	 * @return threshold value for the low output level 
@@ -2,7 +2,6 @@ package org.neuroph.eval;
 
 import org.neuroph.core.NeuralNetwork;
 import org.neuroph.core.data.DataSet;
-import org.neuroph.core.data.DataSetRow;
 import org.neuroph.core.learning.error.MeanSquaredError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,21 +32,19 @@ public final class Evaluation {
      * @param testSet       test data set used for evaluation
      * @return
      */
-    public EvaluationResult evaluate(NeuralNetwork neuralNetwork, DataSet testSet) {
+    public EvaluationResult evaluate(NeuralNetwork<?> neuralNetwork, DataSet testSet) {
         // first reset all evaluators
         for (Evaluator evaluator : evaluators.values()) { // for now we have only classification metrics and mse
                 evaluator.reset();
         }
 
-        for (DataSetRow dataRow : testSet.getRows()) {      // iterate all dataset rows
-             neuralNetwork.setInput(dataRow.getInput());    // apply input to neural network
-             neuralNetwork.calculate();                     // and calculate neural network
-
+        // calculate outputs in blocks, in one pass over data set rows
+        neuralNetwork.predictBatch(testSet, (output, desiredOutput) -> {
             // feed actual neural network output and desired output to all evaluators
             for (Evaluator evaluator : evaluators.values()) { // for now we have only kfold and mse
-                evaluator.processNetworkResult(neuralNetwork.getOutput(), dataRow.getDesiredOutput());
+                evaluator.processNetworkResult(output, desiredOutput);
             }
-        }
+        });
 
         // we should iterate all evaluators and get results here- its hardcoded for now
         ConfusionMatrix confusionMatrix;
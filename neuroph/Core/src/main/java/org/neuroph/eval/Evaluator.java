@@ -8,7 +8,8 @@ package org.neuroph.eval;
 public interface Evaluator<T> {
     
     /**
-     * This method should handle processing of a single network output within an evaluation procedure
+     * This method should handle processing of a single network output within an evaluation procedure.
+     * Arrays are reused by Evaluation for the next rows, so they should not be kept.
      * 
      * @param networkOutput actual network output
      * @param desiredOutput desired/target network output
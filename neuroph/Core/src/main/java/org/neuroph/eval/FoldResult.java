@@ -14,6 +14,7 @@ import org.neuroph.core.data.DataSet;
  */
 public class FoldResult {
 
+    private final int foldIndex;
     private final NeuralNetwork neuralNet;
     private final DataSet trainingSet;
     private final DataSet validationSet;
@@ -21,11 +22,25 @@ public class FoldResult {
     // what if this is not classification but regression ? missing evaluation metrics
 
     public FoldResult(NeuralNetwork neuralNet, DataSet trainingSet, DataSet validationSet) {
+        this(0, neuralNet, trainingSet, validationSet);
+    }
+
+    public FoldResult(int foldIndex, NeuralNetwork neuralNet, DataSet trainingSet, DataSet validationSet) {
+        this.foldIndex = foldIndex;
         this.neuralNet = neuralNet;
         this.trainingSet = trainingSet;
         this.validationSet = validationSet;
     }
 
+    /**
+     * Returns index of this fold, starting from 0
+     *
+     * @return fold index
+     */
+    public int getFoldIndex() {
+        return foldIndex;
+    }
+
     /**
      * Returns neural network trained in this cross-validation fold.
      *
@@ -1,25 +1,46 @@
 package org.neuroph.eval;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.apache.commons.lang3.SerializationUtils;
 import org.neuroph.eval.classification.ClassificationMetrics;
 import org.neuroph.eval.classification.ConfusionMatrix;
+import org.neuroph.core.Layer;
 import org.neuroph.core.NeuralNetwork;
 import org.neuroph.core.data.DataSet;
+import org.neuroph.core.learning.ParallelLearning;
 import org.neuroph.core.learning.error.MeanSquaredError;
+import org.neuroph.util.DaemonThreadFactory;
 
 /**
  * This class implements multi-threaded cross validation procedure.
  * Splits data set into k subsets (folds), trains the network with data from k-1 and tests with one subset
  * Repeats the procedure k times each time using different subset for testing.
  *
+ * Each fold trains its own network, created by the network factory (for example
+ * () -> new MultiLayerPerceptron(4, 9, 3)), so folds have independent weights. When a network is given instead
+ * of a factory, it is serialized once and each fold gets its own copy of it; the given network is not changed.
+ *
+ * Folds run on the executor set with setExecutor (any Executor, including ForkJoinPool), or on a pool created
+ * for the run. At most getFoldParallelism() folds run at the same time, which by default depends on the number
+ * of cores and on free memory. Available cores are divided between running folds: learning rules which use
+ * their own threads (see ParallelLearning) get at most cores / running folds threads each.
+ * Fold results are passed to the fold listener as soon as each fold completes.
+ *
  * TODO:
  * check classifier evaluation, strange results. What about true negative for multi class?
  * Return mean and std for metrics
@@ -33,12 +54,34 @@ import org.neuroph.core.learning.error.MeanSquaredError;
  * @author Nevena Milenkovic
  */
 public class KFoldCrossValidation {
+
+    /**
+     * Rough estimate of memory used by one network weight during training: connection, weight and training data
+     */
+    private static final long BYTES_PER_WEIGHT = 160;
+
+    /**
+     * Rough estimate of memory used by one neuron, with its connection lists and buffers
+     */
+    private static final long BYTES_PER_NEURON = 256;
+
     //todo: random seed for spliting! can be fixed before
     private final NeuralNetwork neuralNetwork;
+    private final Supplier<? extends NeuralNetwork> networkFactory;
     private final DataSet dataSet;
     private final int numFolds;
 
-    private CountDownLatch allFoldsCompleted;
+    /**
+     * Executor which runs folds, null to create thread pool for each run
+     */
+    private Executor executor;
+
+    /**
+     * Maximum number of folds running at the same time, 0 for automatic
+     */
+    private int parallelism;
+
+    private Consumer<FoldResult> foldListener;
 
     //private Evaluation evaluation; general evaluation which should be set externally
 //    private EvaluationResult totalResult;
@@ -47,56 +90,155 @@ public class KFoldCrossValidation {
     private List<ClassificationMetrics.Stats> statlist;
     private List<FoldResult> crossFoldResults;
 
+    /**
+     * Creates cross validation which trains a copy of the specified network in each fold
+     *
+     * @param neuralNetwork network to copy, with learning rule
+     * @param dataSet       data set
+     * @param numFolds      number of folds
+     */
     public KFoldCrossValidation(NeuralNetwork neuralNetwork, DataSet dataSet, int numFolds) {
+        this(neuralNetwork, null, dataSet, numFolds);
+    }
+
+    /**
+     * Creates cross validation which trains a new network, created by the specified factory, in each fold.
+     * Factory is called from fold threads, and must return a new network with learning rule on each call.
+     *
+     * @param networkFactory creates fold networks
+     * @param dataSet        data set
+     * @param numFolds       number of folds
+     */
+    public KFoldCrossValidation(Supplier<? extends NeuralNetwork> networkFactory, DataSet dataSet, int numFolds) {
+        this(null, networkFactory, dataSet, numFolds);
+        if (networkFactory == null) {
+            throw new IllegalArgumentException("Network factory cannot be null!");
+        }
+    }
+
+    private KFoldCrossValidation(NeuralNetwork neuralNetwork, Supplier<? extends NeuralNetwork> networkFactory, DataSet dataSet, int numFolds) {
+        if (numFolds < 2 || numFolds > dataSet.size()) {
+            throw new IllegalArgumentException("Number of folds must be between 2 and data set size: " + numFolds);
+        }
         this.neuralNetwork = neuralNetwork;
+        this.networkFactory = networkFactory;
         this.dataSet = dataSet;
         this.numFolds = numFolds;
     }
 
+    /**
+     * Sets executor which runs folds, for example a shared ForkJoinPool. Executor is not shut down by this class.
+     * If not set, a thread pool is created and shut down in each run.
+     *
+     * @param executor executor for folds, or null
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets maximum number of folds which run at the same time, 0 to choose it from cores and free memory
+     *
+     * @param parallelism number of folds, or 0
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Parallelism cannot be negative: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets listener which gets the result of each fold as soon as the fold completes, in completion order.
+     * Listener is called from the thread which called run().
+     *
+     * @param foldListener fold result listener, or null
+     */
+    public void setFoldListener(Consumer<FoldResult> foldListener) {
+        this.foldListener = foldListener;
+    }
+
     public EvaluationResult run() throws InterruptedException, ExecutionException {
         confusionMatrices = new ArrayList<>();
         statlist = new ArrayList<>();
         crossFoldResults = new ArrayList<>();
 
-        // split data set into specified number of folds
-        DataSet[] foldDataSets = dataSet.split(numFolds);
-
-        // sve sto mogu prebaci u thread da bi bilo brze!
-        ArrayList<CrossValidationWorker> workersTasks = new ArrayList<>();
-        allFoldsCompleted = new CountDownLatch(numFolds);
-
-        // create training and validation set  and also worker tasks
-        for(int i=0; i<numFolds; i++) {
-            DataSet validationSet = foldDataSets[i];
-            DataSet trainingSet = createTrainingSetFromFolds(foldDataSets, i);
-            CrossValidationWorker cvWorker = new CrossValidationWorker(trainingSet, validationSet);
-            workersTasks.add(cvWorker);
+        // shuffle data set and split it into specified number of folds, fold i contains rows [foldStarts[i], foldStarts[i+1])
+        dataSet.shuffle();
+        int[] foldStarts = new int[numFolds + 1];
+        for (int i = 0; i <= numFolds; i++) {
+            foldStarts[i] = (int) ((long) dataSet.size() * i / numFolds);
         }
 
-        // start all crossvaldiation threads
-        ExecutorService executor = Executors.newFixedThreadPool(4);
-        List<Future<FoldResult>> evaluationResults = executor.invokeAll(workersTasks); //
+        Supplier<? extends NeuralNetwork> factory = networkFactory;
+        if (factory == null) {
+            // copy network once into bytes instead of cloning the whole object graph for each fold
+            final byte[] template = SerializationUtils.serialize(neuralNetwork);
+            factory = () -> SerializationUtils.<NeuralNetwork>deserialize(template);
+        }
 
-        List<FoldResult> results = new ArrayList<>();
+        int foldThreads = getFoldParallelism();
+        int learningThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / foldThreads);
 
-        for (Future<FoldResult> foldResult : evaluationResults) {
-            results.add(foldResult.get());
+        // create training and validation set  and also worker tasks
+        List<CrossValidationWorker> workersTasks = new ArrayList<>(numFolds);
+        for (int i = 0; i < numFolds; i++) {
+            DataSet validationSet = dataSet.subset(foldRows(foldStarts, i, i + 1));
+            DataSet trainingSet = createTrainingSetFromFolds(foldStarts, i);
+            workersTasks.add(new CrossValidationWorker(i, factory, learningThreads, trainingSet, validationSet));
         }
 
-        // ovde stavi barijeru budi siguran da su svi threadovi zavrsili!!! -
-        //debuguj ovde!
-        allFoldsCompleted.await();
+        // run at most foldThreads folds at the same time, and start the next one when any fold completes
+        ExecutorService ownExecutor = null;
+        Executor foldExecutor = executor;
+        if (foldExecutor == null) {
+            ownExecutor = Executors.newFixedThreadPool(foldThreads, new DaemonThreadFactory("neuroph-cross-validation"));
+            foldExecutor = ownExecutor;
+        }
+        CompletionService<FoldResult> completionService = new ExecutorCompletionService<>(foldExecutor);
+        List<Future<FoldResult>> futures = new ArrayList<>(numFolds);
+        List<FoldResult> results = new ArrayList<>(numFolds);
+        try {
+            int submitted = 0;
+            while (submitted < Math.min(foldThreads, numFolds)) {
+                futures.add(completionService.submit(workersTasks.get(submitted++)));
+            }
+            while (results.size() < numFolds) {
+                FoldResult foldResult = completionService.take().get();
+                if (submitted < numFolds) {
+                    futures.add(completionService.submit(workersTasks.get(submitted++)));
+                }
+                results.add(foldResult);
+                if (foldListener != null) {
+                    foldListener.accept(foldResult);
+                }
+            }
+        } finally {
+            if (results.size() < numFolds) {
+                for (Future<FoldResult> future : futures) {
+                    future.cancel(true);
+                }
+            }
+            if (ownExecutor != null) {
+                ownExecutor.shutdownNow();
+            }
+        }
+        results.sort(Comparator.comparingInt(FoldResult::getFoldIndex));
 
-        executor.shutdown();
 //ovi nisu bas tacni
-        int foldNumber = 1; // used just for printing
         for (FoldResult crossfolds : results) {
-            //printFoldResults(crossfolds.getConfusionMatrix(), foldNumber); // print stats for individual fold - mislim da ovi jos nisu istrenirani!!!!
             confusionMatrices.add(crossfolds.getConfusionMatrix());
             crossFoldResults.add(crossfolds);
             ClassificationMetrics.Stats average = ClassificationMetrics.average(ClassificationMetrics.createFromMatrix(crossfolds.getConfusionMatrix()));
             statlist.add(average);
-            foldNumber++;
         }
 // a ovi nsu losi
         ConfusionMatrix sumMatrix = sumConfusionMatrix(confusionMatrices, dataSet);
@@ -117,6 +259,42 @@ public class KFoldCrossValidation {
         return sumEval;
     }
 
+    /**
+     * Returns number of folds which run at the same time: the configured parallelism, or the number of cores
+     * limited by free memory and by the size of the configured executor
+     *
+     * @return number of concurrent folds
+     */
+    public int getFoldParallelism() {
+        if (parallelism > 0) {
+            return Math.min(parallelism, numFolds);
+        }
+        int threads = Math.min(numFolds, Runtime.getRuntime().availableProcessors());
+
+        Runtime runtime = Runtime.getRuntime();
+        long freeMemory = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        long foldMemory = estimateFoldMemory(neuralNetwork != null ? neuralNetwork : networkFactory.get());
+        threads = (int) Math.max(1, Math.min(threads, freeMemory / foldMemory));
+
+        if (executor instanceof ForkJoinPool) {
+            threads = Math.min(threads, ((ForkJoinPool) executor).getParallelism());
+        } else if (executor instanceof ThreadPoolExecutor) {
+            threads = Math.min(threads, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+        }
+        return threads;
+    }
+
+    /**
+     * Returns rough estimate of memory needed to train one fold network, in bytes
+     */
+    private static long estimateFoldMemory(NeuralNetwork<?> network) {
+        long neurons = 0;
+        for (Layer layer : network.getLayers()) {
+            neurons += layer.getNeuronsCount();
+        }
+        return Math.max(1, network.getWeightsCount() * BYTES_PER_WEIGHT + neurons * BYTES_PER_NEURON);
+    }
+
     public ConfusionMatrix sumConfusionMatrix(List<ConfusionMatrix> cmList, DataSet dataSet) {
         ConfusionMatrix cm = new ConfusionMatrix(cmList.get(0).getClassLabels());
         int[][] ar = new int[dataSet.getOutputSize()][dataSet.getOutputSize()];
@@ -192,54 +370,74 @@ public class KFoldCrossValidation {
     }
 
     /**
-     * Creates and returns training set by merging all folds from the given list of folds
-     * except fold at specified index excludeIdx, which will be used as validation data set.
+     * Creates and returns training set with rows of all folds except fold at specified index excludeIdx,
+     * which will be used as validation data set. Rows are not copied, see DataSet.subset.
      *
-     * @param folds
+     * @param foldStarts index of first row of each fold, with data set size at the end
      * @param excludeIdx
      * @return
      */
-    private DataSet createTrainingSetFromFolds(DataSet[] folds, int excludeIdx) {
-        DataSet trainingSet = new DataSet(dataSet.getInputSize(), dataSet.getOutputSize());
+    private DataSet createTrainingSetFromFolds(int[] foldStarts, int excludeIdx) {
+        int[] before = foldRows(foldStarts, 0, excludeIdx);
+        int[] after = foldRows(foldStarts, excludeIdx + 1, foldStarts.length - 1);
+        int[] rows = Arrays.copyOf(before, before.length + after.length);
+        System.arraycopy(after, 0, rows, before.length, after.length);
+        return dataSet.subset(rows);
+    }
 
-        for(int i=0; i< folds.length; i++) {
-            if (i==excludeIdx) continue;
-            trainingSet.addAll(folds[i]);
+    /**
+     * Returns indexes of all rows in folds [fromFold, toFold)
+     */
+    private static int[] foldRows(int[] foldStarts, int fromFold, int toFold) {
+        int[] rows = new int[foldStarts[toFold] - foldStarts[fromFold]];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = foldStarts[fromFold] + i;
         }
-
-        return trainingSet;
+        return rows;
     }
 
     private class CrossValidationWorker implements Callable<FoldResult> {
+        private final int foldIndex;
+        private final Supplier<? extends NeuralNetwork> factory;
+        private final int learningThreads;
         private final DataSet trainingSet;
         private final DataSet validationSet;
 
-        public CrossValidationWorker(DataSet trainingSet, DataSet validationSet) {
+        public CrossValidationWorker(int foldIndex, Supplier<? extends NeuralNetwork> factory, int learningThreads,
+                DataSet trainingSet, DataSet validationSet) {
+            this.foldIndex = foldIndex;
+            this.factory = factory;
+            this.learningThreads = learningThreads;
             this.trainingSet = trainingSet;
             this.validationSet = validationSet;
         }
 
         @Override
         public FoldResult call() throws Exception {
-            // make a cloned copy of neural network
-            NeuralNetwork neuralNet = SerializationUtils.clone(neuralNetwork);
+            NeuralNetwork neuralNet = factory.get();
+            if (neuralNet.getLearningRule() instanceof ParallelLearning) {
+                // share cores with other running folds
+                ParallelLearning learningRule = (ParallelLearning) neuralNet.getLearningRule();
+                if (learningRule.getParallelism() > learningThreads) {
+                    learningRule.setParallelism(learningThreads);
+                }
+            }
+
             Evaluation evaluation = new Evaluation();
             evaluation.addEvaluator(new ErrorEvaluator(new MeanSquaredError()));
-            if (neuralNetwork.getOutputsCount() == 1) {
+            if (dataSet.getOutputSize() == 1) {
                 evaluation.addEvaluator(new ClassifierEvaluator.Binary(0.5)); // classification threshold 0.5
             } else {
                 evaluation.addEvaluator(new ClassifierEvaluator.MultiClass(dataSet.getColumnNames()));
             }
 
-            neuralNetwork.learn(trainingSet);
+            neuralNet.learn(trainingSet);
 
             EvaluationResult evaluationResult = evaluation.evaluate(neuralNet, validationSet);
-            FoldResult foldResult = new FoldResult(neuralNet, trainingSet, validationSet);
+            FoldResult foldResult = new FoldResult(foldIndex, neuralNet, trainingSet, validationSet);
             foldResult.setConfusionMatrix(evaluationResult.getConfusionMatrix());
             // todo: get mean and std of evaluation resulst and diferentialte regression anc classification
 
-            allFoldsCompleted.countDown();
-
             return foldResult;
         }
     }
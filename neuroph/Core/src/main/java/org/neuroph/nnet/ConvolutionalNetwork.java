@@ -18,6 +18,7 @@ package org.neuroph.nnet;
 
 import org.neuroph.core.Layer;
 import org.neuroph.core.input.WeightedSum;
+import org.neuroph.nnet.comp.ConvolutionalEngine;
 import org.neuroph.nnet.comp.ConvolutionalUtils;
 import org.neuroph.nnet.comp.layer.*;
 import org.neuroph.nnet.learning.ConvolutionalBackpropagation;
@@ -70,6 +71,35 @@ public class ConvolutionalNetwork extends NeuralNetwork<ConvolutionalBackpropaga
         }
     }
 
+    /**
+     * Creates tensor based engine for this network with its current weights, used for fast inference and training.
+     *
+     * @return convolutional engine
+     * @throws NeurophException if network structure is not supported by the engine
+     * @see ConvolutionalEngine
+     */
+    public ConvolutionalEngine createEngine() {
+        return new ConvolutionalEngine(this);
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows with convolutional engine, in parallel.
+     * Engine is created with current weights on each call, for repeated scoring use createEngine() once.
+     *
+     * @param inputs input rows
+     * @return output rows
+     */
+    @Override
+    public double[][] predictBatch(double[][] inputs) {
+        ConvolutionalEngine engine;
+        try {
+            engine = createEngine();
+        } catch (NeurophException ex) {
+            return super.predictBatch(inputs);
+        }
+        return engine.predictBatch(inputs);
+    }
+
     public static class Builder {
 
         public static final NeuronProperties DEFAULT_FULL_CONNECTED_NEURON_PROPERTIES = new NeuronProperties();
@@ -51,6 +51,14 @@ public class MultiLayerPerceptron extends NeuralNetwork<BackPropagation> {
      */
     private static final long serialVersionUID = 2L;
 
+    /**
+     * Creates empty network, used when network is read from file
+     *
+     * @see org.neuroph.core.BinaryNetworkFormat
+     */
+    private MultiLayerPerceptron() {
+    }
+
     /**
      * Creates new MultiLayerPerceptron with specified number of neurons in layers
      *
@@ -0,0 +1,888 @@
+/**
+ * Copyright 2013 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.nnet.comp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.neuroph.core.Connection;
+import org.neuroph.core.Layer;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.Weight;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.core.input.Max;
+import org.neuroph.core.input.WeightedSum;
+import org.neuroph.core.kernel.Kernels;
+import org.neuroph.core.transfer.Activation;
+import org.neuroph.nnet.ConvolutionalNetwork;
+import org.neuroph.nnet.comp.layer.ConvolutionalLayer;
+import org.neuroph.nnet.comp.layer.FeatureMapLayer;
+import org.neuroph.nnet.comp.layer.FeatureMapsLayer;
+import org.neuroph.nnet.comp.neuron.BiasNeuron;
+
+/**
+ * <pre>
+ * Tensor based execution engine for convolutional networks.
+ * Each layer is compiled into a stage which works on flat arrays, and feature maps are stored map by map,
+ * row by row ([map][y][x]), in the same order as network input (see ConvolutionalNetwork.setInput).
+ *
+ *  - convolutional layer stores each shared kernel once, as [output map][input map * kernel area] matrix.
+ *    Input windows are unrolled into rows of a patch matrix (im2col), so convolution of all positions
+ *    and maps is one cache blocked matrix product (see Kernels.gemm)
+ *  - pooling layer (neurons with Max input function) keeps index of the maximum input of each window,
+ *    which is used to route error back to that input only
+ *  - other layers are fully connected layers with WeightedSum input function
+ *
+ * Engine reads weights from network connections when it is created and on refreshWeights(), and can add
+ * gradients back to network weights (see addWeightChanges), which is used by ConvolutionalBackpropagation.
+ * All intermediate results are kept in a Context, so one engine can be used by several threads,
+ * each with its own context.
+ * </pre>
+ *
+ * @see ConvolutionalNetwork#createEngine()
+ */
+public final class ConvolutionalEngine {
+
+    /**
+     * Kernels for matrix products, scalar or vectorized (see Kernels.getInstance)
+     */
+    private static final Kernels KERNELS = Kernels.getInstance();
+
+    /**
+     * Minimal number of rows calculated by one thread in predictBatch
+     */
+    private static final int MIN_ROWS_PER_THREAD = 4;
+
+    private final int inputSize;
+    private final Stage[] stages;
+
+    /**
+     * Position of each network output neuron among last stage units, null if they are the same.
+     */
+    private final int[] outputIndexes;
+
+    private final boolean threadSafe;
+
+    /**
+     * Creates engine for the specified convolutional network, with its current weights.
+     *
+     * @param network convolutional network
+     * @throws NeurophException if network structure is not supported
+     */
+    public ConvolutionalEngine(ConvolutionalNetwork network) {
+        if (network == null) {
+            throw new IllegalArgumentException("Neural network cannot be null!");
+        }
+        if (network.getLayersCount() < 2 || !(network.getLayerAt(0) instanceof FeatureMapsLayer)) {
+            throw new NeurophException("Convolutional engine requires feature maps input layer and at least one more layer!");
+        }
+
+        Layer prevLayer = network.getLayerAt(0);
+        Map<Neuron, Integer> prevUnits = units(prevLayer);
+        inputSize = prevUnits.size();
+        stages = new Stage[network.getLayersCount() - 1];
+        boolean safe = true;
+
+        for (int l = 1; l < network.getLayersCount(); l++) {
+            Layer layer = network.getLayerAt(l);
+            Map<Neuron, Integer> layerUnits = units(layer);
+            Neuron[] neurons = new Neuron[layerUnits.size()];
+            for (Map.Entry<Neuron, Integer> unit : layerUnits.entrySet()) {
+                neurons[unit.getValue()] = unit.getKey();
+            }
+
+            Stage stage;
+            if (layer instanceof ConvolutionalLayer && prevLayer instanceof FeatureMapsLayer) {
+                stage = new ConvolutionStage((FeatureMapsLayer) prevLayer, (ConvolutionalLayer) layer, neurons, prevUnits);
+            } else if (neurons.length > 0 && neurons[0].getInputFunction() instanceof Max) {
+                stage = new PoolingStage(layer, neurons, prevUnits);
+            } else {
+                stage = new DenseStage(layer, neurons, prevUnits);
+            }
+            safe &= stage.initActivations(neurons);
+            stages[l - 1] = stage;
+
+            prevLayer = layer;
+            prevUnits = layerUnits;
+        }
+        threadSafe = safe;
+
+        List<Neuron> outputNeurons = network.getOutputNeurons();
+        int[] indexes = new int[outputNeurons.size()];
+        boolean identity = indexes.length == prevUnits.size();
+        for (int k = 0; k < indexes.length; k++) {
+            Integer index = prevUnits.get(outputNeurons.get(k));
+            if (index == null) {
+                throw new NeurophException("Convolutional engine requires output neurons in the last layer!");
+            }
+            indexes[k] = index;
+            identity &= index == k;
+        }
+        outputIndexes = identity ? null : indexes;
+    }
+
+    /**
+     * Returns units (non bias neurons) of the specified layer with their indexes.
+     * Feature maps are ordered map by map, row by row.
+     */
+    private static Map<Neuron, Integer> units(Layer layer) {
+        Map<Neuron, Integer> units = new IdentityHashMap<>();
+        if (layer instanceof FeatureMapsLayer) {
+            FeatureMapsLayer mapsLayer = (FeatureMapsLayer) layer;
+            for (int m = 0; m < mapsLayer.getNumberOfMaps(); m++) {
+                FeatureMapLayer map = mapsLayer.getFeatureMap(m);
+                for (int y = 0; y < map.getHeight(); y++) {
+                    for (int x = 0; x < map.getWidth(); x++) {
+                        units.put(map.getNeuronAt(x, y), units.size());
+                    }
+                }
+            }
+        } else {
+            for (Neuron neuron : layer.getNeurons()) {
+                if (!(neuron instanceof BiasNeuron)) {
+                    units.put(neuron, units.size());
+                }
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Returns number of network inputs
+     *
+     * @return number of inputs
+     */
+    public int getInputsCount() {
+        return inputSize;
+    }
+
+    /**
+     * Returns number of network outputs
+     *
+     * @return number of outputs
+     */
+    public int getOutputsCount() {
+        return outputIndexes != null ? outputIndexes.length : stages[stages.length - 1].size;
+    }
+
+    /**
+     * Returns true if all activations are thread safe, so that engine can be used by several threads at once
+     *
+     * @return true if engine is thread safe
+     */
+    public boolean isThreadSafe() {
+        return threadSafe;
+    }
+
+    /**
+     * Creates context with buffers for one thread
+     *
+     * @return new context
+     */
+    public Context createContext() {
+        return new Context();
+    }
+
+    /**
+     * Calculates network output for the specified input.
+     * Returned array belongs to context and it is overwritten by the next call.
+     *
+     * @param input   network input
+     * @param context context of calling thread
+     * @return network output
+     */
+    public double[] predict(double[] input, Context context) {
+        if (input.length != inputSize) {
+            throw new VectorSizeMismatchException("Input vector size does not match network input dimension!");
+        }
+        context.input = input;
+        double[] x = input;
+        for (int s = 0; s < stages.length; s++) {
+            Stage stage = stages[s];
+            stage.forward(x, context.net[s], context, s);
+            stage.activate(context.net[s], context.out[s]);
+            x = context.out[s];
+        }
+
+        if (outputIndexes == null) {
+            System.arraycopy(x, 0, context.output, 0, x.length);
+        } else {
+            for (int k = 0; k < outputIndexes.length; k++) {
+                context.output[k] = x[outputIndexes[k]];
+            }
+        }
+        return context.output;
+    }
+
+    /**
+     * Calculates network outputs for all specified input rows. Rows are split between threads
+     * of the common fork join pool, each with its own context, if engine is thread safe.
+     *
+     * @param inputs input rows
+     * @return output rows
+     */
+    public double[][] predictBatch(double[][] inputs) {
+        double[][] outputs = new double[inputs.length][];
+        int threads = !threadSafe ? 1
+                : Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), inputs.length / MIN_ROWS_PER_THREAD));
+        IntStream.range(0, threads).parallel().forEach(t -> {
+            Context context = createContext();
+            int from = (int) ((long) inputs.length * t / threads);
+            int to = (int) ((long) inputs.length * (t + 1) / threads);
+            for (int r = from; r < to; r++) {
+                outputs[r] = predict(inputs[r], context).clone();
+            }
+        });
+        return outputs;
+    }
+
+    /**
+     * Adds gradients for the last prediction done with the specified context to context gradient buffers.
+     * Output error is the derivative of the error function by network outputs, as calculated by ErrorFunction.
+     * Gradient of each weight is the sum of delta * input over all its connections, like
+     * in BackPropagation, and error of pooling layer is passed only to the maximum input of each window.
+     *
+     * @param outputError output error for the last prediction
+     * @param context     context used for the last prediction
+     */
+    public void addGradients(double[] outputError, Context context) {
+        if (context.input == null) {
+            throw new IllegalStateException("Gradients can only be calculated after prediction!");
+        }
+        context.initTraining();
+        int last = stages.length - 1;
+        double[] delta = context.delta[last];
+        if (outputIndexes == null) {
+            System.arraycopy(outputError, 0, delta, 0, delta.length);
+        } else {
+            Arrays.fill(delta, 0);
+            for (int k = 0; k < outputIndexes.length; k++) {
+                delta[outputIndexes[k]] = outputError[k];
+            }
+        }
+        stages[last].derive(context.net[last], context.out[last], delta);
+
+        for (int s = last; s >= 0; s--) {
+            double[] x = s > 0 ? context.out[s - 1] : context.input;
+            double[] prevDelta = s > 0 ? context.delta[s - 1] : null;
+            if (prevDelta != null) {
+                Arrays.fill(prevDelta, 0);
+            }
+            stages[s].backward(x, context.delta[s], prevDelta, context, s);
+            if (prevDelta != null) {
+                stages[s - 1].derive(context.net[s - 1], context.out[s - 1], prevDelta);
+            }
+        }
+    }
+
+    /**
+     * Adds gradients of the source context to gradients of the target context, and clears source gradients
+     *
+     * @param target context which receives the sum
+     * @param source context whose gradients are added
+     */
+    public void mergeGradients(Context target, Context source) {
+        if (source.gradients == null) {
+            return;
+        }
+        target.initTraining();
+        for (int s = 0; s < stages.length; s++) {
+            double[] sum = target.gradients[s];
+            double[] g = source.gradients[s];
+            for (int k = 0; k < g.length; k++) {
+                sum[k] += g[k];
+                g[k] = 0;
+            }
+        }
+    }
+
+    /**
+     * Adds factor * gradient to the weightChange of each network weight, and clears context gradients.
+     * Shared kernel weight gets the sum of gradients of all its connections. Weights of pooling layers are not changed.
+     *
+     * @param context context with summed gradients
+     * @param factor  gradient factor, -learningRate for gradient descent
+     */
+    public void addWeightChanges(Context context, double factor) {
+        if (context.gradients == null) {
+            return;
+        }
+        for (int s = 0; s < stages.length; s++) {
+            stages[s].addWeightChanges(context.gradients[s], factor);
+        }
+    }
+
+    /**
+     * Copies current values of network weights into the engine, after network has been trained
+     */
+    public void refreshWeights() {
+        for (Stage stage : stages) {
+            stage.refresh();
+        }
+    }
+
+    /**
+     * Intermediate results and gradients of one thread
+     */
+    public final class Context {
+
+        private final double[][] net = new double[stages.length][];
+        private final double[][] out = new double[stages.length][];
+
+        /**
+         * Unrolled input windows of convolution stages, [stage][position * window size]
+         */
+        private final double[][] patches = new double[stages.length][];
+
+        /**
+         * Convolution results, [stage][position * maps]
+         */
+        private final double[][] products = new double[stages.length][];
+
+        /**
+         * Index of maximum connection of each pooling unit
+         */
+        private final int[][] maxIndexes = new int[stages.length][];
+
+        private final double[] output = new double[getOutputsCount()];
+
+        /**
+         * Input of the last prediction
+         */
+        private double[] input;
+
+        private double[][] delta;
+        private double[][] patchDeltas;
+        private double[][] gradients;
+
+        private Context() {
+            for (int s = 0; s < stages.length; s++) {
+                net[s] = new double[stages[s].size];
+                out[s] = new double[stages[s].size];
+                stages[s].allocate(this, s);
+            }
+        }
+
+        private void initTraining() {
+            if (gradients != null) {
+                return;
+            }
+            delta = new double[stages.length][];
+            patchDeltas = new double[stages.length][];
+            gradients = new double[stages.length][];
+            for (int s = 0; s < stages.length; s++) {
+                delta[s] = new double[stages[s].size];
+                gradients[s] = new double[stages[s].getGradientsSize()];
+                if (patches[s] != null) {
+                    patchDeltas[s] = new double[patches[s].length];
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiled layer
+     */
+    private abstract static class Stage {
+
+        /**
+         * Number of units
+         */
+        final int size;
+
+        /**
+         * Single activation if all units use the same one, activation of each unit otherwise
+         */
+        Activation[] activations;
+
+        Stage(int size) {
+            this.size = size;
+        }
+
+        boolean initActivations(Neuron[] neurons) {
+            Activation[] unitActivations = new Activation[size];
+            boolean same = true;
+            boolean safe = true;
+            for (int u = 0; u < size; u++) {
+                unitActivations[u] = Activation.of(neurons[u].getTransferFunction());
+                same &= unitActivations[u].equals(unitActivations[0]);
+                safe &= unitActivations[u].isThreadSafe();
+            }
+            activations = same && size > 0 ? new Activation[]{unitActivations[0]} : unitActivations;
+            return safe;
+        }
+
+        void activate(double[] net, double[] out) {
+            if (activations.length == 1) {
+                activations[0].apply(net, out, 0, size);
+            } else {
+                for (int u = 0; u < size; u++) {
+                    out[u] = activations[u].getOutput(net[u]);
+                }
+            }
+        }
+
+        /**
+         * Multiplies error of each unit with the derivative of its activation
+         */
+        void derive(double[] net, double[] out, double[] delta) {
+            for (int u = 0; u < size; u++) {
+                Activation activation = activations.length == 1 ? activations[0] : activations[u];
+                delta[u] *= activation.getDerivative(net[u], out[u]);
+            }
+        }
+
+        void allocate(Context context, int stage) {
+        }
+
+        abstract void forward(double[] x, double[] net, Context context, int stage);
+
+        /**
+         * Adds gradients for unit deltas to context gradients of this stage, and adds error of previous
+         * layer units to prevDelta, if it is not null
+         */
+        abstract void backward(double[] x, double[] delta, double[] prevDelta, Context context, int stage);
+
+        abstract int getGradientsSize();
+
+        abstract void addWeightChanges(double[] gradients, double factor);
+
+        abstract void refresh();
+
+        static void checkInputFunction(Layer layer, Neuron neuron, Class<?> inputFunction) {
+            if (!inputFunction.isInstance(neuron.getInputFunction())) {
+                throw new NeurophException("Convolutional engine requires " + inputFunction.getSimpleName()
+                        + " input function in layer " + layer.getLabel());
+            }
+        }
+
+        static NeurophException unsupportedConnection(Layer layer) {
+            return new NeurophException("Convolutional engine does not support connections of layer " + layer.getLabel());
+        }
+
+        static double sum(Weight[] weights) {
+            double sum = 0;
+            for (Weight weight : weights) {
+                sum += weight.value;
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Convolutional layer, with valid convolution and step 1.
+     * Units are [map][position], and each unit has its own bias (the sum of its bias connections).
+     */
+    private static final class ConvolutionStage extends Stage {
+
+        final int inputMaps, inputHeight, inputWidth;
+        final int maps, height, width;
+        final int kernelHeight, kernelWidth;
+
+        /**
+         * Number of positions in output map
+         */
+        final int positions;
+
+        /**
+         * Number of weights in one kernel row of the patch matrix, input maps * kernel area
+         */
+        final int window;
+
+        /**
+         * Kernels, [map][input map][kernel y][kernel x]
+         */
+        final double[] kernels;
+        final Weight[] kernelWeights;
+
+        final double[] biases;
+        final Weight[][] biasWeights;
+
+        /**
+         * Zero bias used for convolution product, biases are added per unit
+         */
+        final double[] zeros;
+
+        ConvolutionStage(FeatureMapsLayer prevLayer, ConvolutionalLayer layer, Neuron[] neurons, Map<Neuron, Integer> prevUnits) {
+            super(neurons.length);
+            inputMaps = prevLayer.getNumberOfMaps();
+            inputHeight = prevLayer.getMapDimensions().getHeight();
+            inputWidth = prevLayer.getMapDimensions().getWidth();
+            maps = layer.getNumberOfMaps();
+            height = layer.getMapDimensions().getHeight();
+            width = layer.getMapDimensions().getWidth();
+            kernelHeight = inputHeight - height + 1;
+            kernelWidth = inputWidth - width + 1;
+            positions = height * width;
+            window = inputMaps * kernelHeight * kernelWidth;
+
+            kernels = new double[maps * window];
+            kernelWeights = new Weight[maps * window];
+            biases = new double[size];
+            biasWeights = new Weight[size][];
+            zeros = new double[maps];
+
+            // each unit must be connected to its window in all input maps, with kernel weights shared by all positions
+            int inputArea = inputHeight * inputWidth;
+            int[] connected = new int[window];
+            List<Weight> bias = new ArrayList<>();
+            for (int u = 0; u < size; u++) {
+                Neuron neuron = neurons[u];
+                checkInputFunction(layer, neuron, WeightedSum.class);
+                int map = u / positions;
+                int y = (u % positions) / width;
+                int x = u % width;
+                int count = 0;
+                bias.clear();
+                for (Connection connection : neuron.getInputConnections()) {
+                    Integer p = prevUnits.get(connection.getFromNeuron());
+                    if (p == null) {
+                        if (!(connection.getFromNeuron() instanceof BiasNeuron)) {
+                            throw unsupportedConnection(layer);
+                        }
+                        bias.add(connection.getWeight());
+                        continue;
+                    }
+                    int ky = (p % inputArea) / inputWidth - y;
+                    int kx = p % inputWidth - x;
+                    if (ky < 0 || ky >= kernelHeight || kx < 0 || kx >= kernelWidth) {
+                        throw unsupportedConnection(layer);
+                    }
+                    int k = (p / inputArea) * kernelHeight * kernelWidth + ky * kernelWidth + kx;
+                    int index = map * window + k;
+                    if (connected[k] == u + 1
+                            || (kernelWeights[index] != null && kernelWeights[index] != connection.getWeight())) {
+                        throw new NeurophException("Convolutional engine requires shared kernel weights in layer " + layer.getLabel());
+                    }
+                    connected[k] = u + 1;
+                    kernelWeights[index] = connection.getWeight();
+                    count++;
+                }
+                if (count != window) {
+                    throw unsupportedConnection(layer);
+                }
+                biasWeights[u] = bias.toArray(new Weight[bias.size()]);
+            }
+            refresh();
+        }
+
+        @Override
+        void allocate(Context context, int stage) {
+            context.patches[stage] = new double[positions * window];
+            context.products[stage] = new double[positions * maps];
+        }
+
+        @Override
+        void forward(double[] x, double[] net, Context context, int stage) {
+            double[] patches = context.patches[stage];
+            unroll(x, patches);
+
+            // product is [position][map], transposed to map major order while biases are added
+            double[] product = context.products[stage];
+            KERNELS.gemm(patches, positions, window, kernels, zeros, maps, product);
+            for (int m = 0, u = 0; m < maps; m++) {
+                for (int p = 0; p < positions; p++, u++) {
+                    net[u] = product[p * maps + m] + biases[u];
+                }
+            }
+        }
+
+        /**
+         * Copies input window of each position into one row of patch matrix (im2col)
+         */
+        private void unroll(double[] x, double[] patches) {
+            int inputArea = inputHeight * inputWidth;
+            for (int y = 0, row = 0; y < height; y++) {
+                for (int x0 = 0; x0 < width; x0++, row += window) {
+                    for (int i = 0, offset = row; i < inputMaps; i++) {
+                        for (int ky = 0; ky < kernelHeight; ky++, offset += kernelWidth) {
+                            System.arraycopy(x, i * inputArea + (y + ky) * inputWidth + x0, patches, offset, kernelWidth);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        void backward(double[] x, double[] delta, double[] prevDelta, Context context, int stage) {
+            double[] patches = context.patches[stage];
+            double[] g = context.gradients[stage];
+            int biasOffset = kernels.length;
+            for (int m = 0, u = 0; m < maps; m++) {
+                for (int p = 0; p < positions; p++, u++) {
+                    double d = delta[u];
+                    if (d != 0) {
+                        KERNELS.axpy(d, patches, p * window, g, m * window, window);
+                        g[biasOffset + u] += d;
+                    }
+                }
+            }
+            if (prevDelta == null) {
+                return;
+            }
+
+            // error of each patch element, then folded back to input positions (col2im)
+            double[] patchDeltas = context.patchDeltas[stage];
+            Arrays.fill(patchDeltas, 0);
+            for (int p = 0; p < positions; p++) {
+                for (int m = 0; m < maps; m++) {
+                    double d = delta[m * positions + p];
+                    if (d != 0) {
+                        KERNELS.axpy(d, kernels, m * window, patchDeltas, p * window, window);
+                    }
+                }
+            }
+            int inputArea = inputHeight * inputWidth;
+            for (int y = 0, row = 0; y < height; y++) {
+                for (int x0 = 0; x0 < width; x0++, row += window) {
+                    for (int i = 0, offset = row; i < inputMaps; i++) {
+                        for (int ky = 0; ky < kernelHeight; ky++, offset += kernelWidth) {
+                            KERNELS.axpy(1, patchDeltas, offset, prevDelta, i * inputArea + (y + ky) * inputWidth + x0, kernelWidth);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        int getGradientsSize() {
+            return kernels.length + size;
+        }
+
+        @Override
+        void addWeightChanges(double[] gradients, double factor) {
+            for (int k = 0; k < kernelWeights.length; k++) {
+                kernelWeights[k].weightChange += factor * gradients[k];
+                gradients[k] = 0;
+            }
+            for (int u = 0, k = kernels.length; u < size; u++, k++) {
+                for (Weight weight : biasWeights[u]) {
+                    weight.weightChange += factor * gradients[k]; // bias neuron output is 1
+                }
+                gradients[k] = 0;
+            }
+        }
+
+        @Override
+        void refresh() {
+            for (int k = 0; k < kernels.length; k++) {
+                kernels[k] = kernelWeights[k].value;
+            }
+            for (int u = 0; u < size; u++) {
+                biases[u] = sum(biasWeights[u]);
+            }
+        }
+    }
+
+    /**
+     * Layer with Max input function, connections of each unit are stored in compressed rows.
+     * Pooling weights are not trained.
+     */
+    private static final class PoolingStage extends Stage {
+
+        /**
+         * Index of the first connection of each unit, and total number of connections at the end
+         */
+        final int[] offsets;
+        final int[] inputs;
+        final double[] weights;
+        final Weight[] weightObjects;
+
+        PoolingStage(Layer layer, Neuron[] neurons, Map<Neuron, Integer> prevUnits) {
+            super(neurons.length);
+            offsets = new int[size + 1];
+            for (int u = 0; u < size; u++) {
+                checkInputFunction(layer, neurons[u], Max.class);
+                offsets[u + 1] = offsets[u] + neurons[u].getInputConnections().size();
+            }
+            inputs = new int[offsets[size]];
+            weights = new double[offsets[size]];
+            weightObjects = new Weight[offsets[size]];
+            for (int u = 0, c = 0; u < size; u++) {
+                for (Connection connection : neurons[u].getInputConnections()) {
+                    Integer p = prevUnits.get(connection.getFromNeuron());
+                    if (p == null) {
+                        throw unsupportedConnection(layer);
+                    }
+                    inputs[c] = p;
+                    weightObjects[c++] = connection.getWeight();
+                }
+            }
+            refresh();
+        }
+
+        @Override
+        void allocate(Context context, int stage) {
+            context.maxIndexes[stage] = new int[size];
+        }
+
+        @Override
+        void forward(double[] x, double[] net, Context context, int stage) {
+            int[] maxIndexes = context.maxIndexes[stage];
+            for (int u = 0; u < size; u++) {
+                int start = offsets[u];
+                int end = offsets[u + 1];
+                if (start == end) {
+                    net[u] = 0;
+                    maxIndexes[u] = -1;
+                    continue;
+                }
+                int best = start;
+                double max = weights[start] * x[inputs[start]];
+                for (int c = start + 1; c < end; c++) {
+                    double value = weights[c] * x[inputs[c]];
+                    if (value > max) {
+                        max = value;
+                        best = c;
+                    }
+                }
+                net[u] = max;
+                maxIndexes[u] = best;
+            }
+        }
+
+        @Override
+        void backward(double[] x, double[] delta, double[] prevDelta, Context context, int stage) {
+            if (prevDelta == null) {
+                return;
+            }
+            int[] maxIndexes = context.maxIndexes[stage];
+            for (int u = 0; u < size; u++) {
+                int c = maxIndexes[u];
+                if (c >= 0) {
+                    prevDelta[inputs[c]] += weights[c] * delta[u];
+                }
+            }
+        }
+
+        @Override
+        int getGradientsSize() {
+            return 0;
+        }
+
+        @Override
+        void addWeightChanges(double[] gradients, double factor) {
+        }
+
+        @Override
+        void refresh() {
+            for (int c = 0; c < weights.length; c++) {
+                weights[c] = weightObjects[c].value;
+            }
+        }
+    }
+
+    /**
+     * Fully connected layer, weights are a row major [unit][previous layer unit] matrix
+     */
+    private static final class DenseStage extends Stage {
+
+        final int inputsCount;
+        final double[] weights;
+
+        /**
+         * Weight for each matrix element, null if there is no connection
+         */
+        final Weight[] weightObjects;
+        final double[] biases;
+        final Weight[][] biasWeights;
+
+        DenseStage(Layer layer, Neuron[] neurons, Map<Neuron, Integer> prevUnits) {
+            super(neurons.length);
+            inputsCount = prevUnits.size();
+            weights = new double[size * inputsCount];
+            weightObjects = new Weight[size * inputsCount];
+            biases = new double[size];
+            biasWeights = new Weight[size][];
+
+            List<Weight> bias = new ArrayList<>();
+            for (int u = 0; u < size; u++) {
+                checkInputFunction(layer, neurons[u], WeightedSum.class);
+                bias.clear();
+                for (Connection connection : neurons[u].getInputConnections()) {
+                    Integer p = prevUnits.get(connection.getFromNeuron());
+                    if (p != null && weightObjects[u * inputsCount + p] == null) {
+                        weightObjects[u * inputsCount + p] = connection.getWeight();
+                    } else if (p == null && connection.getFromNeuron() instanceof BiasNeuron) {
+                        bias.add(connection.getWeight());
+                    } else {
+                        throw unsupportedConnection(layer);
+                    }
+                }
+                biasWeights[u] = bias.toArray(new Weight[bias.size()]);
+            }
+            refresh();
+        }
+
+        @Override
+        void forward(double[] x, double[] net, Context context, int stage) {
+            KERNELS.gemv(weights, inputsCount, size, x, biases, net);
+        }
+
+        @Override
+        void backward(double[] x, double[] delta, double[] prevDelta, Context context, int stage) {
+            double[] g = context.gradients[stage];
+            int biasOffset = weights.length;
+            for (int u = 0; u < size; u++) {
+                double d = delta[u];
+                if (d == 0) {
+                    continue;
+                }
+                KERNELS.axpy(d, x, 0, g, u * inputsCount, inputsCount);
+                g[biasOffset + u] += d;
+                if (prevDelta != null) {
+                    KERNELS.axpy(d, weights, u * inputsCount, prevDelta, 0, inputsCount);
+                }
+            }
+        }
+
+        @Override
+        int getGradientsSize() {
+            return weights.length + size;
+        }
+
+        @Override
+        void addWeightChanges(double[] gradients, double factor) {
+            for (int k = 0; k < weightObjects.length; k++) {
+                if (weightObjects[k] != null) {
+                    weightObjects[k].weightChange += factor * gradients[k];
+                }
+                gradients[k] = 0;
+            }
+            for (int u = 0, k = weights.length; u < size; u++, k++) {
+                for (Weight weight : biasWeights[u]) {
+                    weight.weightChange += factor * gradients[k]; // bias neuron output is 1
+                }
+                gradients[k] = 0;
+            }
+        }
+
+        @Override
+        void refresh() {
+            for (int k = 0; k < weights.length; k++) {
+                weights[k] = weightObjects[k] != null ? weightObjects[k].value : 0;
+            }
+            for (int u = 0; u < size; u++) {
+                biases[u] = sum(biasWeights[u]);
+            }
+        }
+    }
+}
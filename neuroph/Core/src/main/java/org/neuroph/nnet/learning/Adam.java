@@ -0,0 +1,107 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.nnet.learning;
+
+import org.neuroph.core.WeightMatrix;
+import org.neuroph.core.kernel.Kernels;
+
+/**
+ * Backpropagation with Adam optimizer, which uses bias corrected moving averages of gradients
+ * and squared gradients (first and second moment estimates) for each weight.
+ *
+ * @see OptimizerBackpropagation
+ */
+public class Adam extends OptimizerBackpropagation {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int FIRST_MOMENT = stateSlot(0);
+    private static final int SECOND_MOMENT = stateSlot(1);
+
+    /**
+     * Decay rate of the first moment estimate
+     */
+    private double beta1 = 0.9;
+
+    /**
+     * Decay rate of the second moment estimate
+     */
+    private double beta2 = 0.999;
+
+    /**
+     * Small value which prevents division by zero
+     */
+    private double epsilon = 1e-8;
+
+    /**
+     * Creates new Adam learning rule with learning rate 0.001
+     */
+    public Adam() {
+        super();
+        setLearningRate(0.001);
+    }
+
+    @Override
+    protected int getOptimizerStateSize() {
+        return 2;
+    }
+
+    @Override
+    protected void calculateSteps(WeightMatrix matrix, double[] gradients, double scale, double[] values, double[] steps) {
+        final double[] m = matrix.getState(FIRST_MOMENT);
+        final double[] v = matrix.getState(SECOND_MOMENT);
+        final double b1 = beta1, b2 = beta2;
+        final double rate = learningRate;
+        final double decay = learningRate * getWeightDecay();
+        // bias corrections
+        final double c1 = 1 / (1 - Math.pow(b1, getUpdatesCount()));
+        final double c2 = 1 / (1 - Math.pow(b2, getUpdatesCount()));
+        Kernels.getInstance().adam(gradients, scale, m, v, b1, b2, c1, c2, rate, epsilon, decay, values, steps, steps.length);
+    }
+
+    /**
+     * Returns decoupled weight decay factor, zero for Adam
+     *
+     * @return weight decay factor
+     */
+    protected double getWeightDecay() {
+        return 0;
+    }
+
+    public double getBeta1() {
+        return beta1;
+    }
+
+    public void setBeta1(double beta1) {
+        this.beta1 = beta1;
+    }
+
+    public double getBeta2() {
+        return beta2;
+    }
+
+    public void setBeta2(double beta2) {
+        this.beta2 = beta2;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.nnet.learning;
+
+/**
+ * Adam optimizer with decoupled weight decay: in each update weights are also decreased
+ * by learningRate * weightDecay * weight, independently of gradient moment estimates.
+ *
+ * @see Adam
+ */
+public class AdamW extends Adam {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Weight decay factor
+     */
+    private double weightDecay = 0.01;
+
+    @Override
+    protected double getWeightDecay() {
+        return weightDecay;
+    }
+
+    public void setWeightDecay(double weightDecay) {
+        this.weightDecay = weightDecay;
+    }
+}
@@ -16,18 +16,30 @@
 
 package org.neuroph.nnet.learning;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import org.neuroph.core.Connection;
 import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
+import org.neuroph.core.WeightMatrix;
+import org.neuroph.core.data.BufferedDataSet;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.learning.ParallelLearning;
 import org.neuroph.core.transfer.TransferFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Back Propagation learning rule for Multi Layer Perceptron neural networks.
  *
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
-public class BackPropagation extends LMS {
+public class BackPropagation extends LMS implements ParallelLearning {
 
     /**
      * The class fingerprint that is set to indicate serialization
@@ -35,6 +47,33 @@ public class BackPropagation extends LMS {
      */
     private static final long serialVersionUID = 1L;
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackPropagation.class);
+
+    /**
+     * Largest number of rows read from data set iterator before they are passed to data parallel trainer
+     */
+    private static final int STREAM_BLOCK_SIZE = 1024;
+
+    /**
+     * Number of threads used for data parallel training, 1 means that training is not parallel
+     */
+    private int parallelism = 1;
+
+    /**
+     * Flag which indicates if data parallel training calculates with float copies of weights
+     */
+    private boolean singlePrecision = false;
+
+    /**
+     * Calculates gradients in parallel during learning, if parallelism is greater than 1
+     */
+    private transient BatchTrainer parallelTrainer;
+
+    /**
+     * Weight matrices with per weight learning state for layers, created on demand during learning
+     */
+    private transient Map<Layer, WeightMatrix> weightMatrices;
+
     /**
      * Creates new instance of BackPropagation learning
      */
@@ -42,6 +81,206 @@ public class BackPropagation extends LMS {
         super();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        weightMatrices = new IdentityHashMap<>();
+        shutdownParallelTrainer();
+        parallelTrainer = createBatchTrainer();
+    }
+
+    /**
+     * Creates trainer which calculates gradients of whole batches outside of network neurons,
+     * or returns null if training is done pattern by pattern
+     *
+     * @return batch trainer, or null
+     */
+    BatchTrainer createBatchTrainer() {
+        if ((parallelism > 1 || singlePrecision) && isDataParallelSupported()) {
+            try {
+                return new DataParallelTrainer(this, parallelism, singlePrecision);
+            } catch (NeurophException ex) {
+                LOGGER.debug("Data parallel training is not supported for this network, training in single thread: " + ex.getMessage());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected void onStop() {
+        shutdownParallelTrainer();
+        super.onStop();
+    }
+
+    private void shutdownParallelTrainer() {
+        if (parallelTrainer != null) {
+            parallelTrainer.shutdown();
+            parallelTrainer = null;
+        }
+    }
+
+    /**
+     * Runs one learning epoch. If data parallel training is on, each batch (see setBatchSize) is split between
+     * worker threads which calculate gradients for their part of the batch, and the weights are updated once
+     * with the summed gradients. Rows of BufferedDataSet are read with its iterator, in blocks of rows.
+     *
+     * @param trainingSet training set for training network
+     */
+    @Override
+    public void doLearningEpoch(DataSet trainingSet) {
+        if (parallelTrainer == null) {
+            super.doLearningEpoch(trainingSet);
+            return;
+        }
+        if (trainingSet instanceof BufferedDataSet && !isShuffle()) {
+            doStreamedLearningEpoch(trainingSet);
+            return;
+        }
+
+        List<DataSetRow> rows = trainingSet.getRows();
+        int size = rows.size();
+        int[] order = isShuffle() ? shuffleRowOrder(size) : null;
+        int batch = getBatchSize() > 0 ? getBatchSize() : size;
+        for (int from = 0; from < size && !isStopped(); from += batch) {
+            int to = Math.min(size, from + batch);
+            parallelTrainer.calculateGradients(rows, order, from, to);
+            doBatchWeightsUpdate(to - from);
+        }
+    }
+
+    /**
+     * Runs one data parallel learning epoch for data set without random access to rows.
+     * Gradients are calculated for blocks of rows as they are read, and weights are updated after each batch.
+     */
+    private void doStreamedLearningEpoch(DataSet trainingSet) {
+        int batch = getBatchSize() > 0 ? getBatchSize() : Integer.MAX_VALUE;
+        List<DataSetRow> rows = new ArrayList<>(Math.min(batch, STREAM_BLOCK_SIZE));
+        int batchRows = 0;
+        Iterator<DataSetRow> iterator = trainingSet.iterator();
+        while (iterator.hasNext() && !isStopped()) {
+            rows.add(iterator.next());
+            batchRows++;
+            if (rows.size() == STREAM_BLOCK_SIZE || batchRows == batch) {
+                parallelTrainer.calculateGradients(rows, null, 0, rows.size());
+                rows.clear();
+            }
+            if (batchRows == batch) {
+                doBatchWeightsUpdate(batchRows);
+                batchRows = 0;
+            }
+        }
+        if (!rows.isEmpty()) {
+            parallelTrainer.calculateGradients(rows, null, 0, rows.size());
+        }
+        if (batchRows > 0) {
+            doBatchWeightsUpdate(batchRows);
+        }
+    }
+
+    /**
+     * Adds gradient summed over batch patterns to the weight, used by data parallel training.
+     * Gradient is the sum of neuron delta * input for all patterns, and it is accumulated the same way as
+     * calculateWeightChanges(Neuron) does in batch mode.
+     *
+     * @param matrix   weight matrix of the layer
+     * @param index    weight index in matrix
+     * @param gradient sum of delta * input over batch patterns
+     */
+    protected void addWeightGradient(WeightMatrix matrix, int index, double gradient) {
+        matrix.getWeight(index).weightChange += -learningRate * gradient;
+    }
+
+    /**
+     * Returns weight matrix with input weights of the specified layer, which is created on first use
+     * during learning, with getWeightStateSize() state arrays.
+     *
+     * @param layer network layer
+     * @return weight matrix for layer
+     */
+    protected final WeightMatrix getWeightMatrix(Layer layer) {
+        if (weightMatrices == null) {
+            weightMatrices = new IdentityHashMap<>();
+        }
+        WeightMatrix matrix = weightMatrices.get(layer);
+        if (matrix == null) {
+            matrix = new WeightMatrix(layer, getWeightStateSize());
+            weightMatrices.put(layer, matrix);
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns number of per weight state arrays which this learning rule keeps in weight matrices
+     *
+     * @return number of state arrays
+     */
+    protected int getWeightStateSize() {
+        return 0;
+    }
+
+    /**
+     * Returns true if this learning rule can calculate weight changes with data parallel training,
+     * which requires that weight changes depend only on gradients summed over batch (see addWeightGradient)
+     *
+     * @return true if data parallel training is supported
+     */
+    protected boolean isDataParallelSupported() {
+        return true;
+    }
+
+    /**
+     * Returns number of threads used for data parallel training
+     *
+     * @return number of training threads
+     */
+    @Override
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets number of threads used for data parallel training. If greater than 1, batch mode is turned on,
+     * and each batch is split between threads which calculate gradients into their own buffers.
+     * Network must be a layered feed forward network which can be compiled (see NeuralNetwork.compile),
+     * otherwise training is done in a single thread.
+     *
+     * @param parallelism number of threads, 1 for single threaded training
+     */
+    @Override
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        if (parallelism > 1) {
+            setBatchMode(true);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns true if training calculates in single precision
+     *
+     * @return true if single precision is on
+     */
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    /**
+     * Sets single precision training. If on, batch mode is turned on and gradients are calculated by data parallel
+     * trainer (with getParallelism() threads) on float copies of the weights, which halves the memory traffic of
+     * forward and backward pass. Sums, gradients and weight updates are still calculated in double precision.
+     * Network must be compilable, otherwise training is done in double precision.
+     *
+     * @param singlePrecision true to calculate in single precision
+     */
+    public void setSinglePrecision(boolean singlePrecision) {
+        if (singlePrecision) {
+            setBatchMode(true);
+        }
+        this.singlePrecision = singlePrecision;
+    }
+
 
     /**
      * This method implements weight update procedure for the whole network
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.nnet.learning;
+
+import java.util.List;
+import org.neuroph.core.data.DataSetRow;
+
+/**
+ * Calculates gradients for whole batches of training rows outside of network neurons, used by BackPropagation
+ * in batch mode. Weight changes are accumulated in network weights, and applied by the learning rule.
+ *
+ * @see BackPropagation#doLearningEpoch(org.neuroph.core.data.DataSet)
+ */
+interface BatchTrainer {
+
+    /**
+     * Calculates gradients for the specified range of rows and adds them to weight changes.
+     * Weights are not changed.
+     *
+     * @param rows  training set rows
+     * @param order order in which rows are used, or null for natural order
+     * @param from  index of the first row in batch
+     * @param to    index after the last row in batch
+     */
+    void calculateGradients(List<DataSetRow> rows, int[] order, int from, int to);
+
+    /**
+     * Stops worker threads
+     */
+    void shutdown();
+}
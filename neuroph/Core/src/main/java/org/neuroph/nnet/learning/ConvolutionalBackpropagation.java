@@ -7,11 +7,36 @@ import org.neuroph.nnet.comp.layer.FeatureMapLayer;
 import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
 import org.neuroph.core.transfer.TransferFunction;
+import org.neuroph.core.exceptions.NeurophException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Backpropagation for convolutional networks.
+ * In batch mode whole batches are calculated by ConvolutionalEngine (see ConvolutionalNetwork.createEngine),
+ * with getParallelism() threads. Engine computes exact gradients: error of pooling layer goes only to
+ * the maximum input of each window, and hidden fully connected layers are trained as well.
+ * In online mode, or if network is not supported by the engine, training is done neuron by neuron.
+ */
 public class ConvolutionalBackpropagation extends MomentumBackpropagation {
 
 	private static final long serialVersionUID = -7134947805154423695L;
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConvolutionalBackpropagation.class);
+
+	@Override
+	BatchTrainer createBatchTrainer() {
+		if (!isBatchMode()) {
+			return null;
+		}
+		try {
+			return new ConvolutionalTrainer(this, getParallelism());
+		} catch (NeurophException ex) {
+			LOGGER.debug("Network is not supported by convolutional engine, training neuron by neuron: " + ex.getMessage());
+			return null;
+		}
+	}
+
         @Override
 	protected void calculateErrorAndUpdateHiddenNeurons() {
 		List<Layer> layers = neuralNetwork.getLayers();
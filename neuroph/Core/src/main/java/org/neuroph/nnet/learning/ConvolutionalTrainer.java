@@ -0,0 +1,131 @@
+/**
+ * Copyright 2013 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.nnet.learning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.learning.error.ErrorFunction;
+import org.neuroph.nnet.ConvolutionalNetwork;
+import org.neuroph.nnet.comp.ConvolutionalEngine;
+import org.neuroph.util.DaemonThreadFactory;
+
+/**
+ * Batch gradient calculation for convolutional networks, with ConvolutionalEngine.
+ * Rows of each batch are split between worker threads, each with its own engine context
+ * and gradient buffers, and summed gradients are added to network weights once per batch.
+ *
+ * @see ConvolutionalBackpropagation
+ */
+final class ConvolutionalTrainer implements BatchTrainer {
+
+    private final ConvolutionalBackpropagation learningRule;
+    private final ConvolutionalEngine engine;
+    private final ConvolutionalEngine.Context[] contexts;
+
+    /**
+     * Executor for worker threads, null if there is only one worker
+     */
+    private final ExecutorService executor;
+
+    ConvolutionalTrainer(ConvolutionalBackpropagation learningRule, int threads) {
+        if (!(learningRule.getNeuralNetwork() instanceof ConvolutionalNetwork)) {
+            throw new NeurophException("Convolutional training requires ConvolutionalNetwork!");
+        }
+        this.learningRule = learningRule;
+        this.engine = ((ConvolutionalNetwork) learningRule.getNeuralNetwork()).createEngine(); // validates network structure
+        if (threads > 1 && !engine.isThreadSafe()) {
+            throw new NeurophException("Parallel training is not supported for transfer functions of this network");
+        }
+
+        contexts = new ConvolutionalEngine.Context[threads];
+        for (int t = 0; t < threads; t++) {
+            contexts[t] = engine.createContext();
+        }
+        executor = threads == 1 ? null : Executors.newFixedThreadPool(threads, new DaemonThreadFactory("neuroph-training"));
+    }
+
+    @Override
+    public void calculateGradients(List<DataSetRow> rows, int[] order, int from, int to) {
+        engine.refreshWeights();
+
+        int count = to - from;
+        int workers = Math.max(1, Math.min(contexts.length, count));
+        if (workers == 1) {
+            run(contexts[0], rows, order, from, to);
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>(workers);
+            for (int t = 0; t < workers; t++) {
+                final ConvolutionalEngine.Context context = contexts[t];
+                final int start = from + (int) ((long) count * t / workers);
+                final int end = from + (int) ((long) count * (t + 1) / workers);
+                tasks.add(() -> {
+                    run(context, rows, order, start, end);
+                    return null;
+                });
+            }
+            invokeAll(tasks);
+            for (int t = 1; t < workers; t++) {
+                engine.mergeGradients(contexts[0], contexts[t]);
+            }
+        }
+
+        engine.addWeightChanges(contexts[0], -learningRule.getLearningRate());
+    }
+
+    private void run(ConvolutionalEngine.Context context, List<DataSetRow> rows, int[] order, int from, int to) {
+        ErrorFunction errorFunction = learningRule.getErrorFunction();
+        double[] patternError = new double[engine.getOutputsCount()];
+        for (int r = from; r < to; r++) {
+            DataSetRow row = rows.get(order != null ? order[r] : r);
+            double[] predicted = engine.predict(row.getInput(), context);
+
+            // output error is calculated by shared error function, which also sums total network error
+            synchronized (errorFunction) {
+                double[] error = errorFunction.addPatternError(predicted, row.getDesiredOutput());
+                System.arraycopy(error, 0, patternError, 0, patternError.length);
+            }
+            engine.addGradients(patternError, context);
+        }
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NeurophException("Parallel training interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new NeurophException("Parallel training failed", ex.getCause());
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,586 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.nnet.learning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.neuroph.core.CompiledNetwork;
+import org.neuroph.core.Connection;
+import org.neuroph.core.FloatCompiledNetwork;
+import org.neuroph.core.Layer;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.WeightMatrix;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.learning.error.ErrorFunction;
+import org.neuroph.core.learning.error.SummableErrorFunction;
+import org.neuroph.core.transfer.Activation;
+import org.neuroph.nnet.comp.neuron.BiasNeuron;
+import org.neuroph.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ * Data parallel gradient calculation for BackPropagation based learning rules.
+ * Rows of each batch are split into shards, and each worker thread runs forward and backward pass
+ * for its shard on flat arrays (see CompiledNetwork), summing gradients into its own private buffer.
+ * Worker buffers are then reduced in parallel, each thread summing one stripe of all buffers,
+ * and the sums are passed to the learning rule once for each weight.
+ * With SummableErrorFunction each worker also keeps its own error sum, which is added to the error function
+ * once per batch. Other error functions are called by workers one pattern at a time, under a lock.
+ *
+ * Network neurons are not used during calculation, so network must be compilable and all
+ * transfer functions must be thread safe (see Activation).
+ *
+ * In single precision mode forward and backward pass read float copies of the weights (see FloatCompiledNetwork)
+ * and keep layer outputs in float, while sums, gradients and the weights themselves stay double.
+ * </pre>
+ *
+ * @see BackPropagation#setParallelism(int)
+ */
+final class DataParallelTrainer implements BatchTrainer {
+
+    private final BackPropagation learningRule;
+    private final CompiledNetwork compiled;
+
+    /**
+     * Float copy of compiled network weights used in single precision mode, null otherwise
+     */
+    private final FloatCompiledNetwork floatCompiled;
+    private final int layersCount;
+    private final int[] layerSizes;
+
+    /**
+     * Activation for each unit, [layer][unit]
+     */
+    private final Activation[][] activations;
+
+    /**
+     * Weight matrix of each layer, provided by learning rule
+     */
+    private final WeightMatrix[] matrices;
+
+    /**
+     * Weight matrix index for each compiled network weight, [layer][unit * inputs + input], -1 if there is no connection
+     */
+    private final int[][] weightIndexes;
+
+    /**
+     * Weight matrix indexes of bias weights for each unit, [layer][unit][]
+     */
+    private final int[][][] biasIndexes;
+
+    /**
+     * Last layer unit index for each network output
+     */
+    private final int[] outputIndexes;
+
+    private final Worker[] workers;
+    private final ExecutorService executor;
+
+    /**
+     * Number of workers used for the last batch
+     */
+    private int activeWorkers;
+
+    DataParallelTrainer(BackPropagation learningRule, int threads, boolean singlePrecision) {
+        NeuralNetwork<?> network = learningRule.getNeuralNetwork();
+        this.learningRule = learningRule;
+        this.compiled = network.compile(); // validates network structure
+        this.floatCompiled = singlePrecision ? compiled.toFloat() : null;
+        this.layersCount = compiled.getLayersCount();
+        this.layerSizes = new int[layersCount];
+        this.activations = new Activation[layersCount][];
+        this.matrices = new WeightMatrix[layersCount];
+        this.weightIndexes = new int[layersCount][];
+        this.biasIndexes = new int[layersCount][][];
+
+        // same unit order as in CompiledNetwork: input neurons, then non bias neurons of each layer
+        Map<Neuron, Integer> prevUnits = new IdentityHashMap<>();
+        for (Neuron neuron : network.getInputNeurons()) {
+            prevUnits.put(neuron, prevUnits.size());
+        }
+        layerSizes[0] = prevUnits.size();
+
+        for (int l = 1; l < layersCount; l++) {
+            Layer layer = network.getLayerAt(l);
+            int in = layerSizes[l - 1];
+            int out = compiled.getLayerSize(l);
+            layerSizes[l] = out;
+            activations[l] = new Activation[out];
+            matrices[l] = learningRule.getWeightMatrix(layer);
+            weightIndexes[l] = new int[out * in];
+            Arrays.fill(weightIndexes[l], -1);
+            biasIndexes[l] = new int[out][];
+
+            Map<Neuron, Integer> units = new IdentityHashMap<>();
+            for (Neuron neuron : layer.getNeurons()) {
+                if (neuron instanceof BiasNeuron) {
+                    continue;
+                }
+                int j = units.size();
+                units.put(neuron, j);
+
+                Activation activation = Activation.of(neuron.getTransferFunction());
+                if (!activation.isThreadSafe()) {
+                    throw new NeurophException("Data parallel training is not supported for transfer function "
+                            + neuron.getTransferFunction().getClass().getSimpleName());
+                }
+                activations[l][j] = activation;
+
+                int index = matrices[l].getRowOffset(neuron);
+                int[] bias = new int[neuron.getInputConnections().size()];
+                int biasCount = 0;
+                for (Connection connection : neuron.getInputConnections()) {
+                    Integer i = prevUnits.get(connection.getFromNeuron());
+                    if (i != null) {
+                        weightIndexes[l][j * in + i] = index;
+                    } else {
+                        bias[biasCount++] = index;
+                    }
+                    index++;
+                }
+                biasIndexes[l][j] = Arrays.copyOf(bias, biasCount);
+            }
+            prevUnits = units;
+        }
+
+        List<Neuron> outputNeurons = network.getOutputNeurons();
+        outputIndexes = new int[outputNeurons.size()];
+        for (int k = 0; k < outputIndexes.length; k++) {
+            outputIndexes[k] = prevUnits.get(outputNeurons.get(k));
+        }
+
+        workers = new Worker[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = singlePrecision ? new FloatWorker() : new DoubleWorker();
+        }
+        executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("neuroph-training"));
+    }
+
+    /**
+     * Calculates gradients for the specified range of rows and passes their sums to the learning rule
+     * (see BackPropagation.addWeightGradient). Weights are not changed.
+     */
+    @Override
+    public void calculateGradients(List<DataSetRow> rows, int[] order, int from, int to) {
+        refreshWeights();
+
+        int count = to - from;
+        activeWorkers = Math.max(1, Math.min(workers.length, count));
+        List<Callable<Void>> tasks = new ArrayList<>(activeWorkers);
+        for (int t = 0; t < activeWorkers; t++) {
+            final Worker worker = workers[t];
+            final int start = from + (int) ((long) count * t / activeWorkers);
+            final int end = from + (int) ((long) count * (t + 1) / activeWorkers);
+            tasks.add(() -> {
+                worker.run(rows, order, start, end);
+                return null;
+            });
+        }
+        invokeAll(tasks);
+
+        reduce();
+
+        // pass summed gradients to the learning rule, shared weights get the sum of all their connections
+        Worker result = workers[0];
+        for (int l = 1; l < layersCount; l++) {
+            WeightMatrix matrix = matrices[l];
+            int[] indexes = weightIndexes[l];
+            double[] g = result.weightGradients[l];
+            for (int k = 0; k < indexes.length; k++) {
+                if (indexes[k] >= 0) {
+                    learningRule.addWeightGradient(matrix, indexes[k], g[k]);
+                }
+                g[k] = 0;
+            }
+            double[] gb = result.biasGradients[l];
+            for (int j = 0; j < gb.length; j++) {
+                for (int index : biasIndexes[l][j]) {
+                    learningRule.addWeightGradient(matrix, index, gb[j]); // bias neuron output is 1
+                }
+                gb[j] = 0;
+            }
+        }
+    }
+
+    /**
+     * Adds worker error sums to the error function, and sums gradient buffers of all active workers
+     * into the first one, each thread handles one stripe
+     */
+    private void reduce() {
+        ErrorFunction errorFunction = learningRule.getErrorFunction();
+        if (errorFunction instanceof SummableErrorFunction) {
+            for (int t = 0; t < activeWorkers; t++) {
+                Worker worker = workers[t];
+                ((SummableErrorFunction) errorFunction).addErrorSum(worker.errorSum, worker.patternCount);
+                worker.errorSum = 0;
+                worker.patternCount = 0;
+            }
+        }
+        if (activeWorkers == 1) {
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(activeWorkers);
+        for (int t = 0; t < activeWorkers; t++) {
+            final int stripe = t;
+            tasks.add(() -> {
+                for (int l = 1; l < layersCount; l++) {
+                    reduceStripe(l, stripe, true);
+                    reduceStripe(l, stripe, false);
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    private void reduceStripe(int layer, int stripe, boolean weightGradients) {
+        double[] sum = weightGradients ? workers[0].weightGradients[layer] : workers[0].biasGradients[layer];
+        int start = (int) ((long) sum.length * stripe / activeWorkers);
+        int end = (int) ((long) sum.length * (stripe + 1) / activeWorkers);
+        for (int t = 1; t < activeWorkers; t++) {
+            double[] g = weightGradients ? workers[t].weightGradients[layer] : workers[t].biasGradients[layer];
+            for (int k = start; k < end; k++) {
+                sum[k] += g[k];
+                g[k] = 0;
+            }
+        }
+    }
+
+    /**
+     * Copies current weight values into compiled network arrays, rounded to float in single precision mode
+     */
+    private void refreshWeights() {
+        for (int l = 1; l < layersCount; l++) {
+            WeightMatrix matrix = matrices[l];
+            int[] indexes = weightIndexes[l];
+            if (floatCompiled != null) {
+                float[][] values = floatCompiled.getLayerWeights(l);
+                int in = layerSizes[l - 1];
+                for (int k = 0; k < indexes.length; k++) {
+                    values[k % in][k / in] = indexes[k] >= 0 ? (float) matrix.getWeight(indexes[k]).value : 0;
+                }
+                float[] biases = floatCompiled.getLayerBiases(l);
+                for (int j = 0; j < biases.length; j++) {
+                    biases[j] = (float) biasSum(matrix, l, j);
+                }
+            } else {
+                double[] values = compiled.getLayerWeights(l);
+                for (int k = 0; k < indexes.length; k++) {
+                    values[k] = indexes[k] >= 0 ? matrix.getWeight(indexes[k]).value : 0;
+                }
+                double[] biases = compiled.getLayerBiases(l);
+                for (int j = 0; j < biases.length; j++) {
+                    biases[j] = biasSum(matrix, l, j);
+                }
+            }
+        }
+    }
+
+    private double biasSum(WeightMatrix matrix, int layer, int unit) {
+        double b = 0;
+        for (int index : biasIndexes[layer][unit]) {
+            b += matrix.getWeight(index).value;
+        }
+        return b;
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NeurophException("Data parallel training interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new NeurophException("Data parallel training failed", ex.getCause());
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Calculates gradients for one shard of rows, with private buffers
+     */
+    private abstract class Worker {
+
+        final double[][] weightGradients = new double[layersCount][];
+        final double[][] biasGradients = new double[layersCount][];
+        final double[][] deltas = new double[layersCount][];
+        final double[] predicted = new double[outputIndexes.length];
+        final double[] patternError = new double[outputIndexes.length];
+
+        /**
+         * Error sum and number of patterns since the last reduce, used with SummableErrorFunction
+         */
+        double errorSum;
+        int patternCount;
+
+        Worker() {
+            for (int l = 1; l < layersCount; l++) {
+                deltas[l] = new double[layerSizes[l]];
+                weightGradients[l] = new double[layerSizes[l] * layerSizes[l - 1]];
+                biasGradients[l] = new double[layerSizes[l]];
+            }
+        }
+
+        void run(List<DataSetRow> rows, int[] order, int from, int to) {
+            ErrorFunction errorFunction = learningRule.getErrorFunction();
+            SummableErrorFunction summable = errorFunction instanceof SummableErrorFunction
+                    ? (SummableErrorFunction) errorFunction : null;
+            int last = layersCount - 1;
+            for (int r = from; r < to; r++) {
+                DataSetRow row = rows.get(order != null ? order[r] : r);
+                forward(row.getInput());
+
+                for (int k = 0; k < predicted.length; k++) {
+                    predicted[k] = getOutput(outputIndexes[k]);
+                }
+
+                double[] delta = deltas[last];
+                Arrays.fill(delta, 0);
+                if (summable != null) {
+                    errorSum += summable.calculatePatternError(predicted, row.getDesiredOutput(), patternError);
+                    patternCount++;
+                    for (int k = 0; k < outputIndexes.length; k++) {
+                        delta[outputIndexes[k]] = patternError[k];
+                    }
+                } else {
+                    // shared error function also sums total network error
+                    synchronized (errorFunction) {
+                        double[] error = errorFunction.addPatternError(predicted, row.getDesiredOutput());
+                        for (int k = 0; k < outputIndexes.length; k++) {
+                            delta[outputIndexes[k]] = error[k];
+                        }
+                    }
+                }
+
+                backward(row.getInput());
+            }
+        }
+
+        /**
+         * Returns output of the specified last layer unit, calculated by the last forward pass
+         */
+        abstract double getOutput(int unit);
+
+        abstract void forward(double[] input);
+
+        /**
+         * Adds gradients for the last forward pass into gradient buffers,
+         * delta buffer of the last layer contains the output error
+         */
+        abstract void backward(double[] input);
+    }
+
+    /**
+     * Worker which calculates in double precision, with compiled network weights
+     */
+    private final class DoubleWorker extends Worker {
+
+        final double[][] netInputs = new double[layersCount][];
+        final double[][] outputs = new double[layersCount][];
+
+        DoubleWorker() {
+            for (int l = 1; l < layersCount; l++) {
+                netInputs[l] = new double[layerSizes[l]];
+                outputs[l] = new double[layerSizes[l]];
+            }
+        }
+
+        @Override
+        double getOutput(int unit) {
+            return outputs[layersCount - 1][unit];
+        }
+
+        @Override
+        void forward(double[] input) {
+            double[] x = input;
+            for (int l = 1; l < layersCount; l++) {
+                int in = layerSizes[l - 1];
+                int out = layerSizes[l];
+                double[] w = compiled.getLayerWeights(l);
+                double[] b = compiled.getLayerBiases(l);
+                double[] net = netInputs[l];
+                double[] y = outputs[l];
+                Activation[] a = activations[l];
+                for (int j = 0, offset = 0; j < out; j++, offset += in) {
+                    double sum = 0;
+                    for (int i = 0; i < in; i++) {
+                        sum += w[offset + i] * x[i];
+                    }
+                    net[j] = sum + b[j];
+                    y[j] = a[j].getOutput(net[j]);
+                }
+                x = y;
+            }
+        }
+
+        @Override
+        void backward(double[] input) {
+            for (int l = layersCount - 1; l > 0; l--) {
+                int in = layerSizes[l - 1];
+                int out = layerSizes[l];
+                double[] x = l > 1 ? outputs[l - 1] : input;
+                double[] net = netInputs[l];
+                double[] y = outputs[l];
+                double[] delta = deltas[l];
+                Activation[] a = activations[l];
+                double[] gw = weightGradients[l];
+                double[] gb = biasGradients[l];
+
+                // delta = error * df(net), error of hidden layers is already in delta
+                for (int j = 0; j < out; j++) {
+                    if (delta[j] != 0) {
+                        delta[j] *= a[j].getDerivative(net[j], y[j]);
+                    }
+                }
+
+                double[] prevError = l > 1 ? deltas[l - 1] : null;
+                if (prevError != null) {
+                    Arrays.fill(prevError, 0);
+                }
+                double[] w = compiled.getLayerWeights(l);
+                for (int j = 0, offset = 0; j < out; j++, offset += in) {
+                    double d = delta[j];
+                    if (d == 0) {
+                        continue;
+                    }
+                    gb[j] += d;
+                    for (int i = 0; i < in; i++) {
+                        gw[offset + i] += d * x[i];
+                    }
+                    if (prevError != null) { // weighted delta sum for the previous layer
+                        for (int i = 0; i < in; i++) {
+                            prevError[i] += d * w[offset + i];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Worker which reads float copies of weights and keeps net inputs and layer outputs in float,
+     * while errors and gradients are summed in double
+     */
+    private final class FloatWorker extends Worker {
+
+        final float[] input = new float[layerSizes[0]];
+        final float[][] netInputs = new float[layersCount][];
+        final float[][] outputs = new float[layersCount][];
+
+        FloatWorker() {
+            for (int l = 1; l < layersCount; l++) {
+                netInputs[l] = new float[layerSizes[l]];
+                outputs[l] = new float[layerSizes[l]];
+            }
+        }
+
+        @Override
+        double getOutput(int unit) {
+            return outputs[layersCount - 1][unit];
+        }
+
+        @Override
+        void forward(double[] rowInput) {
+            for (int i = 0; i < input.length; i++) {
+                input[i] = (float) rowInput[i];
+            }
+            float[] x = input;
+            for (int l = 1; l < layersCount; l++) {
+                float[][] w = floatCompiled.getLayerWeights(l);
+                float[] net = netInputs[l];
+                float[] y = outputs[l];
+                Activation[] a = activations[l];
+                System.arraycopy(floatCompiled.getLayerBiases(l), 0, net, 0, net.length);
+                for (int i = 0; i < w.length; i++) {
+                    float xi = x[i];
+                    if (xi != 0) {
+                        float[] row = w[i];
+                        for (int j = 0; j < net.length; j++) {
+                            net[j] += xi * row[j];
+                        }
+                    }
+                }
+                for (int j = 0; j < net.length; j++) {
+                    y[j] = (float) a[j].getOutput(net[j]);
+                }
+                x = y;
+            }
+        }
+
+        @Override
+        void backward(double[] rowInput) {
+            for (int l = layersCount - 1; l > 0; l--) {
+                int in = layerSizes[l - 1];
+                int out = layerSizes[l];
+                float[] x = l > 1 ? outputs[l - 1] : input;
+                float[] net = netInputs[l];
+                float[] y = outputs[l];
+                double[] delta = deltas[l];
+                Activation[] a = activations[l];
+                double[] gw = weightGradients[l];
+                double[] gb = biasGradients[l];
+
+                for (int j = 0; j < out; j++) {
+                    if (delta[j] != 0) {
+                        delta[j] *= a[j].getDerivative(net[j], y[j]);
+                    }
+                }
+
+                for (int j = 0, offset = 0; j < out; j++, offset += in) {
+                    double d = delta[j];
+                    if (d == 0) {
+                        continue;
+                    }
+                    gb[j] += d;
+                    for (int i = 0; i < in; i++) {
+                        gw[offset + i] += d * x[i];
+                    }
+                }
+
+                if (l > 1) {
+                    // error of previous layer unit i is the dot product of deltas and its weight row
+                    double[] prevError = deltas[l - 1];
+                    float[][] w = floatCompiled.getLayerWeights(l);
+                    for (int i = 0; i < in; i++) {
+                        float[] row = w[i];
+                        double sum = 0;
+                        for (int j = 0; j < out; j++) {
+                            sum += delta[j] * row[j];
+                        }
+                        prevError[i] = sum;
+                    }
+                }
+            }
+        }
+    }
+}
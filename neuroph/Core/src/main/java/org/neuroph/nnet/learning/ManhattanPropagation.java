@@ -12,6 +12,14 @@ public class ManhattanPropagation extends BackPropagation {
     // dont use gradient value, only sign and fixed step
 
 
+    /**
+     * Weight changes depend on each pattern gradient, so data parallel training is not supported
+     */
+    @Override
+    protected boolean isDataParallelSupported() {
+        return false;
+    }
+
      @Override
      public void calculateWeightChanges(Neuron neuron) {
         // get the error(delta) for specified neuron,
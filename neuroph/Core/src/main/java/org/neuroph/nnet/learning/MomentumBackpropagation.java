@@ -39,6 +39,11 @@ public class MomentumBackpropagation extends BackPropagation {
      */
     protected double momentum = 0.25d;
 
+    /**
+     * Counter of batch updates, used to update weights shared by several connections only once
+     */
+    private transient int batchUpdatesCount;
+
     /**
      * Creates new instance of MomentumBackpropagation learning
      */
@@ -96,16 +101,41 @@ public class MomentumBackpropagation extends BackPropagation {
             Weight<MomentumTrainingData> weight = connection.getWeight();
             MomentumTrainingData weightTrainingData = weight.getTrainingData();
 
-            //double currentWeightValue = weight.getValue();
-            double weightChange = -learningRate * neuronDelta * input + momentum * weightTrainingData.previousWeightChange;
-            weightTrainingData.previousWeightChange = weight.weightChange;
-
-
-            // if the learning is in batch mode apply the weight change immediately
+            // if the learning is not in batch mode apply the weight change immediately
             if (isBatchMode() == false) {
+                //double currentWeightValue = weight.getValue();
+                double weightChange = -learningRate * neuronDelta * input + momentum * weightTrainingData.previousWeightChange;
+                weightTrainingData.previousWeightChange = weight.weightChange;
                 weight.weightChange = weightChange;
-            } else { // otherwise, sum the weight changes and apply them after at the end of epoch
-                weight.weightChange += weightChange;
+            } else { // otherwise, sum the weight changes and apply them at the end of batch, momentum is added once per batch
+                weight.weightChange += -learningRate * neuronDelta * input;
+            }
+        }
+    }
+
+    /**
+     * Applies averaged weight changes accumulated in batch, plus momentum term from the previous batch update.
+     */
+    @Override
+    protected void doBatchWeightsUpdate() {
+        final int patterns = getBatchPatternsCount();
+        batchUpdatesCount++;
+        List<Layer> layers = neuralNetwork.getLayers();
+        for (int i = neuralNetwork.getLayersCount() - 1; i > 0; i--) {
+            for (Neuron neuron : layers.get(i).getNeurons()) {
+                for (Connection connection : neuron.getInputConnections()) {
+                    Weight<MomentumTrainingData> weight = connection.getWeight();
+                    MomentumTrainingData weightTrainingData = weight.getTrainingData();
+                    if (weightTrainingData.lastBatchUpdate == batchUpdatesCount) {
+                        continue; // shared weight which is already updated
+                    }
+                    weightTrainingData.lastBatchUpdate = batchUpdatesCount;
+
+                    double weightChange = weight.weightChange / patterns + momentum * weightTrainingData.previousWeightChange;
+                    weight.value += weightChange;
+                    weightTrainingData.previousWeightChange = weightChange;
+                    weight.weightChange = 0;
+                }
             }
         }
     }
@@ -130,6 +160,7 @@ public class MomentumBackpropagation extends BackPropagation {
 
     public static class MomentumTrainingData {
         public double previousWeightChange;
+        int lastBatchUpdate;
     }
 
     @Override
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.nnet.learning;
+
+import org.neuroph.core.WeightMatrix;
+
+/**
+ * Backpropagation with Nesterov accelerated momentum. Weight change is calculated
+ * from the velocity looked ahead by one momentum step:
+ * <pre>
+ *      v(t) = momentum * v(t-1) - learningRate * gradient
+ *      deltaWeight = -momentum * v(t-1) + (1 + momentum) * v(t)
+ * </pre>
+ *
+ * @see OptimizerBackpropagation
+ */
+public class NesterovMomentum extends OptimizerBackpropagation {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int VELOCITY = stateSlot(0);
+
+    /**
+     * Momentum factor
+     */
+    private double momentum = 0.9;
+
+    @Override
+    protected int getOptimizerStateSize() {
+        return 1;
+    }
+
+    @Override
+    protected void calculateSteps(WeightMatrix matrix, double[] gradients, double scale, double[] values, double[] steps) {
+        final double[] velocity = matrix.getState(VELOCITY);
+        final double mu = momentum;
+        final double rate = learningRate;
+        for (int k = 0; k < steps.length; k++) {
+            double previous = velocity[k];
+            velocity[k] = mu * previous - rate * gradients[k] * scale;
+            steps[k] = -mu * previous + (1 + mu) * velocity[k];
+        }
+    }
+
+    public double getMomentum() {
+        return momentum;
+    }
+
+    public void setMomentum(double momentum) {
+        this.momentum = momentum;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.nnet.learning;
+
+import org.neuroph.core.Connection;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.Weight;
+import org.neuroph.core.WeightMatrix;
+
+/**
+ * <pre>
+ * Base class for backpropagation with gradient based optimizers (Adam, RMSProp, AdaGrad...).
+ * Gradients dE/dw are summed in weight matrix state arrays, and the optimizer calculates weight changes
+ * from averaged gradients in one loop over primitive arrays for each layer (see calculateSteps).
+ * Optimizer state (moment estimates etc.) is kept in additional weight matrix state arrays.
+ *
+ * Works in online mode (weights are changed after each pattern) and batch mode (after each batch, see setBatchSize).
+ * Networks with weights shared between connections (convolutional) are not supported.
+ * </pre>
+ *
+ * @see WeightMatrix
+ */
+public abstract class OptimizerBackpropagation extends BackPropagation {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Weight matrix state slot with summed gradients, optimizer slots start after it
+     */
+    protected static final int GRADIENT = 0;
+
+    /**
+     * Number of weight updates since learning has started
+     */
+    private transient int updatesCount;
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        updatesCount = 0;
+    }
+
+    @Override
+    protected final int getWeightStateSize() {
+        return 1 + getOptimizerStateSize();
+    }
+
+    /**
+     * Returns number of state arrays used by optimizer
+     *
+     * @return number of optimizer state arrays
+     */
+    protected abstract int getOptimizerStateSize();
+
+    /**
+     * Returns weight matrix state slot of the specified optimizer state array
+     *
+     * @param index optimizer state index
+     * @return state slot
+     */
+    protected static int stateSlot(int index) {
+        return GRADIENT + 1 + index;
+    }
+
+    /**
+     * Calculates weight changes for one layer, from summed gradients multiplied by scale.
+     * Implementation should be a single loop over all weight indexes, or a fused update from Kernels.
+     *
+     * @param matrix    weight matrix of the layer, with optimizer state arrays
+     * @param gradients summed gradients dE/dw
+     * @param scale     factor to average summed gradients (1 / number of patterns)
+     * @param values    current weight values
+     * @param steps     output array for weight changes
+     */
+    protected abstract void calculateSteps(WeightMatrix matrix, double[] gradients, double scale, double[] values, double[] steps);
+
+    /**
+     * Sums gradient dE/dw = delta * input for each neuron's weight, weights are changed by updateWeights
+     */
+    @Override
+    protected void calculateWeightChanges(Neuron neuron) {
+        WeightMatrix matrix = getWeightMatrix(neuron.getParentLayer());
+        double[] gradients = matrix.getState(GRADIENT);
+        int index = matrix.getRowOffset(neuron);
+        double delta = neuron.getDelta();
+        for (Connection connection : neuron.getInputConnections()) {
+            gradients[index++] += delta * connection.getInput();
+        }
+    }
+
+    @Override
+    protected void calculateWeightChanges(double[] outputError) {
+        super.calculateWeightChanges(outputError);
+        if (!isBatchMode()) {
+            updateWeights(1, false); // changes are applied by SupervisedLearning after each pattern
+        }
+    }
+
+    @Override
+    protected void addWeightGradient(WeightMatrix matrix, int index, double gradient) {
+        matrix.getState(GRADIENT)[index] += gradient;
+    }
+
+    @Override
+    protected void doBatchWeightsUpdate() {
+        updateWeights(getBatchPatternsCount(), true);
+    }
+
+    /**
+     * Calculates weight changes from gradients summed over the specified number of patterns, and resets gradients.
+     *
+     * @param patternsCount number of patterns
+     * @param apply if true weight changes are added to weights, otherwise they are set as weight changes
+     */
+    private void updateWeights(int patternsCount, boolean apply) {
+        updatesCount++;
+        for (int i = neuralNetwork.getLayersCount() - 1; i > 0; i--) {
+            WeightMatrix matrix = getWeightMatrix(neuralNetwork.getLayerAt(i));
+            matrix.readWeights();
+            double[] steps = matrix.getChanges();
+            double[] gradients = matrix.getState(GRADIENT);
+            calculateSteps(matrix, gradients, 1d / patternsCount, matrix.getValues(), steps);
+
+            for (int k = 0; k < steps.length; k++) {
+                Weight weight = matrix.getWeight(k);
+                if (apply) {
+                    weight.value += steps[k];
+                    weight.weightChange = 0;
+                } else {
+                    weight.weightChange = steps[k];
+                }
+                gradients[k] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns number of weight updates since learning has started, including the current one
+     *
+     * @return number of weight updates
+     */
+    protected int getUpdatesCount() {
+        return updatesCount;
+    }
+}
@@ -0,0 +1,572 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.nnet.learning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.neuroph.core.CompiledNetwork;
+import org.neuroph.core.Connection;
+import org.neuroph.core.InferenceContext;
+import org.neuroph.core.Layer;
+import org.neuroph.core.NetworkWeights;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.learning.ParallelLearning;
+import org.neuroph.core.learning.SupervisedLearning;
+import org.neuroph.core.learning.error.ErrorFunction;
+import org.neuroph.nnet.comp.neuron.BiasNeuron;
+import org.neuroph.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ * Parallel tempering (replica exchange) variant of simulated annealing.
+ * Several replicas of the network weights are annealed at the same time, each one at its own fixed temperature,
+ * from maxTemperature down to minTemperature (geometric ladder). Each replica keeps its weights in a plain array,
+ * and evaluates perturbed candidates on its own CompiledNetwork against the training set, which is shared read only,
+ * so replicas run concurrently without locks. Each replica has its own random generator.
+ *
+ * After every swapInterval steps, neighbouring replicas exchange their weights with the Metropolis probability
+ * min(1, exp((1/Ti - 1/Tj) * (Ei - Ej))), so good solutions found by hot replicas move down to cold ones,
+ * and cold replicas stuck in a local minimum get a chance to escape.
+ * At the end of each epoch the best weights found by any replica are set to the network.
+ *
+ * Energy (error) of weights is the mean over training rows of sum(error^2) / (2 * outputs), and temperatures are
+ * in the same units. Results depend only on the seed and settings, not on the number of threads.
+ * Network must be compilable (see NeuralNetwork.compile()).
+ * </pre>
+ *
+ * @see SimulatedAnnealingLearning
+ */
+public class ParallelTemperingLearning extends SupervisedLearning implements ParallelLearning {
+
+    private static final long serialVersionUID = 1L;
+
+    private int replicasCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private double maxTemperature = 0.1;
+    private double minTemperature = 0.001;
+
+    /**
+     * Number of steps each replica makes in one epoch
+     */
+    private int cycles = 100;
+
+    /**
+     * Number of steps between replica exchange attempts
+     */
+    private int swapInterval = 10;
+
+    /**
+     * Probability that a weight is changed in a step
+     */
+    private double randomChance = 0.5;
+
+    /**
+     * Seed of random generators, or null for random seed
+     */
+    private Long seed;
+
+    private transient Replica[] replicas;
+    private transient SplittableRandom swapRandom;
+    private transient ExecutorService executor;
+
+    /**
+     * Training set for which replica energies are calculated, and its rows as arrays
+     */
+    private transient DataSet dataSet;
+    private transient double[][] inputs;
+    private transient double[][] desiredOutputs;
+
+    /**
+     * Target of each flat weight in compiled network: layer, and index in layer weights (or -1 - unit for bias)
+     */
+    private transient int[] weightLayers;
+    private transient int[] weightPositions;
+
+    private transient NetworkWeights weightsView;
+    private transient long acceptedSwaps;
+    private transient long attemptedSwaps;
+
+    /**
+     * Creates new parallel tempering learning with default settings
+     */
+    public ParallelTemperingLearning() {
+    }
+
+    /**
+     * Creates new parallel tempering learning for the specified network
+     *
+     * @param network        network to train
+     * @param replicasCount  number of replicas (temperatures)
+     * @param maxTemperature temperature of the hottest replica
+     * @param minTemperature temperature of the coldest replica
+     * @param cycles         number of steps of each replica in one epoch
+     */
+    public ParallelTemperingLearning(NeuralNetwork<?> network, int replicasCount, double maxTemperature, double minTemperature, int cycles) {
+        setNeuralNetwork(network);
+        setReplicasCount(replicasCount);
+        setTemperatures(maxTemperature, minTemperature);
+        setCycles(cycles);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        shutdownExecutor();
+        replicas = null; // start from current network weights
+        if (parallelism > 1) {
+            executor = Executors.newFixedThreadPool(Math.min(parallelism, replicasCount), new DaemonThreadFactory("neuroph-training"));
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        shutdownExecutor();
+        super.onStop();
+    }
+
+    private void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Runs one epoch: each replica makes the specified number of steps, with replica exchange after every
+     * swapInterval steps. Best weights found so far are then set to the network and evaluated with the error function.
+     *
+     * @param trainingSet training set
+     */
+    @Override
+    public void doLearningEpoch(DataSet trainingSet) {
+        if (replicas == null || dataSet != trainingSet) {
+            init(trainingSet);
+        }
+
+        for (int step = 0; step < cycles && !isStopped(); step += swapInterval) {
+            final int steps = Math.min(swapInterval, cycles - step);
+            List<Callable<Void>> tasks = new ArrayList<>(replicas.length);
+            for (final Replica replica : replicas) {
+                tasks.add(() -> {
+                    for (int s = 0; s < steps; s++) {
+                        replica.step();
+                    }
+                    return null;
+                });
+            }
+            invokeAll(tasks);
+            exchange();
+        }
+
+        Replica best = replicas[0];
+        for (Replica replica : replicas) {
+            if (replica.bestEnergy < best.bestEnergy) {
+                best = replica;
+            }
+        }
+        weightsView.write(best.bestWeights);
+
+        // evaluate best weights with the error function, for total network error and stop conditions
+        best.load(best.bestWeights);
+        double[][] outputs = best.compiled.predictBatch(inputs, best.outputs, best.context);
+        ErrorFunction errorFunction = getErrorFunction();
+        for (int r = 0; r < outputs.length; r++) {
+            errorFunction.addPatternError(outputs[r], desiredOutputs[r]);
+        }
+    }
+
+    /**
+     * Creates replicas, all starting from the current network weights
+     */
+    private void init(DataSet trainingSet) {
+        NeuralNetwork<?> network = getNeuralNetwork();
+        List<DataSetRow> rows = trainingSet.getRows();
+        dataSet = trainingSet;
+        inputs = new double[rows.size()][];
+        desiredOutputs = new double[rows.size()][];
+        for (int r = 0; r < inputs.length; r++) {
+            inputs[r] = rows.get(r).getInput();
+            desiredOutputs[r] = rows.get(r).getDesiredOutput();
+        }
+
+        weightsView = network.createWeightsView();
+        double[] weights = weightsView.read(new double[weightsView.size()]);
+        mapWeights(network, network.compile());
+
+        SplittableRandom random = seed != null ? new SplittableRandom(seed) : new SplittableRandom();
+        swapRandom = random.split();
+        replicas = new Replica[replicasCount];
+        double ratio = replicasCount > 1 ? Math.pow(minTemperature / maxTemperature, 1.0 / (replicasCount - 1)) : 1;
+        for (int i = 0; i < replicasCount; i++) {
+            replicas[i] = new Replica(maxTemperature * Math.pow(ratio, i), weights, random.split());
+        }
+        acceptedSwaps = 0;
+        attemptedSwaps = 0;
+
+        List<Callable<Void>> tasks = new ArrayList<>(replicas.length);
+        for (final Replica replica : replicas) {
+            tasks.add(() -> {
+                replica.energy = replica.bestEnergy = replica.evaluate(replica.weights);
+                return null;
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    /**
+     * Maps each weight of the network weights view to its place in compiled network
+     */
+    private void mapWeights(NeuralNetwork<?> network, CompiledNetwork compiled) {
+        weightLayers = new int[weightsView.size()];
+        weightPositions = new int[weightsView.size()];
+
+        // same unit order as in CompiledNetwork: input neurons, then non bias neurons of each layer
+        Map<Neuron, Integer> prevUnits = new IdentityHashMap<>();
+        for (Neuron neuron : network.getInputNeurons()) {
+            prevUnits.put(neuron, prevUnits.size());
+        }
+
+        int k = weightsView.getLayerOffset(1);
+        for (int l = 1; l < compiled.getLayersCount(); l++) {
+            Layer layer = network.getLayerAt(l);
+            int in = compiled.getLayerSize(l - 1);
+            Map<Neuron, Integer> units = new IdentityHashMap<>();
+            for (Neuron neuron : layer.getNeurons()) {
+                if (neuron instanceof BiasNeuron) {
+                    continue;
+                }
+                int j = units.size();
+                units.put(neuron, j);
+                for (Connection connection : neuron.getInputConnections()) {
+                    Integer i = prevUnits.get(connection.getFromNeuron());
+                    if (i != null) {
+                        weightPositions[k] = j * in + i;
+                    } else if (connection.getFromNeuron() instanceof BiasNeuron) {
+                        weightPositions[k] = -1 - j;
+                    } else {
+                        throw new NeurophException("Parallel tempering supports only connections from the previous layer!");
+                    }
+                    weightLayers[k++] = l;
+                }
+            }
+            prevUnits = units;
+        }
+        if (k != weightsView.size()) {
+            throw new NeurophException("Parallel tempering does not support this network structure!");
+        }
+    }
+
+    /**
+     * Attempts exchange of weights between neighbouring temperatures, starting with odd or even pairs in turns
+     */
+    private void exchange() {
+        for (int i = (int) (attemptedSwaps % 2); i + 1 < replicas.length; i += 2) {
+            Replica hot = replicas[i];
+            Replica cold = replicas[i + 1];
+            double delta = (1 / hot.temperature - 1 / cold.temperature) * (hot.energy - cold.energy);
+            if (delta >= 0 || swapRandom.nextDouble() < Math.exp(delta)) {
+                double[] weights = hot.weights;
+                hot.weights = cold.weights;
+                cold.weights = weights;
+                double energy = hot.energy;
+                hot.energy = cold.energy;
+                cold.energy = energy;
+                acceptedSwaps++;
+            }
+        }
+        attemptedSwaps++;
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        if (executor == null) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception ex) {
+                    throw new NeurophException("Parallel tempering failed", ex);
+                }
+            }
+            return;
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NeurophException("Parallel tempering interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new NeurophException("Parallel tempering failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Not used, weights are changed by replicas.
+     */
+    @Override
+    protected void calculateWeightChanges(double[] outputError) {
+    }
+
+    /**
+     * Returns energy of the best weights found so far, mean of sum(error^2) / (2 * outputs) over rows
+     *
+     * @return best energy, or NaN before the first epoch
+     */
+    public double getBestEnergy() {
+        if (replicas == null) {
+            return Double.NaN;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (Replica replica : replicas) {
+            best = Math.min(best, replica.bestEnergy);
+        }
+        return best;
+    }
+
+    /**
+     * Returns ratio of accepted replica exchanges to exchange rounds since learning started, useful for tuning
+     * of the temperature ladder. Very low rate means temperatures are too far apart.
+     *
+     * @return accepted exchanges per round
+     */
+    public double getSwapAcceptanceRate() {
+        return attemptedSwaps == 0 ? 0 : (double) acceptedSwaps / attemptedSwaps;
+    }
+
+    public int getReplicasCount() {
+        return replicasCount;
+    }
+
+    /**
+     * Sets number of replicas, each with its own temperature
+     *
+     * @param replicasCount number of replicas
+     */
+    public void setReplicasCount(int replicasCount) {
+        if (replicasCount < 1) {
+            throw new IllegalArgumentException("Number of replicas must be positive!");
+        }
+        this.replicasCount = replicasCount;
+    }
+
+    @Override
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets number of threads used to run replicas, 1 runs all replicas in the learning thread
+     *
+     * @param parallelism number of threads
+     */
+    @Override
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive!");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public double getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    public double getMinTemperature() {
+        return minTemperature;
+    }
+
+    /**
+     * Sets temperatures of the hottest and the coldest replica, other temperatures are spaced geometrically between them
+     *
+     * @param maxTemperature temperature of the hottest replica
+     * @param minTemperature temperature of the coldest replica
+     */
+    public void setTemperatures(double maxTemperature, double minTemperature) {
+        if (!(minTemperature > 0) || minTemperature > maxTemperature) {
+            throw new IllegalArgumentException("Temperatures must be positive, and max temperature must not be lower than min temperature!");
+        }
+        this.maxTemperature = maxTemperature;
+        this.minTemperature = minTemperature;
+    }
+
+    public int getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Sets number of steps each replica makes in one epoch
+     *
+     * @param cycles number of steps
+     */
+    public void setCycles(int cycles) {
+        if (cycles < 1) {
+            throw new IllegalArgumentException("Number of cycles must be positive!");
+        }
+        this.cycles = cycles;
+    }
+
+    public int getSwapInterval() {
+        return swapInterval;
+    }
+
+    /**
+     * Sets number of steps between replica exchange attempts
+     *
+     * @param swapInterval number of steps
+     */
+    public void setSwapInterval(int swapInterval) {
+        if (swapInterval < 1) {
+            throw new IllegalArgumentException("Swap interval must be positive!");
+        }
+        this.swapInterval = swapInterval;
+    }
+
+    public double getRandomChance() {
+        return randomChance;
+    }
+
+    /**
+     * Sets probability that a weight is changed in one step
+     *
+     * @param randomChance probability, in range (0, 1]
+     */
+    public void setRandomChance(double randomChance) {
+        if (!(randomChance > 0) || randomChance > 1) {
+            throw new IllegalArgumentException("Random chance must be in range (0, 1]!");
+        }
+        this.randomChance = randomChance;
+    }
+
+    /**
+     * Sets seed of random generators, which makes learning repeatable
+     *
+     * @param seed random seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Weights of one replica, with its own compiled network and random generator
+     */
+    private final class Replica {
+
+        final double temperature;
+
+        /**
+         * Maximum change of a weight in one step, proportional to temperature
+         */
+        final double stepSize;
+        final SplittableRandom random;
+        final CompiledNetwork compiled;
+        final InferenceContext context;
+        final double[][] outputs;
+
+        double[] weights;
+        double[] candidate;
+        double energy;
+        final double[] bestWeights;
+        double bestEnergy;
+
+        Replica(double temperature, double[] weights, SplittableRandom random) {
+            this.temperature = temperature;
+            this.stepSize = temperature / maxTemperature;
+            this.random = random;
+            this.compiled = getNeuralNetwork().compile();
+            this.context = compiled.createContext();
+            this.outputs = new double[inputs.length][compiled.getOutputsCount()];
+            this.weights = weights.clone();
+            this.candidate = new double[weights.length];
+            this.bestWeights = weights.clone();
+        }
+
+        /**
+         * Perturbs weights and accepts the candidate with the Metropolis probability
+         */
+        void step() {
+            for (int k = 0; k < weights.length; k++) {
+                double w = weights[k];
+                if (random.nextDouble() < randomChance) {
+                    w += (0.5 - random.nextDouble()) * stepSize;
+                }
+                candidate[k] = w;
+            }
+
+            double candidateEnergy = evaluate(candidate);
+            if (candidateEnergy <= energy || random.nextDouble() < Math.exp((energy - candidateEnergy) / temperature)) {
+                double[] previous = weights;
+                weights = candidate;
+                candidate = previous;
+                energy = candidateEnergy;
+                if (energy < bestEnergy) {
+                    bestEnergy = energy;
+                    System.arraycopy(weights, 0, bestWeights, 0, weights.length);
+                }
+            }
+        }
+
+        /**
+         * Calculates energy of the specified weights on the whole training set
+         */
+        double evaluate(double[] w) {
+            load(w);
+            compiled.predictBatch(inputs, outputs, context);
+            double sum = 0;
+            for (int r = 0; r < outputs.length; r++) {
+                double[] output = outputs[r];
+                double[] desired = desiredOutputs[r];
+                double sqrErrorSum = 0;
+                for (int o = 0; o < output.length; o++) {
+                    double error = output[o] - desired[o];
+                    sqrErrorSum += error * error;
+                }
+                sum += sqrErrorSum / (2 * output.length);
+            }
+            return outputs.length == 0 ? 0 : sum / outputs.length;
+        }
+
+        /**
+         * Sets the specified weights to compiled network, bias weights of a unit are summed
+         */
+        void load(double[] w) {
+            for (int l = 1; l < compiled.getLayersCount(); l++) {
+                Arrays.fill(compiled.getLayerBiases(l), 0);
+            }
+            for (int k = weightsView.getLayerOffset(1); k < w.length; k++) {
+                int position = weightPositions[k];
+                if (position >= 0) {
+                    compiled.getLayerWeights(weightLayers[k])[position] = w[k];
+                } else {
+                    compiled.getLayerBiases(weightLayers[k])[-1 - position] += w[k];
+                }
+            }
+        }
+    }
+}
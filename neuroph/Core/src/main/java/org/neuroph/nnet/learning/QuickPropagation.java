@@ -16,6 +16,14 @@ public class QuickPropagation extends BackPropagation {
   //  private final static double shrinkFactor = maximumGrowthFactor / (1.0 + maximumGrowthFactor);
     // hes mapu koristim da cuvam vrednosti prethodnih iteracija - koristi training data
 
+    /**
+     * Weight changes depend on each pattern gradient, so data parallel training is not supported
+     */
+    @Override
+    protected boolean isDataParallelSupported() {
+        return false;
+    }
+
     @Override
     public void calculateWeightChanges(Neuron neuron) {
         double delta = neuron.getDelta();
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuroph.nnet.learning;
+
+import org.neuroph.core.WeightMatrix;
+import org.neuroph.core.kernel.Kernels;
+
+/**
+ * Backpropagation with RMSProp optimizer, which scales learning rate for each weight
+ * by the square root of the moving average of its squared gradients.
+ *
+ * @see OptimizerBackpropagation
+ */
+public class RMSProp extends OptimizerBackpropagation {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int CACHE = stateSlot(0);
+
+    /**
+     * Decay rate of squared gradients moving average
+     */
+    private double decayRate = 0.9;
+
+    /**
+     * Small value which prevents division by zero
+     */
+    private double epsilon = 1e-8;
+
+    /**
+     * Creates new RMSProp learning rule with learning rate 0.001
+     */
+    public RMSProp() {
+        super();
+        setLearningRate(0.001);
+    }
+
+    @Override
+    protected int getOptimizerStateSize() {
+        return 1;
+    }
+
+    @Override
+    protected void calculateSteps(WeightMatrix matrix, double[] gradients, double scale, double[] values, double[] steps) {
+        Kernels.getInstance().rmsProp(gradients, scale, matrix.getState(CACHE), decayRate, 1 - decayRate,
+                learningRate, epsilon, steps, steps.length);
+    }
+
+    public double getDecayRate() {
+        return decayRate;
+    }
+
+    public void setDecayRate(double decayRate) {
+        this.decayRate = decayRate;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+}
@@ -1,10 +1,12 @@
 package org.neuroph.nnet.learning;
 
+import java.util.Arrays;
 import java.util.List;
 import org.neuroph.core.Connection;
 import org.neuroph.core.Layer;
 import org.neuroph.core.Neuron;
 import org.neuroph.core.Weight;
+import org.neuroph.core.WeightMatrix;
 
 /**
  * Resilient Propagation learning rule used for Multi Layer Perceptron neural networks.
@@ -22,6 +24,25 @@ public class ResilientPropagation extends BackPropagation {
     private double minDelta = 1e-6;
     private static final double ZERO_TOLERANCE = 1e-27; // the lowest limit when something is considered to be zero -it should be bigger liek 1e-17
 
+    /**
+     * Weight matrix state slots which hold resilient training data for each weight
+     */
+    private static final int GRADIENT = 0;              // dE / dw(t)
+    private static final int PREVIOUS_GRADIENT = 1;     // dE / dw(t-1)
+    private static final int PREVIOUS_WEIGHT_CHANGE = 2; // deltaWeight(t-1)
+    private static final int PREVIOUS_DELTA = 3;        // each weight has its own delta
+
+    /**
+     * True if subclass overrides deprecated resillientWeightUpdate(Weight), which is then called for each weight
+     */
+    private transient boolean weightUpdateOverridden;
+
+    /**
+     * Weight matrix and index of the weight passed to resillientWeightUpdate(Weight)
+     */
+    private transient WeightMatrix updatedMatrix;
+    private transient int updatedIndex;
+
     public ResilientPropagation() {
         super();
         super.setBatchMode(true);   // resilient always works in a batch mode maybe disable setting batch mode to false
@@ -41,70 +62,133 @@ public class ResilientPropagation extends BackPropagation {
     protected void onStart() {
         super.onStart(); // init all stuff from superclasses
 
-        // create ResilientWeightTrainingtData objects that will hold additional data (resilient specific) during the training 
-        for (Layer layer : this.neuralNetwork.getLayers()) {
-            for (Neuron neuron : layer.getNeurons()) {
-                for (Connection connection : neuron.getInputConnections()) {
-                    connection.getWeight().setTrainingData(new ResilientWeightTrainingtData());
+        // resilient training data is kept in weight matrix state arrays, one element for each weight
+        for (int i = 1; i < neuralNetwork.getLayersCount(); i++) {
+            WeightMatrix matrix = getWeightMatrix(neuralNetwork.getLayerAt(i));
+            Arrays.fill(matrix.getState(PREVIOUS_DELTA), initialDelta);
+        }
+
+        // subclasses which override the deprecated weight update get training data objects in weights, as before
+        weightUpdateOverridden = overridesWeightUpdate();
+        if (weightUpdateOverridden) {
+            for (int i = 1; i < neuralNetwork.getLayersCount(); i++) {
+                WeightMatrix matrix = getWeightMatrix(neuralNetwork.getLayerAt(i));
+                for (int k = 0; k < matrix.size(); k++) {
+                    matrix.getWeight(k).setTrainingData(new ResilientWeightTrainingtData());
                 }
             }
         }
     }
-    
+
+    private boolean overridesWeightUpdate() {
+        for (Class<?> c = getClass(); c != ResilientPropagation.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("resillientWeightUpdate", Weight.class);
+                return true;
+            } catch (NoSuchMethodException ex) {
+                // not declared in this class
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int getWeightStateSize() {
+        return 4;
+    }
+
     /**
      * Calculate and sum gradients for each neuron's weight, the actual weight update is done in batch mode.
      * 
-     * @see ResilientPropagation#resillientWeightUpdate(org.neuroph.core.Weight) 
+     * @see ResilientPropagation#resillientWeightUpdate(org.neuroph.core.WeightMatrix, int)
      */
     @Override
     public void calculateWeightChanges(Neuron neuron) {
+        WeightMatrix matrix = getWeightMatrix(neuron.getParentLayer());
+        double[] gradients = matrix.getState(GRADIENT);
+        int index = matrix.getRowOffset(neuron);
+
+        // get the error for specified neuron,
+        double neuronError = neuron.getDelta();
         for (Connection connection : neuron.getInputConnections()) {
             double input = connection.getInput();
-            if (input == 0) {
-                continue;
+            if (input != 0) {
+                // calculate the weight gradient (and sum gradients since learning is done in batch mode)
+                gradients[index] += -neuronError * input;  // - ili + ovde ? bilo je +
             }
-
-            // get the error for specified neuron,
-            double neuronError = neuron.getDelta();
-            // get the current connection's weight
-            Weight weight = connection.getWeight();
-            // ... and get the object that stores reislient training data for that weight
-            ResilientWeightTrainingtData weightData = (ResilientWeightTrainingtData) weight.getTrainingData();
-
-            // calculate the weight gradient (and sum gradients since learning is done in batch mode)
-            weightData.gradient += -neuronError * input;  // - ili + ovde ? bilo je +
+            index++;
         }
     }
 
+    @Override
+    protected void addWeightGradient(WeightMatrix matrix, int index, double gradient) {
+        matrix.getState(GRADIENT)[index] += -gradient;
+    }
+
     @Override
     protected void doBatchWeightsUpdate() {
         // iterate layers from output to input
         List<Layer> layers = neuralNetwork.getLayers();
         for (int i = neuralNetwork.getLayersCount() - 1; i > 0; i--) {            
-            // iterate neurons at each layer
-            for (Neuron neuron : layers.get(i).getNeurons()) {
-                // iterate connections/weights for each neuron
-                for (Connection connection : neuron.getInputConnections()) {
-                    // for each connection weight apply following changes
-                    Weight weight = connection.getWeight();
-                    resillientWeightUpdate(weight);
+            // iterate all weights of the layer
+            WeightMatrix matrix = getWeightMatrix(layers.get(i));
+            for (int k = 0; k < matrix.size(); k++) {
+                if (weightUpdateOverridden) {
+                    updateWeight(matrix, k);
+                } else {
+                    resillientWeightUpdate(matrix, k);
                 }
             }
         }
     }
 
+    /**
+     * Calls overridden resillientWeightUpdate(Weight), with weight training data copied from and back to weight matrix
+     */
+    private void updateWeight(WeightMatrix matrix, int index) {
+        Weight weight = matrix.getWeight(index);
+        ResilientWeightTrainingtData data = (ResilientWeightTrainingtData) weight.getTrainingData();
+        copyToTrainingData(matrix, index, data);
+        updatedMatrix = matrix;
+        updatedIndex = index;
+        try {
+            resillientWeightUpdate(weight);
+        } finally {
+            updatedMatrix = null;
+        }
+        copyFromTrainingData(data, matrix, index);
+    }
+
+    private static void copyToTrainingData(WeightMatrix matrix, int index, ResilientWeightTrainingtData data) {
+        data.gradient = matrix.getState(GRADIENT)[index];
+        data.previousGradient = matrix.getState(PREVIOUS_GRADIENT)[index];
+        data.previousWeightChange = matrix.getState(PREVIOUS_WEIGHT_CHANGE)[index];
+        data.previousDelta = matrix.getState(PREVIOUS_DELTA)[index];
+    }
+
+    private static void copyFromTrainingData(ResilientWeightTrainingtData data, WeightMatrix matrix, int index) {
+        matrix.getState(GRADIENT)[index] = data.gradient;
+        matrix.getState(PREVIOUS_GRADIENT)[index] = data.previousGradient;
+        matrix.getState(PREVIOUS_WEIGHT_CHANGE)[index] = data.previousWeightChange;
+        matrix.getState(PREVIOUS_DELTA)[index] = data.previousDelta;
+    }
+
     /**
      * Weight update by done by ResilientPropagation  learning rule
      * Executed at the end of epoch (in batch mode)
-     * @param weight 
+     * @param matrix weight matrix of the layer
+     * @param index weight index in matrix
      */
-    protected void resillientWeightUpdate(Weight weight) {
+    protected void resillientWeightUpdate(WeightMatrix matrix, int index) {
         // get resilient training data for the current weight
-        ResilientWeightTrainingtData weightData = (ResilientWeightTrainingtData) weight.getTrainingData();
+        final double[] gradient = matrix.getState(GRADIENT);
+        final double[] previousGradient = matrix.getState(PREVIOUS_GRADIENT);
+        final double[] previousWeightChange = matrix.getState(PREVIOUS_WEIGHT_CHANGE);
+        final double[] previousDelta = matrix.getState(PREVIOUS_DELTA);
 
         // multiply the current and previous gradient, and take the sign. 
         // We want to see if the gradient has changed its sign.            
-        int gradientSignChange = sign(weightData.previousGradient * weightData.gradient);
+        int gradientSignChange = sign(previousGradient[index] * gradient[index]);
 
         double weightChange = 0; // weight change to apply (delta weight)
         double delta; //  adaptation factor - svaka tezina treba da ima svoj delta i d ag apamti - u tom ej epoenta!!!!
@@ -112,36 +196,76 @@ public class ResilientPropagation extends BackPropagation {
         if (gradientSignChange > 0) {
             // if the gradient has retained its sign, then we increase delta (adaptation factor) so that it will converge faster
             delta = Math.min(
-                    weightData.previousDelta * increaseFactor,
+                    previousDelta[index] * increaseFactor,
                     maxDelta);
-            //  weightChange = -sign(weightData.gradient) * delta; // if error is increasing (gradient is positive) then subtract delta, if error is decreasing (gradient negative) then add delta
+            //  weightChange = -sign(gradient[index]) * delta; // if error is increasing (gradient is positive) then subtract delta, if error is decreasing (gradient negative) then add delta
             // note that our gradient has different sign eg. -dE_dw so we omit the minus here
-            weightChange = sign(weightData.gradient) * delta;
-            weightData.previousDelta = delta;
+            weightChange = sign(gradient[index]) * delta;
+            previousDelta[index] = delta;
         } else if (gradientSignChange < 0) {
             // if gradientSignChange<0, then the sign has changed, and the last weight change was too big                
             delta = Math.max(
-                    weightData.previousDelta * decreaseFactor,
+                    previousDelta[index] * decreaseFactor,
                     minDelta);
-            // weightChange = - weightData.previousDelta;// 0;// -delta  - weightData.previousDelta; // ovo je problematicno treba da bude weightChange          
-            weightChange = -weightData.previousWeightChange; // if it skipped min in previous step go back
+            // weightChange = - previousDelta[index];// 0;// -delta  - previousDelta[index]; // ovo je problematicno treba da bude weightChange          
+            weightChange = -previousWeightChange[index]; // if it skipped min in previous step go back
             // avoid double punishment
-            weightData.gradient = 0;
-            weightData.previousGradient = 0;
+            gradient[index] = 0;
+            previousGradient[index] = 0;
 
             //move values in the past
-            weightData.previousDelta = delta;
+            previousDelta[index] = delta;
         } else if (gradientSignChange == 0) {
             // if gradientSignChange==0 then there is no change to the delta
-            delta = weightData.previousDelta;
-            //delta = weightData.previousGradient; // note that encog does this
-            weightChange = sign(weightData.gradient) * delta;
+            delta = previousDelta[index];
+            //delta = previousGradient[index]; // note that encog does this
+            weightChange = sign(gradient[index]) * delta;
         }
 
         //weight.value += weightChange; -- ovo mora da se radi simultano
-        weightData.previousWeightChange = weightChange;
-        weightData.previousGradient = weightData.gradient; // as in moveNowValuesToPreviousEpochValues
-        weightData.gradient = 0;
+        previousWeightChange[index] = weightChange;
+        previousGradient[index] = gradient[index]; // as in moveNowValuesToPreviousEpochValues
+        gradient[index] = 0;
+    }
+
+    /**
+     * Weight update by done by ResilientPropagation  learning rule, for the specified weight.
+     * If a subclass overrides this method, it is called for each weight instead of resillientWeightUpdate(WeightMatrix, int),
+     * and weight training data (ResilientWeightTrainingtData) holds the current values from weight matrix.
+     *
+     * @param weight weight of the network which is trained
+     * @deprecated resilient training data is kept in weight matrices, override resillientWeightUpdate(WeightMatrix, int)
+     */
+    @Deprecated
+    protected void resillientWeightUpdate(Weight weight) {
+        WeightMatrix matrix = updatedMatrix;
+        int index = updatedIndex;
+        if (matrix == null || matrix.getWeight(index) != weight) {
+            matrix = null;
+            for (int i = 1; i < neuralNetwork.getLayersCount() && matrix == null; i++) {
+                WeightMatrix layerMatrix = getWeightMatrix(neuralNetwork.getLayerAt(i));
+                for (int k = 0; k < layerMatrix.size(); k++) {
+                    if (layerMatrix.getWeight(k) == weight) {
+                        matrix = layerMatrix;
+                        index = k;
+                        break;
+                    }
+                }
+            }
+            if (matrix == null) {
+                throw new IllegalArgumentException("Weight does not belong to the trained network!");
+            }
+        }
+
+        // training data of the weight may be changed by the subclass before calling this method
+        Object trainingData = weight.getTrainingData();
+        if (trainingData instanceof ResilientWeightTrainingtData) {
+            copyFromTrainingData((ResilientWeightTrainingtData) trainingData, matrix, index);
+            resillientWeightUpdate(matrix, index);
+            copyToTrainingData(matrix, index, (ResilientWeightTrainingtData) trainingData);
+        } else {
+            resillientWeightUpdate(matrix, index);
+        }
     }
 
     public double getDecreaseFactor() {
@@ -188,15 +312,18 @@ public class ResilientPropagation extends BackPropagation {
     public void setBatchMode(boolean batchMode) {
         if (batchMode == false) throw new IllegalStateException("Resilient propagation runs only in batch mode!");
     }
-    
-    
-    
-    
+
+    /**
+     * Resilient training data for one weight
+     *
+     * @deprecated resilient training data is kept in weight matrix state arrays (see BackPropagation#getWeightMatrix),
+     * one element for each weight. Weights get these objects only if subclass overrides resillientWeightUpdate(Weight).
+     */
+    @Deprecated
     public class ResilientWeightTrainingtData {
         public double gradient; // dE / dw(t)
         public double previousGradient; // dE / dw(t-1)
         public double previousWeightChange; // deltaWeight(t-1)
         public double previousDelta = initialDelta;
-        // add deltaij - svaki weight ima svooj delta param a ne jedan zajednicki 
     }
 }
@@ -6,7 +6,7 @@ import org.neuroph.core.NeuralNetwork;
 import org.neuroph.core.data.DataSet;
 import org.neuroph.core.data.DataSetRow;
 import org.neuroph.core.learning.SupervisedLearning;
-import org.neuroph.util.NeuralNetworkCODEC;
+import org.neuroph.core.NetworkWeights;
 
 /**
  * This class implements a simulated annealing learning rule for supervised
@@ -65,6 +65,11 @@ public class SimulatedAnnealingLearning extends SupervisedLearning {
      */
     private double[] bestWeights;
 
+    /**
+     * Flat view of network weights, used to copy weights in each cycle.
+     */
+    private transient NetworkWeights weightsView;
+
     /**
      * Construct a simulated annleaing trainer for a feedforward neural network.
      *
@@ -81,13 +86,9 @@ public class SimulatedAnnealingLearning extends SupervisedLearning {
         this.stopTemperature = stopTemp;
         this.cycles = cycles;
 
-        this.weights = new double[NeuralNetworkCODEC
-                .determineArraySize(network)];
-        this.bestWeights = new double[NeuralNetworkCODEC
-                .determineArraySize(network)];
-
-        NeuralNetworkCODEC.network2array(network, this.weights);
-        NeuralNetworkCODEC.network2array(network, this.bestWeights);
+        this.weightsView = network.createWeightsView();
+        this.weights = weightsView.read(new double[weightsView.size()]);
+        this.bestWeights = this.weights.clone();
     }
 
     public SimulatedAnnealingLearning(final NeuralNetwork network) {
@@ -103,6 +104,13 @@ public class SimulatedAnnealingLearning extends SupervisedLearning {
         return getNeuralNetwork();
     }
 
+    private NetworkWeights getWeightsView() {
+        if (weightsView == null) {
+            weightsView = getNetwork().createWeightsView(); // after deserialization
+        }
+        return weightsView;
+    }
+
     /**
      * Randomize the weights and thresholds. This function does most of the work
      * of the class. Each call to this class will randomize the data according
@@ -121,7 +129,7 @@ public class SimulatedAnnealingLearning extends SupervisedLearning {
             this.weights[i] = this.weights[i] + add;
           }
 
-        NeuralNetworkCODEC.array2network(this.weights, getNetwork());
+        getWeightsView().write(this.weights);
     }
 
     /**
@@ -186,7 +194,7 @@ public class SimulatedAnnealingLearning extends SupervisedLearning {
                 System.arraycopy(this.bestWeights, 0, this.weights, 0,
                         this.weights.length);
 
-            NeuralNetworkCODEC.array2network(this.bestWeights, getNetwork());
+            getWeightsView().write(this.bestWeights);
 
             final double ratio = Math.exp(Math.log(this.stopTemperature
                     / this.startTemperature)
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates named daemon threads for internal thread pools, so pools which are not shut down
+ * do not keep the JVM running.
+ */
+public final class DaemonThreadFactory implements ThreadFactory {
+
+    private final String name;
+
+    /**
+     * Creates factory for threads with the specified name
+     *
+     * @param name thread name
+     */
+    public DaemonThreadFactory(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -28,8 +28,11 @@ import org.neuroph.core.Neuron;
  * This CODEC can encode a neural network to an array of doubles. It can also
  * decode this array of doubles back into a neural network. This is very useful
  * for both simulated annealing and genetic algorithms.
+ * Weights are encoded in the order of neuron output connections. Algorithms which encode
+ * the same network many times should use NetworkWeights, which copies without walking the network.
  * 
  * @author Jeff Heaton (http://www.heatonresearch.com)
+ * @see org.neuroph.core.NetworkWeights
  */
 public class NeuralNetworkCODEC {
 
@@ -87,21 +87,16 @@ public class SubSampling implements Sampling {
 
         int idxCounter = 0; // index of main data set
         for (int subSetIdx = 0; subSetIdx < numSubSets; subSetIdx++) {
-            // create new subset
-            DataSet newSubSet = new DataSet(dataSet.getInputSize(), dataSet.getOutputSize());
-            // cop column names if there are any
-            newSubSet.setColumnNames(dataSet.getColumnNames());
-
-            // fill subset with rows
-            long subSetSize = Math.round(subSetSizes[subSetIdx] * dataSet.size()); // calculate size of the current subset
-            for (int i = 0; i < subSetSize; i++) {
-                if (idxCounter >= dataSet.size()) {
-                    break;
-                }
-                newSubSet.add(dataSet.getRowAt(idxCounter));
-                idxCounter++;
+            // calculate size of the current subset
+            long subSetSize = Math.round(subSetSizes[subSetIdx] * dataSet.size());
+            int[] indexes = new int[(int) Math.min(subSetSize, dataSet.size() - idxCounter)];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = idxCounter++;
             }
 
+            // create new subset with rows and column names of data set
+            DataSet newSubSet = dataSet.subset(indexes);
+
             // add current subset to list that will be returned
             subSets.add(newSubSet);
         }
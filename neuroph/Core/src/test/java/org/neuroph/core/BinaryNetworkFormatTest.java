@@ -0,0 +1,204 @@
+package org.neuroph.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.learning.IterativeLearning;
+import org.neuroph.core.learning.error.ErrorFunction;
+import org.neuroph.core.learning.error.MeanAbsoluteError;
+import org.neuroph.core.learning.error.MeanSquaredError;
+import org.neuroph.core.learning.stop.MaxErrorStop;
+import org.neuroph.core.learning.stop.MaxIterationsStop;
+import org.neuroph.core.learning.stop.StopCondition;
+import org.neuroph.nnet.ConvolutionalNetwork;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.nnet.learning.MomentumBackpropagation;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Tests for BinaryNetworkFormat, networks read from file must give the same outputs
+ */
+public class BinaryNetworkFormatTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static MultiLayerPerceptron createMlp() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 5, 7, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        mlp.setLabel("test mlp");
+        mlp.setOutputLabels(new String[]{"a", "b", "c"});
+        return mlp;
+    }
+
+    private static void assertSameNetwork(NeuralNetwork<?> expected, NeuralNetwork<?> actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getLayersCount(), actual.getLayersCount());
+        assertArrayEquals(expected.getWeights(), actual.getWeights());
+        Random random = new Random(7);
+        for (int s = 0; s < 10; s++) {
+            double[] input = new double[expected.getInputsCount()];
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble() * 2 - 1;
+            }
+            expected.setInput(input);
+            expected.calculate();
+            actual.setInput(input);
+            actual.calculate();
+            assertArrayEquals(expected.getOutput(), actual.getOutput(), 0);
+        }
+    }
+
+    @Test
+    public void testSaveAndCreateFromFile() throws IOException {
+        MultiLayerPerceptron mlp = createMlp();
+        mlp.getLearningRule().setLearningRate(0.3);
+        ((MomentumBackpropagation) mlp.getLearningRule()).setMomentum(0.6);
+        File file = folder.newFile("mlp.nnet");
+        mlp.save(file.getPath());
+
+        assertTrue(BinaryNetworkFormat.isBinaryFormat(file));
+        NeuralNetwork<?> loaded = NeuralNetwork.createFromFile(file);
+        assertSameNetwork(mlp, loaded);
+        assertEquals("test mlp", loaded.getLabel());
+        assertArrayEquals(new String[]{"a", "b", "c"}, loaded.getOutputLabels());
+        assertEquals(mlp.getNetworkType(), loaded.getNetworkType());
+
+        MomentumBackpropagation learningRule = (MomentumBackpropagation) loaded.getLearningRule();
+        assertSame(loaded, learningRule.getNeuralNetwork());
+        assertEquals(0.3, learningRule.getLearningRate(), 0);
+        assertEquals(0.6, learningRule.getMomentum(), 0);
+
+        try (FileInputStream in = new FileInputStream(file)) {
+            assertSameNetwork(mlp, NeuralNetwork.load(in));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLearningRuleObjectSettings() throws Exception {
+        MultiLayerPerceptron mlp = createMlp();
+        mlp.getLearningRule().setErrorFunction(new MeanAbsoluteError());
+        File file = folder.newFile("mlp.nnet");
+        mlp.save(file.getPath());
+
+        assertTrue(BinaryNetworkFormat.isBinaryFormat(file));
+        MomentumBackpropagation learningRule = (MomentumBackpropagation) NeuralNetwork.createFromFile(file).getLearningRule();
+        assertTrue(learningRule.getErrorFunction() instanceof MeanAbsoluteError);
+
+        Field stopConditionsField = IterativeLearning.class.getDeclaredField("stopConditions");
+        stopConditionsField.setAccessible(true);
+        List<StopCondition> stopConditions = (List<StopCondition>) stopConditionsField.get(learningRule);
+        assertEquals(1, stopConditions.size());
+        Field learningRuleField = MaxErrorStop.class.getDeclaredField("learningRule");
+        learningRuleField.setAccessible(true);
+        assertSame(learningRule, learningRuleField.get(stopConditions.get(0)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNoJavaSerialization() throws Exception {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(2, 3, 1);
+        mlp.getLearningRule().setMaxError(0.02);
+        mlp.getLearningRule().setMaxIterations(500);
+        Field stopConditionsField = IterativeLearning.class.getDeclaredField("stopConditions");
+        stopConditionsField.setAccessible(true);
+        ((List<StopCondition>) stopConditionsField.get(mlp.getLearningRule())).add(new MaxIterationsStop(mlp.getLearningRule()));
+        File file = folder.newFile("mlp.nnet");
+        mlp.save(file.getPath());
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int i = 0; i + 1 < bytes.length; i++) {
+            assertFalse("Java serialization stream at " + i, bytes[i] == (byte) 0xAC && bytes[i + 1] == (byte) 0xED);
+        }
+
+        MomentumBackpropagation learningRule = (MomentumBackpropagation) NeuralNetwork.createFromFile(file).getLearningRule();
+        assertTrue(learningRule.getErrorFunction() instanceof MeanSquaredError);
+        assertEquals(0.02, learningRule.getMaxError(), 0);
+        assertEquals(500, learningRule.getMaxIterations());
+        List<StopCondition> stopConditions = (List<StopCondition>) stopConditionsField.get(learningRule);
+        assertEquals(2, stopConditions.size());
+        assertTrue(stopConditions.get(0) instanceof MaxErrorStop);
+        assertTrue(stopConditions.get(1) instanceof MaxIterationsStop);
+        Field learningRuleField = MaxIterationsStop.class.getDeclaredField("learningRule");
+        learningRuleField.setAccessible(true);
+        assertSame(learningRule, learningRuleField.get(stopConditions.get(1)));
+    }
+
+    @Test
+    public void testUnsupportedLearningRuleSetting() {
+        MultiLayerPerceptron mlp = createMlp();
+        mlp.getLearningRule().setErrorFunction(new ErrorFunction() {
+            @Override
+            public double getTotalError() {
+                return 0;
+            }
+
+            @Override
+            public double[] addPatternError(double[] predictedOutput, double[] targetOutput) {
+                return new double[predictedOutput.length];
+            }
+
+            @Override
+            public void reset() {
+            }
+        });
+        assertFalse(BinaryNetworkFormat.isSupported(mlp));
+    }
+
+    @Test
+    public void testMemoryMappedRead() throws IOException {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 100, 120, 10);
+        File file = folder.newFile("mlp.nnet");
+        BinaryNetworkFormat.write(mlp, file);
+
+        assertSameNetwork(mlp, BinaryNetworkFormat.read(file, true));
+        assertSameNetwork(mlp, BinaryNetworkFormat.read(file, false));
+    }
+
+    @Test
+    public void testListedConnections() throws IOException {
+        MultiLayerPerceptron mlp = createMlp();
+        mlp.connectInputsToOutputs(); // output neurons are connected to two layers
+        File file = folder.newFile("mlp.nnet");
+        BinaryNetworkFormat.write(mlp, file);
+
+        assertSameNetwork(mlp, BinaryNetworkFormat.read(file));
+    }
+
+    @Test
+    public void testUnsupportedNetworkIsSerialized() throws IOException {
+        ConvolutionalNetwork network = new ConvolutionalNetwork.Builder()
+                .withInputLayer(6, 6, 1)
+                .withConvolutionLayer(3, 3, 2)
+                .withFullConnectedLayer(2)
+                .build();
+        assertFalse(BinaryNetworkFormat.isSupported(network));
+
+        File file = folder.newFile("cnn.nnet");
+        network.save(file.getPath());
+        assertFalse(BinaryNetworkFormat.isBinaryFormat(file));
+        assertEquals(ConvolutionalNetwork.class, NeuralNetwork.createFromFile(file).getClass());
+    }
+
+    @Test(expected = NeurophException.class)
+    public void testTruncatedFile() throws IOException {
+        File file = folder.newFile("mlp.nnet");
+        BinaryNetworkFormat.write(createMlp(), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 8);
+        }
+        BinaryNetworkFormat.read(file, false);
+    }
+}
@@ -0,0 +1,271 @@
+package org.neuroph.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Tests for CompiledNetwork, compiled outputs must match NeuralNetwork.calculate()
+ */
+public class CompiledNetworkTest {
+
+    private static void assertSameOutputs(NeuralNetwork<?> network, int samples) {
+        CompiledNetwork compiled = network.compile();
+        Random random = new Random(7);
+        for (int s = 0; s < samples; s++) {
+            double[] input = new double[network.getInputsCount()];
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble() * 4 - 2;
+            }
+            network.setInput(input);
+            network.calculate();
+            assertArrayEquals(network.getOutput(), compiled.calculate(input), 1e-12);
+        }
+    }
+
+    @Test
+    public void testSigmoidMlp() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 5, 8, 6, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        assertSameOutputs(mlp, 20);
+    }
+
+    @Test
+    public void testTanhMlp() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 4, 7, 2);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        assertSameOutputs(mlp, 20);
+    }
+
+    @Test
+    public void testLinearMlp() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.LINEAR, 3, 4, 2);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        assertSameOutputs(mlp, 10);
+    }
+
+    @Test
+    public void testLayerSizes() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(4, 6, 2);
+        CompiledNetwork compiled = mlp.compile();
+        assertEquals(3, compiled.getLayersCount());
+        assertEquals(4, compiled.getInputsCount());
+        assertEquals(6, compiled.getLayerSize(1));
+        assertEquals(2, compiled.getOutputsCount());
+        assertEquals(6 * 4, compiled.getLayerWeights(1).length);
+        assertEquals(6, compiled.getLayerBiases(1).length);
+    }
+
+    @Test(expected = NeurophException.class)
+    public void testSkipConnectionsNotSupported() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(2, 3, 1);
+        mlp.connectInputsToOutputs();
+        mlp.compile();
+    }
+
+    @Test(expected = VectorSizeMismatchException.class)
+    public void testWrongInputSize() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(2, 3, 1);
+        mlp.compile().calculate(1, 2, 3);
+    }
+
+    @Test
+    public void testPredictWithContext() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 3, 5, 2);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        CompiledNetwork compiled = mlp.compile();
+        InferenceContext context = compiled.createContext();
+
+        double[] input = {0.1, 0.5, 0.9};
+        double[] output = compiled.predict(input, context);
+        assertSame(context.getOutput(), output);
+
+        mlp.setInput(input);
+        mlp.calculate();
+        assertArrayEquals(mlp.getOutput(), output, 1e-12);
+        assertTrue(compiled.isThreadSafe());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncompatibleContext() {
+        CompiledNetwork compiled = new MultiLayerPerceptron(3, 5, 2).compile();
+        CompiledNetwork other = new MultiLayerPerceptron(3, 4, 2).compile();
+        compiled.predict(new double[3], other.createContext());
+    }
+
+    @Test
+    public void testConcurrentPredict() throws Exception {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 10, 20, 4);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        final CompiledNetwork compiled = mlp.compile();
+
+        final double[][] inputs = new double[200][10];
+        final double[][] expected = new double[inputs.length][];
+        Random random = new Random(1);
+        for (int s = 0; s < inputs.length; s++) {
+            for (int i = 0; i < 10; i++) {
+                inputs[s][i] = random.nextDouble();
+            }
+            expected[s] = compiled.calculate(inputs[s]).clone();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    for (int rep = 0; rep < 20; rep++) {
+                        for (int s = 0; s < inputs.length; s++) {
+                            double[] output = compiled.predict(inputs[s]);
+                            for (int k = 0; k < output.length; k++) {
+                                if (output[k] != expected[s][k]) {
+                                    return false;
+                                }
+                            }
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPredictBatch() {
+        // sizes which are not multiples of the 4x4 kernel and more rows than one block
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 7, 13, 5, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        CompiledNetwork compiled = mlp.compile();
+
+        Random random = new Random(5);
+        double[][] inputs = new double[150][7];
+        for (double[] row : inputs) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = random.nextDouble() * 2 - 1;
+            }
+        }
+
+        InferenceContext context = compiled.createContext();
+        double[][] outputs = compiled.predictBatch(inputs, context);
+        assertEquals(inputs.length, outputs.length);
+        for (int r = 0; r < inputs.length; r++) {
+            mlp.setInput(inputs[r]);
+            mlp.calculate();
+            assertArrayEquals(mlp.getOutput(), outputs[r], 1e-12);
+        }
+
+        // same batch size reuses output buffers
+        assertSame(outputs, compiled.predictBatch(inputs, context));
+    }
+
+    @Test
+    public void testNetworkPredictBatch() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 2, 3, 1);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        org.neuroph.core.data.DataSet dataSet = new org.neuroph.core.data.DataSet(2, 1);
+        dataSet.add(new double[]{0, 0}, new double[]{0});
+        dataSet.add(new double[]{0, 1}, new double[]{1});
+        dataSet.add(new double[]{1, 0}, new double[]{1});
+        dataSet.add(new double[]{1, 1}, new double[]{0});
+
+        double[][] outputs = mlp.predictBatch(dataSet);
+        for (int r = 0; r < dataSet.size(); r++) {
+            mlp.setInput(dataSet.getRowAt(r).getInput());
+            mlp.calculate();
+            assertArrayEquals(mlp.getOutput(), outputs[r], 1e-12);
+        }
+    }
+
+    @Test
+    public void testNetworkPredictBatchIntoOutputs() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 3, 4, 2);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        double[][] inputs = {{0, 0.5, 1}, {1, 0, -1}, {0.2, 0.3, 0.4}};
+        double[][] outputs = new double[inputs.length][2];
+
+        assertSame(outputs, mlp.predictBatch(inputs, outputs));
+        CompiledNetwork compiled = mlp.compile();
+        for (int r = 0; r < inputs.length; r++) {
+            assertArrayEquals(compiled.calculate(inputs[r]), outputs[r], 1e-12);
+        }
+    }
+
+    @Test
+    public void testNetworkPredictBatchInBlocks() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 4, 6, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        // more rows than two blocks, last block is not full
+        org.neuroph.core.data.DataSet dataSet = new org.neuroph.core.data.DataSet(4, 3);
+        Random random = new Random(9);
+        for (int r = 0; r < 600; r++) {
+            double[] input = new double[4];
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble() * 2 - 1;
+            }
+            dataSet.add(input, new double[]{r, 0, 0});
+        }
+
+        List<double[]> outputs = new ArrayList<>();
+        List<double[]> desiredOutputs = new ArrayList<>();
+        mlp.predictBatch(dataSet, (output, desiredOutput) -> {
+            outputs.add(output.clone());
+            desiredOutputs.add(desiredOutput);
+        });
+        assertEquals(dataSet.size(), outputs.size());
+        for (int r = 0; r < dataSet.size(); r++) {
+            mlp.setInput(dataSet.getRowAt(r).getInput());
+            mlp.calculate();
+            assertArrayEquals(mlp.getOutput(), outputs.get(r), 1e-12);
+            assertSame(dataSet.getRowAt(r).getDesiredOutput(), desiredOutputs.get(r));
+        }
+    }
+
+    @Test
+    public void testNetworkPredictBatchFromManyThreads() throws Exception {
+        final MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 4, 6, 2);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(5)));
+        List<double[][]> batches = new ArrayList<>();
+        Random random = new Random(9);
+        for (int b = 0; b < 8; b++) {
+            double[][] inputs = new double[50 + b][4];
+            for (double[] input : inputs) {
+                for (int i = 0; i < input.length; i++) {
+                    input[i] = random.nextDouble();
+                }
+            }
+            batches.add(inputs);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<double[][]>> futures = new ArrayList<>();
+            for (final double[][] inputs : batches) {
+                futures.add(executor.submit(() -> mlp.predictBatch(inputs)));
+            }
+            CompiledNetwork compiled = mlp.compile();
+            for (int b = 0; b < batches.size(); b++) {
+                double[][] outputs = futures.get(b).get();
+                for (int r = 0; r < outputs.length; r++) {
+                    assertArrayEquals(compiled.calculate(batches.get(b)[r]), outputs[r], 1e-12);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
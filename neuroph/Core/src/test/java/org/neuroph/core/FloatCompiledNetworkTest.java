@@ -0,0 +1,71 @@
+package org.neuroph.core;
+
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Tests for FloatCompiledNetwork, outputs must be close to double precision outputs
+ */
+public class FloatCompiledNetworkTest {
+
+    CompiledNetwork compiled;
+    FloatCompiledNetwork floatCompiled;
+    double[][] inputs;
+
+    @Before
+    public void setUp() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 30, 40, 20, 5);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        compiled = mlp.compile();
+        floatCompiled = compiled.toFloat();
+
+        Random random = new Random(7);
+        inputs = new double[70][30];
+        for (double[] input : inputs) {
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble() * 2 - 1;
+            }
+        }
+    }
+
+    @Test
+    public void testPredict() {
+        assertEquals(compiled.getLayersCount(), floatCompiled.getLayersCount());
+        assertEquals(5, floatCompiled.getOutputsCount());
+        for (double[] input : inputs) {
+            float[] output = floatCompiled.predict(FloatCompiledNetwork.toFloat(input));
+            assertArrayEquals(compiled.predict(input), FloatCompiledNetwork.toDouble(output), 1e-5);
+        }
+    }
+
+    @Test
+    public void testPredictBatch() {
+        float[][] floatInputs = new float[inputs.length][];
+        for (int r = 0; r < inputs.length; r++) {
+            floatInputs[r] = FloatCompiledNetwork.toFloat(inputs[r]);
+        }
+        FloatInferenceContext context = floatCompiled.createContext();
+        float[][] outputs = floatCompiled.predictBatch(floatInputs, context);
+        for (int r = 0; r < inputs.length; r++) {
+            assertArrayEquals(floatCompiled.calculate(floatInputs[r]), outputs[r], 1e-6f);
+        }
+    }
+
+    @Test
+    public void testToDouble() {
+        CompiledNetwork converted = floatCompiled.toDouble();
+        for (int l = 1; l < compiled.getLayersCount(); l++) {
+            double[] weights = compiled.getLayerWeights(l);
+            double[] convertedWeights = converted.getLayerWeights(l);
+            for (int i = 0; i < weights.length; i++) {
+                assertEquals((float) weights[i], convertedWeights[i], 0);
+            }
+        }
+        assertArrayEquals(compiled.predict(inputs[0]), converted.predict(inputs[0]), 1e-5);
+    }
+}
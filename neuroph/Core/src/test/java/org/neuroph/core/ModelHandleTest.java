@@ -0,0 +1,132 @@
+package org.neuroph.core;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+public class ModelHandleTest {
+
+    private static MultiLayerPerceptron createNetwork(long seed) {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 6, 10, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(seed)));
+        return mlp;
+    }
+
+    private static double[] calculate(NeuralNetwork<?> network, double[] input) {
+        network.setInput(input);
+        network.calculate();
+        return network.getOutput().clone();
+    }
+
+    @Test
+    public void testSnapshotIsImmutableCopy() {
+        MultiLayerPerceptron mlp = createNetwork(1);
+        double[] input = {0.1, -0.2, 0.3, 0.4, -0.5, 0.6};
+        double[] expected = calculate(mlp, input);
+        Double[] weights = mlp.getWeights();
+
+        ModelHandle model = new ModelHandle(mlp);
+        ModelSnapshot snapshot = model.get();
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(weights.length, snapshot.getWeightsCount());
+
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(2)));
+        assertArrayEquals(expected, snapshot.predict(input), 1e-12);
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(weights[i], snapshot.getWeight(i), 0);
+        }
+
+        snapshot.applyTo(mlp);
+        assertArrayEquals(expected, calculate(mlp, input), 0);
+    }
+
+    @Test
+    public void testPublishAndRollback() {
+        ModelHandle model = new ModelHandle(createNetwork(1));
+        ModelSnapshot first = model.get();
+        ModelSnapshot second = model.publish(createNetwork(2));
+        assertEquals(2, model.getVersion());
+        assertSame(second, model.get());
+
+        ModelSnapshot third = model.createSnapshot(createNetwork(3));
+        assertFalse(model.compareAndPublish(first, third));
+        assertTrue(model.compareAndPublish(second, third));
+        assertEquals(3, model.getVersion());
+
+        assertSame(third, model.publish(first));
+        assertSame(first, model.get());
+    }
+
+    @Test
+    public void testReadersSeeWholeSnapshots() throws InterruptedException {
+        MultiLayerPerceptron a = createNetwork(1);
+        MultiLayerPerceptron b = createNetwork(2);
+        double[] input = {0.5, 0.4, -0.3, 0.2, 0.1, -0.9};
+        double[] outputA = calculate(a, input);
+        double[] outputB = calculate(b, input);
+        double firstWeightA = a.getWeights()[0];
+
+        ModelHandle model = new ModelHandle(a);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        ModelSnapshot snapshot = model.get();
+                        double[] expected = snapshot.getWeight(0) == firstWeightA ? outputA : outputB;
+                        assertArrayEquals(expected, snapshot.predict(input), 1e-12);
+                    }
+                } catch (Throwable ex) {
+                    failure.set(ex);
+                }
+            });
+            readers[t].start();
+        }
+
+        long version = model.getVersion();
+        for (int i = 0; i < 200; i++) {
+            ModelSnapshot snapshot = model.publish(i % 2 == 0 ? b : a);
+            assertTrue(snapshot.getVersion() > version);
+            version = snapshot.getVersion();
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testConcurrentPublishersKeepHighestVersion() throws InterruptedException {
+        MultiLayerPerceptron[] networks = {createNetwork(1), createNetwork(2), createNetwork(3), createNetwork(4)};
+        ModelHandle model = new ModelHandle(networks[0]);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] publishers = new Thread[networks.length];
+        for (int t = 0; t < publishers.length; t++) {
+            final MultiLayerPerceptron network = networks[t];
+            publishers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        ModelSnapshot snapshot = model.publish(network);
+                        assertTrue(model.getVersion() >= snapshot.getVersion());
+                    }
+                } catch (Throwable ex) {
+                    failure.set(ex);
+                }
+            });
+            publishers[t].start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        assertNull(failure.get());
+        assertEquals(1 + 100 * networks.length, model.getVersion());
+    }
+}
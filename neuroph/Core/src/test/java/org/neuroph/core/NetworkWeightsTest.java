@@ -0,0 +1,86 @@
+package org.neuroph.core;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+public class NetworkWeightsTest {
+
+    private static MultiLayerPerceptron createNetwork(long seed) {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 4, 7, 5, 2);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(seed)));
+        return mlp;
+    }
+
+    @Test
+    public void testPrimitiveWeightsMatchBoxedWeights() {
+        MultiLayerPerceptron mlp = createNetwork(1);
+        Double[] boxed = mlp.getWeights();
+        assertEquals(boxed.length, mlp.getWeightsCount());
+
+        double[] values = mlp.getWeights(new double[mlp.getWeightsCount()]);
+        NetworkWeights view = mlp.createWeightsView();
+        double[] viewValues = view.read(new double[view.size()]);
+        for (int i = 0; i < boxed.length; i++) {
+            assertEquals(boxed[i], values[i], 0);
+            assertEquals(boxed[i], viewValues[i], 0);
+        }
+    }
+
+    @Test
+    public void testWriteAndLayerBlocks() {
+        MultiLayerPerceptron source = createNetwork(1);
+        MultiLayerPerceptron target = createNetwork(2);
+        double[] values = source.getWeights(new double[source.getWeightsCount()]);
+
+        NetworkWeights view = target.createWeightsView();
+        assertEquals(4, view.getLayersCount());
+        assertEquals(0, view.getLayerSize(0));
+        assertEquals(view.size(), view.getLayerOffset(view.getLayersCount()));
+
+        // copy layer by layer, through a smaller buffer
+        double[] block = new double[view.size()];
+        for (int l = 0; l < view.getLayersCount(); l++) {
+            System.arraycopy(values, view.getLayerOffset(l), block, 1, view.getLayerSize(l));
+            view.writeLayer(l, block, 1);
+            double[] read = view.readLayer(l, new double[view.getLayerSize(l) + 2], 2);
+            for (int k = 0; k < view.getLayerSize(l); k++) {
+                assertEquals(values[view.getLayerOffset(l) + k], read[k + 2], 0);
+            }
+        }
+        assertArrayEquals(values, target.getWeights(new double[target.getWeightsCount()]), 0);
+
+        target.setWeights(new double[target.getWeightsCount()]);
+        view.write(values);
+        assertArrayEquals(values, view.read(new double[view.size()]), 0);
+    }
+
+    @Test
+    public void testDoubleBuffer() {
+        MultiLayerPerceptron source = createNetwork(1);
+        MultiLayerPerceptron target = createNetwork(2);
+        NetworkWeights sourceView = source.createWeightsView();
+
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(8 * (sourceView.size() + 1)).asDoubleBuffer();
+        buffer.put(42);
+        sourceView.read(buffer);
+        assertEquals(0, buffer.remaining());
+
+        buffer.position(1);
+        target.createWeightsView().write(buffer);
+        assertArrayEquals(source.getWeights(new double[source.getWeightsCount()]),
+                target.getWeights(new double[target.getWeightsCount()]), 0);
+    }
+
+    @Test(expected = VectorSizeMismatchException.class)
+    public void testTooSmallArray() {
+        NetworkWeights view = createNetwork(1).createWeightsView();
+        view.read(new double[view.size() - 1]);
+    }
+}
@@ -0,0 +1,62 @@
+package org.neuroph.core;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.nnet.MultiLayerPerceptron;
+
+/**
+ * Tests for WeightMatrix
+ */
+public class WeightMatrixTest {
+
+    MultiLayerPerceptron mlp;
+    WeightMatrix matrix;
+
+    @Before
+    public void setUp() {
+        mlp = new MultiLayerPerceptron(3, 4, 2); // 3 inputs + bias, 4 hidden + bias
+        matrix = new WeightMatrix(mlp.getLayerAt(1), 2);
+    }
+
+    @Test
+    public void testLayout() {
+        Layer layer = mlp.getLayerAt(1);
+        assertEquals(layer.getNeuronsCount(), matrix.getRowsCount());
+        assertEquals(4 * 4, matrix.size()); // bias neuron has no input connections
+
+        for (int r = 0; r < 4; r++) {
+            Neuron neuron = layer.getNeuronAt(r);
+            assertEquals(r * 4, matrix.getRowOffset(r));
+            assertEquals(r * 4, matrix.getRowOffset(neuron));
+            for (int c = 0; c < 4; c++) {
+                assertSame(neuron.getInputConnections().get(c).getWeight(), matrix.getWeight(r * 4 + c));
+            }
+        }
+        assertEquals(matrix.size(), matrix.getRowOffset(matrix.getRowsCount()));
+        assertEquals(-1, matrix.getRowOffset(mlp.getLayerAt(2).getNeuronAt(0)));
+    }
+
+    @Test
+    public void testState() {
+        assertEquals(2, matrix.getStateSize());
+        assertEquals(matrix.size(), matrix.getState(1).length);
+        assertNotSame(matrix.getState(0), matrix.getState(1));
+    }
+
+    @Test
+    public void testReadWriteWeights() {
+        matrix.readWeights();
+        double[] values = matrix.getValues();
+        for (int k = 0; k < matrix.size(); k++) {
+            assertEquals(matrix.getWeight(k).value, values[k], 0);
+            values[k] = k;
+            matrix.getChanges()[k] = -k;
+        }
+        matrix.writeWeights();
+        for (int k = 0; k < matrix.size(); k++) {
+            assertEquals(k, matrix.getWeight(k).value, 0);
+            assertEquals(-k, matrix.getWeight(k).weightChange, 0);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.neuroph.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neuroph.core.exceptions.NeurophException;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.nnet.learning.BackPropagation;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Tests for BufferedDataSet
+ */
+public class BufferedDataSetTest {
+
+    private static final String IRIS = "src/test/resources/iris_normalized.txt";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    DataSet iris;
+    BufferedDataSet buffered;
+
+    @Before
+    public void setUp() throws IOException {
+        iris = DataSet.createFromFile(IRIS, 4, 3, ",");
+        buffered = new BufferedDataSet(new File(IRIS), 4, 3, ",");
+        buffered.setBufferSize(16);
+    }
+
+    private static List<DataSetRow> rows(Iterable<DataSetRow> dataSet) {
+        List<DataSetRow> rows = new ArrayList<>();
+        for (DataSetRow row : dataSet) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(150, buffered.size());
+        assertEquals(150, buffered.size());
+    }
+
+    @Test
+    public void testMultiplePasses() {
+        for (int pass = 0; pass < 3; pass++) {
+            assertEquals(iris.getRows(), rows(buffered));
+        }
+    }
+
+    @Test
+    public void testHasNextAndRewind() {
+        for (int pass = 0; pass < 2; pass++) {
+            int count = 0;
+            while (buffered.hasNext()) {
+                assertEquals(iris.getRowAt(count++), buffered.next());
+            }
+            assertEquals(150, count);
+            buffered.rewind();
+        }
+    }
+
+    @Test
+    public void testShuffleBuffer() {
+        buffered.setShuffleBuffer(true);
+        buffered.setRandom(new Random(1));
+        List<DataSetRow> rows = rows(buffered);
+        assertEquals(150, rows.size());
+        assertFalse(iris.getRows().equals(rows));
+        // rows are shuffled only within chunks
+        for (int i = 0; i < rows.size(); i += 16) {
+            int to = Math.min(i + 16, rows.size());
+            assertTrue(rows.subList(i, to).containsAll(iris.getRows().subList(i, to)));
+        }
+    }
+
+    @Test
+    public void testAbandonedIteratorDoesNotBlock() {
+        buffered.setBufferSize(1);
+        Iterator<DataSetRow> iterator = buffered.iterator();
+        assertEquals(iris.getRowAt(0), iterator.next());
+        assertEquals(iris.getRows(), rows(buffered));
+    }
+
+    @Test
+    public void testRegexDelimiterAndMissingLastNewLine() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "1 ,2\n\n3; 4\n5,6".getBytes(StandardCharsets.UTF_8));
+        BufferedDataSet dataSet = new BufferedDataSet(file, 1, 1, "[,;]");
+        List<DataSetRow> rows = rows(dataSet);
+        assertEquals(3, rows.size());
+        assertEquals(3, dataSet.size());
+        assertArrayEquals(new double[]{5}, rows.get(2).getInput(), 0);
+        assertArrayEquals(new double[]{6}, rows.get(2).getDesiredOutput(), 0);
+    }
+
+    @Test
+    public void testErrorLineNumber() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "1,2\n3,x\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            rows(new BufferedDataSet(file, 1, 1, ","));
+            fail("Bad number must be reported");
+        } catch (NeurophException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("line 2"));
+        }
+    }
+
+    @Test
+    public void testTraining() {
+        Double[][] weights = new Double[2][];
+        DataSet[] dataSets = {iris, buffered};
+        for (int i = 0; i < 2; i++) {
+            MultiLayerPerceptron mlp = new MultiLayerPerceptron(4, 5, 3);
+            mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+            BackPropagation learningRule = new BackPropagation();
+            learningRule.setMaxIterations(5);
+            mlp.setLearningRule(learningRule);
+            mlp.learn(dataSets[i]);
+            weights[i] = mlp.getWeights();
+        }
+        assertArrayEquals(weights[0], weights[1]);
+    }
+}
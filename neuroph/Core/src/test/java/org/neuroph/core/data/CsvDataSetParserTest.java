@@ -0,0 +1,117 @@
+package org.neuroph.core.data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neuroph.core.exceptions.NeurophException;
+
+/**
+ * Tests for CsvDataSetParser
+ */
+public class CsvDataSetParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static double parse(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        return CsvDataSetParser.parseDouble(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testParseDouble() {
+        String[] values = {"0", "-0", "1", "-1.5", " 2.25 ", "+3", ".5", "5.", "007", "0.1", "0.3", "123456.789e-3",
+            "1e22", "1e23", "4.9e-324", "1.7976931348623157E308", "9007199254740993", "123456789012345678901234",
+            "0.000000000000000000000000001", "NaN", "-Infinity", "1.0d", "0x1p3"};
+        for (String value : values) {
+            assertEquals(value, Double.parseDouble(value), parse(value), 0);
+            assertEquals(value, Double.doubleToRawLongBits(Double.parseDouble(value)), Double.doubleToRawLongBits(parse(value)));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            String value = i % 2 == 0 ? Double.toString(random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20))
+                    : String.format("%." + random.nextInt(12) + "f", random.nextDouble() * 1000 - 500);
+            assertEquals(value, Double.parseDouble(value), parse(value), 0);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseInvalidDouble() {
+        parse("1.2.3");
+    }
+
+    @Test
+    public void testParseInChunks() throws IOException {
+        File file = new File("src/test/resources/iris_normalized.txt");
+        CsvDataSetParser parser = new CsvDataSetParser(4, 3, ",");
+        parser.setChunkSize(100);
+        parser.setParallelism(3);
+        DataSet dataSet = parser.parse(file, false);
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            int i = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] values = line.split(",");
+                DataSetRow row = dataSet.getRowAt(i++);
+                for (int k = 0; k < 4; k++) {
+                    assertEquals(Double.parseDouble(values[k]), row.getInput()[k], 0);
+                }
+                for (int k = 0; k < 3; k++) {
+                    assertEquals(Double.parseDouble(values[4 + k]), row.getDesiredOutput()[k], 0);
+                }
+            }
+            assertEquals(i, dataSet.size());
+        }
+    }
+
+    @Test
+    public void testColumnNamesAndLineEndings() throws IOException {
+        File file = write("a;b;c\r\n1;2;3\r\n\r\n4 ; 5;6;7\r\n");
+        DataSet dataSet = DataSet.createFromFile(file.getPath(), 2, 1, ";", true);
+        assertArrayEquals(new String[]{"a", "b", "c"}, dataSet.getColumnNames());
+        assertEquals(2, dataSet.size());
+        assertArrayEquals(new double[]{4, 5}, dataSet.getRowAt(1).getInput(), 0);
+        assertArrayEquals(new double[]{6}, dataSet.getRowAt(1).getDesiredOutput(), 0);
+    }
+
+    @Test
+    public void testErrorLineNumber() throws IOException {
+        StringBuilder content = new StringBuilder("x,y\n");
+        for (int i = 0; i < 50; i++) {
+            content.append(i).append(',').append(i == 37 ? "oops" : "1").append('\n');
+        }
+        CsvDataSetParser parser = new CsvDataSetParser(1, 1, ",");
+        parser.setChunkSize(64);
+        parser.setParallelism(2);
+        try {
+            parser.parse(write(content.toString()), true);
+            fail("Bad number must be reported");
+        } catch (NeurophException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("line 39"));
+        }
+
+        try {
+            DataSet.createFromFile(write("1,2\n3\n").getPath(), 1, 1, ",");
+            fail("Missing value must be reported");
+        } catch (NeurophException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("line 2"));
+        }
+    }
+}
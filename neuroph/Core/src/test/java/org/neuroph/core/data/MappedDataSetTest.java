@@ -0,0 +1,128 @@
+package org.neuroph.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.nnet.learning.BackPropagation;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Tests for MappedDataSet
+ */
+public class MappedDataSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    DataSet iris;
+
+    @Before
+    public void setUp() {
+        iris = DataSet.createFromFile("src/test/resources/iris_normalized.txt", 4, 3, ",", false);
+    }
+
+    private static void assertSameRows(DataSet expected, DataSet actual, double delta) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.getRowAt(i).getInput(), actual.getRowAt(i).getInput(), delta);
+            assertArrayEquals(expected.getRowAt(i).getDesiredOutput(), actual.getRowAt(i).getDesiredOutput(), delta);
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        File file = folder.newFile("iris.bin");
+        MappedDataSet mapped = MappedDataSet.write(iris, file, false);
+        assertSameRows(iris, mapped, 0);
+        assertArrayEquals(iris.getColumnNames(), mapped.getColumnNames());
+        assertTrue(mapped.isSupervised());
+
+        double[] input = new double[4];
+        assertArrayEquals(iris.getRowAt(10).getInput(), mapped.getInput(10, input), 0);
+        assertSameRows(iris, new MappedDataSet(file), 0);
+    }
+
+    @Test
+    public void testSinglePrecision() throws IOException {
+        MappedDataSet mapped = MappedDataSet.write(iris, folder.newFile("iris.bin"), true);
+        assertTrue(mapped.isSinglePrecision());
+        assertSameRows(iris, mapped, 1e-7);
+
+        float[] input = mapped.getInput(3, new float[4]);
+        for (int i = 0; i < input.length; i++) {
+            assertEquals((float) iris.getRowAt(3).getInput()[i], input[i], 0);
+        }
+    }
+
+    @Test
+    public void testWriter() throws IOException {
+        File file = folder.newFile("iris.bin");
+        try (MappedDataSet.Writer writer = new MappedDataSet.Writer(file, 4, 3, false, iris.getColumnNames())) {
+            for (DataSetRow row : iris) {
+                writer.write(row.getInput(), row.getDesiredOutput());
+            }
+        }
+        MappedDataSet mapped = new MappedDataSet(file);
+        assertSameRows(iris, mapped, 0);
+        assertArrayEquals(iris.getColumnNames(), mapped.getColumnNames());
+    }
+
+    @Test
+    public void testConvertCsv() throws IOException {
+        MappedDataSet mapped = MappedDataSet.convertCsv(new File("src/test/resources/iris_normalized.txt"),
+                folder.newFile("iris.bin"), 4, 3, ",", false, false);
+        assertSameRows(iris, mapped, 0);
+    }
+
+    @Test
+    public void testShuffleAndSplit() throws IOException {
+        MappedDataSet mapped = MappedDataSet.write(iris, folder.newFile("iris.bin"), false);
+        mapped.shuffle(new Random(1));
+        assertEquals(iris.size(), mapped.size());
+
+        DataSet[] parts = mapped.split(0.6, 0.4);
+        assertTrue(parts[0] instanceof MappedDataSet);
+        assertEquals(90, parts[0].size());
+        assertEquals(60, parts[1].size());
+
+        // all rows are in one of the parts
+        List<DataSetRow> rows = new ArrayList<>(iris.getRows());
+        for (DataSet part : parts) {
+            for (DataSetRow row : part) {
+                assertTrue(rows.remove(row));
+            }
+        }
+        assertTrue(rows.isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws IOException {
+        MappedDataSet mapped = MappedDataSet.write(iris, folder.newFile("iris.bin"), false);
+        mapped.add(new DataSetRow(new double[4], new double[3]));
+    }
+
+    @Test
+    public void testTraining() throws IOException {
+        MappedDataSet mapped = MappedDataSet.write(iris, folder.newFile("iris.bin"), false);
+        Double[][] weights = new Double[2][];
+        DataSet[] dataSets = {iris, mapped};
+        for (int i = 0; i < 2; i++) {
+            MultiLayerPerceptron mlp = new MultiLayerPerceptron(4, 5, 3);
+            mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+            BackPropagation learningRule = new BackPropagation();
+            learningRule.setMaxIterations(5);
+            mlp.setLearningRule(learningRule);
+            mlp.learn(dataSets[i]);
+            weights[i] = mlp.getWeights();
+        }
+        assertArrayEquals(weights[0], weights[1]);
+    }
+}
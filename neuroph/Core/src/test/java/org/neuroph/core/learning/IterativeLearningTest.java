@@ -0,0 +1,43 @@
+package org.neuroph.core.learning;
+
+import org.junit.Test;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.learning.stop.MaxIterationsStop;
+import org.neuroph.core.learning.stop.StopCondition;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.nnet.learning.BackPropagation;
+
+import static org.junit.Assert.assertEquals;
+
+public class IterativeLearningTest {
+
+    @Test
+    public void testRepeatedLearnKeepsOneMaxIterationsStop() {
+        MultiLayerPerceptron network = new MultiLayerPerceptron(2, 3, 1);
+        DataSet trainingSet = new DataSet(2, 1);
+        trainingSet.add(new double[]{0, 1}, new double[]{1});
+        trainingSet.add(new double[]{1, 1}, new double[]{0});
+
+        BackPropagation rule = new BackPropagation();
+        rule.setMaxIterations(3);
+        network.setLearningRule(rule);
+
+        network.learn(trainingSet);
+        network.learn(trainingSet);
+        rule.setMaxIterations(5);
+        network.learn(trainingSet);
+
+        assertEquals(1, countMaxIterationsStops(rule));
+        assertEquals(5, rule.getCurrentIteration());
+    }
+
+    private static int countMaxIterationsStops(IterativeLearning rule) {
+        int count = 0;
+        for (StopCondition stop : rule.stopConditions) {
+            if (stop instanceof MaxIterationsStop) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,174 @@
+package org.neuroph.core.learning;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.core.CompiledNetwork;
+import org.neuroph.core.ModelSnapshot;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.exceptions.VectorSizeMismatchException;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.nnet.learning.MomentumBackpropagation;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+public class OnlineLearnerTest {
+
+    DataSet irisDataSet;
+
+    @Before
+    public void setUp() {
+        irisDataSet = DataSet.createFromFile("src/test/resources/iris_normalized.txt", 4, 3, ",", false);
+    }
+
+    private static MultiLayerPerceptron createNetwork() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 4, 9, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        MomentumBackpropagation learningRule = new MomentumBackpropagation();
+        learningRule.setLearningRate(0.2);
+        mlp.setLearningRule(learningRule);
+        return mlp;
+    }
+
+    @Test
+    public void testMicroBatchesAreLearnedLikeEpochs() throws InterruptedException {
+        MultiLayerPerceptron expected = createNetwork();
+        expected.getLearningRule().setMaxIterations(5);
+        expected.learn(irisDataSet);
+
+        MultiLayerPerceptron actual = createNetwork();
+        OnlineLearner learner = new OnlineLearner(actual, 4, irisDataSet.size());
+        learner.start();
+        for (int epoch = 0; epoch < 5; epoch++) {
+            learner.submit(irisDataSet.getRows());
+            learner.flush();
+        }
+        learner.close();
+
+        assertEquals(5, learner.getLearnedBatchesCount());
+        assertEquals(5L * irisDataSet.size(), learner.getLearnedRowsCount());
+        Double[] expectedWeights = expected.getWeights();
+        Double[] actualWeights = actual.getWeights();
+        for (int i = 0; i < expectedWeights.length; i++) {
+            assertEquals(expectedWeights[i], actualWeights[i], 0);
+        }
+    }
+
+    @Test
+    public void testSnapshotsWhileLearning() throws InterruptedException {
+        MultiLayerPerceptron mlp = createNetwork();
+        double before = error(mlp.compile());
+        OnlineLearner learner = new OnlineLearner(mlp, 16, 8);
+        learner.setSnapshotInterval(3);
+
+        // inference thread reads snapshots while rows are learned
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> readerFailure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    CompiledNetwork snapshot = learner.getSnapshot();
+                    for (DataSetRow row : irisDataSet.getRows()) {
+                        assertEquals(3, snapshot.predict(row.getInput()).length);
+                    }
+                }
+            } catch (Throwable ex) {
+                readerFailure.set(ex);
+            }
+        });
+        reader.start();
+
+        learner.start();
+        for (int epoch = 0; epoch < 40; epoch++) {
+            for (DataSetRow row : irisDataSet.getRows()) {
+                learner.submit(row);
+            }
+        }
+        learner.close();
+        running.set(false);
+        reader.join();
+        assertNull(readerFailure.get());
+
+        assertEquals(40L * irisDataSet.size(), learner.getLearnedRowsCount());
+        CompiledNetwork snapshot = learner.getSnapshot();
+        for (DataSetRow row : irisDataSet.getRows()) {
+            mlp.setInput(row.getInput());
+            mlp.calculate();
+            assertArrayEquals(mlp.getOutput(), snapshot.predict(row.getInput()), 1e-12);
+        }
+        assertTrue(error(snapshot) < before / 2);
+    }
+
+    @Test
+    public void testCloseAfterUnpublishedBatches() throws InterruptedException {
+        MultiLayerPerceptron mlp = createNetwork();
+        OnlineLearner learner = new OnlineLearner(mlp, 16, 1);
+        learner.setSnapshotInterval(3);
+        for (int r = 0; r < 4; r++) {
+            learner.submit(irisDataSet.getRowAt(r));
+        }
+
+        // first batch waits until close has queued the end of stream behind the other rows
+        CountDownLatch endQueued = new CountDownLatch(1);
+        mlp.getLearningRule().addListener(event -> {
+            try {
+                endQueued.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        learner.start();
+        Thread closer = new Thread(() -> {
+            try {
+                learner.close();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        closer.start();
+        while (closer.getState() != Thread.State.WAITING && closer.isAlive()) { // waiting to join learning thread
+            Thread.sleep(1);
+        }
+        endQueued.countDown();
+        closer.join();
+
+        assertEquals(4, learner.getLearnedBatchesCount());
+        ModelSnapshot snapshot = learner.getModelHandle().get();
+        for (DataSetRow row : irisDataSet.getRows()) {
+            mlp.setInput(row.getInput());
+            mlp.calculate();
+            assertArrayEquals(mlp.getOutput(), snapshot.predict(row.getInput()), 1e-12);
+        }
+    }
+
+    private double error(CompiledNetwork network) {
+        double sum = 0;
+        for (DataSetRow row : irisDataSet.getRows()) {
+            double[] output = network.predict(row.getInput());
+            for (int k = 0; k < output.length; k++) {
+                double e = output[k] - row.getDesiredOutput()[k];
+                sum += e * e;
+            }
+        }
+        return sum;
+    }
+
+    @Test(expected = VectorSizeMismatchException.class)
+    public void testInvalidRow() throws InterruptedException {
+        OnlineLearner learner = new OnlineLearner(createNetwork());
+        learner.submit(new DataSetRow(new double[]{1, 2}, new double[]{1, 0, 0}));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSubmitAfterClose() throws InterruptedException {
+        OnlineLearner learner = new OnlineLearner(createNetwork());
+        learner.start();
+        learner.close();
+        learner.submit(irisDataSet.getRowAt(0));
+    }
+}
@@ -0,0 +1,68 @@
+package org.neuroph.eval;
+
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.MappedDataSet;
+import org.neuroph.core.learning.error.MeanSquaredError;
+import org.neuroph.eval.classification.Utils;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Evaluation results must be the same as results calculated row by row, also for mapped data sets
+ */
+public class EvaluationTest {
+
+    private static final String[] CLASSES = {"setosa", "versicolor", "virginica"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DataSet createDataSet() {
+        DataSet iris = DataSet.createFromFile("src/test/resources/iris_normalized.txt", 4, 3, ",", false);
+        DataSet dataSet = new DataSet(4, 3);
+        for (int i = 0; i < 4; i++) { // more rows than one block
+            for (DataSetRow row : iris) {
+                dataSet.add(row);
+            }
+        }
+        return dataSet;
+    }
+
+    private static EvaluationResult evaluate(MultiLayerPerceptron mlp, DataSet dataSet) {
+        Evaluation evaluation = new Evaluation();
+        evaluation.addEvaluator(new ClassifierEvaluator.MultiClass(CLASSES));
+        return evaluation.evaluate(mlp, dataSet);
+    }
+
+    @Test
+    public void testEvaluate() throws IOException {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 4, 5, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        DataSet dataSet = createDataSet();
+
+        MeanSquaredError error = new MeanSquaredError();
+        int[][] confusion = new int[3][3];
+        for (DataSetRow row : dataSet) {
+            mlp.setInput(row.getInput());
+            mlp.calculate();
+            error.addPatternError(mlp.getOutput(), row.getDesiredOutput());
+            confusion[Utils.maxIdx(row.getDesiredOutput())][Utils.maxIdx(mlp.getOutput())]++;
+        }
+
+        EvaluationResult result = evaluate(mlp, dataSet);
+        assertEquals(error.getTotalError(), result.getMeanSquareError(), 1e-12);
+        assertArrayEquals(confusion, result.getConfusionMatrix().getValues());
+
+        EvaluationResult mapped = evaluate(mlp, MappedDataSet.write(dataSet, folder.newFile("iris.bin"), false));
+        assertEquals(error.getTotalError(), mapped.getMeanSquareError(), 1e-12);
+        assertArrayEquals(confusion, mapped.getConfusionMatrix().getValues());
+    }
+}
@@ -0,0 +1,83 @@
+package org.neuroph.eval;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+public class KFoldCrossValidationTest {
+
+    DataSet irisDataSet;
+
+    @Before
+    public void setUp() {
+        irisDataSet = DataSet.createFromFile("src/test/resources/iris_normalized.txt", 4, 3, ",", false);
+        irisDataSet.setColumnNames(new String[]{"setosa", "versicolor", "virginica"});
+    }
+
+    private static MultiLayerPerceptron createNetwork() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 4, 5, 3);
+        mlp.getLearningRule().setMaxIterations(10);
+        return mlp;
+    }
+
+    @Test
+    public void testPrototypeNetworkIsNotTrained() throws Exception {
+        MultiLayerPerceptron prototype = createNetwork();
+        prototype.randomizeWeights(new WeightsRandomizer(new Random(1)));
+        double[] weights = prototype.getWeights(new double[prototype.getWeightsCount()]);
+
+        KFoldCrossValidation crossValidation = new KFoldCrossValidation(prototype, irisDataSet, 3);
+        crossValidation.setParallelism(2);
+        assertNotNull(crossValidation.run().getConfusionMatrix());
+
+        assertArrayEquals(weights, prototype.getWeights(new double[prototype.getWeightsCount()]), 0);
+        List<FoldResult> results = crossValidation.getResultsByFolds();
+        assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).getFoldIndex());
+            assertNotSame(prototype, results.get(i).getNeuralNet());
+        }
+    }
+
+    @Test
+    public void testFoldsStreamedFromExecutor() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            KFoldCrossValidation crossValidation = new KFoldCrossValidation(() -> {
+                MultiLayerPerceptron mlp = createNetwork();
+                mlp.getLearningRule().setParallelism(64);
+                return mlp;
+            }, irisDataSet, 5);
+            crossValidation.setExecutor(pool);
+            int cores = Runtime.getRuntime().availableProcessors();
+            int foldThreads = crossValidation.getFoldParallelism();
+            assertEquals(Math.min(2, cores), foldThreads);
+
+            Set<Integer> folds = new HashSet<>();
+            crossValidation.setFoldListener(result -> folds.add(result.getFoldIndex()));
+            crossValidation.run();
+
+            assertEquals(5, folds.size());
+            for (FoldResult result : crossValidation.getResultsByFolds()) {
+                MultiLayerPerceptron mlp = (MultiLayerPerceptron) result.getNeuralNet();
+                assertEquals(Math.max(1, cores / foldThreads), mlp.getLearningRule().getParallelism());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyFolds() {
+        new KFoldCrossValidation(createNetwork(), irisDataSet, irisDataSet.size() + 1);
+    }
+}
@@ -0,0 +1,168 @@
+package org.neuroph.nnet.comp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.core.Connection;
+import org.neuroph.core.Layer;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.Weight;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.transfer.Tanh;
+import org.neuroph.nnet.ConvolutionalNetwork;
+import org.neuroph.nnet.comp.layer.PoolingLayer;
+import org.neuroph.nnet.learning.ConvolutionalBackpropagation;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Tests for ConvolutionalEngine, outputs must match NeuralNetwork.calculate() and gradients must match
+ * finite differences of the network error
+ */
+public class ConvolutionalEngineTest {
+
+    private final Random random = new Random(5);
+
+    private static ConvolutionalNetwork createNetwork() {
+        ConvolutionalNetwork network = new ConvolutionalNetwork.Builder()
+                .withInputLayer(8, 8, 2)
+                .withConvolutionLayer(new Dimension2D(3, 3), 3, Tanh.class)
+                .withPoolingLayer(2, 2)
+                .withConvolutionLayer(2, 2, 2)
+                .withFullConnectedLayer(5)
+                .withFullConnectedLayer(3)
+                .build();
+        network.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        return network;
+    }
+
+    private double[] randomArray(int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextDouble() * 2 - 1;
+        }
+        return values;
+    }
+
+    private static double[] calculate(ConvolutionalNetwork network, double[] input) {
+        network.setInput(input);
+        network.calculate();
+        return network.getOutput();
+    }
+
+    @Test
+    public void testOutputsMatchNetwork() {
+        ConvolutionalNetwork network = createNetwork();
+        ConvolutionalEngine engine = network.createEngine();
+        assertEquals(128, engine.getInputsCount());
+        assertEquals(3, engine.getOutputsCount());
+
+        ConvolutionalEngine.Context context = engine.createContext();
+        double[][] inputs = new double[20][];
+        for (int r = 0; r < inputs.length; r++) {
+            inputs[r] = randomArray(128);
+            assertArrayEquals(calculate(network, inputs[r]), engine.predict(inputs[r], context), 1e-12);
+        }
+
+        double[][] outputs = network.predictBatch(inputs);
+        for (int r = 0; r < inputs.length; r++) {
+            assertArrayEquals(calculate(network, inputs[r]), outputs[r], 1e-12);
+        }
+    }
+
+    @Test
+    public void testGradientsMatchFiniteDifferences() {
+        ConvolutionalNetwork network = createNetwork();
+        ConvolutionalEngine engine = network.createEngine();
+        ConvolutionalEngine.Context context = engine.createContext();
+        double[] input = randomArray(128);
+        double[] desired = randomArray(3);
+
+        // output error of 0.5 * sum of squared errors
+        double[] output = engine.predict(input, context);
+        double[] outputError = new double[output.length];
+        for (int k = 0; k < output.length; k++) {
+            outputError[k] = output[k] - desired[k];
+        }
+        engine.addGradients(outputError, context);
+        engine.addWeightChanges(context, 1);
+
+        // distinct weights of all trained layers, kernel weights are shared by many connections
+        Map<Weight, Boolean> distinct = new IdentityHashMap<>();
+        List<Weight> weights = new ArrayList<>();
+        for (Layer layer : network.getLayers()) {
+            if (layer instanceof PoolingLayer) {
+                continue;
+            }
+            for (Neuron neuron : layer.getNeurons()) {
+                for (Connection connection : neuron.getInputConnections()) {
+                    if (distinct.put(connection.getWeight(), Boolean.TRUE) == null) {
+                        weights.add(connection.getWeight());
+                    }
+                }
+            }
+        }
+        Collections.shuffle(weights, random);
+
+        double eps = 1e-6;
+        for (Weight weight : weights.subList(0, 60)) {
+            double value = weight.value;
+            weight.value = value + eps;
+            double plus = error(calculate(network, input), desired);
+            weight.value = value - eps;
+            double minus = error(calculate(network, input), desired);
+            weight.value = value;
+            assertEquals((plus - minus) / (2 * eps), weight.weightChange, 1e-6);
+        }
+    }
+
+    private static double error(double[] output, double[] desired) {
+        double sum = 0;
+        for (int k = 0; k < output.length; k++) {
+            sum += (output[k] - desired[k]) * (output[k] - desired[k]);
+        }
+        return sum / 2;
+    }
+
+    @Test
+    public void testParallelBatchTraining() {
+        DataSet dataSet = new DataSet(128, 3);
+        for (int r = 0; r < 24; r++) {
+            double[] desired = new double[3];
+            desired[r % 3] = 1;
+            dataSet.add(randomArray(128), desired);
+        }
+
+        Double[][] weights = new Double[2][];
+        double[] errors = new double[2];
+        for (int t = 0; t < 2; t++) {
+            ConvolutionalNetwork network = createNetwork();
+            ConvolutionalBackpropagation learningRule = network.getLearningRule();
+            learningRule.setParallelism(t == 0 ? 1 : 3);
+            learningRule.setBatchMode(true);
+            learningRule.setBatchSize(8);
+            learningRule.setLearningRate(0.1);
+            learningRule.setMaxIterations(30);
+            network.learn(dataSet);
+            weights[t] = network.getWeights();
+            errors[t] = learningRule.getTotalNetworkError();
+        }
+
+        assertEquals(weights[0].length, weights[1].length);
+        for (int i = 0; i < weights[0].length; i++) {
+            assertEquals(weights[0][i], weights[1][i], 1e-9);
+        }
+        assertEquals(errors[0], errors[1], 1e-9);
+
+        ConvolutionalNetwork untrained = createNetwork();
+        double before = 0;
+        for (int r = 0; r < dataSet.size(); r++) {
+            before += error(calculate(untrained, dataSet.getRowAt(r).getInput()), dataSet.getRowAt(r).getDesiredOutput());
+        }
+        assertTrue(errors[0] < before / dataSet.size()); // total error is mean of 0.5 * sum of squared errors
+    }
+}
@@ -0,0 +1,178 @@
+package org.neuroph.nnet.learning;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.core.WeightMatrix;
+import org.neuroph.core.data.BufferedDataSet;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.learning.error.ErrorFunction;
+import org.neuroph.core.learning.error.MeanSquaredError;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Data parallel training must give the same weights as single threaded batch training
+ */
+public class DataParallelTrainerTest {
+
+    DataSet irisDataSet;
+
+    @Before
+    public void setUp() {
+        irisDataSet = DataSet.createFromFile("src/test/resources/iris_normalized.txt", 4, 3, ",", false);
+    }
+
+    private MultiLayerPerceptron learn(BackPropagation learningRule, TransferFunctionType type) {
+        return learn(learningRule, type, irisDataSet);
+    }
+
+    private MultiLayerPerceptron learn(BackPropagation learningRule, TransferFunctionType type, DataSet trainingSet) {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(type, 4, 9, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        learningRule.setMaxIterations(20);
+        mlp.setLearningRule(learningRule);
+        mlp.learn(trainingSet);
+        return mlp;
+    }
+
+    private Double[] train(BackPropagation learningRule, TransferFunctionType type) {
+        return learn(learningRule, type).getWeights();
+    }
+
+    private static void assertSameWeights(Double[] expected, Double[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void testBackPropagationFullBatch() {
+        BackPropagation serial = new BackPropagation();
+        serial.setBatchMode(true);
+        BackPropagation parallel = new BackPropagation();
+        parallel.setParallelism(4);
+        assertTrue(parallel.isBatchMode());
+
+        assertSameWeights(train(serial, TransferFunctionType.SIGMOID), train(parallel, TransferFunctionType.SIGMOID));
+        assertEquals(serial.getTotalNetworkError(), parallel.getTotalNetworkError(), 1e-9);
+    }
+
+    @Test
+    public void testMomentumMiniBatch() {
+        MomentumBackpropagation serial = new MomentumBackpropagation();
+        serial.setBatchSize(16);
+        MomentumBackpropagation parallel = new MomentumBackpropagation();
+        parallel.setBatchSize(16);
+        parallel.setParallelism(3);
+
+        assertSameWeights(train(serial, TransferFunctionType.TANH), train(parallel, TransferFunctionType.TANH));
+        assertEquals(serial.getTotalNetworkError(), parallel.getTotalNetworkError(), 1e-9);
+    }
+
+    @Test
+    public void testCustomErrorFunction() {
+        BackPropagation serial = new BackPropagation();
+        serial.setBatchMode(true);
+        BackPropagation parallel = new BackPropagation();
+        parallel.setParallelism(4);
+        // error function which is not summable per worker, called under a lock
+        parallel.setErrorFunction(new ErrorFunction() {
+            final MeanSquaredError mse = new MeanSquaredError();
+
+            @Override
+            public double getTotalError() {
+                return mse.getTotalError();
+            }
+
+            @Override
+            public double[] addPatternError(double[] predictedOutput, double[] targetOutput) {
+                return mse.addPatternError(predictedOutput, targetOutput);
+            }
+
+            @Override
+            public void reset() {
+                mse.reset();
+            }
+        });
+
+        assertSameWeights(train(serial, TransferFunctionType.SIGMOID), train(parallel, TransferFunctionType.SIGMOID));
+        assertEquals(serial.getTotalNetworkError(), parallel.getTotalNetworkError(), 1e-9);
+    }
+
+    /**
+     * ResilientPropagation does not apply weight changes to weights, so its training data
+     * (previous gradient, weight change and delta for each weight) is compared instead of weights
+     */
+    @Test
+    public void testResilientPropagation() {
+        ResilientPropagation serial = new ResilientPropagation();
+        ResilientPropagation parallel = new ResilientPropagation();
+        parallel.setParallelism(4);
+        MultiLayerPerceptron serialNetwork = learn(serial, TransferFunctionType.SIGMOID);
+        MultiLayerPerceptron parallelNetwork = learn(parallel, TransferFunctionType.SIGMOID);
+
+        boolean weightsChanged = false;
+        for (int i = 1; i < serialNetwork.getLayersCount(); i++) {
+            WeightMatrix expected = serial.getWeightMatrix(serialNetwork.getLayerAt(i));
+            WeightMatrix actual = parallel.getWeightMatrix(parallelNetwork.getLayerAt(i));
+            assertEquals(expected.getStateSize(), actual.getStateSize());
+            for (int slot = 0; slot < expected.getStateSize(); slot++) {
+                assertArrayEquals(expected.getState(slot), actual.getState(slot), 1e-9);
+            }
+            for (double weightChange : expected.getState(2)) {
+                weightsChanged |= weightChange != 0;
+            }
+        }
+        assertTrue(weightsChanged);
+        assertEquals(serial.getTotalNetworkError(), parallel.getTotalNetworkError(), 1e-9);
+    }
+
+    @Test
+    public void testBufferedDataSet() throws FileNotFoundException {
+        BufferedDataSet bufferedDataSet = new BufferedDataSet(new File("src/test/resources/iris_normalized.txt"), 4, 3, ",");
+        bufferedDataSet.setBufferSize(16);
+
+        BackPropagation serial = new BackPropagation();
+        serial.setBatchMode(true);
+        BackPropagation parallel = new BackPropagation();
+        parallel.setParallelism(2);
+        assertSameWeights(learn(serial, TransferFunctionType.SIGMOID).getWeights(),
+                learn(parallel, TransferFunctionType.SIGMOID, bufferedDataSet).getWeights());
+        assertEquals(serial.getTotalNetworkError(), parallel.getTotalNetworkError(), 1e-9);
+
+        MomentumBackpropagation serialMiniBatch = new MomentumBackpropagation();
+        serialMiniBatch.setBatchSize(16);
+        MomentumBackpropagation parallelMiniBatch = new MomentumBackpropagation();
+        parallelMiniBatch.setBatchSize(16);
+        parallelMiniBatch.setParallelism(2);
+        assertSameWeights(learn(serialMiniBatch, TransferFunctionType.TANH).getWeights(),
+                learn(parallelMiniBatch, TransferFunctionType.TANH, bufferedDataSet).getWeights());
+    }
+
+    @Test
+    public void testSinglePrecision() {
+        MomentumBackpropagation serial = new MomentumBackpropagation();
+        serial.setBatchSize(16);
+        MomentumBackpropagation single = new MomentumBackpropagation();
+        single.setBatchSize(16);
+        single.setSinglePrecision(true);
+
+        Double[] expected = train(serial, TransferFunctionType.SIGMOID);
+        Double[] actual = train(single, TransferFunctionType.SIGMOID);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-4);
+        }
+        assertEquals(serial.getTotalNetworkError(), single.getTotalNetworkError(), 1e-5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParallelism() {
+        new BackPropagation().setParallelism(0);
+    }
+}
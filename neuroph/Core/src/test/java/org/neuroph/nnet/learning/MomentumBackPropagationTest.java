@@ -147,4 +147,61 @@ public class MomentumBackPropagationTest {
         }
     }
 
+    @Test
+    public void testMiniBatchOfTrainingSetSizeIsFullBatch() {
+        MultiLayerPerceptron fullBatch = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 2, 3, 1);
+        fullBatch.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        MomentumBackpropagation fullBatchRule = new MomentumBackpropagation();
+        fullBatchRule.setBatchMode(true);
+        fullBatchRule.setMaxIterations(50);
+        fullBatch.setLearningRule(fullBatchRule);
+        fullBatch.learn(xorDataSet);
+
+        MultiLayerPerceptron miniBatch = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 2, 3, 1);
+        miniBatch.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        MomentumBackpropagation miniBatchRule = new MomentumBackpropagation();
+        miniBatchRule.setBatchSize(xorDataSet.size());
+        miniBatchRule.setMaxIterations(50);
+        miniBatch.setLearningRule(miniBatchRule);
+        miniBatch.learn(xorDataSet);
+
+        Double[] expected = fullBatch.getWeights();
+        Double[] actual = miniBatch.getWeights();
+        for (int j = 0; j < expected.length; j++) {
+            assertEquals(expected[j], actual[j], 1e-12);
+        }
+    }
+
+    @Test
+    public void testXorMiniBatchShuffle() {
+        MultiLayerPerceptron myMlPerceptron = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 2, 3, 1);
+        myMlPerceptron.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        instance.setBatchSize(2);
+        instance.setShuffle(true);
+        instance.setRandom(new Random(123));
+        instance.setMaxIterations(100000);
+
+        myMlPerceptron.setLearningRule(instance);
+        myMlPerceptron.learn(xorDataSet);
+
+        assertTrue(instance.getTotalNetworkError() < maxError);
+    }
+
+    @Test
+    public void testSetBatchSizeAndOnlineMode() {
+        MomentumBackpropagation rule = new MomentumBackpropagation();
+        rule.setBatchSize(0);
+        assertFalse(rule.isBatchMode());
+
+        rule.setBatchSize(4);
+        assertTrue(rule.isBatchMode());
+        rule.setBatchMode(false);
+        assertFalse(rule.isBatchMode());
+        assertEquals(4, rule.getBatchSize());
+
+        rule.setBatchMode(true);
+        rule.setBatchSize(0);
+        assertTrue(rule.isBatchMode());
+    }
+
 }
@@ -0,0 +1,93 @@
+package org.neuroph.nnet.learning;
+
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Adam, AdamW, RMSProp, AdaGrad and Nesterov momentum must learn XOR in online and batch mode
+ */
+public class OptimizerBackpropagationTest {
+
+    DataSet xorDataSet;
+
+    @Before
+    public void setUp() {
+        xorDataSet = new DataSet(2, 1);
+        xorDataSet.add(new DataSetRow(new double[]{0, 0}, new double[]{0}));
+        xorDataSet.add(new DataSetRow(new double[]{0, 1}, new double[]{1}));
+        xorDataSet.add(new DataSetRow(new double[]{1, 0}, new double[]{1}));
+        xorDataSet.add(new DataSetRow(new double[]{1, 1}, new double[]{0}));
+    }
+
+    private void assertLearnsXor(OptimizerBackpropagation learningRule, double learningRate, boolean batchMode) {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 2, 4, 1);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        learningRule.setLearningRate(learningRate);
+        learningRule.setBatchMode(batchMode);
+        learningRule.setMaxError(0.01);
+        learningRule.setMaxIterations(5000);
+        mlp.setLearningRule(learningRule);
+        mlp.learn(xorDataSet);
+
+        String name = learningRule.getClass().getSimpleName() + (batchMode ? " batch" : " online");
+        assertTrue(name + " error " + learningRule.getTotalNetworkError(), learningRule.getTotalNetworkError() < 0.01);
+        assertTrue(name + " iterations " + learningRule.getCurrentIteration(), learningRule.getCurrentIteration() < 5000);
+    }
+
+    @Test
+    public void testAdam() {
+        assertLearnsXor(new Adam(), 0.05, false);
+        assertLearnsXor(new Adam(), 0.05, true);
+    }
+
+    @Test
+    public void testAdamW() {
+        AdamW adamW = new AdamW();
+        adamW.setWeightDecay(0.0001);
+        assertLearnsXor(adamW, 0.05, true);
+    }
+
+    @Test
+    public void testRMSProp() {
+        assertLearnsXor(new RMSProp(), 0.01, false);
+        assertLearnsXor(new RMSProp(), 0.01, true);
+    }
+
+    @Test
+    public void testAdaGrad() {
+        assertLearnsXor(new AdaGrad(), 0.2, false);
+        assertLearnsXor(new AdaGrad(), 0.2, true);
+    }
+
+    @Test
+    public void testNesterovMomentum() {
+        assertLearnsXor(new NesterovMomentum(), 0.1, false);
+        assertLearnsXor(new NesterovMomentum(), 0.1, true);
+    }
+
+    @Test
+    public void testDataParallelAdam() {
+        Double[][] weights = new Double[2][];
+        for (int p = 1; p <= 2; p++) {
+            MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.TANH, 2, 4, 1);
+            mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+            Adam adam = new Adam();
+            adam.setBatchMode(true);
+            adam.setParallelism(p);
+            adam.setMaxIterations(50);
+            mlp.setLearningRule(adam);
+            mlp.learn(xorDataSet);
+            weights[p - 1] = mlp.getWeights();
+        }
+        for (int i = 0; i < weights[0].length; i++) {
+            assertEquals(weights[0][i], weights[1][i], 1e-9);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.neuroph.nnet.learning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.learning.error.ErrorFunction;
+import org.neuroph.core.learning.error.MeanSquaredError;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+public class ParallelTemperingLearningTest {
+
+    DataSet irisDataSet;
+
+    @Before
+    public void setUp() {
+        irisDataSet = DataSet.createFromFile("src/test/resources/iris_normalized.txt", 4, 3, ",", false);
+    }
+
+    private static MultiLayerPerceptron createNetwork() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 4, 6, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        return mlp;
+    }
+
+    private static double meanError(MultiLayerPerceptron mlp, DataSet dataSet) {
+        double sum = 0;
+        for (DataSetRow row : dataSet.getRows()) {
+            mlp.setInput(row.getInput());
+            mlp.calculate();
+            double[] output = mlp.getOutput();
+            double sqrErrorSum = 0;
+            for (int o = 0; o < output.length; o++) {
+                double error = output[o] - row.getDesiredOutput()[o];
+                sqrErrorSum += error * error;
+            }
+            sum += sqrErrorSum / (2 * output.length);
+        }
+        return sum / dataSet.size();
+    }
+
+    private ParallelTemperingLearning train(MultiLayerPerceptron mlp, int parallelism) {
+        ParallelTemperingLearning learningRule = new ParallelTemperingLearning();
+        learningRule.setReplicasCount(4);
+        learningRule.setParallelism(parallelism);
+        learningRule.setCycles(50);
+        learningRule.setSeed(7);
+        learningRule.setMaxIterations(5);
+        learningRule.setNeuralNetwork(mlp);
+        learningRule.learn(irisDataSet);
+        return learningRule;
+    }
+
+    @Test
+    public void testErrorDecreases() {
+        MultiLayerPerceptron mlp = createNetwork();
+        double before = meanError(mlp, irisDataSet);
+
+        ParallelTemperingLearning learningRule = train(mlp, 2);
+        double after = meanError(mlp, irisDataSet);
+        assertTrue(after < before);
+        assertEquals(after, learningRule.getBestEnergy(), 1e-12);
+        assertEquals(5, learningRule.getCurrentIteration());
+    }
+
+    @Test
+    public void testSameResultForAnyNumberOfThreads() {
+        MultiLayerPerceptron serial = createNetwork();
+        MultiLayerPerceptron parallel = createNetwork();
+        train(serial, 1);
+        train(parallel, 4);
+        assertArrayEquals(serial.getWeights(new double[serial.getWeightsCount()]),
+                parallel.getWeights(new double[parallel.getWeightsCount()]), 0);
+    }
+
+    @Test
+    public void testErrorFunctionGetsDesiredOutputAsTarget() {
+        final List<double[]> targets = new ArrayList<>();
+        ParallelTemperingLearning learningRule = new ParallelTemperingLearning();
+        learningRule.setErrorFunction(new ErrorFunction() {
+            private final MeanSquaredError mse = new MeanSquaredError();
+
+            @Override
+            public double getTotalError() {
+                return mse.getTotalError();
+            }
+
+            @Override
+            public double[] addPatternError(double[] predictedOutput, double[] targetOutput) {
+                targets.add(targetOutput);
+                return mse.addPatternError(predictedOutput, targetOutput);
+            }
+
+            @Override
+            public void reset() {
+                mse.reset();
+            }
+        });
+        learningRule.setReplicasCount(2);
+        learningRule.setCycles(5);
+        learningRule.setSeed(7);
+        learningRule.setMaxIterations(1);
+        learningRule.setNeuralNetwork(createNetwork());
+        learningRule.learn(irisDataSet);
+
+        assertEquals(irisDataSet.size(), targets.size());
+        for (int r = 0; r < targets.size(); r++) {
+            assertSame(irisDataSet.getRowAt(r).getDesiredOutput(), targets.get(r));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTemperatures() {
+        new ParallelTemperingLearning().setTemperatures(0.001, 0.1);
+    }
+}
@@ -0,0 +1,74 @@
+package org.neuroph.nnet.learning;
+
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.core.Weight;
+import org.neuroph.core.WeightMatrix;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+public class ResilientPropagationTest {
+
+    DataSet irisDataSet;
+
+    @Before
+    public void setUp() {
+        irisDataSet = DataSet.createFromFile("src/test/resources/iris_normalized.txt", 4, 3, ",", false);
+    }
+
+    private MultiLayerPerceptron learn(ResilientPropagation learningRule) {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 4, 5, 3);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        learningRule.setMaxIterations(10);
+        mlp.setLearningRule(learningRule);
+        mlp.learn(irisDataSet);
+        return mlp;
+    }
+
+    /**
+     * Subclass which overrides deprecated weight update, and checks that weight training data has matrix values
+     */
+    private static class WeightUpdateCounter extends ResilientPropagation {
+
+        int updates;
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected void resillientWeightUpdate(Weight weight) {
+            assertTrue(weight.getTrainingData() instanceof ResilientWeightTrainingtData);
+            assertTrue(((ResilientWeightTrainingtData) weight.getTrainingData()).previousDelta > 0);
+            updates++;
+            super.resillientWeightUpdate(weight);
+        }
+    }
+
+    @Test
+    public void testOverriddenWeightUpdateIsCalled() {
+        ResilientPropagation plain = new ResilientPropagation();
+        WeightUpdateCounter counter = new WeightUpdateCounter();
+        MultiLayerPerceptron plainNetwork = learn(plain);
+        MultiLayerPerceptron counterNetwork = learn(counter);
+
+        assertEquals(10 * plainNetwork.getWeightsCount(), counter.updates);
+        for (int i = 1; i < plainNetwork.getLayersCount(); i++) {
+            WeightMatrix expected = plain.getWeightMatrix(plainNetwork.getLayerAt(i));
+            WeightMatrix actual = counter.getWeightMatrix(counterNetwork.getLayerAt(i));
+            for (int slot = 0; slot < expected.getStateSize(); slot++) {
+                assertArrayEquals(expected.getState(slot), actual.getState(slot), 0);
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testWeightTrainingDataOnlyForOverriddenUpdate() {
+        ResilientPropagation plain = new ResilientPropagation();
+        MultiLayerPerceptron network = learn(plain);
+        WeightMatrix matrix = plain.getWeightMatrix(network.getLayerAt(1));
+        assertNull(matrix.getWeight(0).getTrainingData());
+    }
+}
@@ -0,0 +1,153 @@
+package org.neuroph.imgrec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Top k labels and scores for each image of a batch, ordered from the highest score.
+ * Results are stored in two flat arrays and labels are shared with the network, so a batch of any size
+ * needs three objects, instead of a map per image.
+ *
+ * @see ImageRecognitionPlugin#recognizeImages(java.util.List, int)
+ */
+public final class ClassificationResults {
+
+    /**
+     * Labels of network outputs
+     */
+    private final String[] labels;
+
+    private final int size;
+    private final int topK;
+
+    /**
+     * Output index of each result, [image * topK + rank]
+     */
+    private final int[] indexes;
+
+    /**
+     * Score of each result, [image * topK + rank]
+     */
+    private final float[] scores;
+
+    /**
+     * Selects top k outputs of each row
+     *
+     * @param labels  labels of network outputs
+     * @param outputs network outputs, one row per image
+     * @param topK    number of results for each image, at most the number of outputs
+     */
+    ClassificationResults(String[] labels, double[][] outputs, int topK) {
+        this.labels = labels;
+        this.size = outputs.length;
+        this.topK = topK;
+        this.indexes = new int[size * topK];
+        this.scores = new float[size * topK];
+        for (int i = 0; i < size; i++) {
+            selectTop(outputs[i], i * topK);
+        }
+    }
+
+    /**
+     * Insertion of each output into the sorted top k, equal scores keep output order
+     */
+    private void selectTop(double[] output, int offset) {
+        int count = 0;
+        for (int o = 0; o < output.length; o++) {
+            float score = (float) output[o];
+            if (count == topK && !(score > scores[offset + topK - 1])) {
+                continue;
+            }
+            int position = count < topK ? count++ : topK - 1;
+            while (position > 0 && score > scores[offset + position - 1]) {
+                scores[offset + position] = scores[offset + position - 1];
+                indexes[offset + position] = indexes[offset + position - 1];
+                position--;
+            }
+            scores[offset + position] = score;
+            indexes[offset + position] = o;
+        }
+    }
+
+    /**
+     * Returns number of images
+     *
+     * @return number of images
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns number of results for each image
+     *
+     * @return number of results for each image
+     */
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * Returns network output index of the result with the specified rank
+     *
+     * @param image image index in batch
+     * @param rank  result rank, 0 for the highest score
+     * @return output index
+     */
+    public int getIndex(int image, int rank) {
+        return indexes[position(image, rank)];
+    }
+
+    /**
+     * Returns label of the result with the specified rank
+     *
+     * @param image image index in batch
+     * @param rank  result rank, 0 for the highest score
+     * @return output label
+     */
+    public String getLabel(int image, int rank) {
+        return labels[indexes[position(image, rank)]];
+    }
+
+    /**
+     * Returns score of the result with the specified rank
+     *
+     * @param image image index in batch
+     * @param rank  result rank, 0 for the highest score
+     * @return network output
+     */
+    public float getScore(int image, int rank) {
+        return scores[position(image, rank)];
+    }
+
+    /**
+     * Returns label with the highest score for the specified image
+     *
+     * @param image image index in batch
+     * @return recognized label
+     */
+    public String getBestLabel(int image) {
+        return getLabel(image, 0);
+    }
+
+    /**
+     * Returns results of the specified image as a new map from label to score, in rank order
+     *
+     * @param image image index in batch
+     * @return map from label to score
+     */
+    public Map<String, Float> toMap(int image) {
+        Map<String, Float> map = new LinkedHashMap<>();
+        for (int rank = 0; rank < topK; rank++) {
+            map.put(getLabel(image, rank), getScore(image, rank));
+        }
+        return map;
+    }
+
+    private int position(int image, int rank) {
+        if (image < 0 || image >= size || rank < 0 || rank >= topK) {
+            throw new IndexOutOfBoundsException("Image " + image + ", rank " + rank + " out of range " + size + "x" + topK);
+        }
+        return image * topK + rank;
+    }
+}
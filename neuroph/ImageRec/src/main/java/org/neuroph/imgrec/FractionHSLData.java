@@ -7,8 +7,11 @@ import org.neuroph.imgrec.image.Image;
 import org.neuroph.imgrec.image.ImageJ2SE;
 
 /**
+ * Hue, saturation and lightness of each image pixel.
+ * ImageInputConverter creates the same flattened values directly from image of any size, into a reusable buffer.
  *
  * @author Mihailo Stupar
+ * @see ImageInputConverter
  */
 public class FractionHSLData {
     
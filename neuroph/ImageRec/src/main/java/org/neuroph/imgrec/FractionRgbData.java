@@ -38,8 +38,11 @@ import org.neuroph.imgrec.image.ImageJ2SE;
  * all the red first, followed by all the green, followed by all the blue values.  
  * The flattened array size should be divisible by 3. 
  * 
+ * ImageInputConverter creates the same flattened values directly from image of any size,
+ * with resampling, into a reusable buffer.
+ * 
  * @author Jon Tait
- *
+ * @see ImageInputConverter
  */
 public class FractionRgbData
 {
@@ -0,0 +1,397 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.data.MappedDataSet;
+import org.neuroph.imgrec.image.Dimension;
+import org.neuroph.util.DaemonThreadFactory;
+
+/**
+ * <pre>
+ * Creates image recognition data sets from image directories, as a streaming pipeline: images are decoded,
+ * resized and converted to input vectors in parallel, and each vector is written into the data set as soon as
+ * it is ready, so only the images in flight are held in memory instead of data for all images.
+ * Rows can be written into a regular DataSet, or into a memory mapped data set file for data sets which
+ * do not fit in heap (see MappedDataSet).
+ *
+ * At most queueCapacity images are decoded ahead of the row which is being written, and rows are written
+ * in the order of image files. Input vectors are the same as the vectors created by ImageRecognitionHelper:
+ * flattened FractionRgbData for COLOR_RGB, FractionHSLData for COLOR_HSL and binary black and white values
+ * for BLACK_AND_WHITE. Desired outputs have 1 for each label which is a prefix of the image file name.
+ *
+ * If cache directory is set, input vectors are stored on disk, keyed by image path and last modified time,
+ * so later runs skip decoding images which did not change.
+ * </pre>
+ *
+ * @see ImageRecognitionHelper
+ */
+public class ImageDataSetBuilder {
+
+    private final Dimension samplingResolution;
+    private final ColorMode colorMode;
+    private final ImageVectorizer vectorizer;
+
+    /**
+     * Labels of output columns, null to create them from image file names
+     */
+    private List<String> labels;
+
+    /**
+     * Number of images decoded at the same time, 0 for number of cores
+     */
+    private int parallelism;
+
+    /**
+     * Maximum number of images decoded ahead of the written row, 0 for twice the parallelism
+     */
+    private int queueCapacity;
+
+    private File cacheDirectory;
+
+    private boolean singlePrecision;
+
+    private ProgressListener progressListener;
+
+    /**
+     * Statistics of the last build
+     */
+    private final AtomicInteger cachedCount = new AtomicInteger();
+    private final List<File> skippedFiles = Collections.synchronizedList(new ArrayList<File>());
+
+    /**
+     * Creates builder for the specified sampling resolution and color mode
+     *
+     * @param samplingResolution size of images for the network
+     * @param colorMode          color mode
+     */
+    public ImageDataSetBuilder(Dimension samplingResolution, ColorMode colorMode) {
+        if (samplingResolution == null || colorMode == null) {
+            throw new IllegalArgumentException("Sampling resolution and color mode cannot be null!");
+        }
+        this.samplingResolution = samplingResolution;
+        this.colorMode = colorMode;
+        this.vectorizer = new ImageVectorizer(samplingResolution, colorMode);
+    }
+
+    /**
+     * Sets labels of output columns. If not set, labels are image file name prefixes before the first '.' or '_'.
+     *
+     * @param labels output labels, or null
+     */
+    public void setLabels(List<String> labels) {
+        this.labels = labels;
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Sets number of images which are decoded at the same time, 0 for number of cores
+     *
+     * @param parallelism number of threads, or 0
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Parallelism cannot be negative: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets maximum number of images decoded ahead of the row which is being written, 0 for twice the parallelism.
+     * Together with image size it limits memory used by the pipeline.
+     *
+     * @param queueCapacity number of images, or 0
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity cannot be negative: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets directory for cached input vectors, null to decode all images
+     *
+     * @param cacheDirectory cache directory, created if it does not exist
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Sets if mapped data set files store values as floats instead of doubles
+     *
+     * @param singlePrecision true for float values
+     */
+    public void setSinglePrecision(boolean singlePrecision) {
+        this.singlePrecision = singlePrecision;
+    }
+
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    /**
+     * Sets listener which is notified after each image, from the thread which builds the data set
+     *
+     * @param progressListener progress listener, or null
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns number of images of the last build which were read from cache
+     *
+     * @return number of cached images
+     */
+    public int getCachedCount() {
+        return cachedCount.get();
+    }
+
+    /**
+     * Returns image files of the last build which could not be read, and have no rows in the data set
+     *
+     * @return skipped files
+     */
+    public List<File> getSkippedFiles() {
+        return new ArrayList<>(skippedFiles);
+    }
+
+    /**
+     * Returns number of inputs for the color mode and sampling resolution
+     *
+     * @return input vector size
+     */
+    public int getInputSize() {
+        return vectorizer.getInputSize();
+    }
+
+    /**
+     * Creates data set from jpg and png images in the specified directories
+     *
+     * @param imageDirs image directories
+     * @return data set with one row for each image
+     * @throws IOException if directory cannot be read
+     */
+    public DataSet build(File... imageDirs) throws IOException {
+        List<File> files = listImages(imageDirs);
+        List<String> outputLabels = labels != null ? labels : createLabels(files);
+        final DataSet dataSet = new DataSet(getInputSize(), outputLabels.size());
+        setOutputNames(dataSet, outputLabels);
+        process(files, outputLabels, (input, output) -> dataSet.add(new DataSetRow(input, output)));
+        return dataSet;
+    }
+
+    /**
+     * Creates mapped data set file from jpg and png images in the specified directories, and opens it
+     *
+     * @param dataSetFile data set file to write
+     * @param imageDirs   image directories
+     * @return mapped data set with one row for each image
+     * @throws IOException if directory cannot be read or data set file cannot be written
+     */
+    public MappedDataSet buildMapped(File dataSetFile, File... imageDirs) throws IOException {
+        List<File> files = listImages(imageDirs);
+        List<String> outputLabels = labels != null ? labels : createLabels(files);
+        DataSet names = new DataSet(getInputSize(), outputLabels.size());
+        setOutputNames(names, outputLabels);
+        try (MappedDataSet.Writer writer = new MappedDataSet.Writer(dataSetFile, getInputSize(), outputLabels.size(),
+                singlePrecision, names.getColumnNames())) {
+            process(files, outputLabels, writer::write);
+        }
+        return new MappedDataSet(dataSetFile);
+    }
+
+    /**
+     * Creates input vector for the specified image
+     *
+     * @param image image of any size
+     * @return input vector with getInputSize() values
+     */
+    public double[] createInput(BufferedImage image) {
+        return vectorizer.createInput(image);
+    }
+
+    /**
+     * Decodes images in parallel and passes their rows to the sink in file order
+     */
+    private void process(List<File> files, List<String> outputLabels, RowSink sink) throws IOException {
+        cachedCount.set(0);
+        skippedFiles.clear();
+        final ImageVectorCache cache = cacheDirectory != null
+                ? new ImageVectorCache(cacheDirectory, colorMode + " " + samplingResolution.getWidth() + "x" + samplingResolution.getHeight())
+                : null;
+
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        int capacity = queueCapacity > 0 ? queueCapacity : 2 * threads;
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("neuroph-image-loader"));
+
+        ArrayDeque<Future<double[]>> queue = new ArrayDeque<>(capacity);
+        try {
+            int submitted = 0;
+            for (int written = 0; written < files.size(); written++) {
+                while (submitted < files.size() && queue.size() < capacity) {
+                    final File file = files.get(submitted++);
+                    queue.add(executor.submit(() -> loadInput(file, cache)));
+                }
+
+                File file = files.get(written);
+                double[] input;
+                try {
+                    input = queue.remove().get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        skippedFiles.add(file);
+                        input = null;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw new IllegalStateException("Error loading image " + file, cause);
+                    }
+                }
+                if (input != null) {
+                    sink.add(input, createResponse(file.getName(), outputLabels));
+                }
+                if (progressListener != null) {
+                    progressListener.progress(written + 1, files.size());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Data set creation interrupted");
+        } finally {
+            for (Future<double[]> future : queue) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns input vector of the image, from cache or by decoding the image
+     */
+    private double[] loadInput(File file, ImageVectorCache cache) throws IOException {
+        if (cache != null) {
+            double[] cached = cache.read(file, getInputSize());
+            if (cached != null) {
+                cachedCount.incrementAndGet();
+                return cached;
+            }
+        }
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + file);
+        }
+        double[] input = createInput(image);
+        if (cache != null) {
+            cache.write(file, input);
+        }
+        return input;
+    }
+
+    /**
+     * Returns all jpg and png images in the specified directories
+     *
+     * @param imageDirs image directories
+     * @return image files
+     * @throws IOException if directory cannot be read
+     */
+    public static List<File> listImages(File... imageDirs) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (File dir : imageDirs) {
+            ImageFilesIterator iterator = new ImageFilesIterator(dir);
+            while (iterator.hasNext()) {
+                files.add(iterator.next());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns sorted distinct labels of image files, label is file name prefix before the first '.' or '_'
+     *
+     * @param files image files
+     * @return labels
+     */
+    public static List<String> createLabels(List<File> files) {
+        List<String> imageLabels = new ArrayList<>();
+        for (File file : files) {
+            String imageLabel = new StringTokenizer(file.getName(), "._").nextToken();
+            if (!imageLabels.contains(imageLabel)) {
+                imageLabels.add(imageLabel);
+            }
+        }
+        Collections.sort(imageLabels);
+        return imageLabels;
+    }
+
+    /**
+     * Creates desired output with 1 for each label which is a prefix of image name (file name before the first '.')
+     */
+    private static double[] createResponse(String fileName, List<String> outputLabels) {
+        String imageName = new StringTokenizer(fileName, ".").nextToken();
+        double[] response = new double[outputLabels.size()];
+        for (int i = 0; i < response.length; i++) {
+            response[i] = imageName.startsWith(outputLabels.get(i)) ? 1d : 0d;
+        }
+        return response;
+    }
+
+    private static void setOutputNames(DataSet dataSet, List<String> outputLabels) {
+        for (int c = 0; c < outputLabels.size(); c++) {
+            dataSet.setColumnName(dataSet.getInputSize() + c, outputLabels.get(c));
+        }
+    }
+
+    /**
+     * Receives data set rows
+     */
+    private interface RowSink {
+        void add(double[] input, double[] output) throws IOException;
+    }
+
+    /**
+     * Listener which is notified of data set creation progress
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called after each image is written to data set or skipped
+         *
+         * @param processed number of processed images
+         * @param total     number of all images
+         */
+        void progress(int processed, int total);
+    }
+}
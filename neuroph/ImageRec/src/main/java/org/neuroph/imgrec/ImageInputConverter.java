@@ -0,0 +1,519 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+import org.neuroph.imgrec.image.Dimension;
+
+/**
+ * <pre>
+ * Converts images directly into flattened, normalized network input vectors. Resampling to the input resolution
+ * and color conversion are done in one pass over image rows, without intermediate images or 2D arrays,
+ * and vectors are written into caller supplied double[] or float[] buffers, so converting a stream of frames
+ * of the same size does not allocate after the first frame.
+ *
+ * Vector layouts are the same as in FractionRgbData and FractionHSLData:
+ *  RGB             - all red values, then all green and all blue values, divided by 256
+ *  HSL             - hue, saturation and lightness for each pixel, like FractionHSLData.fillFlattenedHSLValues
+ *  GRAYSCALE       - average of the red, green and blue fractions for each pixel
+ *  BLACK_AND_WHITE - 1 for pixels with grayscale value below 0.19 and 0 for others, like
+ *                    FractionRgbData.convertRgbInputToBinaryBlackAndWhite
+ * Alpha channel is ignored.
+ *
+ * Converter keeps resampling tables and row buffers between calls, so it is not thread safe,
+ * each thread should use its own converter.
+ * </pre>
+ *
+ * @see FractionRgbData
+ * @see FractionHSLData
+ */
+public final class ImageInputConverter {
+
+    /**
+     * Resampling method, which defines source pixels and weights for each input pixel
+     */
+    public enum Sampling {
+        /**
+         * Source pixel under the center of input pixel
+         */
+        NEAREST,
+        /**
+         * Source pixels at the steps used by ImageSampler.downSampleImage, for vectors compatible with
+         * networks trained on its images. Intended for images larger than input resolution.
+         */
+        SUBSAMPLE,
+        /**
+         * Linear interpolation of the four source pixels around the center of input pixel
+         */
+        BILINEAR,
+        /**
+         * Average of all source pixels covered by input pixel, weighted by covered area.
+         * Best quality for downsampling, as every source pixel contributes to the result.
+         */
+        AREA_AVERAGE
+    }
+
+    /**
+     * Color conversion, which defines input values for each pixel
+     */
+    public enum Conversion {
+        RGB,
+        HSL,
+        GRAYSCALE,
+        BLACK_AND_WHITE;
+
+        /**
+         * Returns conversion used for the specified color mode
+         *
+         * @param colorMode color mode
+         * @return conversion for color mode
+         */
+        public static Conversion of(ColorMode colorMode) {
+            switch (colorMode) {
+                case COLOR_RGB:
+                    return RGB;
+                case COLOR_HSL:
+                    return HSL;
+                case BLACK_AND_WHITE:
+                    return BLACK_AND_WHITE;
+                default:
+                    throw new IllegalArgumentException("Unknown color mode: " + colorMode);
+            }
+        }
+    }
+
+    /**
+     * Threshold of average rgb fraction below which pixel is black
+     */
+    private static final double BLACK_THRESHOLD = 0.19;
+
+    /**
+     * Pixel layouts: packed int rgb, interleaved byte samples, and other images read by rows with getRGB
+     */
+    private static final int PACKED_INT = 0;
+    private static final int INTERLEAVED_BYTE = 1;
+    private static final int RGB_ROW = 2;
+
+    private final int width;
+    private final int height;
+    private final Conversion conversion;
+    private final Sampling sampling;
+
+    /**
+     * Resampling tables for the current source size
+     */
+    private Taps xTaps;
+    private Taps yTaps;
+
+    /**
+     * Pixel layout of the current image
+     */
+    private int pixelFormat;
+    private DataBuffer dataBuffer;
+    private int translateX;
+    private int translateY;
+    private int scanlineStride;
+    private int pixelStride;
+    private int redOffset;
+    private int greenOffset;
+    private int blueOffset;
+
+    /**
+     * Last row of the image read with getRGB, as packed rgb values
+     */
+    private int[] row = new int[0];
+    private int rowY;
+
+    /**
+     * Weighted sums of red, green and blue of used source columns under one input row, [3 * column + channel]
+     */
+    private double[] columnSums = new double[0];
+
+    /**
+     * Weighted sums of red, green and blue of one input row, [3 * x + channel]
+     */
+    private final double[] sums;
+
+    /**
+     * Vector buffer used for float output
+     */
+    private double[] values;
+
+    /**
+     * Creates converter for the specified input resolution
+     *
+     * @param width      input width
+     * @param height     input height
+     * @param conversion color conversion
+     * @param sampling   resampling method
+     */
+    public ImageInputConverter(int width, int height, Conversion conversion, Sampling sampling) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Input resolution must be positive: " + width + "x" + height);
+        }
+        if (conversion == null || sampling == null) {
+            throw new IllegalArgumentException("Conversion and sampling cannot be null!");
+        }
+        this.width = width;
+        this.height = height;
+        this.conversion = conversion;
+        this.sampling = sampling;
+        this.sums = new double[3 * width];
+    }
+
+    /**
+     * Creates converter for the specified sampling resolution and color mode
+     *
+     * @param samplingResolution input resolution
+     * @param colorMode          color mode
+     * @param sampling           resampling method
+     */
+    public ImageInputConverter(Dimension samplingResolution, ColorMode colorMode, Sampling sampling) {
+        this(samplingResolution.getWidth(), samplingResolution.getHeight(), Conversion.of(colorMode), sampling);
+    }
+
+    /**
+     * Returns number of values in input vectors
+     *
+     * @return input vector size
+     */
+    public int getInputSize() {
+        int pixels = width * height;
+        return conversion == Conversion.RGB || conversion == Conversion.HSL ? 3 * pixels : pixels;
+    }
+
+    public Conversion getConversion() {
+        return conversion;
+    }
+
+    public Sampling getSampling() {
+        return sampling;
+    }
+
+    /**
+     * Creates input vector for the specified image
+     *
+     * @param image image of any size
+     * @return new input vector
+     */
+    public double[] convert(BufferedImage image) {
+        double[] input = new double[getInputSize()];
+        convert(image, input, 0);
+        return input;
+    }
+
+    /**
+     * Writes input vector for the specified image into the buffer
+     *
+     * @param image  image of any size
+     * @param input  vector buffer
+     * @param offset position of the first vector value in the buffer
+     */
+    public void convert(BufferedImage image, double[] input, int offset) {
+        checkBuffer(input.length, offset);
+        prepare(image);
+        for (int y = 0; y < height; y++) {
+            sampleRow(image, y);
+            convertRow(y, input, offset);
+        }
+        dataBuffer = null; // do not keep the image data
+    }
+
+    /**
+     * Writes input vector for the specified image into the buffer
+     *
+     * @param image  image of any size
+     * @param input  vector buffer
+     * @param offset position of the first vector value in the buffer
+     */
+    public void convert(BufferedImage image, float[] input, int offset) {
+        checkBuffer(input.length, offset);
+        if (values == null) {
+            values = new double[getInputSize()];
+        }
+        convert(image, values, 0);
+        for (int i = 0; i < values.length; i++) {
+            input[offset + i] = (float) values[i];
+        }
+    }
+
+    private void checkBuffer(int length, int offset) {
+        if (offset < 0 || length - offset < getInputSize()) {
+            throw new IllegalArgumentException("Buffer of size " + length + " at offset " + offset
+                    + " cannot hold input vector of size " + getInputSize());
+        }
+    }
+
+    /**
+     * Creates resampling tables for the image size, if it changed, and selects the way pixels are read
+     */
+    private void prepare(BufferedImage image) {
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+        if (xTaps == null || xTaps.sourceSize != srcWidth) {
+            xTaps = new Taps(sampling, srcWidth, width);
+            if (columnSums.length < 3 * xTaps.sources.length) {
+                columnSums = new double[3 * xTaps.sources.length];
+            }
+        }
+        if (yTaps == null || yTaps.sourceSize != srcHeight) {
+            yTaps = new Taps(sampling, srcHeight, height);
+        }
+
+        Raster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        dataBuffer = raster.getDataBuffer();
+        translateX = raster.getSampleModelTranslateX();
+        translateY = raster.getSampleModelTranslateY();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && sampleModel instanceof SinglePixelPackedSampleModel) {
+            pixelFormat = PACKED_INT;
+            scanlineStride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+        } else if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+                && sampleModel instanceof ComponentSampleModel) {
+            ComponentSampleModel componentModel = (ComponentSampleModel) sampleModel;
+            pixelFormat = INTERLEAVED_BYTE;
+            scanlineStride = componentModel.getScanlineStride();
+            pixelStride = componentModel.getPixelStride();
+            int[] bandOffsets = componentModel.getBandOffsets();
+            redOffset = bandOffsets[0];
+            greenOffset = bandOffsets[1];
+            blueOffset = bandOffsets[2];
+        } else {
+            pixelFormat = RGB_ROW;
+            if (row.length < srcWidth) {
+                row = new int[srcWidth];
+            }
+        }
+        rowY = -1;
+    }
+
+    /**
+     * Calculates weighted color sums of one input row: source rows under the input row are added into
+     * column sums of used source columns, and then column sums are resampled horizontally
+     */
+    private void sampleRow(BufferedImage image, int y) {
+        int[] columns = xTaps.sources;
+        Arrays.fill(columnSums, 0, 3 * columns.length, 0);
+        for (int t = yTaps.first[y], end = yTaps.first[y + 1]; t < end; t++) {
+            int sourceY = yTaps.sources[yTaps.index[t]];
+            double wy = yTaps.weight[t];
+            switch (pixelFormat) {
+                case PACKED_INT:
+                    addPackedRow((sourceY - translateY) * scanlineStride - translateX, wy, columns);
+                    break;
+                case INTERLEAVED_BYTE:
+                    addInterleavedRow((sourceY - translateY) * scanlineStride - translateX * pixelStride, wy, columns);
+                    break;
+                default:
+                    if (sourceY != rowY) {
+                        image.getRGB(0, sourceY, image.getWidth(), 1, row, 0, row.length);
+                        rowY = sourceY;
+                    }
+                    addRgbRow(wy, columns);
+            }
+        }
+
+        for (int x = 0, s = 0; x < width; x++, s += 3) {
+            double r = 0, g = 0, b = 0;
+            for (int u = xTaps.first[x], end = xTaps.first[x + 1]; u < end; u++) {
+                int c = 3 * xTaps.index[u];
+                double wx = xTaps.weight[u];
+                r += wx * columnSums[c];
+                g += wx * columnSums[c + 1];
+                b += wx * columnSums[c + 2];
+            }
+            sums[s] = r;
+            sums[s + 1] = g;
+            sums[s + 2] = b;
+        }
+    }
+
+    /**
+     * Adds weighted colors of packed int image row, read from data buffer without copying rows
+     */
+    private void addPackedRow(int rowOffset, double wy, int[] columns) {
+        DataBuffer data = dataBuffer;
+        for (int c = 0, s = 0; c < columns.length; c++, s += 3) {
+            int pixel = data.getElem(rowOffset + columns[c]);
+            columnSums[s] += wy * ((pixel >> 16) & 0xFF);
+            columnSums[s + 1] += wy * ((pixel >> 8) & 0xFF);
+            columnSums[s + 2] += wy * (pixel & 0xFF);
+        }
+    }
+
+    /**
+     * Adds weighted colors of interleaved byte image row, read from data buffer without copying rows
+     */
+    private void addInterleavedRow(int rowOffset, double wy, int[] columns) {
+        DataBuffer data = dataBuffer;
+        for (int c = 0, s = 0; c < columns.length; c++, s += 3) {
+            int offset = rowOffset + columns[c] * pixelStride;
+            columnSums[s] += wy * data.getElem(offset + redOffset);
+            columnSums[s + 1] += wy * data.getElem(offset + greenOffset);
+            columnSums[s + 2] += wy * data.getElem(offset + blueOffset);
+        }
+    }
+
+    /**
+     * Adds weighted colors of image row which was read with getRGB
+     */
+    private void addRgbRow(double wy, int[] columns) {
+        for (int c = 0, s = 0; c < columns.length; c++, s += 3) {
+            int pixel = row[columns[c]];
+            columnSums[s] += wy * ((pixel >> 16) & 0xFF);
+            columnSums[s + 1] += wy * ((pixel >> 8) & 0xFF);
+            columnSums[s + 2] += wy * (pixel & 0xFF);
+        }
+    }
+
+    /**
+     * Converts color sums of one input row into vector values
+     */
+    private void convertRow(int y, double[] input, int offset) {
+        int pixels = width * height;
+        int p = offset + y * width;
+        switch (conversion) {
+            case RGB:
+                for (int x = 0, s = 0; x < width; x++, s += 3, p++) {
+                    input[p] = sums[s] / 256d;
+                    input[p + pixels] = sums[s + 1] / 256d;
+                    input[p + 2 * pixels] = sums[s + 2] / 256d;
+                }
+                break;
+            case GRAYSCALE:
+                for (int x = 0, s = 0; x < width; x++, s += 3, p++) {
+                    input[p] = gray(s);
+                }
+                break;
+            case BLACK_AND_WHITE:
+                for (int x = 0, s = 0; x < width; x++, s += 3, p++) {
+                    input[p] = gray(s) < BLACK_THRESHOLD ? 1 : 0;
+                }
+                break;
+            case HSL:
+                for (int x = 0, s = 0, h = offset + 3 * y * width; x < width; x++, s += 3, h += 3) {
+                    hsl(sums[s] / 255, sums[s + 1] / 255, sums[s + 2] / 255, input, h);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown conversion: " + conversion);
+        }
+    }
+
+    private double gray(int s) {
+        return (sums[s] / 256d + sums[s + 1] / 256d + sums[s + 2] / 256d) / 3;
+    }
+
+    /**
+     * Writes hue, saturation and lightness, calculated the same way as in FractionHSLData
+     */
+    private static void hsl(double red, double green, double blue, double[] input, int position) {
+        double max = Math.max(red, Math.max(green, blue));
+        double min = Math.min(red, Math.min(green, blue));
+        double delta = max - min;
+
+        double hue = 0;
+        if (delta != 0) {
+            if (max == red) {
+                hue = 60 * (((green - blue) / delta) % 6);
+            }
+            if (max == green) {
+                hue = 60 * (((blue - red) / delta) + 2);
+            }
+            if (max == blue) {
+                hue = 60 * ((red - green) / delta + 4);
+            }
+        }
+        double lightness = (max + min) / 2;
+        double saturation = delta == 0 ? 0 : delta / (1 - Math.abs(2 * lightness - 1));
+
+        input[position] = hue / 360;
+        input[position + 1] = saturation;
+        input[position + 2] = lightness;
+    }
+
+    /**
+     * Source pixels and weights for each input pixel along one axis. Taps of input pixel i
+     * are at positions first[i] to first[i + 1] - 1, and weights of each input pixel sum to 1.
+     * Tap indexes point into sources, the sorted list of source pixels used by any tap, so sparse
+     * samplings read only the pixels they need.
+     */
+    private static final class Taps {
+
+        final int sourceSize;
+        final int[] first;
+        int[] index;
+        double[] weight;
+        int[] sources;
+        private int count;
+
+        Taps(Sampling sampling, int sourceSize, int size) {
+            this.sourceSize = sourceSize;
+            this.first = new int[size + 1];
+            this.index = new int[size * 2];
+            this.weight = new double[size * 2];
+            for (int i = 0; i < size; i++) {
+                first[i] = count;
+                switch (sampling) {
+                    case NEAREST:
+                        add(Math.min((int) ((i + 0.5) * sourceSize / size), sourceSize - 1), 1);
+                        break;
+                    case SUBSAMPLE:
+                        // same integer division and rounding as ImageSampler.downSampleImage
+                        double increment = size > 1 ? sourceSize / (size - 1) : 0;
+                        add(Math.min((int) Math.round(i * increment), sourceSize - 1), 1);
+                        break;
+                    case BILINEAR:
+                        double center = Math.max(0, Math.min((i + 0.5) * sourceSize / size - 0.5, sourceSize - 1));
+                        int left = (int) center;
+                        double fraction = center - left;
+                        add(left, 1 - fraction);
+                        if (fraction > 0) {
+                            add(left + 1, fraction);
+                        }
+                        break;
+                    case AREA_AVERAGE:
+                        // in units of 1/size source pixels input pixel covers [i * sourceSize, (i + 1) * sourceSize)
+                        // and source pixel j covers [j * size, (j + 1) * size)
+                        long from = (long) i * sourceSize;
+                        long to = from + sourceSize;
+                        for (int j = (int) (from / size), last = (int) ((to - 1) / size); j <= last; j++) {
+                            long covered = Math.min(to, (long) (j + 1) * size) - Math.max(from, (long) j * size);
+                            add(j, (double) covered / sourceSize);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown sampling: " + sampling);
+                }
+            }
+            first[size] = count;
+
+            // taps are in increasing source order, so each new source pixel is larger than the previous one
+            sources = new int[count];
+            int used = 0;
+            for (int t = 0; t < count; t++) {
+                if (used == 0 || sources[used - 1] != index[t]) {
+                    sources[used++] = index[t];
+                }
+                index[t] = used - 1;
+            }
+            sources = Arrays.copyOf(sources, used);
+        }
+
+        private void add(int sourceIndex, double sourceWeight) {
+            if (count == index.length) {
+                index = Arrays.copyOf(index, 2 * count);
+                weight = Arrays.copyOf(weight, 2 * count);
+            }
+            index[count] = sourceIndex;
+            weight[count] = sourceWeight;
+            count++;
+        }
+    }
+}
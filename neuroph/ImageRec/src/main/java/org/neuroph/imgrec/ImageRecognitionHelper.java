@@ -31,6 +31,7 @@ import org.neuroph.core.NeuralNetwork;
 import org.neuroph.core.Neuron;
 import org.neuroph.core.data.DataSet;
 import org.neuroph.core.data.DataSetRow;
+import org.neuroph.core.exceptions.NeurophException;
 import org.neuroph.core.exceptions.VectorSizeMismatchException;
 import org.neuroph.imgrec.image.Dimension;
 import org.neuroph.imgrec.image.Image;
@@ -278,73 +279,49 @@ public class ImageRecognitionHelper {
 		return response;
 	}
 
-    private static List<String> createLabels(HashMap<String,?> map)
-    {
-        List<String> imageLabels = new ArrayList<String>();
-        for (String imgName : map.keySet()) {
-            StringTokenizer st = new StringTokenizer(imgName, "._");
-            String imageLabel = st.nextToken();
-            if (!imageLabels.contains(imageLabel)) {
-                imageLabels.add(imageLabel);
-            }
-        }
-        Collections.sort(imageLabels);
-        return imageLabels;
-    }
-
+    /**
+     * Creates data set from labeled images and optional junk images, decoding images in parallel (see ImageDataSetBuilder)
+     * @param imageDir directory with labeled images
+     * @param imageLabels image labels, or null to create them from labeled image file names
+     * @param junkDir directory with junk images, or null
+     * @param colorMode color mode
+     * @param samplingResolution sampling resolution (image size)
+     * @param trainingSetName data set label
+     * @param numOfPictures not used
+     * @return data set with one row for each image
+     */
     public static DataSet createImageDataSetFromFile(String imageDir,  List<String> imageLabels, String junkDir, ColorMode colorMode, Dimension samplingResolution, String trainingSetName, int numOfPictures)
     {
-        DataSet dataSet = null;
-
-        HashMap<String, FractionRgbData> rgbDataMap = new HashMap<>();
-        HashMap<String, FractionHSLData> hslDataMap = new HashMap<>();
-
-        // load color infor for images to recognize
-        try {
-            // load images and get/set labels for all images
-            File labeledImagesDir = new File(imageDir);
-            if (colorMode == ColorMode.COLOR_HSL)  {
-                hslDataMap.putAll(ImageRecognitionHelper.getFractionHSLDataForDirectory(labeledImagesDir, samplingResolution));
-                if (imageLabels == null) imageLabels = createLabels(hslDataMap);
-            } else {
-                rgbDataMap.putAll(ImageRecognitionHelper.getFractionRgbDataForDirectory(labeledImagesDir, samplingResolution)); // pre je koristio ImageLoader
-                if (imageLabels == null) imageLabels = createLabels(rgbDataMap);
-            }
-
-        } catch (IOException ioe) {
+        List<File> imageDirs = new ArrayList<>();
+        File labeledImagesDir = new File(imageDir);
+        if (labeledImagesDir.isDirectory()) {
+            imageDirs.add(labeledImagesDir);
+        } else {
             System.err.println("Unable to load images from labeled images dir: '" + imageDir + "'");
-            System.err.println(ioe.toString());
         }
-
-        // load junk images
         if ((junkDir != null) && (!junkDir.equals(""))) {
-            try {
-                File junkImagesDir = new File(junkDir);
-
-            if (colorMode == ColorMode.COLOR_HSL)  {
-                hslDataMap.putAll(ImageRecognitionHelper.getFractionHSLDataForDirectory(junkImagesDir, samplingResolution));
-            } else
-                rgbDataMap.putAll(ImageRecognitionHelper.getFractionRgbDataForDirectory(junkImagesDir, samplingResolution)); // pre je koristio ImageLoader
-
-
-            } catch (IOException ioe) {
+            File junkImagesDir = new File(junkDir);
+            if (junkImagesDir.isDirectory()) {
+                imageDirs.add(junkImagesDir);
+            } else {
                 System.err.println("Unable to load images from junk images dir: '" + junkDir + "'");
-                System.err.println(ioe.toString());
             }
         }
 
-        // create data set
-        if (colorMode == ColorMode.COLOR_RGB) {
-            dataSet = ImageRecognitionHelper.createRGBTrainingSet(imageLabels, rgbDataMap);
-        } else if (colorMode == ColorMode.COLOR_HSL) {
-            dataSet = ImageRecognitionHelper.createHSLTrainingSet(imageLabels, hslDataMap);
-        } else {
-            dataSet = ImageRecognitionHelper.createBlackAndWhiteTrainingSet(imageLabels, rgbDataMap);
+        ImageDataSetBuilder builder = new ImageDataSetBuilder(samplingResolution, colorMode);
+        DataSet dataSet;
+        try {
+            if (imageLabels == null) { // labels of labeled images only, junk images have no label
+                imageLabels = ImageDataSetBuilder.createLabels(labeledImagesDir.isDirectory()
+                        ? ImageDataSetBuilder.listImages(labeledImagesDir) : Collections.<File>emptyList());
+            }
+            builder.setLabels(imageLabels);
+            dataSet = builder.build(imageDirs.toArray(new File[imageDirs.size()]));
+        } catch (IOException ioe) {
+            throw new NeurophException("Unable to load images from: " + imageDirs, ioe);
         }
 
         dataSet.setLabel(trainingSetName);
-        dataSet.setColumnNames((String[]) imageLabels.toArray());//TODO: setOutputNames()
-        dataSet.save("D:\\Doktorske\\Beograd\\Neuronske mreze - Zoran Sevarac\\Cifar 10\\dataset.tset");
 
         return dataSet;
     }
@@ -21,13 +21,17 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 import org.neuroph.imgrec.image.Dimension;
 import org.neuroph.imgrec.image.Image;
 import org.neuroph.imgrec.image.ImageFactory;
 
+import org.neuroph.core.CompiledNetwork;
 import org.neuroph.core.Neuron;
+import org.neuroph.core.exceptions.NeurophException;
 import org.neuroph.core.exceptions.VectorSizeMismatchException;
 import org.neuroph.imgrec.image.ImageJ2SE;
 import org.neuroph.util.plugins.PluginBase;
@@ -36,6 +40,10 @@ import org.neuroph.util.plugins.PluginBase;
  * Provides image recognition specific properties like sampling resolution, and easy to
  * use image recognition interface for neural network.
  *
+ * Methods which recognize a single image set input of the parent network and are not thread safe.
+ * recognizeImages can be called from many threads: it scores a batch of images on a copy of the network
+ * compiled for that call, and does not change the network.
+ *
  * @author Jon Tait
  * @author Zoran Sevarac <sevarac@gmail.com>
  */
@@ -54,6 +62,11 @@ public class ImageRecognitionPlugin extends PluginBase implements Serializable {
          */
         private ColorMode colorMode;
 
+        /**
+         * Creates input vectors for batch recognition
+         */
+        private transient volatile ImageVectorizer vectorizer;
+
 	/**
 	 * Constructor
 	 * 
@@ -220,6 +233,66 @@ public class ImageRecognitionPlugin extends PluginBase implements Serializable {
                 return getOutput();
         }
 
+        /**
+         * Recognizes all specified images with one batched forward pass, and returns top k labels for each image.
+         * Images are converted to input vectors in parallel, the same way as ImageDataSetBuilder creates
+         * training vectors, and the batch is calculated on a copy of the network compiled for this call,
+         * so results always use the current weights. Parent network is not changed, so this method
+         * can be called concurrently.
+         *
+         * @param images images to recognize
+         * @param topK number of labels for each image, limited to the number of outputs
+         * @return recognized labels and scores for each image, in the order of images
+         * @throws ImageSizeMismatchException if sampling resolution does not match network inputs
+         */
+        public ClassificationResults recognizeImages(final List<BufferedImage> images, int topK) throws ImageSizeMismatchException {
+            if (topK < 1) {
+                throw new IllegalArgumentException("Top k must be at least 1: " + topK);
+            }
+            final ImageVectorizer imageVectorizer = getVectorizer();
+            double[][] inputs = new double[images.size()][];
+            Arrays.parallelSetAll(inputs, i -> imageVectorizer.createInput(images.get(i)));
+
+            List<Neuron> outputNeurons = getParentNetwork().getOutputNeurons();
+            String[] labels = new String[outputNeurons.size()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = outputNeurons.get(i).getLabel();
+            }
+
+            double[][] outputs;
+            try {
+                outputs = predictBatch(inputs);
+            } catch (VectorSizeMismatchException vsme) {
+                throw new ImageSizeMismatchException(vsme);
+            }
+            return new ClassificationResults(labels, outputs, Math.min(topK, labels.length));
+        }
+
+        /**
+         * Calculates outputs on the network compiled with its current weights, or row by row on parent network
+         * if it cannot be compiled. Compiled copy and its context belong to this call, so no lock is needed.
+         */
+        private double[][] predictBatch(double[][] inputs) {
+            CompiledNetwork compiled;
+            try {
+                compiled = getParentNetwork().compile();
+            } catch (NeurophException ex) {
+                synchronized (getParentNetwork()) {
+                    return getParentNetwork().predictBatch(inputs);
+                }
+            }
+            return compiled.predictBatch(inputs, compiled.createContext());
+        }
+
+        private ImageVectorizer getVectorizer() {
+            ImageVectorizer imageVectorizer = vectorizer;
+            if (imageVectorizer == null) {
+                imageVectorizer = new ImageVectorizer(samplingResolution, colorMode);
+                vectorizer = imageVectorizer;
+            }
+            return imageVectorizer;
+        }
+
 	/**
 	 * Returns one or more image labels with the maximum output - recognized
 	 * images
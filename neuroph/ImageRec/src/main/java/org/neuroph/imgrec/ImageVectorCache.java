@@ -0,0 +1,157 @@
+package org.neuroph.imgrec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk cache of image input vectors, so images which did not change since the last run are not decoded again.
+ * Each image has one entry file, named by the hash of image path and vectorization settings. Entry stores the
+ * image path, last modified time and size, and is used only if they still match the image file.
+ *
+ * Values which are exactly representable as floats (like RGB fractions and binary values) are stored as floats,
+ * other values as doubles, so cached vectors are always equal to the vectors which were written.
+ * Entries are written to a temporary file and moved into place, so concurrent builders never read partial entries.
+ * Cache errors are not fatal, an entry which cannot be read or written is treated as missing.
+ */
+final class ImageVectorCache {
+
+    private static final int MAGIC = 0x4E564543; // NVEC
+
+    private static final int VERSION = 1;
+
+    private static final String ENTRY_EXTENSION = ".vec";
+
+    private final File directory;
+
+    /**
+     * Vectorization settings (color mode and sampling resolution) which produced cached vectors
+     */
+    private final String settings;
+
+    ImageVectorCache(File directory, String settings) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory: " + directory);
+        }
+        this.directory = directory;
+        this.settings = settings;
+    }
+
+    /**
+     * Returns cached vector of the image, or null if there is no valid entry for its current version
+     *
+     * @param imageFile image file
+     * @param size      expected vector size
+     * @return cached vector or null
+     */
+    double[] read(File imageFile, int size) {
+        String path = imageFile.getAbsolutePath();
+        File entry = entryFile(path);
+        if (!entry.isFile()) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(entry.toPath()));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || !path.equals(getString(buffer)) || !settings.equals(getString(buffer))
+                    || buffer.getLong() != imageFile.lastModified() || buffer.getLong() != imageFile.length()
+                    || buffer.getInt() != size) {
+                return null;
+            }
+            double[] values = new double[size];
+            if (buffer.get() == Float.BYTES) {
+                for (int i = 0; i < size; i++) {
+                    values[i] = buffer.getFloat();
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    values[i] = buffer.getDouble();
+                }
+            }
+            return values;
+        } catch (IOException | RuntimeException ex) { // corrupted entry
+            return null;
+        }
+    }
+
+    /**
+     * Stores vector of the image, replacing the previous entry
+     *
+     * @param imageFile image file
+     * @param values    image vector
+     */
+    void write(File imageFile, double[] values) {
+        String path = imageFile.getAbsolutePath();
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] settingsBytes = settings.getBytes(StandardCharsets.UTF_8);
+        int valueSize = isSinglePrecision(values) ? Float.BYTES : Double.BYTES;
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 4 + pathBytes.length + 4 + settingsBytes.length + 8 + 8 + 4 + 1
+                + values.length * valueSize);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(pathBytes.length).put(pathBytes).putInt(settingsBytes.length).put(settingsBytes);
+        buffer.putLong(imageFile.lastModified()).putLong(imageFile.length());
+        buffer.putInt(values.length).put((byte) valueSize);
+        for (double value : values) {
+            if (valueSize == Float.BYTES) {
+                buffer.putFloat((float) value);
+            } else {
+                buffer.putDouble(value);
+            }
+        }
+
+        File entry = entryFile(path);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory.toPath(), entry.getName(), ".tmp");
+            Files.write(temp, buffer.array());
+            try {
+                Files.move(temp, entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+        }
+    }
+
+    private static boolean isSinglePrecision(double[] values) {
+        for (double value : values) {
+            if ((float) value != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private File entryFile(String path) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(path.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(settings.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest.digest()) {
+                name.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory, name.append(ENTRY_EXTENSION).toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 is not available", ex);
+        }
+    }
+}
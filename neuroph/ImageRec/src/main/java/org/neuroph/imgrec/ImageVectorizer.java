@@ -0,0 +1,59 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import org.neuroph.imgrec.ImageInputConverter.Conversion;
+import org.neuroph.imgrec.ImageInputConverter.Sampling;
+import org.neuroph.imgrec.image.Dimension;
+
+/**
+ * Converts images into network input vectors for the specified sampling resolution and color mode:
+ * flattened FractionRgbData for COLOR_RGB, FractionHSLData for COLOR_HSL and binary black and white values
+ * for BLACK_AND_WHITE. Vectors are created with ImageInputConverter, one per thread, and ImageFactory is not used,
+ * so it can be used from many threads.
+ */
+final class ImageVectorizer {
+
+    private final Dimension samplingResolution;
+    private final ColorMode colorMode;
+
+    /**
+     * Converter which samples RGB and black and white vectors of large images, like ImageSampler.downSampleImage
+     */
+    private final ThreadLocal<ImageInputConverter> samplers;
+
+    /**
+     * Converter for images which are already resized to sampling resolution
+     */
+    private final ThreadLocal<ImageInputConverter> converters;
+
+    ImageVectorizer(Dimension samplingResolution, ColorMode colorMode) {
+        this.samplingResolution = samplingResolution;
+        this.colorMode = colorMode;
+        final int width = samplingResolution.getWidth();
+        final int height = samplingResolution.getHeight();
+        final Conversion conversion = Conversion.of(colorMode);
+        this.samplers = ThreadLocal.withInitial(() -> new ImageInputConverter(width, height, conversion, Sampling.SUBSAMPLE));
+        this.converters = ThreadLocal.withInitial(() -> new ImageInputConverter(width, height, conversion, Sampling.NEAREST));
+    }
+
+    /**
+     * Returns number of values in input vectors
+     */
+    int getInputSize() {
+        int pixels = samplingResolution.getWidth() * samplingResolution.getHeight();
+        return colorMode == ColorMode.BLACK_AND_WHITE ? pixels : 3 * pixels;
+    }
+
+    /**
+     * Creates input vector for the specified image of any size
+     */
+    double[] createInput(BufferedImage image) {
+        int width = samplingResolution.getWidth();
+        int height = samplingResolution.getHeight();
+        if (colorMode != ColorMode.COLOR_HSL && image.getWidth() > width && image.getHeight() > height) {
+            return samplers.get().convert(image);
+        }
+        // smaller images and HSL vectors are resized with Java2D, as in ImageRecognitionHelper
+        return converters.get().convert(ImageUtilities.resizeImage(image, width, height));
+    }
+}
@@ -1,22 +1,65 @@
 package org.neuroph.imgrec;
 
 import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.visrec.AbstractImageClassifier;
+import javax.visrec.ml.ClassificationException;
 import org.neuroph.nnet.MultiLayerPerceptron;
 
+/**
+ * Image classifier backed by a multi layer perceptron with ImageRecognitionPlugin.
+ * Classification uses the batch recognition of the plugin, so one classifier can be used from many threads.
+ */
 public class NeurophImageClassifier extends AbstractImageClassifier<BufferedImage, MultiLayerPerceptron> {
 
+    /**
+     * Number of labels returned by classify(BufferedImage)
+     */
+    private static final int TOP_K = 5;
+
     public NeurophImageClassifier(MultiLayerPerceptron model) {
         super(BufferedImage.class, model);
     }
 
+    /**
+     * Returns up to five labels of the image with score above the threshold, from the highest score
+     *
+     * @param input image to classify
+     * @return map from label to score
+     */
     @Override
-    public Map<String, Float> classify(BufferedImage input) {
-        // TODO: create vector from input image
-        //getModel().setInput(inputVector);
-        // return top5 mapiings for this class
-        throw new UnsupportedOperationException("not implemented");
+    public Map<String, Float> classify(BufferedImage input) throws ClassificationException {
+        ClassificationResults results = classify(Collections.singletonList(input), TOP_K);
+        Map<String, Float> classes = new LinkedHashMap<>();
+        for (int rank = 0; rank < results.getTopK(); rank++) {
+            float score = results.getScore(0, rank);
+            if (score < getThreshold()) {
+                break;
+            }
+            classes.put(results.getLabel(0, rank), score);
+        }
+        return classes;
     }
 
+    /**
+     * Classifies all images with one batched forward pass
+     *
+     * @param images images to classify
+     * @param topK   number of labels for each image
+     * @return top k labels and scores of each image
+     */
+    public ClassificationResults classify(List<BufferedImage> images, int topK) throws ClassificationException {
+        ImageRecognitionPlugin plugin = getModel().getPlugin(ImageRecognitionPlugin.class);
+        if (plugin == null) {
+            throw new ClassificationException("Model has no ImageRecognitionPlugin", null);
+        }
+        try {
+            return plugin.recognizeImages(images, topK);
+        } catch (ImageSizeMismatchException ex) {
+            throw new ClassificationException("Image sampling resolution does not match model inputs", ex);
+        }
+    }
 }
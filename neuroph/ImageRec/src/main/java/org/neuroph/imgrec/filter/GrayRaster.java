@@ -0,0 +1,307 @@
+package org.neuroph.imgrec.filter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Grayscale image stored as one byte per pixel, row by row, used by raster filters.
+ * Gray values are in range 0-255 and are read with get(x, y) or directly from the pixels array (value = pixel &amp; 0xFF).
+ *
+ * Pixels are read from and written to BufferedImage rasters in bulk. For TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_3BYTE_BGR
+ * and TYPE_4BYTE_ABGR images the image DataBuffer array is accessed directly, other image types are converted
+ * with bulk getRGB/setRGB calls. Like other filters, only the red channel of the image is read, since images are
+ * expected to be grayscale, unless luminance conversion is requested (see GrayscaleFilter).
+ *
+ * Alpha channel is not kept, written images are opaque. Per pixel filters did the same, since they read alpha
+ * with new Color(image.getRGB(x, y)).getAlpha(), and Color(int) constructor always sets alpha to 255.
+ */
+public final class GrayRaster {
+
+    private final int width;
+    private final int height;
+    private final byte[] pixels;
+
+    /**
+     * Number of rows converted at once by bulk getRGB/setRGB calls
+     */
+    private static final int RGB_ROWS = 16;
+
+    /**
+     * Creates black raster of the specified size
+     *
+     * @param width  raster width
+     * @param height raster height
+     */
+    public GrayRaster(int width, int height) {
+        this(width, height, new byte[checkSize(width, height)]);
+    }
+
+    /**
+     * Creates raster of the specified size which stores its pixels in the specified array
+     *
+     * @param width  raster width
+     * @param height raster height
+     * @param pixels pixel array, with at least width * height elements
+     */
+    public GrayRaster(int width, int height, byte[] pixels) {
+        if (pixels.length < checkSize(width, height)) {
+            throw new IllegalArgumentException("Pixel array is smaller than raster size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    private static int checkSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Raster width and height must be positive: " + width + "x" + height);
+        }
+        return Math.multiplyExact(width, height);
+    }
+
+    /**
+     * Creates raster with the red channel of the specified image
+     *
+     * @param image source image
+     * @return gray raster
+     */
+    public static GrayRaster fromImage(BufferedImage image) {
+        GrayRaster raster = new GrayRaster(image.getWidth(), image.getHeight());
+        raster.readRows(image, false, 0, raster.height);
+        return raster;
+    }
+
+    /**
+     * Returns raster of the same size which shares pixel array with this raster
+     *
+     * @param width  new width
+     * @param height new height
+     * @return raster with new size
+     */
+    public GrayRaster reshape(int width, int height) {
+        return new GrayRaster(width, height, pixels);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns pixel array, which is not a copy. Pixel (x, y) is at index y * width + x.
+     *
+     * @return pixel array
+     */
+    public byte[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Returns gray value of the specified pixel
+     *
+     * @param x column
+     * @param y row
+     * @return gray value, 0-255
+     */
+    public int get(int x, int y) {
+        return pixels[y * width + x] & 0xFF;
+    }
+
+    /**
+     * Sets gray value of the specified pixel
+     *
+     * @param x     column
+     * @param y     row
+     * @param value gray value, 0-255
+     */
+    public void set(int x, int y, int value) {
+        pixels[y * width + x] = (byte) value;
+    }
+
+    /**
+     * Returns histogram of gray values
+     *
+     * @return number of pixels for each gray value
+     */
+    public int[] histogram() {
+        return histogram(0, height, new int[256]);
+    }
+
+    /**
+     * Adds gray values of the specified rows to the histogram
+     *
+     * @param fromRow   first row
+     * @param toRow     row after the last row
+     * @param histogram histogram with 256 elements
+     * @return histogram
+     */
+    public int[] histogram(int fromRow, int toRow, int[] histogram) {
+        for (int i = fromRow * width, end = toRow * width; i < end; i++) {
+            histogram[pixels[i] & 0xFF]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Reads the specified rows of the image, which must have the same size as this raster.
+     * Can be called concurrently for different rows.
+     *
+     * @param image     source image
+     * @param luminance if true gray value is 0.21 * red + 0.71 * green + 0.07 * blue (see GrayscaleFilter), otherwise red channel
+     * @param fromRow   first row
+     * @param toRow     row after the last row
+     */
+    public void readRows(BufferedImage image, boolean luminance, int fromRow, int toRow) {
+        checkImage(image);
+        int[] intData = intData(image);
+        if (intData != null) {
+            for (int i = fromRow * width, end = toRow * width; i < end; i++) {
+                int rgb = intData[i];
+                pixels[i] = (byte) (luminance ? luminance(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF) : rgb >> 16);
+            }
+            return;
+        }
+
+        byte[] byteData = byteData(image);
+        if (byteData != null) {
+            int[] offsets = ((PixelInterleavedSampleModel) image.getRaster().getSampleModel()).getBandOffsets();
+            int stride = image.getRaster().getNumBands();
+            int r = offsets[0], g = offsets[1], b = offsets[2];
+            for (int i = fromRow * width, end = toRow * width, k = i * stride; i < end; i++, k += stride) {
+                pixels[i] = luminance
+                        ? (byte) luminance(byteData[k + r] & 0xFF, byteData[k + g] & 0xFF, byteData[k + b] & 0xFF)
+                        : byteData[k + r];
+            }
+            return;
+        }
+
+        int[] rgbRows = new int[width * Math.min(RGB_ROWS, toRow - fromRow)];
+        for (int y = fromRow; y < toRow; y += RGB_ROWS) {
+            int rows = Math.min(RGB_ROWS, toRow - y);
+            image.getRGB(0, y, width, rows, rgbRows, 0, width);
+            for (int k = 0, i = y * width; k < rows * width; k++, i++) {
+                int rgb = rgbRows[k];
+                pixels[i] = (byte) (luminance ? luminance(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF) : rgb >> 16);
+            }
+        }
+    }
+
+    /**
+     * Writes the specified rows to the image, which must have the same size as this raster.
+     * All color channels are set to gray value, and alpha to 255 (transparency of the source image is dropped).
+     * Can be called concurrently for different rows.
+     *
+     * @param image   destination image
+     * @param fromRow first row
+     * @param toRow   row after the last row
+     */
+    public void writeRows(BufferedImage image, int fromRow, int toRow) {
+        checkImage(image);
+        int[] intData = intData(image);
+        if (intData != null) {
+            for (int i = fromRow * width, end = toRow * width; i < end; i++) {
+                intData[i] = 0xFF000000 | (pixels[i] & 0xFF) * 0x010101;
+            }
+            return;
+        }
+
+        byte[] byteData = byteData(image);
+        if (byteData != null) {
+            int stride = image.getRaster().getNumBands();
+            for (int i = fromRow * width, end = toRow * width, k = i * stride; i < end; i++) {
+                for (int c = 0; c < stride; c++) {
+                    byteData[k++] = stride == 4 && c == 0 ? (byte) 0xFF : pixels[i]; // alpha is the first byte of ABGR
+                }
+            }
+            return;
+        }
+
+        int[] rgbRows = new int[width * Math.min(RGB_ROWS, toRow - fromRow)];
+        for (int y = fromRow; y < toRow; y += RGB_ROWS) {
+            int rows = Math.min(RGB_ROWS, toRow - y);
+            for (int k = 0, i = y * width; k < rows * width; k++, i++) {
+                rgbRows[k] = 0xFF000000 | (pixels[i] & 0xFF) * 0x010101;
+            }
+            image.setRGB(0, y, width, rows, rgbRows, 0, width);
+        }
+    }
+
+    /**
+     * Creates image of the specified type with pixels of this raster
+     *
+     * @param imageType BufferedImage type
+     * @return new image
+     */
+    public BufferedImage toImage(int imageType) {
+        BufferedImage image = new BufferedImage(width, height, imageType);
+        writeRows(image, 0, height);
+        return image;
+    }
+
+    private void checkImage(BufferedImage image) {
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Image size " + image.getWidth() + "x" + image.getHeight()
+                    + " does not match raster size " + width + "x" + height);
+        }
+    }
+
+    static int luminance(int red, int green, int blue) {
+        return (int) (0.21 * red + 0.71 * green + 0.07 * blue);
+    }
+
+    /**
+     * Returns packed RGB pixel array of the image, or null if it cannot be accessed directly
+     */
+    private static int[] intData(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        if (!isPlain(raster) || !(sampleModel instanceof SinglePixelPackedSampleModel)
+                || ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() != image.getWidth()) {
+            return null;
+        }
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+
+    /**
+     * Returns interleaved BGR or ABGR pixel array of the image, or null if it cannot be accessed directly
+     */
+    private static byte[] byteData(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_4BYTE_ABGR) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        if (!isPlain(raster) || !(sampleModel instanceof PixelInterleavedSampleModel)) {
+            return null;
+        }
+        PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) sampleModel;
+        if (interleaved.getPixelStride() != raster.getNumBands()
+                || interleaved.getScanlineStride() != image.getWidth() * interleaved.getPixelStride()) {
+            return null;
+        }
+        return ((DataBufferByte) raster.getDataBuffer()).getData();
+    }
+
+    /**
+     * Returns true if raster data starts at the beginning of its only data bank (it is not a sub image)
+     */
+    private static boolean isPlain(WritableRaster raster) {
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        return dataBuffer.getNumBanks() == 1 && dataBuffer.getOffset() == 0
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+    }
+}
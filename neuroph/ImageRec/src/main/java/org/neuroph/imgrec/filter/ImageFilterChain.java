@@ -6,13 +6,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Process images by applying all filters in chain 
+ * Process images by applying all filters in chain.
+ * Consecutive filters which implement RasterFilter are applied together with RasterPipeline, which converts image
+ * to raster only once for all of them, instead of creating a new image after each filter.
  * @author Sanja
  */
 public class ImageFilterChain implements ImageFilter<BufferedImage>, Serializable {
 
     private List<ImageFilter> filters = new ArrayList<>();
     private String chainName;
+
+    /**
+     * Processor which runs raster filters, default processor is used if not set
+     */
+    private transient RasterProcessor rasterProcessor;
     /**
      * Add filter to chain
      * @param filter filter to be added
@@ -36,11 +43,19 @@ public class ImageFilterChain implements ImageFilter<BufferedImage>, Serializabl
      */
     @Override
     public BufferedImage apply(BufferedImage image) {
-        
+        RasterProcessor processor = rasterProcessor != null ? rasterProcessor : RasterProcessor.getDefault();
         BufferedImage tempImage = image;
-        for (ImageFilter filter : filters) {
-            BufferedImage filteredImage = filter.apply(tempImage);
-            tempImage = filteredImage;
+        int i = 0;
+        while (i < filters.size()) {
+            List<RasterFilter> rasterFilters = new ArrayList<>();
+            while (i < filters.size() && filters.get(i) instanceof RasterFilter) {
+                rasterFilters.add((RasterFilter) filters.get(i++));
+            }
+            if (!rasterFilters.isEmpty()) {
+                tempImage = new RasterPipeline(rasterFilters, processor).apply(tempImage);
+            } else {
+                tempImage = filters.get(i++).apply(tempImage);
+            }
         }
 
         return tempImage;
@@ -77,6 +92,18 @@ public class ImageFilterChain implements ImageFilter<BufferedImage>, Serializabl
         this.filters = filters;
     }
 
+    public RasterProcessor getRasterProcessor() {
+        return rasterProcessor;
+    }
+
+    /**
+     * Sets processor which runs raster filters of this chain, for example with a dedicated fork-join pool
+     * @param rasterProcessor raster processor, or null for default processor
+     */
+    public void setRasterProcessor(RasterProcessor rasterProcessor) {
+        this.rasterProcessor = rasterProcessor;
+    }
+
     public String getChainName() {
         return chainName;
     }
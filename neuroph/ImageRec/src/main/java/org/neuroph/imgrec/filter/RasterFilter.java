@@ -0,0 +1,66 @@
+package org.neuroph.imgrec.filter;
+
+/**
+ * Filter which works on gray rasters instead of BufferedImage pixels, so it can be run tile by tile in parallel
+ * and chained with other raster filters without converting images between them (see RasterPipeline).
+ */
+public interface RasterFilter {
+
+    /**
+     * Returns number of pixels removed from each side of the image by this filter
+     *
+     * @return border size, 0 if output image has the same size as input image
+     */
+    default int getBorder() {
+        return 0;
+    }
+
+    /**
+     * Returns true if each output pixel depends only on the input pixel at the same position and on filter settings.
+     * Such filters are run in place, in the same pass as the previous filter of a pipeline, so their prepare method
+     * must not read source pixels.
+     *
+     * @return true for point filters
+     */
+    default boolean isPointFilter() {
+        return false;
+    }
+
+    /**
+     * Returns true if this filter converts color images to grayscale. When such filter is the first filter of a pipeline,
+     * color image is converted while it is read (see GrayRaster.readRows), instead of reading only its red channel.
+     *
+     * @return true for grayscale conversion
+     */
+    default boolean isGrayscaleConversion() {
+        return false;
+    }
+
+    /**
+     * Prepares filter for the specified source raster, and returns function which filters its rows.
+     * Filters which need whole image statistics (histogram, maximum) calculate them here.
+     * Filter settings are not changed, so the same filter can be used for many images at the same time.
+     *
+     * @param source    source raster
+     * @param processor processor which can be used to calculate statistics in parallel
+     * @return row filter for the source
+     */
+    RowFilter prepare(GrayRaster source, RasterProcessor processor);
+
+    /**
+     * Filters one tile of rows
+     */
+    interface RowFilter {
+
+        /**
+         * Calculates the specified rows of the destination raster, from the whole source raster.
+         * Called concurrently for different rows. For point filters source and destination can be the same raster.
+         *
+         * @param source      source raster
+         * @param destination destination raster, smaller than source by border on each side
+         * @param fromRow     first destination row
+         * @param toRow       destination row after the last row
+         */
+        void filter(GrayRaster source, GrayRaster destination, int fromRow, int toRow);
+    }
+}
@@ -0,0 +1,129 @@
+package org.neuroph.imgrec.filter;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies a sequence of raster filters to an image. Image is read into a gray raster once, all filters are applied
+ * on rasters, and the result is written to a new image of the same type once, all in parallel tiles.
+ *
+ * Filters are run in passes, each pass is one filter followed by all point filters after it (see
+ * RasterFilter.isPointFilter), which are applied to each tile while it is still in cache. Passes write
+ * to two buffers in turns, so the whole pipeline uses at most two rasters, regardless of the number of filters.
+ */
+public final class RasterPipeline {
+
+    private final RasterFilter[] filters;
+    private final RasterProcessor processor;
+
+    /**
+     * Creates pipeline with the specified filters, which runs on the common fork-join pool
+     *
+     * @param filters filters in order of application
+     */
+    public RasterPipeline(List<? extends RasterFilter> filters) {
+        this(filters, RasterProcessor.getDefault());
+    }
+
+    /**
+     * Creates pipeline with the specified filters and processor
+     *
+     * @param filters   filters in order of application
+     * @param processor processor which runs filter tiles
+     */
+    public RasterPipeline(List<? extends RasterFilter> filters, RasterProcessor processor) {
+        if (processor == null) {
+            throw new IllegalArgumentException("Processor cannot be null!");
+        }
+        this.filters = filters.toArray(new RasterFilter[filters.size()]);
+        this.processor = processor;
+    }
+
+    /**
+     * Applies all filters to the specified image
+     *
+     * @param image image to filter, is not changed
+     * @return new opaque image of the same type, with filtered pixels (see GrayRaster#writeRows)
+     */
+    public BufferedImage apply(BufferedImage image) {
+        boolean luminance = filters.length > 0 && filters[0].isGrayscaleConversion();
+        GrayRaster source = new GrayRaster(image.getWidth(), image.getHeight());
+        processor.forEachTile(source.getWidth(), source.getHeight(), (from, to) -> source.readRows(image, luminance, from, to));
+
+        GrayRaster result = run(source, luminance ? 1 : 0, true);
+
+        BufferedImage filtered = new BufferedImage(result.getWidth(), result.getHeight(), image.getType());
+        processor.forEachTile(result.getWidth(), result.getHeight(), (from, to) -> result.writeRows(filtered, from, to));
+        return filtered;
+    }
+
+    /**
+     * Applies all filters to the specified raster
+     *
+     * @param raster raster to filter, is not changed
+     * @return new raster with filtered pixels
+     */
+    public GrayRaster apply(GrayRaster raster) {
+        GrayRaster result = run(raster, 0, false);
+        if (result == raster) {
+            result = new GrayRaster(raster.getWidth(), raster.getHeight(), raster.getPixels().clone());
+        }
+        return result;
+    }
+
+    /**
+     * Runs filters from the specified index, in passes
+     *
+     * @param source          source raster
+     * @param first           index of the first filter
+     * @param overwriteSource true if source raster can be used as a buffer
+     * @return filtered raster
+     */
+    private GrayRaster run(GrayRaster source, int first, boolean overwriteSource) {
+        GrayRaster current = source;
+        byte[] spare = null;
+        int f = first;
+        while (f < filters.length) {
+            RasterFilter filter = filters[f++];
+            int border = filter.getBorder();
+            int width = current.getWidth() - 2 * border;
+            int height = current.getHeight() - 2 * border;
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Image " + current.getWidth() + "x" + current.getHeight()
+                        + " is too small for filter " + filter);
+            }
+
+            GrayRaster target;
+            if (filter.isPointFilter() && border == 0 && (current != source || overwriteSource)) {
+                target = current;
+            } else if (spare != null && spare.length >= width * height) {
+                target = new GrayRaster(width, height, spare);
+            } else {
+                target = new GrayRaster(width, height);
+            }
+
+            final RasterFilter.RowFilter rowFilter = filter.prepare(current, processor);
+            List<RasterFilter.RowFilter> fused = new ArrayList<>();
+            while (f < filters.length && filters[f].isPointFilter()) {
+                fused.add(filters[f++].prepare(target, processor));
+            }
+
+            final GrayRaster src = current;
+            final GrayRaster dst = target;
+            final RasterFilter.RowFilter[] pointFilters = fused.toArray(new RasterFilter.RowFilter[fused.size()]);
+            processor.forEachTile(width, height, (from, to) -> {
+                rowFilter.filter(src, dst, from, to);
+                for (RasterFilter.RowFilter pointFilter : pointFilters) {
+                    pointFilter.filter(dst, dst, from, to);
+                }
+            });
+
+            if (target != current && (current != source || overwriteSource)) {
+                spare = current.getPixels();
+            }
+            current = target;
+        }
+        return current;
+    }
+}
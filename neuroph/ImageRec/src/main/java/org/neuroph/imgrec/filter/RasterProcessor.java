@@ -0,0 +1,124 @@
+package org.neuroph.imgrec.filter;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs raster filters in parallel on a fork-join pool. Image is split into tiles of whole rows (bands),
+ * which are recursively split in half until they are smaller than the minimum tile size, so each task
+ * reads and writes one contiguous block of the raster.
+ */
+public final class RasterProcessor {
+
+    /**
+     * Default minimum number of pixels in one tile
+     */
+    public static final int DEFAULT_TILE_PIXELS = 1 << 16;
+
+    private static final RasterProcessor DEFAULT = new RasterProcessor(ForkJoinPool.commonPool());
+
+    private final ForkJoinPool pool;
+    private final int tilePixels;
+
+    /**
+     * Creates processor which runs tiles on the specified pool
+     *
+     * @param pool fork-join pool
+     */
+    public RasterProcessor(ForkJoinPool pool) {
+        this(pool, DEFAULT_TILE_PIXELS);
+    }
+
+    /**
+     * Creates processor which runs tiles with at least the specified number of pixels on the specified pool
+     *
+     * @param pool       fork-join pool
+     * @param tilePixels minimum number of pixels in one tile
+     */
+    public RasterProcessor(ForkJoinPool pool, int tilePixels) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null!");
+        }
+        if (tilePixels < 1) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tilePixels);
+        }
+        this.pool = pool;
+        this.tilePixels = tilePixels;
+    }
+
+    /**
+     * Returns processor which uses the common fork-join pool
+     *
+     * @return default processor
+     */
+    public static RasterProcessor getDefault() {
+        return DEFAULT;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Runs task for all rows of an image with the specified size, split into tiles, and waits until all tiles are done
+     *
+     * @param width  image width
+     * @param height image height
+     * @param task   task called with row range of each tile
+     */
+    public void forEachTile(int width, int height, TileTask task) {
+        int tileRows = Math.max(1, tilePixels / Math.max(1, width));
+        if (height <= tileRows || pool.getParallelism() == 1) {
+            task.run(0, height);
+            return;
+        }
+        TileAction action = new TileAction(task, 0, height, tileRows);
+        if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+            action.invoke();
+        } else {
+            pool.invoke(action);
+        }
+    }
+
+    /**
+     * Work on one tile of rows
+     */
+    public interface TileTask {
+
+        /**
+         * Processes the specified rows
+         *
+         * @param fromRow first row
+         * @param toRow   row after the last row
+         */
+        void run(int fromRow, int toRow);
+    }
+
+    private static final class TileAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TileTask task;
+        private final int fromRow;
+        private final int toRow;
+        private final int tileRows;
+
+        TileAction(TileTask task, int fromRow, int toRow, int tileRows) {
+            this.task = task;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.tileRows = tileRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= tileRows) {
+                task.run(fromRow, toRow);
+                return;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new TileAction(task, fromRow, middle, tileRows), new TileAction(task, middle, toRow, tileRows));
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package org.neuroph.imgrec.filter.impl;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
-import org.neuroph.imgrec.ImageUtilities;
+import java.util.Collections;
+import org.neuroph.imgrec.filter.GrayRaster;
 import org.neuroph.imgrec.filter.ImageFilter;
+import org.neuroph.imgrec.filter.RasterFilter;
+import org.neuroph.imgrec.filter.RasterPipeline;
+import org.neuroph.imgrec.filter.RasterProcessor;
 
 /**
  *
@@ -12,7 +15,7 @@ import org.neuroph.imgrec.filter.ImageFilter;
  */
 
 //http://www.swageroo.com/wordpress/how-to-program-a-gaussian-blur-without-using-3rd-party-libraries/
-public class GaussianBluring implements ImageFilter<BufferedImage>,Serializable{
+public class GaussianBluring implements ImageFilter<BufferedImage>, RasterFilter, Serializable{
     
     private transient BufferedImage originalImage;
     private transient BufferedImage filteredImage;
@@ -32,41 +35,52 @@ public class GaussianBluring implements ImageFilter<BufferedImage>,Serializable{
 
         originalImage = image;
         
-        int oldWidth = image.getWidth();
-        int oldHeight = image.getHeight();
-        
-        int width = image.getWidth() - 2*radius;
-        int height = image.getHeight() - 2*radius;
-
-        filteredImage = new BufferedImage(width, height, originalImage.getType());
-        
         createKernel();        
 
-        for (int i = radius; i < oldWidth - radius; i++) {
-            for (int j = radius; j < oldHeight - radius; j++) {
-                int alpha = new Color(originalImage.getRGB(i, j)).getAlpha();
-                int newColor = getNewColor(i, j);
-                int rgb = ImageUtilities.argbToColor(alpha, newColor, newColor, newColor);
-                
-                int x = i-radius;
-                int y = j-radius;
-                filteredImage.setRGB(x,y, rgb);
-                
-            }
-        }
-  
+        filteredImage = new RasterPipeline(Collections.singletonList(this)).apply(image);
         
         return filteredImage;
     }
 
-    
-    
+    /**
+     * Pixels closer than radius to image edge are removed
+     */
+    @Override
+    public int getBorder() {
+        return radius;
+    }
+
+    /**
+     * Gaussian kernel is the product of two one dimensional kernels, so image is blurred horizontally
+     * and then vertically, with 2 * (2 * radius + 1) multiplications per pixel instead of (2 * radius + 1)^2
+     */
+    @Override
+    public RowFilter prepare(GrayRaster source, RasterProcessor processor) {
+        double[] weights = new double[radius*2 + 1];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            double distance = i - radius;
+            weights[i] = Math.exp(-distance*distance/(2*sigma*sigma));
+            sum += weights[i];
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] /= sum;
+        }
+        return new SeparableConvolution(weights, weights, 0, 0);
+    }
     
     protected void createKernel() {
+        kernel = gaussianKernel();
+    }
+
+    /**
+     * Creates normalized kernel for current radius and sigma
+     */
+    private double[][] gaussianKernel() {
         
         int size = radius*2 + 1;
         int center = radius;
-        kernel = new double [size][size];
+        double[][] kernel = new double [size][size];
         
         for (int x = 0; x < kernel.length; x++) {
             for (int y = 0; y < kernel[0].length; y++) {
@@ -83,7 +97,7 @@ public class GaussianBluring implements ImageFilter<BufferedImage>,Serializable{
                 kernel[i][j] = kernel[i][j]*noralizationValue;
             }
         }
-    
+        return kernel;
     }
     
     private double gaussianFormula (double x, double y) {
@@ -105,37 +119,6 @@ public class GaussianBluring implements ImageFilter<BufferedImage>,Serializable{
         double one = 1.0;
         return one/sum;
     }
- 
-    private int getNewColor (int x, int y) {
-        if (!checkConditios(x, y)) {
-            return new Color(originalImage.getRGB(x, y)).getRed();
-        }
-        
-        int size = 2*radius+1;
-        double [][] matrix = new double [size][size];
-        
-        int newI = 0;
-        int newJ = 0;
-        for (int i = x-radius; i <= x+radius; i++) {
-            for (int j = y-radius; j <= y+radius; j++) {                
-                int oldColor = new Color(originalImage.getRGB(i, j)).getRed();
-                matrix[newI][newJ] = oldColor * kernel[newI][newJ];
-                newJ++;
-            }
-            newI++;
-            newJ=0;
-        }
-        
-        double sum = 0;
-        
-        for (int i = 0; i < matrix.length; i++) {
-            for (int j = 0; j < matrix[0].length; j++) {
-                sum = sum + matrix[i][j];
-            }
-        }
-        
-        return (int) Math.round(sum);
-    }
    
     public boolean checkConditios (int x, int y) {
         if (x-radius >= 0 && x+radius < originalImage.getWidth() && y-radius >= 0 && y+radius < originalImage.getHeight())
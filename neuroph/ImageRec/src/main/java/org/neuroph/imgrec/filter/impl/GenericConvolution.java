@@ -2,14 +2,23 @@ package org.neuroph.imgrec.filter.impl;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
-import org.neuroph.imgrec.ImageUtilities;
+import java.util.Collections;
+import org.neuroph.imgrec.filter.GrayRaster;
 import org.neuroph.imgrec.filter.ImageFilter;
+import org.neuroph.imgrec.filter.RasterFilter;
+import org.neuroph.imgrec.filter.RasterPipeline;
+import org.neuroph.imgrec.filter.RasterProcessor;
 
 /**
+ * Convolution with the specified kernel, kernel[x][y]. Pixels outside of the image are treated as black,
+ * and results are rounded and clamped to 0-255.
+ * 
+ * Separable kernels (kernels which are the product of a horizontal and a vertical kernel, like Gaussian or box kernels)
+ * are detected and applied in two one dimensional passes, so their cost grows linearly with kernel size instead of quadratically.
  *
  * @author Mihailo Stupar
  */
-public class GenericConvolution implements ImageFilter<BufferedImage> {
+public class GenericConvolution implements ImageFilter<BufferedImage>, RasterFilter {
 
     private BufferedImage originalImage;
     private BufferedImage filteredImage;
@@ -21,32 +30,84 @@ public class GenericConvolution implements ImageFilter<BufferedImage> {
         this.kernel = kernel;
     }
 
+    /**
+     * Creates convolution with separable kernel, kernel[x][y] = xKernel[x] * yKernel[y]
+     *
+     * @param xKernel horizontal kernel, odd length
+     * @param yKernel vertical kernel, odd length
+     */
+    public GenericConvolution(double[] xKernel, double[] yKernel) {
+        if (xKernel.length % 2 == 0 || yKernel.length % 2 == 0) {
+            throw new RuntimeException("Kernel cannot be even number!");
+        }
+        kernel = new double[xKernel.length][yKernel.length];
+        for (int x = 0; x < xKernel.length; x++) {
+            for (int y = 0; y < yKernel.length; y++) {
+                kernel[x][y] = xKernel[x] * yKernel[y];
+            }
+        }
+    }
+
     @Override
     public BufferedImage apply(BufferedImage image) {
 
         originalImage = image;
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
 
-        filteredImage = new BufferedImage(width, height, originalImage.getType());
+        filteredImage = new RasterPipeline(Collections.singletonList(this)).apply(image);
 
-        int radius = kernel.length / 2;
+        return filteredImage;
+    }
 
-        if (normalize) {
-            normalizeKernel();
+    /**
+     * Uses two one dimensional passes if kernel is separable, otherwise convolves with the whole kernel
+     */
+    @Override
+    public RowFilter prepare(GrayRaster source, RasterProcessor processor) {
+        final double[][] weights = normalize ? normalizedKernel() : kernel;
+        final int radiusX = weights.length / 2;
+        final int radiusY = weights[0].length / 2;
+
+        double[][] factors = SeparableConvolution.factorize(weights);
+        if (factors != null) {
+            return new SeparableConvolution(factors[0], factors[1], radiusX, radiusY);
         }
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                double result = convolve(x, y, radius);
-                int gray = (int) Math.round(result);
-                int alpha = new Color(originalImage.getRGB(x, y)).getAlpha();
-                int rgb = ImageUtilities.argbToColor(alpha, gray, gray, gray);
-                filteredImage.setRGB(x, y, rgb);
+        final int sizeX = weights.length;
+        final int sizeY = weights[0].length;
+        final double[] flat = new double[sizeX * sizeY]; // [y][x], in the order of source pixels
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                flat[y * sizeX + x] = weights[x][y];
             }
         }
 
-        return filteredImage;
+        return (src, dst, fromRow, toRow) -> {
+            int width = src.getWidth();
+            int height = src.getHeight();
+            byte[] in = src.getPixels();
+            byte[] out = dst.getPixels();
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    int startX = x - radiusX;
+                    int startY = y - radiusY;
+                    double sum = 0;
+                    if (startX >= 0 && startX + sizeX <= width && startY >= 0 && startY + sizeY <= height) {
+                        for (int ky = 0, k = 0; ky < sizeY; ky++) {
+                            for (int p = (startY + ky) * width + startX, end = p + sizeX; p < end; p++) {
+                                sum += flat[k++] * (in[p] & 0xFF);
+                            }
+                        }
+                    } else {
+                        for (int ky = Math.max(0, -startY), endY = Math.min(sizeY, height - startY); ky < endY; ky++) {
+                            for (int kx = Math.max(0, -startX), endX = Math.min(sizeX, width - startX); kx < endX; kx++) {
+                                sum += flat[ky * sizeX + kx] * (in[(startY + ky) * width + startX + kx] & 0xFF);
+                            }
+                        }
+                    }
+                    out[y * width + x] = SeparableConvolution.clamp(sum);
+                }
+            }
+        };
     }
 
     protected double convolve(int xCenter, int yCenter, int radius) {
@@ -55,7 +116,7 @@ public class GenericConvolution implements ImageFilter<BufferedImage> {
         for (int x = xCenter - radius; x <= xCenter + radius; x++) {
             int kernelY = 0;
             for (int y = yCenter - radius; y <= yCenter + radius; y++) {
-                if (x >= 0 && x < originalImage.getWidth() && y > 0 && y < originalImage.getHeight()) {
+                if (x >= 0 && x < originalImage.getWidth() && y >= 0 && y < originalImage.getHeight()) {
                     int color = new Color(originalImage.getRGB(x, y)).getRed();
                     sum = sum + color * kernel[kernelX][kernelY];
                 }
@@ -68,21 +129,26 @@ public class GenericConvolution implements ImageFilter<BufferedImage> {
     }
 
     /*
-    * Mak sure that kernel element sum is 1
+    * Returns copy of the kernel with element sum 1, kernel itself is not changed
      */
-    private void normalizeKernel() {
-        int kernelSum = 0;
+    private double[][] normalizedKernel() {
+        double kernelSum = 0;
         for (int i = 0; i < kernel.length; i++) {
-            for (int j = 0; j < kernel.length; j++) {
+            for (int j = 0; j < kernel[i].length; j++) {
                 kernelSum += kernel[i][j];
             }
         }
 
+        double[][] normalized = new double[kernel.length][];
         for (int i = 0; i < kernel.length; i++) {
-            for (int j = 0; j < kernel.length; j++) {
-                kernel[i][j] = kernel[i][j] / kernelSum;
+            normalized[i] = kernel[i].clone();
+            if (kernelSum != 0) {
+                for (int j = 0; j < normalized[i].length; j++) {
+                    normalized[i][j] = normalized[i][j] / kernelSum;
+                }
             }
         }
+        return normalized;
     }
 
     public void setNormalize(boolean normalize) {
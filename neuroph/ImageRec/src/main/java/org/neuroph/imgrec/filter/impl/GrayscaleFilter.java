@@ -1,10 +1,13 @@
 package org.neuroph.imgrec.filter.impl;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
-import org.neuroph.imgrec.ImageUtilities;
+import java.util.Collections;
+import org.neuroph.imgrec.filter.GrayRaster;
 import org.neuroph.imgrec.filter.ImageFilter;
+import org.neuroph.imgrec.filter.RasterFilter;
+import org.neuroph.imgrec.filter.RasterPipeline;
+import org.neuroph.imgrec.filter.RasterProcessor;
 
 /**
  * Grayscale filter from image in RGB format makes grayscale image in way that
@@ -15,32 +18,46 @@ import org.neuroph.imgrec.filter.ImageFilter;
  *
  * @author Mihailo Stupar
  */
-public class GrayscaleFilter implements ImageFilter<BufferedImage>, Serializable {
+public class GrayscaleFilter implements ImageFilter<BufferedImage>, RasterFilter, Serializable {
 
-    private transient BufferedImage originalImage;
-    private transient BufferedImage filteredImage;
+    /**
+     * Result of the formula for gray input pixels, where red, green and blue are the same
+     */
+    private static final byte[] GRAY_TABLE = new byte[256];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            GRAY_TABLE[v] = (byte) (int) (0.21 * v + 0.71 * v + 0.07 * v);
+        }
+    }
 
     @Override
     public BufferedImage apply(BufferedImage image) {
-        originalImage = image;
-        int alpha, red, green, blue, gray;
-
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        filteredImage = new BufferedImage(width, height, originalImage.getType());
-
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                alpha = new Color(originalImage.getRGB(x, y)).getAlpha();
-                red = new Color(originalImage.getRGB(x, y)).getRed();
-                green = new Color(originalImage.getRGB(x, y)).getGreen();
-                blue = new Color(originalImage.getRGB(x, y)).getBlue();
-                gray = (int) (0.21 * red + 0.71 * green + 0.07 * blue);
-                gray = ImageUtilities.argbToColor(alpha, gray, gray, gray);
-                filteredImage.setRGB(x, y, gray);
+        return new RasterPipeline(Collections.singletonList(this)).apply(image);
+    }
+
+    @Override
+    public boolean isPointFilter() {
+        return true;
+    }
+
+    @Override
+    public boolean isGrayscaleConversion() {
+        return true;
+    }
+
+    /**
+     * Applies formula to raster which is already gray, color images are converted while they are read
+     */
+    @Override
+    public RowFilter prepare(GrayRaster source, RasterProcessor processor) {
+        return (src, dst, fromRow, toRow) -> {
+            byte[] in = src.getPixels();
+            byte[] out = dst.getPixels();
+            for (int i = fromRow * src.getWidth(), end = toRow * src.getWidth(); i < end; i++) {
+                out[i] = GRAY_TABLE[in[i] & 0xFF];
             }
-        }
-        return filteredImage;
+        };
     }
 
     @Override
@@ -1,31 +1,32 @@
 package org.neuroph.imgrec.filter.impl;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
-import org.neuroph.imgrec.ImageUtilities;
+import java.util.Collections;
+import org.neuroph.imgrec.filter.GrayRaster;
 import org.neuroph.imgrec.filter.ImageFilter;
+import org.neuroph.imgrec.filter.RasterFilter;
+import org.neuroph.imgrec.filter.RasterPipeline;
+import org.neuroph.imgrec.filter.RasterProcessor;
 
 /**
  * Mean filtering is method of smoothing images, reducing the amount of intensity variation between one pixel and the next.
  * It is often used to reduce noise in images (eliminating pixel values which are unrepresentative of their surroundings). 
  * 
+ * Window sums are calculated from cumulative column sums and a sliding row sum, so the filter takes
+ * the same time for any radius. Pixels outside of the image are treated as black.
+ * 
  * http://homepages.inf.ed.ac.uk/rbf/HIPR2/mean.htm
  * 
  * @author Mihailo Stupar
  */
-public class MeanFilter implements ImageFilter<BufferedImage>,Serializable{
-
-    private transient BufferedImage originalImage;
-    private transient BufferedImage filteredImage;
+public class MeanFilter implements ImageFilter<BufferedImage>, RasterFilter, Serializable{
 
     /**
      * Radius around pixel to calculate neighborhood  mean, typically should be 1 or 2 (to get 3 or 5 neighbourhood conv filter).
      * Central pixel can be greater.
      */
     private int radius;
-    private transient int imageWidth;
-    private transient int imageHeight;
 
     public MeanFilter() {
         this.radius = 1;
@@ -37,45 +38,49 @@ public class MeanFilter implements ImageFilter<BufferedImage>,Serializable{
     
     @Override
     public BufferedImage apply(BufferedImage image) {
-    
-        originalImage = image;
-        
-        imageWidth = originalImage.getWidth();
-        imageHeight = originalImage.getHeight();
-        
-        filteredImage = new BufferedImage(imageWidth, imageHeight, originalImage.getType());
-        
-        for (int x = 0; x < imageWidth; x++) {
-            for (int y = 0; y < imageHeight; y++) {                
-                int mean = findMeanPixelColor(x, y);
-                int alpha = new Color(originalImage.getRGB(x, y)).getAlpha();                
-                int rgb = ImageUtilities.argbToColor(alpha, mean, mean, mean);
-                filteredImage.setRGB(x, y, rgb);                
-            }
-        }
-                
-        return filteredImage;                
+        return new RasterPipeline(Collections.singletonList(this)).apply(image);
     }
-    
+
     /**
-     * Calculates color mean for the given center position of the filter
-     * @param centerX
-     * @param centerY
-     * @return 
+     * Calculates cumulative sums of all columns, so sum of any column segment is the difference of two sums
      */
-    private int findMeanPixelColor (int centerX, int centerY) {       
-        double sum = 0;
-        final int numPixels = (2*radius+1) * (2*radius+1);  
-        for (int x = centerX-radius; x <= centerX+radius; x++) {
-            for (int y = centerY-radius; y <= centerY+radius; y++) {              
-                if (x > 0 && x < imageWidth && y > 0 && y< imageHeight) {                
-                    int color = new Color(originalImage.getRGB(x, y)).getRed(); // why we use only red component here? we assume grayscale filter has been applied previously
-                   // int color = originalImage.getRGB(x, y);  // trebalo bi koritiiti sve komponente
-                    sum = sum + color;
-                }   
-            }
+    @Override
+    public RowFilter prepare(GrayRaster source, RasterProcessor processor) {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        byte[] pixels = source.getPixels();
+        final int[] columnSums = new int[(height + 1) * width]; // row y + 1 holds sums of rows 0..y
+        for (int i = 0, j = width; i < width * height; i++, j++) {
+            columnSums[j] = columnSums[i] + (pixels[i] & 0xFF);
         }
-        return (int) Math.round(sum/numPixels);      
+
+        final int r = radius;
+        final int numPixels = (2*r+1) * (2*r+1);
+        return (src, dst, fromRow, toRow) -> {
+            byte[] out = dst.getPixels();
+            int[] window = new int[width]; // sums of column segments under the window
+            for (int y = fromRow; y < toRow; y++) {
+                int top = Math.max(0, y - r) * width;
+                int bottom = Math.min(height, y + r + 1) * width;
+                for (int x = 0; x < width; x++) {
+                    window[x] = columnSums[bottom + x] - columnSums[top + x];
+                }
+
+                long sum = 0;
+                for (int x = 0, end = Math.min(width, r + 1); x < end; x++) {
+                    sum += window[x];
+                }
+                for (int x = 0, o = y * width; x < width; x++, o++) {
+                    out[o] = (byte) Math.round((double) sum / numPixels);
+                    if (x + r + 1 < width) {
+                        sum += window[x + r + 1];
+                    }
+                    if (x - r >= 0) {
+                        sum -= window[x - r];
+                    }
+                }
+            }
+        };
     }
 
     @Override
@@ -4,8 +4,12 @@ import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
 import java.util.Arrays;
-import org.neuroph.imgrec.ImageUtilities;
+import java.util.Collections;
+import org.neuroph.imgrec.filter.GrayRaster;
 import org.neuroph.imgrec.filter.ImageFilter;
+import org.neuroph.imgrec.filter.RasterFilter;
+import org.neuroph.imgrec.filter.RasterPipeline;
+import org.neuroph.imgrec.filter.RasterProcessor;
 
 /**
  * Median filter is used for noise reduction on the grayscale image. The filter 
@@ -18,7 +22,7 @@ import org.neuroph.imgrec.filter.ImageFilter;
  * 
  * @author Mihailo Stupar
  */
-public class MedianFilter implements ImageFilter<BufferedImage>, Serializable{
+public class MedianFilter implements ImageFilter<BufferedImage>, RasterFilter, Serializable{
 
     private transient BufferedImage originalImage;
     private transient BufferedImage filteredImage;
@@ -30,6 +34,11 @@ public class MedianFilter implements ImageFilter<BufferedImage>, Serializable{
     private int radius;
     private transient int imageWidth;
     private transient int imageHeight;    
+
+    /**
+     * Largest radius for which sliding one window histogram is faster than updating column histograms
+     */
+    private static final int SLIDING_RADIUS = 3;
 	
     public MedianFilter () {
 	radius = 1;
@@ -47,28 +56,199 @@ public class MedianFilter implements ImageFilter<BufferedImage>, Serializable{
 	imageWidth = originalImage.getWidth();
 	imageHeight = originalImage.getHeight();
 		
-	filteredImage = new BufferedImage(imageWidth, imageHeight, originalImage.getType());
-		
-	int [] arrayOfPixels;
-	int median;
-	int alpha;
-	int newColor;
+	filteredImage = new RasterPipeline(Collections.singletonList(this)).apply(image);
 		
-	for (int i = 0; i < imageWidth; i++) {
-            for (int j = 0; j < imageHeight; j++) {
-				
-		arrayOfPixels = getArrayOfPixels(i, j);
-		median = findMedianPixelColor(arrayOfPixels);
-		alpha = new Color(originalImage.getRGB(i, j)).getAlpha();
-				
-		newColor = ImageUtilities.argbToColor(alpha, median, median, median);
-		filteredImage.setRGB(i, j, newColor);
+	return filteredImage;
+    }
+
+    /**
+     * Returns median of the window around each pixel, window is cut at image edges.
+     * Small windows use one histogram which slides along the row (Huang), larger windows use column histograms
+     * (Perreault and Hebert, Median Filtering in Constant Time), so the time per pixel does not grow with radius.
+     */
+    @Override
+    public RowFilter prepare(GrayRaster source, RasterProcessor processor) {
+        return radius <= SLIDING_RADIUS ? slidingFilter(radius) : histogramFilter(radius);
+    }
+
+    /**
+     * Keeps histogram of the window, which is moved right by adding one window column and removing another,
+     * and tracks the median and the number of window pixels below it as the histogram changes
+     */
+    private static RowFilter slidingFilter(final int r) {
+        return (src, dst, fromRow, toRow) -> {
+            int width = src.getWidth();
+            int height = src.getHeight();
+            byte[] in = src.getPixels();
+            byte[] out = dst.getPixels();
+            int[] histogram = new int[256];
+            for (int y = fromRow; y < toRow; y++) {
+                int top = Math.max(0, y - r) * width;
+                int bottom = Math.min(height - 1, y + r) * width;
+                int rows = bottom / width - top / width + 1;
+
+                Arrays.fill(histogram, 0);
+                int median = 0;
+                int belowMedian = 0;
+                for (int x = 0, end = Math.min(width, r); x < end; x++) {
+                    for (int p = top + x; p <= bottom + x; p += width) {
+                        histogram[in[p] & 0xFF]++;
+                    }
+                }
+
+                for (int x = 0, o = y * width; x < width; x++, o++) {
+                    if (x + r < width) {
+                        for (int p = top + x + r; p <= bottom + x + r; p += width) {
+                            int value = in[p] & 0xFF;
+                            histogram[value]++;
+                            if (value < median) {
+                                belowMedian++;
+                            }
+                        }
+                    }
+                    if (x - r - 1 >= 0) {
+                        for (int p = top + x - r - 1; p <= bottom + x - r - 1; p += width) {
+                            int value = in[p] & 0xFF;
+                            histogram[value]--;
+                            if (value < median) {
+                                belowMedian--;
+                            }
+                        }
+                    }
+
+                    int k = rows * (Math.min(width - 1, x + r) - Math.max(0, x - r) + 1) / 2; // index of the median in sorted window
+                    while (belowMedian > k) {
+                        belowMedian -= histogram[--median];
+                    }
+                    while (belowMedian + histogram[median] <= k) {
+                        belowMedian += histogram[median++];
+                    }
+                    out[o] = (byte) median;
+                }
+            }
+        };
+    }
+
+    /**
+     * Keeps a histogram of each column of the window rows, which is moved down by one pixel per row. Window histogram
+     * is the sum of column histograms, and is moved right by adding one column and removing another.
+     * Histograms have two levels, 16 coarse bins of 16 gray values each, and 256 fine bins. Coarse window bins
+     * are updated for each pixel, and fine window bins only for the coarse bin which contains the median, when it is needed.
+     */
+    private static RowFilter histogramFilter(final int r) {
+        return (src, dst, fromRow, toRow) -> {
+            int width = src.getWidth();
+            int height = src.getHeight();
+            byte[] in = src.getPixels();
+            byte[] out = dst.getPixels();
+
+            int[] columnFine = new int[width * 256];
+            int[] columnCoarse = new int[width * 16];
+            int[] fine = new int[256];
+            int[] coarse = new int[16];
+            int[] fineColumn = new int[16]; // column for which fine bins of each coarse bin were last updated
+
+            // column histograms for the row above the tile, moved down before each row
+            for (int q = Math.max(0, fromRow - r - 1), end = Math.min(height, fromRow + r); q < end; q++) {
+                addRow(in, q, width, columnFine, columnCoarse, 1);
             }
+
+            for (int y = fromRow; y < toRow; y++) {
+                if (y - r - 1 >= 0) {
+                    addRow(in, y - r - 1, width, columnFine, columnCoarse, -1);
+                }
+                if (y + r < height) {
+                    addRow(in, y + r, width, columnFine, columnCoarse, 1);
+                }
+                int rows = Math.min(height - 1, y + r) - Math.max(0, y - r) + 1;
+
+                Arrays.fill(coarse, 0);
+                Arrays.fill(fineColumn, -2 * r - 2);
+                for (int x = 0, end = Math.min(width, r); x < end; x++) {
+                    addBins(columnCoarse, x * 16, coarse, 0, 1);
+                }
+
+                for (int x = 0, o = y * width; x < width; x++, o++) {
+                    if (x + r < width && x - r - 1 >= 0) {
+                        slideBins(columnCoarse, (x + r) * 16, (x - r - 1) * 16, coarse, 0);
+                    } else if (x + r < width) {
+                        addBins(columnCoarse, (x + r) * 16, coarse, 0, 1);
+                    } else if (x - r - 1 >= 0) {
+                        addBins(columnCoarse, (x - r - 1) * 16, coarse, 0, -1);
+                    }
+
+                    int size = rows * (Math.min(width - 1, x + r) - Math.max(0, x - r) + 1);
+                    int k = size / 2; // index of the median in sorted window
+                    int bin = 0;
+                    while (k >= coarse[bin]) {
+                        k -= coarse[bin++];
+                    }
+
+                    updateFine(columnFine, width, r, x, bin, fine, fineColumn);
+                    int value = bin * 16;
+                    while (k >= fine[value]) {
+                        k -= fine[value++];
+                    }
+                    out[o] = (byte) value;
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds (count 1) or removes (count -1) pixels of the specified row to column histograms
+     */
+    private static void addRow(byte[] in, int row, int width, int[] columnFine, int[] columnCoarse, int count) {
+        for (int x = 0, p = row * width; x < width; x++, p++) {
+            int value = in[p] & 0xFF;
+            columnFine[x * 256 + value] += count;
+            columnCoarse[x * 16 + (value >> 4)] += count;
         }
-		
-	return filteredImage;
     }
-	
+
+    /**
+     * Adds (count 1) or subtracts (count -1) 16 column histogram bins from the specified index to window histogram bins from the offset
+     */
+    private static void addBins(int[] columnBins, int index, int[] bins, int offset, int count) {
+        for (int i = 0; i < 16; i++) {
+            bins[offset + i] += count * columnBins[index + i];
+        }
+    }
+
+    /**
+     * Adds 16 column histogram bins from the added index and subtracts 16 bins from the removed index
+     */
+    private static void slideBins(int[] columnBins, int added, int removed, int[] bins, int offset) {
+        for (int i = 0; i < 16; i++) {
+            bins[offset + i] += columnBins[added + i] - columnBins[removed + i];
+        }
+    }
+
+    /**
+     * Brings fine bins of the coarse bin up to date with window at column x
+     */
+    private static void updateFine(int[] columnFine, int width, int r, int x, int bin, int[] fine, int[] fineColumn) {
+        int offset = bin * 16;
+        int last = fineColumn[bin];
+        if (x - last > 2 * r + 1) { // all columns changed, recalculate from scratch
+            Arrays.fill(fine, offset, offset + 16, 0);
+            for (int c = Math.max(0, x - r), end = Math.min(width - 1, x + r); c <= end; c++) {
+                addBins(columnFine, c * 256 + offset, fine, offset, 1);
+            }
+        } else {
+            for (int c = last + 1; c <= x; c++) {
+                if (c + r < width && c - r - 1 >= 0) {
+                    slideBins(columnFine, (c + r) * 256 + offset, (c - r - 1) * 256 + offset, fine, offset);
+                } else if (c + r < width) {
+                    addBins(columnFine, (c + r) * 256 + offset, fine, offset, 1);
+                } else if (c - r - 1 >= 0) {
+                    addBins(columnFine, (c - r - 1) * 256 + offset, fine, offset, -1);
+                }
+            }
+        }
+        fineColumn[bin] = x;
+    }
+
     public int[] getArrayOfPixels (int x, int y) {
 		
         int startX = x - radius;
@@ -100,12 +280,6 @@ public class MedianFilter implements ImageFilter<BufferedImage>, Serializable{
 		
 	return pixels;
     }
-	
-    private int findMedianPixelColor (int [] arrayOfPixels) {
-	Arrays.sort(arrayOfPixels);
-	int middle = arrayOfPixels.length/2;
-	return arrayOfPixels[middle];
-    }
 
     /**
      * 
@@ -131,4 +305,4 @@ public class MedianFilter implements ImageFilter<BufferedImage>, Serializable{
  
     
     
-}
\ No newline at end of file
+}
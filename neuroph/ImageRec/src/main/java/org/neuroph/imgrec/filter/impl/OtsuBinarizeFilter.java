@@ -1,10 +1,13 @@
 package org.neuroph.imgrec.filter.impl;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
-import org.neuroph.imgrec.ImageUtilities;
+import java.util.Collections;
+import org.neuroph.imgrec.filter.GrayRaster;
 import org.neuroph.imgrec.filter.ImageFilter;
+import org.neuroph.imgrec.filter.RasterFilter;
+import org.neuroph.imgrec.filter.RasterPipeline;
+import org.neuroph.imgrec.filter.RasterProcessor;
 
 /**
  * Otsu binarize filter serves to dynamically determine the threshold based on 
@@ -22,62 +25,39 @@ import org.neuroph.imgrec.filter.ImageFilter;
  * 
  * @author Mihailo Stupar
  */
-public class OtsuBinarizeFilter implements ImageFilter<BufferedImage>, Serializable {
+public class OtsuBinarizeFilter implements ImageFilter<BufferedImage>, RasterFilter, Serializable {
 
-    private transient BufferedImage originalImage;
-    private transient BufferedImage filteredImage;
-        
     private static final int BLACK_PIXEL = 0;
     private static final int WHITE_PIXEL = 255;    
     
     @Override	
     public BufferedImage apply(BufferedImage image) {		
-         this.originalImage = image;		
-	int width = originalImage.getWidth();
-	int height = originalImage.getHeight();		
-	filteredImage = new BufferedImage(width, height, originalImage.getType());
-		
-	int [] histogram = imageHistogram(originalImage);		
-	int totalNumberOfpixels = width * height;		
-	int threshold = calculateThreshold(histogram, totalNumberOfpixels); // ovo moze biti adaptivni parametar - adaptivna konvoluciona binarizacija			
-	int alpha, gray, newColor;
-		
-	for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                 final Color col = new Color(originalImage.getRGB(x, y));
-		gray = col.getRed();
-		alpha = col.getAlpha();
-				
-		if (gray > threshold)
-                    newColor = WHITE_PIXEL;
-		else
-                    newColor = BLACK_PIXEL;
-				
-		newColor = ImageUtilities.argbToColor(alpha, newColor, newColor, newColor);
-		filteredImage.setRGB(x, y, newColor);
-            }
-	}
-		
-	return filteredImage;
+        return new RasterPipeline(Collections.singletonList(this)).apply(image);
     }
-	
+
     /**
-     * Creates image histogram for the given image.
-     * 
-     * @param image
-     * @return 
+     * Calculates threshold from histogram of the whole source, histograms of tiles are calculated in parallel
      */
-    private int[] imageHistogram(BufferedImage image) {
+    @Override
+    public RowFilter prepare(GrayRaster source, RasterProcessor processor) {
         int[] histogram = new int[256];
+        processor.forEachTile(source.getWidth(), source.getHeight(), (fromRow, toRow) -> {
+            int[] tileHistogram = source.histogram(fromRow, toRow, new int[256]);
+            synchronized (histogram) {
+                for (int i = 0; i < histogram.length; i++) {
+                    histogram[i] += tileHistogram[i];
+                }
+            }
+        });
+        final int threshold = calculateThreshold(histogram, source.getWidth() * source.getHeight()); // ovo moze biti adaptivni parametar - adaptivna konvoluciona binarizacija
 
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                // ovde bi bilo bolje da ne instanciram ovoliko objekata... nego nek atransformacija: (getRGB() >> 16) & 0xFF to se radi u getRed()
-                int gray = (image.getRGB(x, y) >> 16) & 0xFF; // ovo je getRed() samo crveni kanal jer se pretpostavlja da je prethodno prosla kroz grayscale filter pa su sva tri kaala ista
-                histogram[gray]++; // za svaku nijansu sive povecaj odgovarajucu poziciju za 1
+        return (src, dst, fromRow, toRow) -> {
+            byte[] in = src.getPixels();
+            byte[] out = dst.getPixels();
+            for (int i = fromRow * src.getWidth(), end = toRow * src.getWidth(); i < end; i++) {
+                out[i] = (byte) ((in[i] & 0xFF) > threshold ? WHITE_PIXEL : BLACK_PIXEL);
             }
-        }
-        return histogram;
+        };
     }
 	
     private int calculateThreshold(int[] histogram, int total) {
@@ -124,4 +104,4 @@ public class OtsuBinarizeFilter implements ImageFilter<BufferedImage>, Serializa
     }
 
  
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package org.neuroph.imgrec.filter.impl;
+
+import java.util.Arrays;
+import org.neuroph.imgrec.filter.GrayRaster;
+import org.neuroph.imgrec.filter.RasterFilter;
+
+/**
+ * Convolution with kernel which is the product of a horizontal and a vertical kernel, kernel[x][y] = xKernel[x] * yKernel[y].
+ * Each tile is convolved with the horizontal kernel into a temporary buffer and then with the vertical kernel,
+ * which takes xKernel.length + yKernel.length multiplications per pixel instead of xKernel.length * yKernel.length.
+ * Pixels outside of source image are zero. Results are rounded and clamped to 0-255.
+ */
+final class SeparableConvolution implements RasterFilter.RowFilter {
+
+    private final double[] xKernel;
+    private final double[] yKernel;
+
+    /**
+     * Distance from destination pixel to the source pixel under the first kernel element, to the left and up
+     */
+    private final int xOffset;
+    private final int yOffset;
+
+    SeparableConvolution(double[] xKernel, double[] yKernel, int xOffset, int yOffset) {
+        this.xKernel = xKernel;
+        this.yKernel = yKernel;
+        this.xOffset = xOffset;
+        this.yOffset = yOffset;
+    }
+
+    /**
+     * Returns factors of the kernel if it is separable, or null
+     *
+     * @param kernel kernel, [x][y]
+     * @return horizontal and vertical kernel, or null
+     */
+    static double[][] factorize(double[][] kernel) {
+        // largest element gives the most precise factors
+        int pi = 0, pj = 0;
+        double max = 0;
+        for (int i = 0; i < kernel.length; i++) {
+            for (int j = 0; j < kernel[i].length; j++) {
+                if (Math.abs(kernel[i][j]) > max) {
+                    max = Math.abs(kernel[i][j]);
+                    pi = i;
+                    pj = j;
+                }
+            }
+        }
+        if (max == 0) {
+            return null;
+        }
+
+        double[] xKernel = new double[kernel.length];
+        double[] yKernel = new double[kernel[pi].length];
+        for (int i = 0; i < xKernel.length; i++) {
+            if (kernel[i].length != yKernel.length) {
+                return null;
+            }
+            xKernel[i] = kernel[i][pj];
+        }
+        for (int j = 0; j < yKernel.length; j++) {
+            yKernel[j] = kernel[pi][j] / kernel[pi][pj];
+        }
+        for (int i = 0; i < xKernel.length; i++) {
+            for (int j = 0; j < yKernel.length; j++) {
+                if (Math.abs(kernel[i][j] - xKernel[i] * yKernel[j]) > 1e-12 * max) {
+                    return null;
+                }
+            }
+        }
+        return new double[][]{xKernel, yKernel};
+    }
+
+    @Override
+    public void filter(GrayRaster source, GrayRaster destination, int fromRow, int toRow) {
+        int srcWidth = source.getWidth();
+        int srcHeight = source.getHeight();
+        int width = destination.getWidth();
+        byte[] in = source.getPixels();
+        byte[] out = destination.getPixels();
+        int kx = xKernel.length;
+        int ky = yKernel.length;
+
+        // horizontal pass for all source rows under the tile
+        int firstRow = fromRow - yOffset;
+        int rows = toRow - fromRow + ky - 1;
+        double[] rowSums = new double[rows * width];
+        for (int r = 0; r < rows; r++) {
+            int sy = firstRow + r;
+            if (sy < 0 || sy >= srcHeight) {
+                continue;
+            }
+            int base = sy * srcWidth;
+            for (int x = 0, t = r * width; x < width; x++, t++) {
+                int sx = x - xOffset;
+                double sum = 0;
+                if (sx >= 0 && sx + kx <= srcWidth) {
+                    for (int i = 0, p = base + sx; i < kx; i++, p++) {
+                        sum += xKernel[i] * (in[p] & 0xFF);
+                    }
+                } else {
+                    for (int i = Math.max(0, -sx), end = Math.min(kx, srcWidth - sx); i < end; i++) {
+                        sum += xKernel[i] * (in[base + sx + i] & 0xFF);
+                    }
+                }
+                rowSums[t] = sum;
+            }
+        }
+
+        // vertical pass, one destination row at a time
+        double[] sums = new double[width];
+        for (int y = fromRow; y < toRow; y++) {
+            Arrays.fill(sums, 0);
+            for (int j = 0; j < ky; j++) {
+                double w = yKernel[j];
+                for (int x = 0, t = (y - fromRow + j) * width; x < width; x++, t++) {
+                    sums[x] += w * rowSums[t];
+                }
+            }
+            for (int x = 0, o = y * width; x < width; x++, o++) {
+                out[o] = clamp(sums[x]);
+            }
+        }
+    }
+
+    static byte clamp(double value) {
+        long v = Math.round(value);
+        return (byte) (v < 0 ? 0 : v > 255 ? 255 : v);
+    }
+}
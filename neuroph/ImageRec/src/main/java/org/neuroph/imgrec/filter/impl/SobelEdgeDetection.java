@@ -3,8 +3,13 @@ package org.neuroph.imgrec.filter.impl;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.Serializable;
-import org.neuroph.imgrec.ImageUtilities;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.neuroph.imgrec.filter.GrayRaster;
 import org.neuroph.imgrec.filter.ImageFilter;
+import org.neuroph.imgrec.filter.RasterFilter;
+import org.neuroph.imgrec.filter.RasterPipeline;
+import org.neuroph.imgrec.filter.RasterProcessor;
 
 /**
  * Edge detection using sobel filter
@@ -12,7 +17,7 @@ import org.neuroph.imgrec.filter.ImageFilter;
  * https://homepages.inf.ed.ac.uk/rbf/HIPR2/sobel.htm 
  * @author Mihailo Stupar
  */
-public class SobelEdgeDetection implements ImageFilter<BufferedImage>, Serializable{
+public class SobelEdgeDetection implements ImageFilter<BufferedImage>, RasterFilter, Serializable{
     
     private transient BufferedImage originalImage;
     private transient BufferedImage filteredImage;
@@ -32,41 +37,56 @@ public class SobelEdgeDetection implements ImageFilter<BufferedImage>, Serializa
     public BufferedImage apply(BufferedImage image) {
         
         originalImage = image;        
-        int width = image.getWidth();
-        int height = image.getHeight();        
-        filteredImage = new BufferedImage(width, height, image.getType());        
-        
-        double [][] gradX = new double[width][height];
-        double [][] gradY = new double[width][height];
-        double [][] grad = new double[width][height];
-        
-        double maxGrad = 0;
-        
-        for (int x = 1; x < width-1; x++) {
-            for (int y = 1; y < height-1; y++) {                
-                gradX[x][y] = applyFilter(x, y, horizSobel);
-                gradY[x][y] = applyFilter(x, y, vertSobel);                
-                grad[x][y] = Math.abs(gradX[x][y]) + Math.abs(gradY[x][y]); // aproksimacija intenziteta gradijenta               
-                if (grad[x][y] > maxGrad)  maxGrad = grad[x][y];
-            }            
-        }
-                
-        threshold = threshold * maxGrad;
-        int newPixelColor;
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {                               
-                final int alpha = new Color(originalImage.getRGB(x, y)).getAlpha();
-                
-                if (grad[x][y] > threshold) newPixelColor = BLACK;  // ako je promena/gradijent veci onda crni pixel
-                    else newPixelColor = WHITE; // ako nije ond abeli pixel
-               
-                final int rgb = ImageUtilities.argbToColor(alpha, newPixelColor, newPixelColor, newPixelColor);
-                filteredImage.setRGB(x, y, rgb);                
-            }
-        }
+        filteredImage = new RasterPipeline(Collections.singletonList(this)).apply(image);
       
         return filteredImage;
     }
+
+    /**
+     * Finds maximum gradient of the whole source in parallel, pixels with gradient greater than threshold * maximum are edges
+     */
+    @Override
+    public RowFilter prepare(GrayRaster source, RasterProcessor processor) {
+        AtomicInteger maxGrad = new AtomicInteger();
+        processor.forEachTile(source.getWidth(), source.getHeight(), (fromRow, toRow) -> {
+            int max = 0;
+            for (int y = Math.max(1, fromRow); y < Math.min(source.getHeight() - 1, toRow); y++) {
+                for (int x = 1; x < source.getWidth() - 1; x++) {
+                    max = Math.max(max, gradient(source, x, y));
+                }
+            }
+            maxGrad.accumulateAndGet(max, Math::max);
+        });
+        final double gradThreshold = threshold * maxGrad.get();
+
+        return (src, dst, fromRow, toRow) -> {
+            int width = src.getWidth();
+            int height = src.getHeight();
+            byte[] out = dst.getPixels();
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    // gradient of edge pixels is not calculated
+                    int grad = x > 0 && x < width - 1 && y > 0 && y < height - 1 ? gradient(src, x, y) : 0;
+                    out[y * width + x] = (byte) (grad > gradThreshold ? BLACK : WHITE); // ako je promena/gradijent veci onda crni pixel
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns approximation of gradient magnitude |gx| + |gy| at the specified inner pixel
+     */
+    private static int gradient(GrayRaster raster, int x, int y) {
+        byte[] p = raster.getPixels();
+        int width = raster.getWidth();
+        int i = y * width + x;
+        int topLeft = p[i - width - 1] & 0xFF, top = p[i - width] & 0xFF, topRight = p[i - width + 1] & 0xFF;
+        int left = p[i - 1] & 0xFF, right = p[i + 1] & 0xFF;
+        int bottomLeft = p[i + width - 1] & 0xFF, bottom = p[i + width] & 0xFF, bottomRight = p[i + width + 1] & 0xFF;
+        int gradX = (topRight + 2 * right + bottomRight) - (topLeft + 2 * left + bottomLeft);
+        int gradY = (bottomLeft + 2 * bottom + bottomRight) - (topLeft + 2 * top + topRight);
+        return Math.abs(gradX) + Math.abs(gradY);
+    }
     
     private void initSobelFilters () {
                 
@@ -114,4 +134,4 @@ public class SobelEdgeDetection implements ImageFilter<BufferedImage>, Serializa
     }
     
     
-}
\ No newline at end of file
+}
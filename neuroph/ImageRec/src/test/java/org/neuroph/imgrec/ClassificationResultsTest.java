@@ -0,0 +1,50 @@
+package org.neuroph.imgrec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Top k selection must order results from the highest score, and keep output order for equal scores
+ */
+public class ClassificationResultsTest {
+
+    private static final String[] LABELS = {"a", "b", "c", "d"};
+
+    @Test
+    public void testTopKOrder() {
+        ClassificationResults results = new ClassificationResults(LABELS,
+                new double[][]{{0.1, 0.7, 0.3, 0.9}, {0.4, 0.2, 0.8, 0.6}}, 3);
+        assertEquals(2, results.size());
+        assertEquals(3, results.getTopK());
+
+        assertEquals(3, results.getIndex(0, 0));
+        assertEquals(1, results.getIndex(0, 1));
+        assertEquals(2, results.getIndex(0, 2));
+        assertEquals("d", results.getBestLabel(0));
+        assertEquals(0.9f, results.getScore(0, 0), 0);
+        assertEquals(0.7f, results.getScore(0, 1), 0);
+        assertEquals(0.3f, results.getScore(0, 2), 0);
+
+        assertEquals("c", results.getLabel(1, 0));
+        assertEquals("d", results.getLabel(1, 1));
+        assertEquals("a", results.getLabel(1, 2));
+    }
+
+    @Test
+    public void testEqualScoresKeepOutputOrder() {
+        double[][] outputs = {{0.5, 0.2, 0.5, 0.5}};
+        ClassificationResults top2 = new ClassificationResults(LABELS, outputs, 2);
+        assertEquals(0, top2.getIndex(0, 0));
+        assertEquals(2, top2.getIndex(0, 1));
+
+        ClassificationResults all = new ClassificationResults(LABELS, outputs, 4);
+        assertEquals(Arrays.asList("a", "c", "d", "b"), new ArrayList<>(all.toMap(0).keySet()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRankOutOfRange() {
+        new ClassificationResults(LABELS, new double[][]{{0.1, 0.7, 0.3, 0.9}}, 2).getScore(0, 2);
+    }
+}
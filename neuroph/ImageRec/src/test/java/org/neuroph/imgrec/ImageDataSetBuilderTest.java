@@ -0,0 +1,124 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neuroph.core.data.DataSet;
+import org.neuroph.core.data.DataSetRow;
+import org.neuroph.imgrec.image.Dimension;
+import org.neuroph.imgrec.image.ImageFactory;
+
+/**
+ * Data set rows must be the same as rows created image by image with ImageSampler, FractionRgbData and FractionHSLData
+ */
+public class ImageDataSetBuilderTest {
+
+    private static final Dimension RESOLUTION = new Dimension(8, 6);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File labeledDir;
+    private File junkDir;
+
+    @Before
+    public void setUp() throws IOException {
+        labeledDir = folder.newFolder("labeled");
+        junkDir = folder.newFolder("junk");
+        writeImage(labeledDir, "cat_1.png", 1);
+        writeImage(labeledDir, "cat_2.png", 2);
+        writeImage(labeledDir, "dog_1.png", 3);
+        writeImage(labeledDir, "dog_2.png", 4);
+        writeImage(junkDir, "junk_1.png", 5);
+    }
+
+    private static void writeImage(File dir, String name, long seed) throws IOException {
+        BufferedImage image = TestImages.createColorImage(47, 31, BufferedImage.TYPE_INT_RGB, seed);
+        assertTrue(ImageIO.write(image, "png", new File(dir, name)));
+    }
+
+    private static double[] legacyInput(File file, ColorMode colorMode) throws IOException {
+        if (colorMode == ColorMode.COLOR_HSL) {
+            BufferedImage image = ImageUtilities.resizeImage(ImageIO.read(file), RESOLUTION.getWidth(), RESOLUTION.getHeight());
+            FractionHSLData hslData = new FractionHSLData(image);
+            hslData.fillFlattenedHSLValues();
+            return hslData.getFlattenedHSLValues();
+        }
+        double[] rgb = new FractionRgbData(ImageSampler.downSampleImage(RESOLUTION, ImageFactory.getImage(file))).getFlattenedRgbValues();
+        return colorMode == ColorMode.BLACK_AND_WHITE ? FractionRgbData.convertRgbInputToBinaryBlackAndWhite(rgb) : rgb;
+    }
+
+    private void assertSameAsLegacy(ColorMode colorMode, DataSet dataSet) throws IOException {
+        List<File> files = ImageDataSetBuilder.listImages(labeledDir, junkDir);
+        assertEquals(files.size(), dataSet.size());
+        assertEquals(Arrays.asList("cat", "dog"), Arrays.asList(dataSet.getColumnNames()).subList(dataSet.getInputSize(), dataSet.getInputSize() + 2));
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            DataSetRow row = dataSet.getRowAt(i);
+            assertArrayEquals(file.getName(), legacyInput(file, colorMode), row.getInput(), 1e-12);
+            String name = file.getName();
+            double[] expectedOutput = {name.startsWith("cat") ? 1 : 0, name.startsWith("dog") ? 1 : 0};
+            assertArrayEquals(name, expectedOutput, row.getDesiredOutput(), 0);
+        }
+    }
+
+    private ImageDataSetBuilder createBuilder(ColorMode colorMode) {
+        ImageDataSetBuilder builder = new ImageDataSetBuilder(RESOLUTION, colorMode);
+        builder.setLabels(Arrays.asList("cat", "dog"));
+        builder.setParallelism(3);
+        builder.setQueueCapacity(2);
+        return builder;
+    }
+
+    @Test
+    public void testRgb() throws IOException {
+        assertSameAsLegacy(ColorMode.COLOR_RGB, createBuilder(ColorMode.COLOR_RGB).build(labeledDir, junkDir));
+    }
+
+    @Test
+    public void testHsl() throws IOException {
+        assertSameAsLegacy(ColorMode.COLOR_HSL, createBuilder(ColorMode.COLOR_HSL).build(labeledDir, junkDir));
+    }
+
+    @Test
+    public void testBlackAndWhite() throws IOException {
+        assertSameAsLegacy(ColorMode.BLACK_AND_WHITE, createBuilder(ColorMode.BLACK_AND_WHITE).build(labeledDir, junkDir));
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        ImageDataSetBuilder builder = createBuilder(ColorMode.COLOR_RGB);
+        builder.setCacheDirectory(folder.newFolder("cache"));
+        builder.build(labeledDir, junkDir);
+        assertEquals(0, builder.getCachedCount());
+
+        DataSet dataSet = builder.build(labeledDir, junkDir);
+        assertEquals(5, builder.getCachedCount());
+        assertSameAsLegacy(ColorMode.COLOR_RGB, dataSet);
+    }
+
+    @Test
+    public void testCreateLabels() throws IOException {
+        assertEquals(Arrays.asList("cat", "dog", "junk"), ImageDataSetBuilder.createLabels(ImageDataSetBuilder.listImages(labeledDir, junkDir)));
+    }
+
+    @Test
+    public void testSkippedFile() throws IOException {
+        File broken = new File(labeledDir, "cat_3.png");
+        Files.write(broken.toPath(), new byte[]{1, 2, 3});
+
+        ImageDataSetBuilder builder = createBuilder(ColorMode.COLOR_RGB);
+        DataSet dataSet = builder.build(labeledDir, junkDir);
+        assertEquals(Arrays.asList(broken), builder.getSkippedFiles());
+        assertEquals(5, dataSet.size());
+    }
+}
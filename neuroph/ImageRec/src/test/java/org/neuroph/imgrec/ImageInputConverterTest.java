@@ -0,0 +1,95 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.imgrec.ImageInputConverter.Conversion;
+import org.neuroph.imgrec.ImageInputConverter.Sampling;
+import org.neuroph.imgrec.image.Dimension;
+import org.neuroph.imgrec.image.ImageJ2SE;
+
+/**
+ * Converter must give the same vectors as ImageSampler, FractionRgbData and FractionHSLData
+ */
+public class ImageInputConverterTest {
+
+    private static final int[] IMAGE_TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY};
+
+    private static final Dimension RESOLUTION = new Dimension(8, 6);
+
+    /**
+     * Images of all types, and a sub image which does not start at the beginning of its data buffer
+     */
+    private static BufferedImage[] createImages(int width, int height) {
+        BufferedImage[] images = new BufferedImage[IMAGE_TYPES.length + 1];
+        for (int i = 0; i < IMAGE_TYPES.length; i++) {
+            images[i] = TestImages.createColorImage(width, height, IMAGE_TYPES[i], i);
+        }
+        images[IMAGE_TYPES.length] = TestImages.createColorImage(width + 9, height + 5, BufferedImage.TYPE_INT_RGB, 17)
+                .getSubimage(4, 3, width, height);
+        return images;
+    }
+
+    private static double[] legacyRgb(BufferedImage image) {
+        return new FractionRgbData(ImageSampler.downSampleImage(RESOLUTION, new ImageJ2SE(image))).getFlattenedRgbValues();
+    }
+
+    @Test
+    public void testSubsampleRgb() {
+        ImageInputConverter converter = new ImageInputConverter(RESOLUTION, ColorMode.COLOR_RGB, Sampling.SUBSAMPLE);
+        for (BufferedImage image : createImages(53, 37)) {
+            assertArrayEquals(legacyRgb(image), converter.convert(image), 0);
+        }
+    }
+
+    @Test
+    public void testSubsampleBlackAndWhite() {
+        ImageInputConverter converter = new ImageInputConverter(RESOLUTION, ColorMode.BLACK_AND_WHITE, Sampling.SUBSAMPLE);
+        for (BufferedImage image : createImages(53, 37)) {
+            double[] expected = FractionRgbData.convertRgbInputToBinaryBlackAndWhite(legacyRgb(image));
+            assertArrayEquals(expected, converter.convert(image), 0);
+        }
+    }
+
+    @Test
+    public void testNearestRgbAtInputResolution() {
+        ImageInputConverter converter = new ImageInputConverter(RESOLUTION, ColorMode.COLOR_RGB, Sampling.NEAREST);
+        for (BufferedImage image : createImages(RESOLUTION.getWidth(), RESOLUTION.getHeight())) {
+            assertArrayEquals(new FractionRgbData(image).getFlattenedRgbValues(), converter.convert(image), 0);
+        }
+    }
+
+    @Test
+    public void testNearestHslAtInputResolution() {
+        ImageInputConverter converter = new ImageInputConverter(RESOLUTION, ColorMode.COLOR_HSL, Sampling.NEAREST);
+        for (BufferedImage image : createImages(RESOLUTION.getWidth(), RESOLUTION.getHeight())) {
+            FractionHSLData hslData = new FractionHSLData(image);
+            hslData.fillFlattenedHSLValues();
+            assertArrayEquals(hslData.getFlattenedHSLValues(), converter.convert(image), 1e-12);
+        }
+    }
+
+    @Test
+    public void testFloatOutput() {
+        for (Conversion conversion : Conversion.values()) {
+            for (Sampling sampling : Sampling.values()) {
+                ImageInputConverter converter = new ImageInputConverter(8, 6, conversion, sampling);
+                for (BufferedImage image : createImages(29, 23)) {
+                    double[] expected = converter.convert(image);
+                    float[] input = new float[converter.getInputSize() + 3];
+                    converter.convert(image, input, 3);
+                    for (int i = 0; i < expected.length; i++) {
+                        assertEquals((float) expected[i], input[i + 3], 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSmallBuffer() {
+        ImageInputConverter converter = new ImageInputConverter(8, 6, Conversion.GRAYSCALE, Sampling.NEAREST);
+        converter.convert(TestImages.createColorImage(8, 6, BufferedImage.TYPE_INT_RGB, 0), new double[48], 1);
+    }
+}
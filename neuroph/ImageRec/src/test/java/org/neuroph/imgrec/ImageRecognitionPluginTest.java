@@ -0,0 +1,74 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.imgrec.image.Dimension;
+import org.neuroph.util.TransferFunctionType;
+
+/**
+ * Batch recognition must give the same scores as recognition of each image with the parent network
+ */
+public class ImageRecognitionPluginTest {
+
+    private NeuralNetwork<?> network;
+    private ImageRecognitionPlugin plugin;
+    private List<BufferedImage> images;
+
+    @Before
+    public void setUp() {
+        network = ImageRecognitionHelper.createNewNeuralNetwork("test", new Dimension(6, 4), ColorMode.COLOR_RGB,
+                new ArrayList<>(Arrays.asList("cat", "dog", "bird")), new ArrayList<>(Arrays.asList(5)),
+                TransferFunctionType.SIGMOID);
+        network.randomizeWeights(new Random(123));
+        plugin = network.getPlugin(ImageRecognitionPlugin.class);
+        images = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            images.add(TestImages.createColorImage(20, 15, BufferedImage.TYPE_INT_RGB, i));
+        }
+    }
+
+    private void assertSameAsSingleImage(ClassificationResults results) throws ImageSizeMismatchException {
+        assertEquals(images.size(), results.size());
+        for (int i = 0; i < images.size(); i++) {
+            Map<String, Double> expected = plugin.recognizeImage(images.get(i));
+            for (int rank = 0; rank < results.getTopK(); rank++) {
+                assertEquals(expected.get(results.getLabel(i, rank)), results.getScore(i, rank), 1e-6);
+                if (rank > 0) {
+                    assertTrue(results.getScore(i, rank - 1) >= results.getScore(i, rank));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchMatchesSingleImage() throws ImageSizeMismatchException {
+        assertSameAsSingleImage(plugin.recognizeImages(images, 2));
+    }
+
+    @Test
+    public void testTopKLimitedToLabelsCount() throws ImageSizeMismatchException {
+        ClassificationResults results = plugin.recognizeImages(images, 10);
+        assertEquals(3, results.getTopK());
+        assertSameAsSingleImage(results);
+    }
+
+    @Test
+    public void testResultsUseCurrentWeights() throws ImageSizeMismatchException {
+        plugin.recognizeImages(images, 3);
+        network.randomizeWeights(new Random(456));
+        assertSameAsSingleImage(plugin.recognizeImages(images, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTopK() throws ImageSizeMismatchException {
+        plugin.recognizeImages(images, 0);
+    }
+}
@@ -0,0 +1,53 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import javax.visrec.ml.ClassificationException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.imgrec.image.Dimension;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+
+/**
+ * Classification must return top labels with score above threshold, and fail for network without ImageRecognitionPlugin
+ */
+public class NeurophImageClassifierTest {
+
+    private static MultiLayerPerceptron createNetwork() {
+        MultiLayerPerceptron network = (MultiLayerPerceptron) ImageRecognitionHelper.createNewNeuralNetwork("test",
+                new Dimension(6, 4), ColorMode.COLOR_RGB, new ArrayList<>(Arrays.asList("cat", "dog", "bird")),
+                new ArrayList<>(Arrays.asList(5)), TransferFunctionType.SIGMOID);
+        network.randomizeWeights(new Random(123));
+        return network;
+    }
+
+    @Test
+    public void testThreshold() {
+        NeurophImageClassifier classifier = new NeurophImageClassifier(createNetwork());
+        BufferedImage image = TestImages.createColorImage(20, 15, BufferedImage.TYPE_INT_RGB, 1);
+        classifier.setThreshold(0);
+        Map<String, Float> all = classifier.classify(image);
+        assertEquals(3, all.size());
+        Float[] scores = all.values().toArray(new Float[0]);
+        String[] labels = all.keySet().toArray(new String[0]);
+        assertTrue(scores[0] > scores[1] && scores[1] > scores[2]);
+
+        classifier.setThreshold(scores[1]);
+        Map<String, Float> classes = classifier.classify(image);
+        assertEquals(Arrays.asList(labels[0], labels[1]), new ArrayList<>(classes.keySet()));
+        assertEquals(scores[1], classes.get(labels[1]));
+
+        classifier.setThreshold(Math.nextUp(scores[0]));
+        assertTrue(classifier.classify(image).isEmpty());
+    }
+
+    @Test(expected = ClassificationException.class)
+    public void testMissingPlugin() {
+        new NeurophImageClassifier(new MultiLayerPerceptron(72, 5, 3))
+                .classify(TestImages.createColorImage(20, 15, BufferedImage.TYPE_INT_RGB, 1));
+    }
+}
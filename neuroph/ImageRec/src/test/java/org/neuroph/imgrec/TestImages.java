@@ -0,0 +1,60 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Small synthetic images for comparing image processing implementations
+ */
+public final class TestImages {
+
+    private TestImages() {
+    }
+
+    /**
+     * Creates image with random colors, and random alpha if image type has alpha
+     *
+     * @param width  image width
+     * @param height image height
+     * @param type   BufferedImage type
+     * @param seed   random seed
+     * @return new image
+     */
+    public static BufferedImage createColorImage(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Creates gray image with gradient, noise and a bright rectangle, so filters get flat areas, edges and noise.
+     * Images with alpha get random alpha.
+     *
+     * @param width  image width
+     * @param height image height
+     * @param type   BufferedImage type
+     * @param seed   random seed
+     * @return new image
+     */
+    public static BufferedImage createGrayImage(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gray = 40 + 100 * x / width + 60 * y / height + random.nextInt(30);
+                if (x > width / 4 && x < width / 2 && y > height / 3 && y < 3 * height / 4) {
+                    gray += 80;
+                }
+                gray = Math.min(255, gray);
+                int alpha = random.nextInt(256);
+                image.setRGB(x, y, alpha << 24 | gray << 16 | gray << 8 | gray);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,68 @@
+package org.neuroph.imgrec;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Optional;
+import javax.imageio.ImageIO;
+import javax.visrec.ImageFactory;
+import javax.visrec.spi.BuilderService;
+import javax.visrec.spi.ImageFactoryService;
+import javax.visrec.spi.ImplementationService;
+import javax.visrec.spi.ServiceProvider;
+
+/**
+ * Visrec service provider for tests, needed to create AbstractImageClassifier. Provides only ImageIO image factory.
+ */
+public class TestServiceProvider extends ServiceProvider {
+
+    private static final ImageFactory<BufferedImage> IMAGE_FACTORY = new ImageFactory<BufferedImage>() {
+        @Override
+        public BufferedImage getImage(File file) throws IOException {
+            return ImageIO.read(file);
+        }
+
+        @Override
+        public BufferedImage getImage(URL url) throws IOException {
+            return ImageIO.read(url);
+        }
+
+        @Override
+        public BufferedImage getImage(InputStream in) throws IOException {
+            return ImageIO.read(in);
+        }
+    };
+
+    @Override
+    public BuilderService getBuilderService() {
+        throw new UnsupportedOperationException("Not supported in tests");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ImageFactoryService getImageFactoryService() {
+        return new ImageFactoryService() {
+            @Override
+            public <T> Optional<ImageFactory<T>> getByImageType(Class<T> type) {
+                return type == BufferedImage.class ? Optional.of((ImageFactory<T>) IMAGE_FACTORY) : Optional.empty();
+            }
+        };
+    }
+
+    @Override
+    public ImplementationService getImplementationService() {
+        return new ImplementationService() {
+            @Override
+            public String getName() {
+                return "Neuroph tests";
+            }
+
+            @Override
+            public String getVersion() {
+                return "1.0";
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package org.neuroph.imgrec.filter;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.imgrec.TestImages;
+
+/**
+ * Bulk raster reads and writes must give the same values as getRGB/setRGB for all image types
+ */
+public class GrayRasterTest {
+
+    private static final int[] IMAGE_TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY};
+
+    private static GrayRaster read(BufferedImage image, boolean luminance) {
+        GrayRaster raster = new GrayRaster(image.getWidth(), image.getHeight());
+        raster.readRows(image, luminance, 0, 7);
+        raster.readRows(image, luminance, 7, image.getHeight());
+        return raster;
+    }
+
+    private static void assertReadsLikeGetRgb(BufferedImage image) {
+        GrayRaster red = read(image, false);
+        GrayRaster luminance = read(image, true);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                Color color = new Color(image.getRGB(x, y));
+                assertEquals(color.getRed(), red.get(x, y));
+                int gray = (int) (0.21 * color.getRed() + 0.71 * color.getGreen() + 0.07 * color.getBlue());
+                assertEquals(gray, luminance.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testReadRows() {
+        for (int type : IMAGE_TYPES) {
+            assertReadsLikeGetRgb(TestImages.createColorImage(23, 17, type, type));
+        }
+    }
+
+    @Test
+    public void testReadRowsOfSubimage() {
+        for (int type : IMAGE_TYPES) {
+            assertReadsLikeGetRgb(TestImages.createColorImage(31, 25, type, type).getSubimage(3, 5, 23, 17));
+        }
+    }
+
+    @Test
+    public void testWriteRows() {
+        for (int type : IMAGE_TYPES) {
+            GrayRaster raster = read(TestImages.createGrayImage(23, 17, type, type), false);
+            BufferedImage image = new BufferedImage(23, 17, type);
+            raster.writeRows(image, 0, 10);
+            raster.writeRows(image, 10, 17);
+
+            BufferedImage expected = new BufferedImage(23, 17, type);
+            for (int y = 0; y < 17; y++) {
+                for (int x = 0; x < 23; x++) {
+                    int gray = raster.get(x, y);
+                    expected.setRGB(x, y, 0xFF000000 | gray << 16 | gray << 8 | gray);
+                    assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+                }
+            }
+            assertEquals(255, image.getRGB(0, 0) >>> 24); // alpha is not kept
+        }
+    }
+
+    @Test
+    public void testWriteRowsToSubimage() {
+        GrayRaster raster = read(TestImages.createGrayImage(23, 17, BufferedImage.TYPE_INT_ARGB, 0), false);
+        BufferedImage parent = new BufferedImage(31, 25, BufferedImage.TYPE_INT_ARGB);
+        raster.writeRows(parent.getSubimage(3, 5, 23, 17), 0, 17);
+        for (int y = 0; y < 25; y++) {
+            for (int x = 0; x < 31; x++) {
+                boolean inside = x >= 3 && x < 26 && y >= 5 && y < 22;
+                int expected = inside ? 0xFF000000 | raster.get(x - 3, y - 5) * 0x010101 : 0;
+                assertEquals(expected, parent.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeMismatch() {
+        new GrayRaster(10, 10).readRows(new BufferedImage(10, 11, BufferedImage.TYPE_INT_RGB), false, 0, 10);
+    }
+}
@@ -0,0 +1,247 @@
+package org.neuroph.imgrec.filter.impl;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import org.neuroph.imgrec.ImageUtilities;
+
+/**
+ * Per pixel filter implementations which were used before raster filters, kept as reference for tests.
+ * Pixels are read and written with getRGB/setRGB, and alpha is read with new Color(rgb).getAlpha(), as before.
+ */
+final class LegacyFilters {
+
+    private LegacyFilters() {
+    }
+
+    private static int red(BufferedImage image, int x, int y) {
+        return new Color(image.getRGB(x, y)).getRed();
+    }
+
+    private static int alpha(BufferedImage image, int x, int y) {
+        return new Color(image.getRGB(x, y)).getAlpha();
+    }
+
+    private static void setGray(BufferedImage image, int x, int y, int alpha, int gray) {
+        image.setRGB(x, y, ImageUtilities.argbToColor(alpha, gray, gray, gray));
+    }
+
+    static BufferedImage grayscale(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage filtered = new BufferedImage(width, height, image.getType());
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                Color color = new Color(image.getRGB(x, y));
+                int gray = (int) (0.21 * color.getRed() + 0.71 * color.getGreen() + 0.07 * color.getBlue());
+                setGray(filtered, x, y, color.getAlpha(), gray);
+            }
+        }
+        return filtered;
+    }
+
+    static BufferedImage otsu(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage filtered = new BufferedImage(width, height, image.getType());
+
+        int[] histogram = new int[256];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                histogram[(image.getRGB(x, y) >> 16) & 0xFF]++;
+            }
+        }
+
+        int total = width * height;
+        float sum = 0;
+        for (int i = 0; i < 256; i++) {
+            sum += i * histogram[i];
+        }
+        float sumB = 0;
+        int wB = 0;
+        float varMax = 0;
+        int threshold = 0;
+        for (int i = 0; i < 256; i++) {
+            wB += histogram[i];
+            if (wB == 0) {
+                continue;
+            }
+            int wF = total - wB;
+            if (wF == 0) {
+                break;
+            }
+            sumB += (float) (i * histogram[i]);
+            float mB = sumB / wB;
+            float mF = (sum - sumB) / wF;
+            float varBetween = (float) wB * (float) wF * (mB - mF) * (mB - mF);
+            if (varBetween > varMax) {
+                varMax = varBetween;
+                threshold = i;
+            }
+        }
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                setGray(filtered, x, y, alpha(image, x, y), red(image, x, y) > threshold ? 255 : 0);
+            }
+        }
+        return filtered;
+    }
+
+    static BufferedImage sobel(BufferedImage image, double threshold) {
+        double[][] horizSobel = {{-1, -2, -1}, {0, 0, 0}, {1, 2, 1}};
+        double[][] vertSobel = {{-1, 0, 1}, {-2, 0, 2}, {-1, 0, 1}};
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage filtered = new BufferedImage(width, height, image.getType());
+
+        double[][] grad = new double[width][height];
+        double maxGrad = 0;
+        for (int x = 1; x < width - 1; x++) {
+            for (int y = 1; y < height - 1; y++) {
+                double gradX = sobelSum(image, x, y, horizSobel);
+                double gradY = sobelSum(image, x, y, vertSobel);
+                grad[x][y] = Math.abs(gradX) + Math.abs(gradY);
+                if (grad[x][y] > maxGrad) {
+                    maxGrad = grad[x][y];
+                }
+            }
+        }
+
+        threshold = threshold * maxGrad;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                setGray(filtered, x, y, alpha(image, x, y), grad[x][y] > threshold ? 0 : 255);
+            }
+        }
+        return filtered;
+    }
+
+    private static double sobelSum(BufferedImage image, int xCenter, int yCenter, double[][] sobelFilter) {
+        double filterSum = 0;
+        for (int x = xCenter - 1, fx = 0; x <= xCenter + 1; x++, fx++) {
+            for (int y = yCenter - 1, fy = 0; y <= yCenter + 1; y++, fy++) {
+                filterSum = filterSum + red(image, x, y) * sobelFilter[fx][fy];
+            }
+        }
+        return filterSum;
+    }
+
+    static BufferedImage median(BufferedImage image, int radius) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage filtered = new BufferedImage(width, height, image.getType());
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                int startX = Math.max(0, i - radius);
+                int goalX = Math.min(width - 1, i + radius);
+                int startY = Math.max(0, j - radius);
+                int goalY = Math.min(height - 1, j + radius);
+                int[] pixels = new int[(goalX - startX + 1) * (goalY - startY + 1)];
+                int position = 0;
+                for (int p = startX; p <= goalX; p++) {
+                    for (int q = startY; q <= goalY; q++) {
+                        pixels[position++] = red(image, p, q);
+                    }
+                }
+                Arrays.sort(pixels);
+                setGray(filtered, i, j, alpha(image, i, j), pixels[pixels.length / 2]);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Mean filter, with the window cut at all image edges. Per pixel implementation skipped row and column 0
+     * of the image when summing the window (x &gt; 0 and y &gt; 0), which raster implementation fixed.
+     */
+    static BufferedImage mean(BufferedImage image, int radius) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage filtered = new BufferedImage(width, height, image.getType());
+        int numPixels = (2 * radius + 1) * (2 * radius + 1);
+        for (int centerX = 0; centerX < width; centerX++) {
+            for (int centerY = 0; centerY < height; centerY++) {
+                double sum = 0;
+                for (int x = centerX - radius; x <= centerX + radius; x++) {
+                    for (int y = centerY - radius; y <= centerY + radius; y++) {
+                        if (x >= 0 && x < width && y >= 0 && y < height) {
+                            sum = sum + red(image, x, y);
+                        }
+                    }
+                }
+                setGray(filtered, centerX, centerY, alpha(image, centerX, centerY), (int) Math.round(sum / numPixels));
+            }
+        }
+        return filtered;
+    }
+
+    static BufferedImage gaussian(BufferedImage image, int radius, double sigma) {
+        int size = radius * 2 + 1;
+        double[][] kernel = new double[size][size];
+        double sum = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                double distanceX = Math.abs(radius - x);
+                double distanceY = Math.abs(radius - y);
+                double value = 1.0 / (2 * Math.PI * sigma * sigma);
+                value = value * Math.pow(Math.E, -(distanceX * distanceX + distanceY * distanceY) / (2 * sigma * sigma));
+                kernel[x][y] = value;
+                sum = sum + value;
+            }
+        }
+        double normalization = 1.0 / sum;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                kernel[x][y] = kernel[x][y] * normalization;
+            }
+        }
+
+        BufferedImage filtered = new BufferedImage(image.getWidth() - 2 * radius, image.getHeight() - 2 * radius, image.getType());
+        for (int i = radius; i < image.getWidth() - radius; i++) {
+            for (int j = radius; j < image.getHeight() - radius; j++) {
+                double[][] matrix = new double[size][size];
+                for (int x = i - radius, ki = 0; x <= i + radius; x++, ki++) {
+                    for (int y = j - radius, kj = 0; y <= j + radius; y++, kj++) {
+                        matrix[ki][kj] = red(image, x, y) * kernel[ki][kj];
+                    }
+                }
+                double total = 0;
+                for (int ki = 0; ki < size; ki++) {
+                    for (int kj = 0; kj < size; kj++) {
+                        total = total + matrix[ki][kj];
+                    }
+                }
+                setGray(filtered, i - radius, j - radius, alpha(image, i, j), (int) Math.round(total));
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Convolution with kernel[x][y], with the window cut at image edges. Per pixel implementation skipped
+     * row 0 of the image (y &gt; 0) and used kernel.length / 2 as vertical radius too, which raster implementation
+     * fixed. Results are not clamped, so kernel must keep them in 0-255 range.
+     */
+    static BufferedImage convolution(BufferedImage image, double[][] kernel) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage filtered = new BufferedImage(width, height, image.getType());
+        int radiusX = kernel.length / 2;
+        int radiusY = kernel[0].length / 2;
+        for (int xCenter = 0; xCenter < width; xCenter++) {
+            for (int yCenter = 0; yCenter < height; yCenter++) {
+                double sum = 0;
+                for (int x = xCenter - radiusX, kx = 0; x <= xCenter + radiusX; x++, kx++) {
+                    for (int y = yCenter - radiusY, ky = 0; y <= yCenter + radiusY; y++, ky++) {
+                        if (x >= 0 && x < width && y >= 0 && y < height) {
+                            sum = sum + red(image, x, y) * kernel[kx][ky];
+                        }
+                    }
+                }
+                setGray(filtered, xCenter, yCenter, alpha(image, xCenter, yCenter), (int) Math.round(sum));
+            }
+        }
+        return filtered;
+    }
+}
@@ -0,0 +1,209 @@
+package org.neuroph.imgrec.filter.impl;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.neuroph.imgrec.TestImages;
+import org.neuroph.imgrec.filter.ImageFilter;
+import org.neuroph.imgrec.filter.ImageFilterChain;
+import org.neuroph.imgrec.filter.RasterFilter;
+import org.neuroph.imgrec.filter.RasterPipeline;
+import org.neuroph.imgrec.filter.RasterProcessor;
+
+/**
+ * Raster filters must give the same images as the per pixel implementations (see LegacyFilters),
+ * when applied directly and when image is split into many tiles
+ */
+public class RasterFiltersTest {
+
+    private static final int[] IMAGE_TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY};
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    /**
+     * Processor with tiles of a few rows, so small test images are split into many tiles
+     */
+    private static final RasterProcessor TILED = new RasterProcessor(POOL, 64);
+
+    @AfterClass
+    public static void tearDown() {
+        POOL.shutdown();
+    }
+
+    private interface Legacy {
+        BufferedImage apply(BufferedImage image);
+    }
+
+    private static BufferedImage[] createImages() {
+        BufferedImage[] images = new BufferedImage[IMAGE_TYPES.length];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = TestImages.createGrayImage(37, 29, IMAGE_TYPES[i], i);
+        }
+        return images;
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    fail("Pixel (" + x + ", " + y + ") of type " + expected.getType() + " image: expected "
+                            + Integer.toHexString(expected.getRGB(x, y)) + " but was " + Integer.toHexString(actual.getRGB(x, y)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares filter with legacy implementation for all image types, applied directly and in tiles
+     */
+    private static <F extends ImageFilter<BufferedImage> & RasterFilter> void assertSameAsLegacy(F filter, Legacy legacy) {
+        for (BufferedImage image : createImages()) {
+            BufferedImage expected = legacy.apply(image);
+            assertSameImage(expected, filter.apply(image));
+            assertSameImage(expected, new RasterPipeline(Collections.singletonList(filter), TILED).apply(image));
+        }
+    }
+
+    @Test
+    public void testGrayscaleFilter() {
+        for (int type : IMAGE_TYPES) {
+            BufferedImage image = TestImages.createColorImage(37, 29, type, type);
+            BufferedImage expected = LegacyFilters.grayscale(image);
+            assertSameImage(expected, new GrayscaleFilter().apply(image));
+            assertSameImage(expected, new RasterPipeline(Collections.singletonList(new GrayscaleFilter()), TILED).apply(image));
+        }
+    }
+
+    @Test
+    public void testOtsuBinarizeFilter() {
+        assertSameAsLegacy(new OtsuBinarizeFilter(), LegacyFilters::otsu);
+    }
+
+    @Test
+    public void testSobelEdgeDetection() {
+        SobelEdgeDetection filter = new SobelEdgeDetection();
+        assertSameAsLegacy(filter, image -> LegacyFilters.sobel(image, 0.1));
+        // threshold is not changed by apply
+        assertSameAsLegacy(filter, image -> LegacyFilters.sobel(image, 0.1));
+    }
+
+    @Test
+    public void testMedianFilterSlidingHistogram() {
+        for (int radius = 1; radius <= 3; radius++) {
+            final int r = radius;
+            assertSameAsLegacy(new MedianFilter(r), image -> LegacyFilters.median(image, r));
+        }
+    }
+
+    @Test
+    public void testMedianFilterColumnHistograms() {
+        for (int radius : new int[]{4, 5, 9}) {
+            final int r = radius;
+            assertSameAsLegacy(new MedianFilter(r), image -> LegacyFilters.median(image, r));
+        }
+    }
+
+    @Test
+    public void testMeanFilter() {
+        for (int radius : new int[]{1, 2, 5}) {
+            final int r = radius;
+            assertSameAsLegacy(new MeanFilter(r), image -> LegacyFilters.mean(image, r));
+        }
+    }
+
+    @Test
+    public void testGaussianBluring() {
+        assertSameAsLegacy(new GaussianBluring(), image -> LegacyFilters.gaussian(image, 7, 10));
+
+        GaussianBluring small = new GaussianBluring();
+        small.setRadius(4); // radius is set to 3
+        small.setSigma(1.5);
+        assertSameAsLegacy(small, image -> LegacyFilters.gaussian(image, 3, 1.5));
+    }
+
+    /*
+     * Kernel sums in convolution tests are odd, so exact results are never halfway between two integers,
+     * where rounding would depend on the order of floating point additions
+     */
+
+    @Test
+    public void testSeparableConvolution() {
+        double[][] kernel = {{1, 3, 1}, {3, 9, 3}, {1, 3, 1}};
+        GenericConvolution filter = new GenericConvolution(kernel);
+        filter.setNormalize(true);
+        assertSameAsLegacy(filter, image -> LegacyFilters.convolution(image, normalize(kernel)));
+
+        double[] xKernel = {1 / 5.0, 3 / 5.0, 1 / 5.0};
+        double[] yKernel = {1 / 9.0, 2 / 9.0, 3 / 9.0, 2 / 9.0, 1 / 9.0};
+        GenericConvolution product = new GenericConvolution(xKernel, yKernel);
+        double[][] productKernel = new double[xKernel.length][yKernel.length];
+        for (int x = 0; x < xKernel.length; x++) {
+            for (int y = 0; y < yKernel.length; y++) {
+                productKernel[x][y] = xKernel[x] * yKernel[y];
+            }
+        }
+        assertSameAsLegacy(product, image -> LegacyFilters.convolution(image, productKernel));
+    }
+
+    @Test
+    public void testGenericConvolution() {
+        double[][] kernel = {{1, 2, 1}, {2, 4, 2}, {1, 2, 2}}; // not separable
+        GenericConvolution filter = new GenericConvolution(kernel);
+        filter.setNormalize(true);
+        assertSameAsLegacy(filter, image -> LegacyFilters.convolution(image, normalize(kernel)));
+        assertEquals(2, kernel[2][2], 0); // kernel is not normalized in place
+    }
+
+    @Test
+    public void testFilterChain() {
+        ImageFilterChain chain = new ImageFilterChain();
+        chain.addFilter(new GrayscaleFilter());
+        chain.addFilter(new MedianFilter(2));
+        chain.addFilter(new MeanFilter(1));
+        chain.addFilter(new OtsuBinarizeFilter());
+        chain.setRasterProcessor(TILED);
+        for (int type : IMAGE_TYPES) {
+            BufferedImage image = TestImages.createColorImage(41, 23, type, type);
+            // intermediate images of per pixel filters are kept as TYPE_INT_RGB, since setRGB/getRGB round trip
+            // of TYPE_BYTE_GRAY changes gray values, while the chain keeps intermediate results in rasters
+            BufferedImage rgb = copy(image, BufferedImage.TYPE_INT_RGB);
+            BufferedImage expected = LegacyFilters.otsu(LegacyFilters.mean(LegacyFilters.median(LegacyFilters.grayscale(rgb), 2), 1));
+            assertSameImage(copy(expected, type), chain.apply(image));
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage image, int type) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                copy.setRGB(x, y, image.getRGB(x, y));
+            }
+        }
+        return copy;
+    }
+
+    private static double[][] normalize(double[][] kernel) {
+        double sum = 0;
+        for (double[] column : kernel) {
+            for (double value : column) {
+                sum += value;
+            }
+        }
+        double[][] normalized = new double[kernel.length][];
+        for (int x = 0; x < kernel.length; x++) {
+            normalized[x] = Arrays.copyOf(kernel[x], kernel[x].length);
+            for (int y = 0; y < normalized[x].length; y++) {
+                normalized[x][y] /= sum;
+            }
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright 2014 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.neuroph.simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.neuroph.core.kernel.Kernels;
+
+/**
+ * <pre>
+ * Kernels implemented with the Java Vector API, using the preferred vector size of the CPU
+ * (4 doubles with AVX2, 8 with AVX-512). Registered as a service, so Kernels.getInstance()
+ * picks it up when this module is on classpath and the JVM is started with
+ * --add-modules jdk.incubator.vector.
+ *
+ * Each dot product is accumulated in one vector and reduced at the end, and matrix products
+ * keep the same order for every output, so gemm and gemv give identical results.
+ * Sigmoid and tanh use vector exp, which may differ from Math.exp in the last bit.
+ * Optimizer updates use the same operations as scalar code, so their results are identical.
+ * </pre>
+ */
+public class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * Creates vector kernels, called by service loader
+     */
+    public VectorKernels() {
+    }
+
+    /**
+     * Vectors of a single double give nothing over scalar code
+     */
+    @Override
+    protected boolean isSupported() {
+        return D.length() > 1;
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + D.vectorBitSize() + " bit";
+    }
+
+    @Override
+    public double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        int bound = D.loopBound(length);
+        DoubleVector acc = DoubleVector.zero(D);
+        int i = 0;
+        for (; i < bound; i += D.length()) {
+            acc = DoubleVector.fromArray(D, x, xOffset + i).fma(DoubleVector.fromArray(D, y, yOffset + i), acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += x[xOffset + i] * y[yOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        int bound = F.loopBound(length);
+        FloatVector acc = FloatVector.zero(F);
+        int i = 0;
+        for (; i < bound; i += F.length()) {
+            acc = FloatVector.fromArray(F, x, xOffset + i).fma(FloatVector.fromArray(F, y, yOffset + i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += x[xOffset + i] * y[yOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(double a, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        int bound = D.loopBound(length);
+        DoubleVector av = DoubleVector.broadcast(D, a);
+        int i = 0;
+        for (; i < bound; i += D.length()) {
+            DoubleVector.fromArray(D, x, xOffset + i).fma(av, DoubleVector.fromArray(D, y, yOffset + i))
+                    .intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void axpy(float a, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        int bound = F.loopBound(length);
+        FloatVector av = FloatVector.broadcast(F, a);
+        int i = 0;
+        for (; i < bound; i += F.length()) {
+            FloatVector.fromArray(F, x, xOffset + i).fma(av, FloatVector.fromArray(F, y, yOffset + i))
+                    .intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    /**
+     * Four outputs at a time, so each input vector is loaded once for four weight rows
+     */
+    @Override
+    public void gemv(double[] w, int in, int out, double[] x, double[] b, double[] y) {
+        int bound = D.loopBound(in);
+        int j = 0;
+        for (; j + 3 < out; j += 4) {
+            int w0 = j * in, w1 = w0 + in, w2 = w1 + in, w3 = w2 + in;
+            DoubleVector s0 = DoubleVector.zero(D), s1 = s0, s2 = s0, s3 = s0;
+            int i = 0;
+            for (; i < bound; i += D.length()) {
+                DoubleVector a = DoubleVector.fromArray(D, x, i);
+                s0 = DoubleVector.fromArray(D, w, w0 + i).fma(a, s0);
+                s1 = DoubleVector.fromArray(D, w, w1 + i).fma(a, s1);
+                s2 = DoubleVector.fromArray(D, w, w2 + i).fma(a, s2);
+                s3 = DoubleVector.fromArray(D, w, w3 + i).fma(a, s3);
+            }
+            y[j] = tail(s0, w, w0, x, 0, i, in) + b[j];
+            y[j + 1] = tail(s1, w, w1, x, 0, i, in) + b[j + 1];
+            y[j + 2] = tail(s2, w, w2, x, 0, i, in) + b[j + 2];
+            y[j + 3] = tail(s3, w, w3, x, 0, i, in) + b[j + 3];
+        }
+        for (; j < out; j++) {
+            y[j] = dot(w, j * in, x, 0, in) + b[j];
+        }
+    }
+
+    /**
+     * Two rows and four units at a time (eight accumulators), with the same summation order as gemv
+     */
+    @Override
+    public void gemm(double[] x, int rows, int in, double[] w, double[] b, int out, double[] y) {
+        int bound = D.loopBound(in);
+        int j = 0;
+        for (; j + 3 < out; j += 4) {
+            int w0 = j * in, w1 = w0 + in, w2 = w1 + in, w3 = w2 + in;
+            int r = 0;
+            for (; r + 1 < rows; r += 2) {
+                int x0 = r * in, x1 = x0 + in;
+                DoubleVector s00 = DoubleVector.zero(D), s01 = s00, s02 = s00, s03 = s00;
+                DoubleVector s10 = s00, s11 = s00, s12 = s00, s13 = s00;
+                int i = 0;
+                for (; i < bound; i += D.length()) {
+                    DoubleVector a0 = DoubleVector.fromArray(D, x, x0 + i);
+                    DoubleVector a1 = DoubleVector.fromArray(D, x, x1 + i);
+                    DoubleVector c = DoubleVector.fromArray(D, w, w0 + i);
+                    s00 = c.fma(a0, s00);
+                    s10 = c.fma(a1, s10);
+                    c = DoubleVector.fromArray(D, w, w1 + i);
+                    s01 = c.fma(a0, s01);
+                    s11 = c.fma(a1, s11);
+                    c = DoubleVector.fromArray(D, w, w2 + i);
+                    s02 = c.fma(a0, s02);
+                    s12 = c.fma(a1, s12);
+                    c = DoubleVector.fromArray(D, w, w3 + i);
+                    s03 = c.fma(a0, s03);
+                    s13 = c.fma(a1, s13);
+                }
+                int y0 = r * out + j, y1 = y0 + out;
+                y[y0] = tail(s00, w, w0, x, x0, i, in) + b[j];
+                y[y0 + 1] = tail(s01, w, w1, x, x0, i, in) + b[j + 1];
+                y[y0 + 2] = tail(s02, w, w2, x, x0, i, in) + b[j + 2];
+                y[y0 + 3] = tail(s03, w, w3, x, x0, i, in) + b[j + 3];
+                y[y1] = tail(s10, w, w0, x, x1, i, in) + b[j];
+                y[y1 + 1] = tail(s11, w, w1, x, x1, i, in) + b[j + 1];
+                y[y1 + 2] = tail(s12, w, w2, x, x1, i, in) + b[j + 2];
+                y[y1 + 3] = tail(s13, w, w3, x, x1, i, in) + b[j + 3];
+            }
+            // remaining row
+            for (; r < rows; r++) {
+                int x0 = r * in;
+                for (int k = 0; k < 4; k++) {
+                    y[r * out + j + k] = dot(w, w0 + k * in, x, x0, in) + b[j + k];
+                }
+            }
+        }
+        // remaining units
+        for (; j < out; j++) {
+            for (int r = 0; r < rows; r++) {
+                y[r * out + j] = dot(w, j * in, x, r * in, in) + b[j];
+            }
+        }
+    }
+
+    /**
+     * Reduces vector sum and adds scalar products of the elements after the last full vector, like dot
+     */
+    private static double tail(DoubleVector acc, double[] w, int wOffset, double[] x, int xOffset, int from, int length) {
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (int i = from; i < length; i++) {
+            sum += w[wOffset + i] * x[xOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void sigmoid(double slope, double[] v, int from, int to) {
+        DoubleVector one = DoubleVector.broadcast(D, 1);
+        int i = from;
+        for (int bound = from + D.loopBound(to - from); i < bound; i += D.length()) {
+            DoubleVector net = DoubleVector.fromArray(D, v, i);
+            DoubleVector out = one.div(net.mul(-slope).lanewise(VectorOperators.EXP).add(one));
+            out.blend(1.0, net.compare(VectorOperators.GT, 100))
+                    .blend(0.0, net.compare(VectorOperators.LT, -100))
+                    .intoArray(v, i);
+        }
+        super.sigmoid(slope, v, i, to);
+    }
+
+    @Override
+    public void sigmoid(double slope, float[] v, int from, int to) {
+        FloatVector one = FloatVector.broadcast(F, 1);
+        float s = (float) -slope;
+        int i = from;
+        for (int bound = from + F.loopBound(to - from); i < bound; i += F.length()) {
+            FloatVector net = FloatVector.fromArray(F, v, i);
+            FloatVector out = one.div(net.mul(s).lanewise(VectorOperators.EXP).add(one));
+            out.blend(1f, net.compare(VectorOperators.GT, 100))
+                    .blend(0f, net.compare(VectorOperators.LT, -100))
+                    .intoArray(v, i);
+        }
+        super.sigmoid(slope, v, i, to);
+    }
+
+    @Override
+    public void tanh(double slope, double amplitude, double[] v, int from, int to) {
+        DoubleVector one = DoubleVector.broadcast(D, 1);
+        int i = from;
+        for (int bound = from + D.loopBound(to - from); i < bound; i += D.length()) {
+            DoubleVector net = DoubleVector.fromArray(D, v, i);
+            DoubleVector e = net.mul(2.0 * slope).lanewise(VectorOperators.EXP);
+            DoubleVector out = e.sub(one).div(e.add(one)).mul(amplitude);
+            VectorMask<Double> saturated = net.abs().mul(slope).compare(VectorOperators.GT, 100);
+            if (saturated.anyTrue()) {
+                out = out.blend(one.blend(-1.0, net.compare(VectorOperators.LT, 0)), saturated);
+            }
+            out.intoArray(v, i);
+        }
+        super.tanh(slope, amplitude, v, i, to);
+    }
+
+    @Override
+    public void tanh(double slope, double amplitude, float[] v, int from, int to) {
+        FloatVector one = FloatVector.broadcast(F, 1);
+        float s = (float) slope;
+        float a = (float) amplitude;
+        int i = from;
+        for (int bound = from + F.loopBound(to - from); i < bound; i += F.length()) {
+            FloatVector net = FloatVector.fromArray(F, v, i);
+            // float exp overflows above 88, tanh is already 1f at 2 * slope * net = 40
+            FloatVector e = net.mul(2 * s).max(-40f).min(40f).lanewise(VectorOperators.EXP);
+            FloatVector out = e.sub(one).div(e.add(one)).mul(a);
+            VectorMask<Float> saturated = net.abs().mul(s).compare(VectorOperators.GT, 100);
+            if (saturated.anyTrue()) {
+                out = out.blend(one.blend(-1f, net.compare(VectorOperators.LT, 0)), saturated);
+            }
+            out.intoArray(v, i);
+        }
+        super.tanh(slope, amplitude, v, i, to);
+    }
+
+    @Override
+    public void relu(double[] v, int from, int to) {
+        int i = from;
+        for (int bound = from + D.loopBound(to - from); i < bound; i += D.length()) {
+            DoubleVector.fromArray(D, v, i).max(0).intoArray(v, i);
+        }
+        super.relu(v, i, to);
+    }
+
+    @Override
+    public void relu(float[] v, int from, int to) {
+        int i = from;
+        for (int bound = from + F.loopBound(to - from); i < bound; i += F.length()) {
+            FloatVector.fromArray(F, v, i).max(0).intoArray(v, i);
+        }
+        super.relu(v, i, to);
+    }
+
+    @Override
+    public void adam(double[] gradients, double scale, double[] m, double[] v, double beta1, double beta2,
+                     double c1, double c2, double rate, double epsilon, double decay, double[] values, double[] steps, int length) {
+        int k = 0;
+        for (int bound = D.loopBound(length); k < bound; k += D.length()) {
+            DoubleVector g = DoubleVector.fromArray(D, gradients, k).mul(scale);
+            DoubleVector mk = DoubleVector.fromArray(D, m, k).mul(beta1).add(g.mul(1 - beta1));
+            DoubleVector vk = DoubleVector.fromArray(D, v, k).mul(beta2).add(g.mul(1 - beta2).mul(g));
+            mk.intoArray(m, k);
+            vk.intoArray(v, k);
+            mk.mul(c1).mul(-rate).div(vk.mul(c2).sqrt().add(epsilon))
+                    .sub(DoubleVector.fromArray(D, values, k).mul(decay))
+                    .intoArray(steps, k);
+        }
+        // remaining weights
+        for (; k < length; k++) {
+            double g = gradients[k] * scale;
+            m[k] = beta1 * m[k] + (1 - beta1) * g;
+            v[k] = beta2 * v[k] + (1 - beta2) * g * g;
+            steps[k] = -rate * (m[k] * c1) / (Math.sqrt(v[k] * c2) + epsilon) - decay * values[k];
+        }
+    }
+
+    @Override
+    public void rmsProp(double[] gradients, double scale, double[] cache, double decay, double gain,
+                        double rate, double epsilon, double[] steps, int length) {
+        int k = 0;
+        for (int bound = D.loopBound(length); k < bound; k += D.length()) {
+            DoubleVector g = DoubleVector.fromArray(D, gradients, k).mul(scale);
+            DoubleVector c = DoubleVector.fromArray(D, cache, k).mul(decay).add(g.mul(gain).mul(g));
+            c.intoArray(cache, k);
+            g.mul(-rate).div(c.sqrt().add(epsilon)).intoArray(steps, k);
+        }
+        for (; k < length; k++) {
+            double g = gradients[k] * scale;
+            cache[k] = decay * cache[k] + gain * g * g;
+            steps[k] = -rate * g / (Math.sqrt(cache[k]) + epsilon);
+        }
+    }
+}
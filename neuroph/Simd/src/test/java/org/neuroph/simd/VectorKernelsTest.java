@@ -0,0 +1,163 @@
+package org.neuroph.simd;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.neuroph.core.CompiledNetwork;
+import org.neuroph.core.kernel.Kernels;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.WeightsRandomizer;
+
+/**
+ * Tests for VectorKernels, results must match scalar kernels.
+ * Odd lengths and offsets are used so that both vector loops and scalar tails are covered.
+ */
+public class VectorKernelsTest {
+
+    private final Kernels scalar = Kernels.getScalar();
+    private final VectorKernels vector = new VectorKernels();
+    private final Random random = new Random(11);
+
+    private double[] randomArray(int length, double scale) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (random.nextDouble() * 2 - 1) * scale;
+        }
+        return values;
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    @Test
+    public void testServiceLoading() {
+        assertTrue(Kernels.getInstance() instanceof VectorKernels);
+    }
+
+    @Test
+    public void testDotAndAxpy() {
+        double[] x = randomArray(103, 1);
+        double[] y = randomArray(103, 1);
+        assertEquals(scalar.dot(x, 2, y, 1, 99), vector.dot(x, 2, y, 1, 99), 1e-12);
+        assertEquals(scalar.dot(toFloat(x), 3, toFloat(y), 0, 97), vector.dot(toFloat(x), 3, toFloat(y), 0, 97), 1e-4f);
+
+        double[] expected = y.clone();
+        double[] actual = y.clone();
+        scalar.axpy(0.3, x, 1, expected, 2, 100);
+        vector.axpy(0.3, x, 1, actual, 2, 100);
+        assertArrayEquals(expected, actual, 1e-15);
+
+        float[] expectedFloat = toFloat(y);
+        float[] actualFloat = toFloat(y);
+        scalar.axpy(0.3f, toFloat(x), 0, expectedFloat, 1, 101);
+        vector.axpy(0.3f, toFloat(x), 0, actualFloat, 1, 101);
+        assertArrayEquals(expectedFloat, actualFloat, 1e-6f);
+    }
+
+    @Test
+    public void testGemmMatchesGemv() {
+        int rows = 7, in = 37, out = 11;
+        double[] x = randomArray(rows * in, 1);
+        double[] w = randomArray(out * in, 1);
+        double[] b = randomArray(out, 1);
+        double[] y = new double[rows * out];
+        double[] expected = new double[rows * out];
+        vector.gemm(x, rows, in, w, b, out, y);
+        scalar.gemm(x, rows, in, w, b, out, expected);
+        assertArrayEquals(expected, y, 1e-12);
+
+        double[] row = new double[out];
+        for (int r = 0; r < rows; r++) {
+            vector.gemv(w, in, out, Arrays.copyOfRange(x, r * in, (r + 1) * in), b, row);
+            for (int j = 0; j < out; j++) {
+                assertEquals(y[r * out + j], row[j], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testActivations() {
+        // includes values beyond overflow guards
+        double[] net = randomArray(45, 150);
+        double[] expected = net.clone();
+        double[] actual = net.clone();
+
+        scalar.sigmoid(1, expected, 1, 44);
+        vector.sigmoid(1, actual, 1, 44);
+        assertArrayEquals(expected, actual, 1e-15);
+
+        expected = net.clone();
+        actual = net.clone();
+        scalar.tanh(0.5, 2, expected, 0, 45);
+        vector.tanh(0.5, 2, actual, 0, 45);
+        assertArrayEquals(expected, actual, 1e-14);
+
+        expected = net.clone();
+        actual = net.clone();
+        scalar.relu(expected, 3, 40);
+        vector.relu(actual, 3, 40);
+        assertArrayEquals(expected, actual, 0);
+
+        float[] expectedFloat = toFloat(net);
+        float[] actualFloat = toFloat(net);
+        scalar.sigmoid(1, expectedFloat, 0, 45);
+        vector.sigmoid(1, actualFloat, 0, 45);
+        assertArrayEquals(expectedFloat, actualFloat, 1e-6f);
+
+        expectedFloat = toFloat(net);
+        actualFloat = toFloat(net);
+        scalar.tanh(0.5, 2, expectedFloat, 0, 45);
+        vector.tanh(0.5, 2, actualFloat, 0, 45);
+        assertArrayEquals(expectedFloat, actualFloat, 1e-5f);
+    }
+
+    @Test
+    public void testOptimizerUpdatesAreIdentical() {
+        int length = 77;
+        double[] gradients = randomArray(length, 1);
+        double[] values = randomArray(length, 1);
+        double[] m1 = randomArray(length, 0.1), v1 = randomArray(length, 0.1);
+        for (int k = 0; k < length; k++) {
+            v1[k] = Math.abs(v1[k]);
+        }
+        double[] m2 = m1.clone(), v2 = v1.clone();
+        double[] expected = new double[length], actual = new double[length];
+
+        scalar.adam(gradients, 0.5, m1, v1, 0.9, 0.999, 1.1, 1.01, 0.001, 1e-8, 1e-4, values, expected, length);
+        vector.adam(gradients, 0.5, m2, v2, 0.9, 0.999, 1.1, 1.01, 0.001, 1e-8, 1e-4, values, actual, length);
+        assertArrayEquals(expected, actual, 0);
+        assertArrayEquals(m1, m2, 0);
+        assertArrayEquals(v1, v2, 0);
+
+        scalar.rmsProp(gradients, 0.5, v1, 0.9, 0.1, 0.01, 1e-8, expected, length);
+        vector.rmsProp(gradients, 0.5, v2, 0.9, 0.1, 0.01, 1e-8, actual, length);
+        assertArrayEquals(expected, actual, 0);
+        assertArrayEquals(v1, v2, 0);
+    }
+
+    @Test
+    public void testCompiledNetwork() {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(TransferFunctionType.SIGMOID, 30, 21, 5);
+        mlp.randomizeWeights(new WeightsRandomizer(new Random(123)));
+        CompiledNetwork compiled = mlp.compile();
+
+        double[][] inputs = new double[9][];
+        for (int r = 0; r < inputs.length; r++) {
+            inputs[r] = randomArray(30, 1);
+        }
+        double[][] outputs = compiled.predictBatch(inputs);
+        for (int r = 0; r < inputs.length; r++) {
+            assertArrayEquals(compiled.predict(inputs[r]), outputs[r], 0);
+            mlp.setInput(inputs[r]);
+            mlp.calculate();
+            assertArrayEquals(mlp.getOutput(), outputs[r], 1e-12);
+        }
+    }
+}